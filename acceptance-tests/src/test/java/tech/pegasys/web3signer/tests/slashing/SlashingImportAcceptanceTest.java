@@ -21,6 +21,7 @@ import tech.pegasys.web3signer.core.signing.KeyType;
 import tech.pegasys.web3signer.dsl.signer.Signer;
 import tech.pegasys.web3signer.dsl.signer.SignerConfigurationBuilder;
 import tech.pegasys.web3signer.dsl.utils.MetadataFileHelpers;
+import tech.pegasys.web3signer.slashingprotection.SortableUInt64;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
 import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
@@ -28,7 +29,6 @@ import tech.pegasys.web3signer.tests.AcceptanceTestBase;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.util.List;
@@ -121,9 +121,9 @@ public class SlashingImportAcceptanceTest extends AcceptanceTestBase {
     assertThat(signedAttestations).hasSize(1);
     assertThat(signedAttestations.get(0).get("validator_id")).isEqualTo(validatorId);
     assertThat(signedAttestations.get(0).get("source_epoch"))
-        .isEqualTo(BigDecimal.valueOf(attestation.getSourceEpoch().toLong()));
+        .isEqualTo(SortableUInt64.encode(attestation.getSourceEpoch()));
     assertThat(signedAttestations.get(0).get("target_epoch"))
-        .isEqualTo(BigDecimal.valueOf(attestation.getTargetEpoch().toLong()));
+        .isEqualTo(SortableUInt64.encode(attestation.getTargetEpoch()));
     assertThat(signedAttestations.get(0).get("signing_root"))
         .isEqualTo(attestation.getSigningRoot().toArray());
 
@@ -132,8 +132,7 @@ public class SlashingImportAcceptanceTest extends AcceptanceTestBase {
     final SignedBlock block = artifacts.getSignedBlocks().get(0);
     assertThat(signedBlocks).hasSize(1);
     assertThat(signedBlocks.get(0).get("validator_id")).isEqualTo(validatorId);
-    assertThat(signedBlocks.get(0).get("slot"))
-        .isEqualTo(BigDecimal.valueOf(block.getSlot().toLong()));
+    assertThat(signedBlocks.get(0).get("slot")).isEqualTo(SortableUInt64.encode(block.getSlot()));
     assertThat(signedBlocks.get(0).get("signing_root")).isEqualTo(block.getSigningRoot().toArray());
   }
 }
@@ -55,6 +55,15 @@ public class PicoCliSlashingProtectionParameters implements SlashingProtectionPa
       paramLabel = "<hikari configuration properties file>")
   private Path dbPoolConfigurationFile = null;
 
+  @Option(
+      names = "--slashing-protection-file-store-path",
+      description =
+          "Directory of a local file based slashing protection store to use instead of a database. "
+              + "The store can only be used by a single Web3Signer instance.",
+      paramLabel = "<PATH>",
+      arity = "1")
+  private Path fileStorePath = null;
+
   @Option(
       names = {"--slashing-protection-pruning-enabled"},
       description =
@@ -83,6 +92,236 @@ public class PicoCliSlashingProtectionParameters implements SlashingProtectionPa
       description = "Hours between pruning operations (default: ${DEFAULT-VALUE})")
   long pruningInterval = 24;
 
+  @Option(
+      names = {"--slashing-protection-pruning-partition-epochs"},
+      description =
+          "Number of epochs covered by each partition of the signed blocks and attestations tables. "
+              + "When set, pruning converts the tables to a layout partitioned by epoch and slot "
+              + "range and drops whole partitions instead of deleting rows. Set to 0 to keep the "
+              + "tables unpartitioned (default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long pruningPartitionEpochs = 0;
+
+  @Option(
+      names = {"--slashing-protection-pruning-bulk-enabled"},
+      description =
+          "Set to true to prune all validators with set based statements, deleting rows in "
+              + "batches across parallel database connections, instead of one validator at a "
+              + "time. Has no effect when pruning partition epochs is set (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean pruningBulkEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-pruning-batch-size"},
+      description =
+          "Maximum number of rows deleted by each statement when bulk pruning "
+              + "(default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int pruningBatchSize = 10_000;
+
+  @Option(
+      names = {"--slashing-protection-pruning-parallelism"},
+      description =
+          "Number of database connections used concurrently when bulk pruning "
+              + "(default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int pruningParallelism = 1;
+
+  @Option(
+      names = {"--slashing-protection-pruning-incremental-enabled"},
+      description =
+          "Set to true to spread each pruning pass over the quiet part of many slots, pruning a "
+              + "few validators at a time within a time and row budget. Passes start every pruning "
+              + "interval. Has no effect when pruning partition epochs is set (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean pruningIncrementalEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-pruning-time-budget"},
+      description =
+          "Maximum milliseconds spent by each incremental pruning run (default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long pruningTimeBudgetMillis = 1000;
+
+  @Option(
+      names = {"--slashing-protection-pruning-row-budget"},
+      description =
+          "Maximum number of rows deleted by each incremental pruning run "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long pruningRowBudget = 10_000;
+
+  @Option(
+      names = {"--slashing-protection-pruning-genesis-time"},
+      description =
+          "Genesis time, in seconds since the unix epoch, used to find the quiet part of each slot "
+              + "for incremental pruning. Defaults to the mainnet genesis time "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long pruningGenesisTime = 1606824023;
+
+  @Option(
+      names = {"--slashing-protection-pruning-seconds-per-slot"},
+      description =
+          "Seconds per slot used to find the quiet part of each slot for incremental pruning. "
+              + "Defaults to the value used on mainnet (default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long pruningSecondsPerSlot = 12;
+
+  @Option(
+      names = {"--slashing-protection-state-cache-enabled"},
+      description =
+          "Set to true to keep each validator's slashing protection state in memory, so requests "
+              + "newer than anything previously signed only require a database insert. Requires "
+              + "--slashing-protection-local-locking-enabled, so no other instance can write to "
+              + "the slashing protection database (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean stateCacheEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-consolidated-checks-enabled"},
+      description =
+          "Set to true to evaluate all slashing protection rules for a request and record it in a "
+              + "single database call, instead of a separate query per rule. Has no effect when "
+              + "the state cache is enabled (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean consolidatedChecksEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-import-bulk-enabled"},
+      description =
+          "Set to true to import interchange files by copying them into staging tables and "
+              + "resolving duplicates, conflicts and watermarks with set based queries in a single "
+              + "transaction, instead of checking each entry separately (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean importBulkEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-import-checkpoint-size"},
+      description =
+          "Number of validators committed together by an interchange import. Progress is recorded "
+              + "after each commit so an interrupted import resumes after the last committed "
+              + "validators when run again. Ignored when bulk import is enabled. 0 imports without "
+              + "recording progress (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int importCheckpointSize = 0;
+
+  @Option(
+      names = {"--slashing-protection-export-parallelism"},
+      description =
+          "Number of database connections used to read validators in parallel during an "
+              + "interchange export (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int exportParallelism = 4;
+
+  @Option(
+      names = {"--slashing-protection-export-compact-enabled"},
+      description =
+          "Write the interchange export without indentation, reducing its size "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean exportCompactEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-minimal-enabled"},
+      description =
+          "Set to true to keep only the highest signed block slot and attestation epochs of each "
+              + "validator, refusing anything at or below them as described by the minimal "
+              + "strategy of EIP-3076. Interchange imports are collapsed to these watermarks and "
+              + "no signing history is kept, so pruning is not required (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean minimalEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-db-lanes-enabled"},
+      description =
+          "Set to true to use separate database connection pools for block proposal checks, "
+              + "attestation checks and background work, so that block proposals do not wait "
+              + "for connections behind attestations (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean dbLanesEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-db-block-pool-size"},
+      description =
+          "Maximum number of database connections for block proposal slashing checks when "
+              + "database lanes are enabled (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int dbBlockPoolSize = 2;
+
+  @Option(
+      names = {"--slashing-protection-db-attestation-pool-size"},
+      description =
+          "Maximum number of database connections for attestation slashing checks when "
+              + "database lanes are enabled (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int dbAttestationPoolSize = 10;
+
+  @Option(
+      names = {"--slashing-protection-local-locking-enabled"},
+      description =
+          "Set to true to lock validators in memory rather than with database advisory locks, "
+              + "saving a database round trip for each slashing protection check. Only one "
+              + "instance may use the database, which is enforced with a lease held in the "
+              + "database (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean localLockingEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-local-locking-lease-duration"},
+      description =
+          "Milliseconds the database lease for local locking is held between renewals. An "
+              + "instance restarting waits up to this long for the lease of its previous run to "
+              + "expire (default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long localLockingLeaseMillis = 10000;
+
+  @Option(
+      names = {"--slashing-protection-background-registration-enabled"},
+      description =
+          "Set to true to register loaded keys with the slashing protection database in the "
+              + "background, so the server starts without waiting for it. Keys already in the "
+              + "database are able to sign once they have been looked up, while keys new to the "
+              + "database are refused until their registration completes (default: "
+              + "${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  boolean backgroundRegistrationEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-group-commit-window"},
+      description =
+          "Maximum milliseconds to collect concurrent slashing protection checks so they are "
+              + "committed in a single database transaction. Checks are committed without waiting "
+              + "once every check in progress has been collected. 0 disables group commit "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<LONG>",
+      arity = "1")
+  long groupCommitWindowMillis = 0;
+
+  @Option(
+      names = {"--slashing-protection-group-commit-max-batch-size"},
+      description =
+          "Maximum number of slashing protection checks committed in a single group commit "
+              + "transaction, limited to the signing worker thread count (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  int groupCommitMaxBatchSize = 256;
+
   @Override
   public boolean isEnabled() {
     return enabled;
@@ -108,6 +347,11 @@ public class PicoCliSlashingProtectionParameters implements SlashingProtectionPa
     return dbPoolConfigurationFile;
   }
 
+  @Override
+  public Path getFileStorePath() {
+    return fileStorePath;
+  }
+
   @Override
   public boolean isPruningEnabled() {
     return pruningEnabled;
@@ -132,4 +376,124 @@ public class PicoCliSlashingProtectionParameters implements SlashingProtectionPa
   public TimeUnit getPruningIntervalTimeUnit() {
     return TimeUnit.HOURS;
   }
+
+  @Override
+  public long getPruningPartitionEpochs() {
+    return pruningPartitionEpochs;
+  }
+
+  @Override
+  public boolean isPruningBulkEnabled() {
+    return pruningBulkEnabled;
+  }
+
+  @Override
+  public int getPruningBatchSize() {
+    return pruningBatchSize;
+  }
+
+  @Override
+  public int getPruningParallelism() {
+    return pruningParallelism;
+  }
+
+  @Override
+  public boolean isPruningIncrementalEnabled() {
+    return pruningIncrementalEnabled;
+  }
+
+  @Override
+  public long getPruningTimeBudgetMillis() {
+    return pruningTimeBudgetMillis;
+  }
+
+  @Override
+  public long getPruningRowBudget() {
+    return pruningRowBudget;
+  }
+
+  @Override
+  public long getPruningGenesisTime() {
+    return pruningGenesisTime;
+  }
+
+  @Override
+  public long getPruningSecondsPerSlot() {
+    return pruningSecondsPerSlot;
+  }
+
+  @Override
+  public boolean isStateCacheEnabled() {
+    return stateCacheEnabled;
+  }
+
+  @Override
+  public boolean isConsolidatedChecksEnabled() {
+    return consolidatedChecksEnabled;
+  }
+
+  @Override
+  public boolean isImportBulkEnabled() {
+    return importBulkEnabled;
+  }
+
+  @Override
+  public int getImportCheckpointSize() {
+    return importCheckpointSize;
+  }
+
+  @Override
+  public int getExportParallelism() {
+    return exportParallelism;
+  }
+
+  @Override
+  public boolean isExportCompactEnabled() {
+    return exportCompactEnabled;
+  }
+
+  @Override
+  public boolean isMinimalEnabled() {
+    return minimalEnabled;
+  }
+
+  @Override
+  public boolean isDbLanesEnabled() {
+    return dbLanesEnabled;
+  }
+
+  @Override
+  public int getDbBlockPoolSize() {
+    return dbBlockPoolSize;
+  }
+
+  @Override
+  public int getDbAttestationPoolSize() {
+    return dbAttestationPoolSize;
+  }
+
+  @Override
+  public boolean isLocalLockingEnabled() {
+    return localLockingEnabled;
+  }
+
+  @Override
+  public long getLocalLockingLeaseMillis() {
+    return localLockingLeaseMillis;
+  }
+
+  @Override
+  public boolean isBackgroundRegistrationEnabled() {
+    return backgroundRegistrationEnabled;
+  }
+
+  @Override
+  public long getGroupCommitWindowMillis() {
+    return groupCommitWindowMillis;
+  }
+
+  @Override
+  public int getGroupCommitMaxBatchSize() {
+    return groupCommitMaxBatchSize;
+  }
 }
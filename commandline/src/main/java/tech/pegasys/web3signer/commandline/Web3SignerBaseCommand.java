@@ -173,6 +173,23 @@ public class Web3SignerBaseCommand implements Config, Runnable {
       description = "Enable access logs (default: ${DEFAULT-VALUE})")
   private final Boolean accessLogsEnabled = false;
 
+  @Option(
+      names = {"--signing-worker-thread-count"},
+      paramLabel = "<thread count>",
+      description =
+          "Number of threads used to process signing requests (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private int signingWorkerThreadCount = 20;
+
+  @Option(
+      names = {"--signing-worker-queue-size"},
+      paramLabel = "<queue size>",
+      description =
+          "Number of signing requests which may wait for a signing thread before further requests "
+              + "are rejected with a 503 response (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private int signingWorkerQueueSize = 1000;
+
   @CommandLine.Mixin private PicoCliTlsServerOptions picoCliTlsServerOptions;
 
   @Override
@@ -254,6 +271,16 @@ public class Web3SignerBaseCommand implements Config, Runnable {
     return accessLogsEnabled;
   }
 
+  @Override
+  public int getSigningWorkerThreadCount() {
+    return signingWorkerThreadCount;
+  }
+
+  @Override
+  public int getSigningWorkerQueueSize() {
+    return signingWorkerQueueSize;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -271,6 +298,8 @@ public class Web3SignerBaseCommand implements Config, Runnable {
         .add("metricsHostAllowList", metricsHostAllowList)
         .add("picoCliTlsServerOptions", picoCliTlsServerOptions)
         .add("idleConnectionTimeoutSeconds", idleConnectionTimeoutSeconds)
+        .add("signingWorkerThreadCount", signingWorkerThreadCount)
+        .add("signingWorkerQueueSize", signingWorkerQueueSize)
         .toString();
   }
 
@@ -286,6 +315,15 @@ public class Web3SignerBaseCommand implements Config, Runnable {
     final PicoCliTlsServerOptionsValidator picoCliTlsServerOptionsValidator =
         new PicoCliTlsServerOptionsValidator(spec, picoCliTlsServerOptions);
     picoCliTlsServerOptionsValidator.validate();
+
+    if (signingWorkerThreadCount < 1) {
+      throw new ParameterException(
+          spec.commandLine(), "Signing worker thread count must be a positive value");
+    }
+    if (signingWorkerQueueSize < 1) {
+      throw new ParameterException(
+          spec.commandLine(), "Signing worker queue size must be a positive value");
+    }
   }
 
   public static class Web3signerMetricCategoryConverter extends MetricCategoryConverter {
@@ -16,6 +16,7 @@ import static tech.pegasys.web3signer.slashingprotection.SlashingProtectionFacto
 
 import tech.pegasys.web3signer.core.InitializationException;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -49,12 +50,21 @@ public class Eth2ExportSubCommand implements Runnable {
           "The file into which interchange formatted data is to exported from the slashing database")
   File output;
 
+  @Option(
+      names = "--compression",
+      description =
+          "Compression of the exported file. Valid Values: [${COMPLETION-CANDIDATES}]"
+              + " (Default: GZIP if the --to file name ends in .gz, otherwise NONE)",
+      paramLabel = "<COMPRESSION>")
+  InterchangeCompression compression;
+
   @Override
   public void run() {
     if (output == null) {
       throw new MissingParameterException(
           spec.commandLine(), spec.findOption("--to"), "--to has not been specified");
-    } else if (StringUtils.isEmpty(eth2Config.getSlashingProtectionParameters().getDbUrl())) {
+    } else if (StringUtils.isEmpty(eth2Config.getSlashingProtectionParameters().getDbUrl())
+        && eth2Config.getSlashingProtectionParameters().getFileStorePath() == null) {
       throw new MissingParameterException(
           spec.parent().commandLine(),
           spec.findOption("--slashing-protection-db-url"),
@@ -65,7 +75,9 @@ public class Eth2ExportSubCommand implements Runnable {
       final SlashingProtection slashingProtection =
           createSlashingProtection(eth2Config.getSlashingProtectionParameters());
 
-      slashingProtection.export(outStream);
+      final InterchangeCompression exportCompression =
+          compression == null ? InterchangeCompression.fromFileName(output.getName()) : compression;
+      slashingProtection.export(outStream, exportCompression);
     } catch (final IOException e) {
       throw new UncheckedIOException("Unable to find output target file", e);
     } catch (final IllegalStateException e) {
@@ -46,7 +46,7 @@ public class Eth2ImportSubCommand implements Runnable {
   @Option(
       names = "--from",
       description =
-          "The file from which the slashing protection database is to be imported. File is in interchange format")
+          "The file from which the slashing protection database is to be imported. File is in interchange format, optionally gzip compressed")
   File from;
 
   @Override
@@ -54,7 +54,8 @@ public class Eth2ImportSubCommand implements Runnable {
     if (from == null) {
       throw new MissingParameterException(
           spec.commandLine(), spec.findOption("--from"), "--from has not been specified");
-    } else if (StringUtils.isEmpty(eth2Config.getSlashingProtectionParameters().getDbUrl())) {
+    } else if (StringUtils.isEmpty(eth2Config.getSlashingProtectionParameters().getDbUrl())
+        && eth2Config.getSlashingProtectionParameters().getFileStorePath() == null) {
       throw new MissingParameterException(
           spec.parent().commandLine(),
           spec.findOption("--slashing-protection-db-url"),
@@ -86,16 +86,74 @@ public class Eth2SubCommand extends ModeSubCommand {
     }
 
     if (slashingProtectionParameters.isEnabled()
-        && slashingProtectionParameters.getDbUrl() == null) {
+        && slashingProtectionParameters.getDbUrl() == null
+        && slashingProtectionParameters.getFileStorePath() == null) {
       throw new ParameterException(
           commandSpec.commandLine(), "Missing slashing protection database url");
     }
 
+    if (slashingProtectionParameters.getDbUrl() != null
+        && slashingProtectionParameters.getFileStorePath() != null) {
+      throw new ParameterException(
+          commandSpec.commandLine(),
+          "Only one of slashing protection database url and file store path can be specified");
+    }
+
+    if (slashingProtectionParameters.isStateCacheEnabled()
+        && !slashingProtectionParameters.isLocalLockingEnabled()
+        && slashingProtectionParameters.getFileStorePath() == null) {
+      throw new ParameterException(
+          commandSpec.commandLine(),
+          "Slashing protection state cache can only be enabled with local locking");
+    }
+
     validatePositiveValue(
         slashingProtectionParameters.getPruningEpochsToKeep(), "Pruning epochsToKeep");
     validatePositiveValue(slashingProtectionParameters.getPruningInterval(), "Pruning interval");
     validatePositiveValue(
         slashingProtectionParameters.getPruningSlotsPerEpoch(), "Pruning slots per epoch");
+    if (slashingProtectionParameters.getPruningPartitionEpochs() < 0) {
+      throw new ParameterException(
+          commandSpec.commandLine(),
+          String.format(
+              "Pruning partition epochs must be 0 or more. Value was %d.",
+              slashingProtectionParameters.getPruningPartitionEpochs()));
+    }
+    if (slashingProtectionParameters.getImportCheckpointSize() < 0) {
+      throw new ParameterException(
+          commandSpec.commandLine(),
+          String.format(
+              "Import checkpoint size must be 0 or more. Value was %d.",
+              slashingProtectionParameters.getImportCheckpointSize()));
+    }
+    validatePositiveValue(slashingProtectionParameters.getPruningBatchSize(), "Pruning batch size");
+    validatePositiveValue(
+        slashingProtectionParameters.getPruningParallelism(), "Pruning parallelism");
+    validatePositiveValue(
+        slashingProtectionParameters.getPruningTimeBudgetMillis(), "Pruning time budget");
+    validatePositiveValue(slashingProtectionParameters.getPruningRowBudget(), "Pruning row budget");
+    validatePositiveValue(
+        slashingProtectionParameters.getPruningSecondsPerSlot(), "Pruning seconds per slot");
+    validatePositiveValue(
+        slashingProtectionParameters.getExportParallelism(), "Export parallelism");
+    validatePositiveValue(
+        slashingProtectionParameters.getDbBlockPoolSize(), "Slashing protection block pool size");
+    validatePositiveValue(
+        slashingProtectionParameters.getDbAttestationPoolSize(),
+        "Slashing protection attestation pool size");
+    validatePositiveValue(
+        slashingProtectionParameters.getLocalLockingLeaseMillis(),
+        "Slashing protection local locking lease duration");
+    validatePositiveValue(
+        slashingProtectionParameters.getGroupCommitMaxBatchSize(),
+        "Slashing protection group commit max batch size");
+    if (slashingProtectionParameters.getGroupCommitWindowMillis() < 0) {
+      throw new ParameterException(
+          commandSpec.commandLine(),
+          String.format(
+              "Slashing protection group commit window must be 0 or more. Value was %d.",
+              slashingProtectionParameters.getGroupCommitWindowMillis()));
+    }
 
     if (azureKeyVaultParameters.isAzureKeyVaultEnabled()) {
 
@@ -176,6 +176,211 @@ class CommandlineParserTest {
             "Error parsing parameters: Pruning slots per epoch must be 1 or more. Value was 0.");
   }
 
+  @Test
+  void eth2SubcommandSlashingDatabasePruningPartitionEpochsMustNotBeNegative() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-pruning-partition-epochs=-1";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Pruning partition epochs must be 0 or more. Value was -1.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingDatabasePruningBatchSizeMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-pruning-batch-size=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Error parsing parameters: Pruning batch size must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingDatabasePruningParallelismMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-pruning-parallelism=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Error parsing parameters: Pruning parallelism must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingDatabasePruningRowBudgetMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-pruning-row-budget=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Error parsing parameters: Pruning row budget must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingDatabasePruningTimeBudgetMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-pruning-time-budget=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Error parsing parameters: Pruning time budget must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionImportCheckpointSizeMustNotBeNegative() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-import-checkpoint-size=-1";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Import checkpoint size must be 0 or more. Value was -1.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionExportParallelismMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-export-parallelism=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Error parsing parameters: Export parallelism must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionBlockPoolSizeMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-db-block-pool-size=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Slashing protection block pool size must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionLocalLockingLeaseDurationMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock "
+            + "--slashing-protection-local-locking-lease-duration=0";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Slashing protection local locking lease duration must be 1 or more. Value was 0.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionStateCacheRequiresLocalLocking() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock "
+            + "--slashing-protection-state-cache-enabled=true";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Slashing protection state cache can only be enabled with local locking");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionStateCacheIsAllowedWithLocalLocking() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock "
+            + "--slashing-protection-state-cache-enabled=true "
+            + "--slashing-protection-local-locking-enabled=true";
+
+    final MockEth2SubCommand subCommand = new MockEth2SubCommand();
+    parser.registerSubCommands(subCommand);
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isZero();
+    assertThat(subCommand.getSlashingProtectionParameters().isStateCacheEnabled()).isTrue();
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionGroupCommitWindowMustNotBeNegative() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-group-commit-window=-1";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Slashing protection group commit window must be 0 or more. Value was -1.");
+  }
+
+  @Test
+  void eth2SubcommandSlashingProtectionDbUrlAndFileStorePathCannotBothBeSet() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-db-url=jdbc:mock --slashing-protection-file-store-path=/tmp/store";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains(
+            "Error parsing parameters: Only one of slashing protection database url and file store path can be specified");
+  }
+
+  @Test
+  void signingWorkerQueueSizeMustBePositive() {
+    String cmdline = validBaseCommandOptions();
+    cmdline = cmdline + "--signing-worker-queue-size=0 eth2 --slashing-protection-enabled=false";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Signing worker queue size must be a positive value");
+  }
+
   @Test
   void eth2SubcommandSlashingDatabaseUrlNotRequiredWhenSlashingDisabled() {
     String cmdline = validBaseCommandOptions();
@@ -13,6 +13,7 @@
 package tech.pegasys.web3signer.core;
 
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
 import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 
 import io.vertx.core.Vertx;
@@ -25,18 +26,21 @@ public class Context {
   private final LogErrorHandler errorHandler;
   private final Vertx vertx;
   private final ArtifactSignerProvider artifactSignerProvider;
+  private final BoundedWorkerPool signingWorkerPool;
 
   public Context(
       final OpenAPI3RouterFactory routerFactory,
       final MetricsSystem metricsSystem,
       final LogErrorHandler errorHandler,
       final Vertx vertx,
-      final ArtifactSignerProvider artifactSignerProvider) {
+      final ArtifactSignerProvider artifactSignerProvider,
+      final BoundedWorkerPool signingWorkerPool) {
     this.routerFactory = routerFactory;
     this.metricsSystem = metricsSystem;
     this.errorHandler = errorHandler;
     this.vertx = vertx;
     this.artifactSignerProvider = artifactSignerProvider;
+    this.signingWorkerPool = signingWorkerPool;
   }
 
   public OpenAPI3RouterFactory getRouterFactory() {
@@ -58,4 +62,8 @@ public class Context {
   public ArtifactSignerProvider getArtifactSignerProvider() {
     return artifactSignerProvider;
   }
+
+  public BoundedWorkerPool getSigningWorkerPool() {
+    return signingWorkerPool;
+  }
 }
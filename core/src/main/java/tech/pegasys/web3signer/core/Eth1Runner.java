@@ -26,6 +26,7 @@ import tech.pegasys.web3signer.core.multikey.metadata.Secp256k1ArtifactSignerFac
 import tech.pegasys.web3signer.core.multikey.metadata.interlock.InterlockKeyProvider;
 import tech.pegasys.web3signer.core.multikey.metadata.parser.YamlSignerParser;
 import tech.pegasys.web3signer.core.multikey.metadata.yubihsm.YubiHsmOpaqueDataProvider;
+import tech.pegasys.web3signer.core.service.http.handlers.BoundedWorkerHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.Eth1SignForIdentifierHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
@@ -39,7 +40,6 @@ import java.util.List;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
-import io.vertx.ext.web.impl.BlockingHandlerDecorator;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 
 public class Eth1Runner extends Runner {
@@ -65,10 +65,10 @@ public class Eth1Runner extends Runner {
         new SignerForIdentifier<>(signerProvider, this::formatSecpSignature, SECP256K1);
     routerFactory.addHandlerByOperationId(
         ETH1_SIGN.name(),
-        new BlockingHandlerDecorator(
+        new BoundedWorkerHandler(
             new Eth1SignForIdentifierHandler(
                 secpSigner, new HttpApiMetrics(context.getMetricsSystem(), SECP256K1)),
-            false));
+            context.getSigningWorkerPool()));
     routerFactory.addFailureHandlerByOperationId(ETH1_SIGN.name(), errorHandler);
 
     addReloadHandler(routerFactory, signerProvider, RELOAD.name(), context.getErrorHandler());
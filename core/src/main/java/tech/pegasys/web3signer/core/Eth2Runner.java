@@ -12,6 +12,7 @@
  */
 package tech.pegasys.web3signer.core;
 
+import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_BATCH_SIGN;
 import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_LIST;
 import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_SIGN;
 import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.RELOAD;
@@ -25,6 +26,7 @@ import tech.pegasys.teku.spec.Spec;
 import tech.pegasys.web3signer.core.config.AzureKeyVaultFactory;
 import tech.pegasys.web3signer.core.config.AzureKeyVaultParameters;
 import tech.pegasys.web3signer.core.config.Config;
+import tech.pegasys.web3signer.core.metrics.GroupCommitMetrics;
 import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
 import tech.pegasys.web3signer.core.multikey.DefaultArtifactSignerProvider;
 import tech.pegasys.web3signer.core.multikey.SignerLoader;
@@ -34,10 +36,16 @@ import tech.pegasys.web3signer.core.multikey.metadata.interlock.InterlockKeyProv
 import tech.pegasys.web3signer.core.multikey.metadata.parser.YamlSignerParser;
 import tech.pegasys.web3signer.core.multikey.metadata.yubihsm.YubiHsmOpaqueDataProvider;
 import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.BoundedWorkerHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2BatchSignHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SigningRootCalculator;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics;
 import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
+import tech.pegasys.web3signer.core.service.worker.GroupCommitSlashingProtection;
 import tech.pegasys.web3signer.core.signing.ArtifactSigner;
 import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 import tech.pegasys.web3signer.core.signing.BlsArtifactSignature;
@@ -47,9 +55,12 @@ import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtectionFactory;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtectionParameters;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
@@ -57,10 +68,10 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
-import io.vertx.ext.web.impl.BlockingHandlerDecorator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
@@ -75,6 +86,12 @@ public class Eth2Runner extends Runner {
   private final SlashingProtectionParameters slashingProtectionParameters;
   private final boolean pruningEnabled;
   private final Spec eth2Spec;
+  private final ExecutorService validatorRegistrationExecutor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("validator-registration")
+              .setDaemon(true)
+              .build());
 
   public Eth2Runner(
       final Config config,
@@ -83,6 +100,7 @@ public class Eth2Runner extends Runner {
       final Spec eth2Spec) {
     super(config);
     this.slashingProtection = createSlashingProtection(slashingProtectionParameters);
+    slashingProtection.ifPresent(this::closeOnShutdown);
     this.azureKeyVaultParameters = azureKeyVaultParameters;
     this.slashingProtectionParameters = slashingProtectionParameters;
     this.pruningEnabled = slashingProtectionParameters.isPruningEnabled();
@@ -94,7 +112,8 @@ public class Eth2Runner extends Runner {
     if (slashingProtectionParameters.isEnabled()) {
       try {
         return Optional.of(
-            SlashingProtectionFactory.createSlashingProtection(slashingProtectionParameters));
+            SlashingProtectionFactory.createSlashingProtection(
+                slashingProtectionParameters, metricsEndpoint.getMetricsSystem()));
       } catch (final IllegalStateException e) {
         throw new InitializationException(e.getMessage(), e);
       }
@@ -103,6 +122,24 @@ public class Eth2Runner extends Runner {
     }
   }
 
+  private void closeOnShutdown(final SlashingProtection slashingProtection) {
+    if (!(slashingProtection instanceof Closeable)) {
+      return;
+    }
+    // releases locks held by the slashing protection store so other instances can start at once
+    final Thread shutdownHook =
+        new Thread(
+            () -> {
+              try {
+                ((Closeable) slashingProtection).close();
+              } catch (final IOException | RuntimeException e) {
+                LOG.warn("Failed to close slashing protection", e);
+              }
+            },
+            "slashing-protection-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
   @Override
   protected String getOpenApiSpecResource() {
     return "openapi/web3signer-eth2.yaml";
@@ -115,16 +152,38 @@ public class Eth2Runner extends Runner {
         context.getArtifactSignerProvider(),
         context.getErrorHandler(),
         context.getMetricsSystem(),
-        slashingProtection);
+        context.getSigningWorkerPool(),
+        slashingProtection.map(
+            protection -> createGroupCommitSlashingProtection(protection, context)));
 
     return context.getRouterFactory().getRouter();
   }
 
+  // slashing checks run on the signing threads, with concurrent database work bounded by the size
+  // of the database connection pools
+  private SlashingProtection createGroupCommitSlashingProtection(
+      final SlashingProtection slashingProtection, final Context context) {
+    if (slashingProtectionParameters.getGroupCommitWindowMillis() == 0) {
+      return slashingProtection;
+    }
+    // no more checks than there are signing threads can be waiting to be committed together
+    final int maxBatchSize =
+        Math.min(
+            slashingProtectionParameters.getGroupCommitMaxBatchSize(),
+            config.getSigningWorkerThreadCount());
+    return new GroupCommitSlashingProtection(
+        slashingProtection,
+        slashingProtectionParameters.getGroupCommitWindowMillis(),
+        maxBatchSize,
+        new GroupCommitMetrics(context.getMetricsSystem()));
+  }
+
   private void registerEth2Routes(
       final OpenAPI3RouterFactory routerFactory,
       final ArtifactSignerProvider blsSignerProvider,
       final LogErrorHandler errorHandler,
       final MetricsSystem metricsSystem,
+      final BoundedWorkerPool signingWorkerPool,
       final Optional<SlashingProtection> slashingProtection) {
     final ObjectMapper objectMapper =
         new ObjectMapper()
@@ -136,19 +195,48 @@ public class Eth2Runner extends Runner {
 
     final SignerForIdentifier<BlsArtifactSignature> blsSigner =
         new SignerForIdentifier<>(blsSignerProvider, this::formatBlsSignature, BLS);
+    final HttpApiMetrics httpMetrics = new HttpApiMetrics(metricsSystem, BLS);
+    final SlashingProtectionMetrics slashingMetrics = new SlashingProtectionMetrics(metricsSystem);
+    final Eth2SigningPipelineMetrics pipelineMetrics =
+        new Eth2SigningPipelineMetrics(metricsSystem);
+    final Eth2SigningRootCalculator signingRootCalculator =
+        new Eth2SigningRootCalculator(eth2Spec, metricsSystem);
+    // batch items are signed on a pool of their own, as the batch handler already holds a thread
+    // of the signing pool while it waits for them; BLS signing is CPU bound, so a thread per core
+    final BoundedWorkerPool batchSigningPool =
+        createWorkerPool(
+            "batch_signing",
+            Runtime.getRuntime().availableProcessors(),
+            config.getSigningWorkerQueueSize());
     routerFactory.addHandlerByOperationId(
         ETH2_SIGN.name(),
-        new BlockingHandlerDecorator(
+        new BoundedWorkerHandler(
             new Eth2SignForIdentifierHandler(
                 blsSigner,
-                new HttpApiMetrics(metricsSystem, BLS),
-                new SlashingProtectionMetrics(metricsSystem),
+                httpMetrics,
+                slashingMetrics,
+                pipelineMetrics,
                 slashingProtection,
                 objectMapper,
-                eth2Spec),
-            false));
+                signingRootCalculator),
+            signingWorkerPool));
     routerFactory.addFailureHandlerByOperationId(ETH2_SIGN.name(), errorHandler);
 
+    routerFactory.addHandlerByOperationId(
+        ETH2_BATCH_SIGN.name(),
+        new BoundedWorkerHandler(
+            new Eth2BatchSignHandler(
+                blsSigner,
+                httpMetrics,
+                slashingMetrics,
+                pipelineMetrics,
+                slashingProtection,
+                objectMapper,
+                signingRootCalculator,
+                batchSigningPool),
+            signingWorkerPool));
+    routerFactory.addFailureHandlerByOperationId(ETH2_BATCH_SIGN.name(), errorHandler);
+
     addReloadHandler(routerFactory, blsSignerProvider, RELOAD.name(), errorHandler);
   }
 
@@ -192,13 +280,29 @@ public class Eth2Runner extends Runner {
           if (validators.isEmpty()) {
             LOG.warn("No BLS keys loaded. Check that the key store has BLS key config files");
           } else {
-            slashingProtection.ifPresent(
-                slashingProtection1 -> slashingProtection1.registerValidators(validators));
+            slashingProtection.ifPresent(protection -> registerValidators(protection, validators));
           }
           return signers;
         });
   }
 
+  private void registerValidators(
+      final SlashingProtection slashingProtection, final List<Bytes> validators) {
+    if (!slashingProtectionParameters.isBackgroundRegistrationEnabled()) {
+      slashingProtection.registerValidators(validators);
+      return;
+    }
+    // registrations run one at a time, so a reload waits for the registration at startup
+    validatorRegistrationExecutor.execute(
+        () -> {
+          try {
+            slashingProtection.registerValidators(validators);
+          } catch (final RuntimeException e) {
+            LOG.error("Failed to register validators with slashing protection database", e);
+          }
+        });
+  }
+
   @Override
   public void run() {
     super.run();
@@ -30,9 +30,11 @@ import tech.pegasys.web3signer.core.multikey.metadata.Secp256k1ArtifactSignerFac
 import tech.pegasys.web3signer.core.multikey.metadata.interlock.InterlockKeyProvider;
 import tech.pegasys.web3signer.core.multikey.metadata.parser.YamlSignerParser;
 import tech.pegasys.web3signer.core.multikey.metadata.yubihsm.YubiHsmOpaqueDataProvider;
+import tech.pegasys.web3signer.core.service.http.handlers.BoundedWorkerHandler;
 import tech.pegasys.web3signer.core.service.jsonrpc.FcJsonRpc;
 import tech.pegasys.web3signer.core.service.jsonrpc.FcJsonRpcMetrics;
 import tech.pegasys.web3signer.core.service.jsonrpc.FilecoinJsonRpcModule;
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
 import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 import tech.pegasys.web3signer.core.signing.FcBlsArtifactSigner;
 import tech.pegasys.web3signer.core.signing.FcSecpArtifactSigner;
@@ -73,13 +75,15 @@ public class FilecoinRunner extends Runner {
     return registerFilecoinJsonRpcRoute(
         context.getRouterFactory(),
         context.getMetricsSystem(),
-        context.getArtifactSignerProvider());
+        context.getArtifactSignerProvider(),
+        context.getSigningWorkerPool());
   }
 
   private Router registerFilecoinJsonRpcRoute(
       final OpenAPI3RouterFactory routerFactory,
       final MetricsSystem metricsSystem,
-      final ArtifactSignerProvider fcSigners) {
+      final ArtifactSignerProvider fcSigners,
+      final BoundedWorkerPool signingWorkerPool) {
 
     final Router router = routerFactory.getRouter();
 
@@ -97,13 +101,17 @@ public class FilecoinRunner extends Runner {
         .post(FC_JSON_RPC_PATH)
         .handler(fcJsonRpcMetrics::incTotalFilecoinRequests)
         .handler(BodyHandler.create())
-        .blockingHandler(
-            routingContext -> {
-              final String body = routingContext.getBodyAsString();
-              final String jsonRpcResponse = jsonRpcServer.handle(body, fileCoinJsonRpc);
-              routingContext.response().putHeader(CONTENT_TYPE, JSON_UTF_8).end(jsonRpcResponse);
-            },
-            false);
+        .handler(
+            new BoundedWorkerHandler(
+                routingContext -> {
+                  final String body = routingContext.getBodyAsString();
+                  final String jsonRpcResponse = jsonRpcServer.handle(body, fileCoinJsonRpc);
+                  routingContext
+                      .response()
+                      .putHeader(CONTENT_TYPE, JSON_UTF_8)
+                      .end(jsonRpcResponse);
+                },
+                signingWorkerPool));
 
     return router;
   }
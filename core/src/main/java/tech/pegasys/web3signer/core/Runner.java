@@ -18,12 +18,14 @@ import static tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics.i
 import tech.pegasys.web3signer.core.config.ClientAuthConstraints;
 import tech.pegasys.web3signer.core.config.Config;
 import tech.pegasys.web3signer.core.config.TlsOptions;
+import tech.pegasys.web3signer.core.metrics.BoundedWorkerPoolMetrics;
 import tech.pegasys.web3signer.core.metrics.MetricsEndpoint;
 import tech.pegasys.web3signer.core.metrics.vertx.VertxMetricsAdapterFactory;
 import tech.pegasys.web3signer.core.service.http.HostAllowListHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.PublicKeysListHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.UpcheckHandler;
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
 import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 import tech.pegasys.web3signer.core.util.FileUtil;
 
@@ -33,9 +35,11 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.NoSuchFileException;
+import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -76,9 +80,20 @@ public abstract class Runner implements Runnable {
   protected static final String JSON_RPC_PATH = "/rpc/v1";
 
   protected final Config config;
+  protected final MetricsEndpoint metricsEndpoint;
+  private final BoundedWorkerPoolMetrics workerPoolMetrics;
+  private final List<BoundedWorkerPool> workerPools = new CopyOnWriteArrayList<>();
 
   protected Runner(final Config config) {
     this.config = config;
+    this.metricsEndpoint =
+        new MetricsEndpoint(
+            config.isMetricsEnabled(),
+            config.getMetricsPort(),
+            config.getMetricsNetworkInterface(),
+            config.getMetricCategories(),
+            config.getMetricsHostAllowList());
+    this.workerPoolMetrics = new BoundedWorkerPoolMetrics(metricsEndpoint.getMetricsSystem());
   }
 
   @Override
@@ -88,20 +103,15 @@ public abstract class Runner implements Runnable {
       Configurator.setRootLevel(config.getLogLevel());
     }
 
-    final MetricsEndpoint metricsEndpoint =
-        new MetricsEndpoint(
-            config.isMetricsEnabled(),
-            config.getMetricsPort(),
-            config.getMetricsNetworkInterface(),
-            config.getMetricCategories(),
-            config.getMetricsHostAllowList());
-
     final MetricsSystem metricsSystem = metricsEndpoint.getMetricsSystem();
 
     final Vertx vertx = Vertx.vertx(createVertxOptions(metricsSystem));
     final LogErrorHandler errorHandler = new LogErrorHandler();
     final ArtifactSignerProvider artifactSignerProvider =
         createArtifactSignerProvider(vertx, metricsSystem);
+    final BoundedWorkerPool signingWorkerPool =
+        createWorkerPool(
+            "signing", config.getSigningWorkerThreadCount(), config.getSigningWorkerQueueSize());
 
     try {
       metricsEndpoint.start(vertx);
@@ -122,7 +132,13 @@ public abstract class Runner implements Runnable {
       registerHttpHostAllowListHandler(routerFactory);
 
       final Context context =
-          new Context(routerFactory, metricsSystem, errorHandler, vertx, artifactSignerProvider);
+          new Context(
+              routerFactory,
+              metricsSystem,
+              errorHandler,
+              vertx,
+              artifactSignerProvider,
+              signingWorkerPool);
 
       final Router router = populateRouter(context);
       if (config.isSwaggerUIEnabled()) {
@@ -138,18 +154,38 @@ public abstract class Runner implements Runnable {
           httpServer.actualPort());
 
       persistPortInformation(httpServer.actualPort(), metricsEndpoint.getPort());
+      Runtime.getRuntime()
+          .addShutdownHook(new Thread(this::shutdownWorkerPools, "worker-pool-shutdown"));
     } catch (final InitializationException e) {
+      shutdownWorkerPools();
       throw e;
     } catch (final Throwable e) {
       if (artifactSignerProvider != null) {
         artifactSignerProvider.close();
       }
+      shutdownWorkerPools();
       vertx.close();
       metricsEndpoint.stop();
       LOG.error("Failed to initialise application", e);
     }
   }
 
+  /**
+   * Creates a worker pool which is shut down along with the runner, whether it stops normally or
+   * fails to start.
+   */
+  protected BoundedWorkerPool createWorkerPool(
+      final String name, final int threadCount, final int queueSize) {
+    final BoundedWorkerPool workerPool =
+        new BoundedWorkerPool(name, threadCount, queueSize, workerPoolMetrics);
+    workerPools.add(workerPool);
+    return workerPool;
+  }
+
+  private void shutdownWorkerPools() {
+    workerPools.forEach(BoundedWorkerPool::shutdown);
+  }
+
   private VertxOptions createVertxOptions(final MetricsSystem metricsSystem) {
     return new VertxOptions()
         .setMetricsOptions(
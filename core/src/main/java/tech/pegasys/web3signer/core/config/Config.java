@@ -53,4 +53,8 @@ public interface Config {
   Boolean isSwaggerUIEnabled();
 
   Boolean isAccessLogsEnabled();
+
+  int getSigningWorkerThreadCount();
+
+  int getSigningWorkerQueueSize();
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.metrics;
+
+import java.util.function.IntSupplier;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledGauge;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * Metrics of the bounded worker pools, labelled by pool name. A gauge can only be created once for
+ * each metrics system, so a single instance is created along with the metrics system and shared by
+ * every pool.
+ */
+public class BoundedWorkerPoolMetrics {
+
+  private final LabelledMetric<Counter> submittedCounter;
+  private final LabelledMetric<Counter> rejectedCounter;
+  private final LabelledMetric<OperationTimer> queueWaitTimer;
+  private final LabelledGauge queueDepthGauge;
+  private final LabelledGauge activeThreadsGauge;
+
+  public BoundedWorkerPoolMetrics(final MetricsSystem metricsSystem) {
+    submittedCounter =
+        metricsSystem.createLabelledCounter(
+            Web3SignerMetricCategory.HTTP,
+            "worker_pool_submitted_total",
+            "Total number of requests accepted by the bounded worker pool",
+            "poolName");
+
+    rejectedCounter =
+        metricsSystem.createLabelledCounter(
+            Web3SignerMetricCategory.HTTP,
+            "worker_pool_rejected_total",
+            "Total number of requests rejected because the bounded worker pool was saturated",
+            "poolName");
+
+    queueWaitTimer =
+        metricsSystem.createLabelledTimer(
+            Web3SignerMetricCategory.HTTP,
+            "worker_pool_queue_wait",
+            "Time spent queued before being processed by the bounded worker pool",
+            "poolName");
+
+    queueDepthGauge =
+        metricsSystem.createLabelledGauge(
+            Web3SignerMetricCategory.HTTP,
+            "worker_pool_queue_depth",
+            "Number of requests waiting for a thread in the bounded worker pool",
+            "poolName");
+
+    activeThreadsGauge =
+        metricsSystem.createLabelledGauge(
+            Web3SignerMetricCategory.HTTP,
+            "worker_pool_active_threads",
+            "Number of threads processing requests in the bounded worker pool",
+            "poolName");
+  }
+
+  /** Registers the gauges of the pool and returns the metrics it reports as work is submitted. */
+  public PoolMetrics forPool(
+      final String poolName, final IntSupplier queueDepth, final IntSupplier activeThreads) {
+    queueDepthGauge.labels(queueDepth::getAsInt, poolName);
+    activeThreadsGauge.labels(activeThreads::getAsInt, poolName);
+    return new PoolMetrics(
+        submittedCounter.labels(poolName),
+        rejectedCounter.labels(poolName),
+        queueWaitTimer.labels(poolName));
+  }
+
+  public static class PoolMetrics {
+    private final Counter submittedCounter;
+    private final Counter rejectedCounter;
+    private final OperationTimer queueWaitTimer;
+
+    private PoolMetrics(
+        final Counter submittedCounter,
+        final Counter rejectedCounter,
+        final OperationTimer queueWaitTimer) {
+      this.submittedCounter = submittedCounter;
+      this.rejectedCounter = rejectedCounter;
+      this.queueWaitTimer = queueWaitTimer;
+    }
+
+    public TimingContext submitted() {
+      submittedCounter.inc();
+      return queueWaitTimer.startTimer();
+    }
+
+    public void rejected(final TimingContext queueWaitContext) {
+      rejectedCounter.inc();
+      queueWaitContext.stopTimer();
+    }
+  }
+}
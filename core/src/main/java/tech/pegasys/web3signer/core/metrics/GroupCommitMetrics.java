@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.metrics;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+public class GroupCommitMetrics {
+
+  private final Counter batchCounter;
+  private final Counter batchedRequestCounter;
+  private final OperationTimer commitTimer;
+
+  public GroupCommitMetrics(final MetricsSystem metricsSystem) {
+    batchCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "group_commit_batch_count",
+            "The number of group commit batches written to the slashing protection database");
+
+    batchedRequestCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "group_commit_request_count",
+            "The number of slashing checks performed as part of a group commit batch");
+
+    commitTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "group_commit_latency",
+            "Time taken to check and commit a group commit batch");
+  }
+
+  public TimingContext batchStarted(final int batchSize) {
+    batchCounter.inc();
+    batchedRequestCounter.inc(batchSize);
+    return commitTimer.startTimer();
+  }
+}
@@ -15,6 +15,7 @@ package tech.pegasys.web3signer.core.service.http;
 /** Operation IDs as defined in web3signer.yaml */
 public enum OpenApiOperationsId {
   ETH2_SIGN,
+  ETH2_BATCH_SIGN,
   ETH1_SIGN,
   ETH2_LIST,
   ETH1_LIST,
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers;
+
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.impl.RoutingContextDecorator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the wrapped handler on a {@link BoundedWorkerPool} instead of the shared Vert.x worker pool.
+ * If the pool, or a pool the handler delegates to, is saturated the request is answered with a 503
+ * and a Retry-After header instead of being queued.
+ */
+public class BoundedWorkerHandler implements Handler<RoutingContext> {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int SERVICE_UNAVAILABLE = 503;
+  private static final String RETRY_AFTER = "Retry-After";
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private final Handler<RoutingContext> delegate;
+  private final BoundedWorkerPool workerPool;
+
+  public BoundedWorkerHandler(
+      final Handler<RoutingContext> delegate, final BoundedWorkerPool workerPool) {
+    this.delegate = delegate;
+    this.workerPool = workerPool;
+  }
+
+  @Override
+  public void handle(final RoutingContext routingContext) {
+    try {
+      workerPool.execute(() -> handleOnWorker(routingContext));
+    } catch (final RejectedExecutionException e) {
+      respondWithServiceUnavailable(routingContext, e);
+    }
+  }
+
+  private void handleOnWorker(final RoutingContext routingContext) {
+    try {
+      delegate.handle(new RoutingContextDecorator(routingContext.currentRoute(), routingContext));
+    } catch (final RejectedExecutionException e) {
+      respondWithServiceUnavailable(routingContext, e);
+    } catch (final Throwable t) {
+      routingContext.fail(t);
+    }
+  }
+
+  private void respondWithServiceUnavailable(
+      final RoutingContext routingContext, final RejectedExecutionException e) {
+    LOG.debug("Rejecting request {}: {}", routingContext.request().absoluteURI(), e.getMessage());
+    routingContext
+        .response()
+        .setStatusCode(SERVICE_UNAVAILABLE)
+        .putHeader(RETRY_AFTER, RETRY_AFTER_SECONDS)
+        .end();
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+import static tech.pegasys.web3signer.core.service.http.handlers.ContentTypes.JSON_UTF_8;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.BAD_REQUEST;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.INTERNAL_ERROR;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.NOT_FOUND;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.SLASHING_PROTECTION_ENFORCED;
+import static tech.pegasys.web3signer.core.util.IdentifierUtils.normaliseIdentifier;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics.Stage;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Signs a batch of eth2 signing requests. The slashing checks for the whole batch are grouped into
+ * a single call to slashing protection, the BLS signatures are then computed in parallel and the
+ * per-item results are streamed back in request order.
+ */
+public class Eth2BatchSignHandler implements Handler<RoutingContext> {
+
+  /** Matches the maxItems of the batch request in the OpenAPI spec. */
+  public static final int MAX_BATCH_SIZE = 512;
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int OK = 200;
+
+  private final SignerForIdentifier<?> signerForIdentifier;
+  private final HttpApiMetrics httpMetrics;
+  private final SlashingProtectionMetrics slashingMetrics;
+  private final Eth2SigningPipelineMetrics pipelineMetrics;
+  private final Optional<SlashingProtection> slashingProtection;
+  private final ObjectMapper objectMapper;
+  private final Eth2SigningRootCalculator signingRootCalculator;
+  private final Executor signingExecutor;
+
+  public Eth2BatchSignHandler(
+      final SignerForIdentifier<?> signerForIdentifier,
+      final HttpApiMetrics httpMetrics,
+      final SlashingProtectionMetrics slashingMetrics,
+      final Eth2SigningPipelineMetrics pipelineMetrics,
+      final Optional<SlashingProtection> slashingProtection,
+      final ObjectMapper objectMapper,
+      final Eth2SigningRootCalculator signingRootCalculator,
+      final Executor signingExecutor) {
+    this.signerForIdentifier = signerForIdentifier;
+    this.httpMetrics = httpMetrics;
+    this.slashingMetrics = slashingMetrics;
+    this.pipelineMetrics = pipelineMetrics;
+    this.slashingProtection = slashingProtection;
+    this.objectMapper = objectMapper;
+    this.signingRootCalculator = signingRootCalculator;
+    this.signingExecutor = signingExecutor;
+  }
+
+  @Override
+  public void handle(final RoutingContext routingContext) {
+    final RequestParameters params = routingContext.get("parsedParameters");
+    final List<JsonNode> itemNodes;
+    try {
+      itemNodes =
+          objectMapper.readValue(params.body().toString(), new TypeReference<List<JsonNode>>() {});
+    } catch (final JsonProcessingException e) {
+      httpMetrics.getMalformedRequestCounter().inc();
+      LOG.debug("Invalid batch signing request - " + routingContext.getBodyAsString(), e);
+      routingContext.fail(BAD_REQUEST);
+      return;
+    }
+    if (itemNodes.size() > MAX_BATCH_SIZE) {
+      httpMetrics.getMalformedRequestCounter().inc();
+      LOG.debug("Batch signing request of {} items exceeds {}", itemNodes.size(), MAX_BATCH_SIZE);
+      routingContext.fail(BAD_REQUEST);
+      return;
+    }
+
+    final List<BatchItem> items = new ArrayList<>(itemNodes.size());
+    itemNodes.forEach(node -> items.add(prepareItem(node)));
+
+    applySlashingProtection(items);
+
+    // signatures are computed in parallel, but results are written in request order
+    final List<CompletableFuture<JsonObject>> results = new ArrayList<>(items.size());
+    for (final BatchItem item : items) {
+      if (item.status == OK) {
+        pipelineMetrics.incrementStage(Stage.SIGN);
+        results.add(signInParallel(item));
+      } else {
+        results.add(CompletableFuture.completedFuture(statusResult(item.status)));
+      }
+    }
+
+    final HttpServerResponse response = routingContext.response();
+    response.setChunked(true).putHeader(CONTENT_TYPE, JSON_UTF_8);
+    response.write("[");
+    for (int i = 0; i < results.size(); i++) {
+      if (i > 0) {
+        response.write(",");
+      }
+      response.write(results.get(i).join().encode());
+    }
+    response.end("]");
+  }
+
+  private BatchItem prepareItem(final JsonNode node) {
+    final BatchItem item = new BatchItem();
+    try {
+      item.identifier = normaliseIdentifier(node.required("identifier").asText());
+      item.body = objectMapper.treeToValue(node.required("request"), Eth2SigningRequestBody.class);
+      item.signingRoot = signingRootCalculator.computeSigningRoot(item.body);
+      item.publicKey = Bytes.fromHexString(item.identifier);
+    } catch (final IllegalArgumentException | JsonProcessingException e) {
+      httpMetrics.getMalformedRequestCounter().inc();
+      LOG.debug("Invalid batch signing request item - {}", node, e);
+      item.status = BAD_REQUEST;
+      return item;
+    }
+
+    pipelineMetrics.incrementStage(Stage.SIGNER_LOOKUP);
+    if (!signerForIdentifier.isSignerAvailable(item.identifier)) {
+      httpMetrics.getMissingSignerCounter().inc();
+      item.status = NOT_FOUND;
+    }
+    return item;
+  }
+
+  private void applySlashingProtection(final List<BatchItem> items) {
+    if (slashingProtection.isEmpty()) {
+      return;
+    }
+
+    final List<BatchItem> checkedItems = new ArrayList<>();
+    final List<SlashingCheckRequest> checks = new ArrayList<>();
+    for (final BatchItem item : items) {
+      if (item.status != OK) {
+        continue;
+      }
+      createSlashingCheck(item)
+          .ifPresentOrElse(
+              check -> {
+                pipelineMetrics.incrementStage(Stage.SLASHING_CHECK);
+                checkedItems.add(item);
+                checks.add(check);
+              },
+              slashingMetrics::incrementSigningsPermitted);
+    }
+
+    if (checks.isEmpty()) {
+      return;
+    }
+
+    final List<Boolean> results;
+    try {
+      results = slashingProtection.get().maySignBatch(checks);
+    } catch (final RuntimeException e) {
+      // e.g. an unregistered validator fails the whole batch, so each item is checked on its own
+      // and only the items which fail are given the error a single signing request would get
+      LOG.warn("Batch slashing protection check failed, checking each item on its own", e);
+      for (int i = 0; i < checkedItems.size(); i++) {
+        checkIndividually(checkedItems.get(i), checks.get(i));
+      }
+      return;
+    }
+    for (int i = 0; i < checkedItems.size(); i++) {
+      applySlashingResult(checkedItems.get(i), results.get(i));
+    }
+  }
+
+  private void checkIndividually(final BatchItem item, final SlashingCheckRequest check) {
+    final boolean maySign;
+    try {
+      maySign = slashingProtection.get().maySign(check);
+    } catch (final RuntimeException e) {
+      LOG.error("Slashing protection check failed for batch item for {}", item.identifier, e);
+      item.status = INTERNAL_ERROR;
+      return;
+    }
+    applySlashingResult(item, maySign);
+  }
+
+  private void applySlashingResult(final BatchItem item, final boolean maySign) {
+    if (maySign) {
+      slashingMetrics.incrementSigningsPermitted();
+    } else {
+      slashingMetrics.incrementSigningsPrevented();
+      pipelineMetrics.incrementStage(Stage.SLASHING_REJECTED);
+      LOG.debug("Signing not allowed due to slashing protection rules failing");
+      item.status = SLASHING_PROTECTION_ENFORCED;
+    }
+  }
+
+  private Optional<SlashingCheckRequest> createSlashingCheck(final BatchItem item) {
+    final Eth2SigningRequestBody body = item.body;
+    switch (body.getType()) {
+      case BLOCK:
+        return Optional.of(
+            SlashingCheckRequest.block(
+                item.publicKey,
+                item.signingRoot,
+                toUInt64(body.getBlock().slot),
+                body.getForkInfo().getGenesisValidatorsRoot()));
+      case ATTESTATION:
+        final AttestationData attestation = body.getAttestation();
+        return Optional.of(
+            SlashingCheckRequest.attestation(
+                item.publicKey,
+                item.signingRoot,
+                toUInt64(attestation.source.epoch),
+                toUInt64(attestation.target.epoch),
+                body.getForkInfo().getGenesisValidatorsRoot()));
+      default:
+        return Optional.empty();
+    }
+  }
+
+  private CompletableFuture<JsonObject> signInParallel(final BatchItem item) {
+    try {
+      return CompletableFuture.supplyAsync(() -> sign(item), signingExecutor)
+          .exceptionally(e -> signingFailed(item, e));
+    } catch (final RejectedExecutionException e) {
+      // the item has passed slashing protection, so it is signed on this thread rather than
+      // failing the request once the signing executor is saturated
+      try {
+        return CompletableFuture.completedFuture(sign(item));
+      } catch (final RuntimeException signingError) {
+        return CompletableFuture.completedFuture(signingFailed(item, signingError));
+      }
+    }
+  }
+
+  private JsonObject signingFailed(final BatchItem item, final Throwable e) {
+    LOG.error("Failed to sign batch item for {}", item.identifier, e);
+    return statusResult(INTERNAL_ERROR);
+  }
+
+  private JsonObject sign(final BatchItem item) {
+    return signerForIdentifier
+        .sign(item.identifier, item.signingRoot)
+        .map(
+            signature -> {
+              pipelineMetrics.incrementStage(Stage.RESPOND);
+              return statusResult(OK).put("signature", signature);
+            })
+        .orElseGet(
+            () -> {
+              httpMetrics.getMissingSignerCounter().inc();
+              return statusResult(NOT_FOUND);
+            });
+  }
+
+  private JsonObject statusResult(final int status) {
+    return new JsonObject().put("status", status);
+  }
+
+  private UInt64 toUInt64(final tech.pegasys.teku.infrastructure.unsigned.UInt64 uInt64) {
+    return UInt64.valueOf(uInt64.bigIntegerValue());
+  }
+
+  private static class BatchItem {
+    private String identifier;
+    private Bytes publicKey;
+    private Eth2SigningRequestBody body;
+    private Bytes signingRoot;
+    private int status = OK;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static tech.pegasys.web3signer.core.util.DepositSigningRootUtil.compute_domain;
+
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.spec.constants.Domain;
+import tech.pegasys.teku.ssz.type.Bytes4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Reuses the internal fork info and deposit domains between eth2 requests. Only a handful of
+ * distinct forks and genesis validators roots are seen in practice, so these are converted and
+ * hashed once rather than for every request.
+ */
+public class Eth2DomainCache {
+
+  private static final long MAXIMUM_SIZE = 64;
+
+  private final Cache<List<Object>, tech.pegasys.teku.spec.datastructures.state.ForkInfo>
+      forkInfoCache = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+  private final Cache<Bytes4, Bytes32> depositDomainCache =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  public tech.pegasys.teku.spec.datastructures.state.ForkInfo internalForkInfo(
+      final ForkInfo forkInfo) {
+    final Fork fork = forkInfo.getFork();
+    final List<Object> key =
+        Arrays.asList(
+            fork.previous_version,
+            fork.current_version,
+            fork.epoch,
+            forkInfo.getGenesisValidatorsRoot());
+    return forkInfoCache.asMap().computeIfAbsent(key, k -> forkInfo.asInternalForkInfo());
+  }
+
+  public Bytes32 depositDomain(final Bytes4 genesisForkVersion) {
+    return depositDomainCache
+        .asMap()
+        .computeIfAbsent(
+            genesisForkVersion,
+            version -> compute_domain(Domain.DEPOSIT, version, Bytes32.ZERO));
+  }
+}
@@ -12,33 +12,23 @@
  */
 package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
 import static tech.pegasys.web3signer.core.service.http.handlers.ContentTypes.JSON_UTF_8;
 import static tech.pegasys.web3signer.core.service.http.handlers.ContentTypes.TEXT_PLAIN_UTF_8;
-import static tech.pegasys.web3signer.core.util.DepositSigningRootUtil.compute_domain;
 import static tech.pegasys.web3signer.core.util.IdentifierUtils.normaliseIdentifier;
 
 import tech.pegasys.teku.api.schema.AttestationData;
 import tech.pegasys.teku.api.schema.BeaconBlock;
-import tech.pegasys.teku.api.schema.altair.ContributionAndProof;
-import tech.pegasys.teku.api.schema.altair.SyncCommitteeContribution;
-import tech.pegasys.teku.core.signatures.SigningRootUtil;
-import tech.pegasys.teku.spec.Spec;
-import tech.pegasys.teku.spec.constants.Domain;
-import tech.pegasys.teku.spec.datastructures.operations.versions.altair.SyncAggregatorSelectionDataSchema;
-import tech.pegasys.teku.spec.logic.common.util.SyncCommitteeUtil;
 import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics.Stage;
 import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
-import tech.pegasys.web3signer.core.util.DepositSigningRootUtil;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
 
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Consumer;
-import java.util.function.Function;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -50,7 +40,6 @@ import io.vertx.ext.web.api.RequestParameters;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
 
@@ -60,29 +49,31 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
   private final SignerForIdentifier<?> signerForIdentifier;
   private final HttpApiMetrics httpMetrics;
   private final SlashingProtectionMetrics slashingMetrics;
+  private final Eth2SigningPipelineMetrics pipelineMetrics;
   private final Optional<SlashingProtection> slashingProtection;
   private final ObjectMapper objectMapper;
-  private final Spec eth2Spec;
-  private final SigningRootUtil signingRootUtil;
+  private final Eth2SigningRootCalculator signingRootCalculator;
 
   public static final int NOT_FOUND = 404;
   public static final int BAD_REQUEST = 400;
+  public static final int INTERNAL_ERROR = 500;
   public static final int SLASHING_PROTECTION_ENFORCED = 412;
 
   public Eth2SignForIdentifierHandler(
       final SignerForIdentifier<?> signerForIdentifier,
       final HttpApiMetrics httpMetrics,
       final SlashingProtectionMetrics slashingMetrics,
+      final Eth2SigningPipelineMetrics pipelineMetrics,
       final Optional<SlashingProtection> slashingProtection,
       final ObjectMapper objectMapper,
-      final Spec eth2Spec) {
+      final Eth2SigningRootCalculator signingRootCalculator) {
     this.signerForIdentifier = signerForIdentifier;
     this.httpMetrics = httpMetrics;
     this.slashingMetrics = slashingMetrics;
+    this.pipelineMetrics = pipelineMetrics;
     this.slashingProtection = slashingProtection;
     this.objectMapper = objectMapper;
-    this.eth2Spec = eth2Spec;
-    this.signingRootUtil = new SigningRootUtil(eth2Spec);
+    this.signingRootCalculator = signingRootCalculator;
   }
 
   @Override
@@ -99,66 +90,64 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
         return;
       }
 
-      final Bytes signingRoot = computeSigningRoot(eth2SigningRequestBody);
-      if (eth2SigningRequestBody.getSigningRoot() != null) {
-        checkArgument(
-            eth2SigningRequestBody.getSigningRoot().equals(signingRoot),
-            "Signing root %s must match signing computed signing root %s from data",
-            eth2SigningRequestBody.getSigningRoot(),
-            signingRoot);
-      }
+      final Bytes signingRoot = signingRootCalculator.computeSigningRoot(eth2SigningRequestBody);
 
+      // check-then-sign: slashing protection is evaluated before the (expensive) BLS signature is
+      // computed, so rejected requests only cost the slashing database round trip
       final String normalisedIdentifier = normaliseIdentifier(identifier);
-      if (slashingProtection.isPresent()) {
-        handleSigning(
-            routingContext,
-            signingRoot,
-            normalisedIdentifier,
-            signature ->
-                signWithSlashingProtection(
-                    routingContext, identifier, eth2SigningRequestBody, signingRoot, signature));
-      } else {
-        handleSigning(
-            routingContext,
-            signingRoot,
-            normalisedIdentifier,
-            signature -> respondWithSignature(routingContext, signature));
+      pipelineMetrics.incrementStage(Stage.SIGNER_LOOKUP);
+      if (!signerForIdentifier.isSignerAvailable(normalisedIdentifier)) {
+        handleMissingSigner(routingContext);
+        return;
+      }
+
+      if (slashingProtection.isPresent()
+          && !passesSlashingProtection(
+              routingContext, identifier, eth2SigningRequestBody, signingRoot)) {
+        return;
       }
+
+      pipelineMetrics.incrementStage(Stage.SIGN);
+      signerForIdentifier
+          .sign(normalisedIdentifier, signingRoot)
+          .ifPresentOrElse(
+              signature -> {
+                pipelineMetrics.incrementStage(Stage.RESPOND);
+                respondWithSignature(routingContext, signature);
+              },
+              () -> handleMissingSigner(routingContext));
     }
   }
 
-  private void handleSigning(
-      final RoutingContext routingContext,
-      final Bytes signingRoot,
-      final String normalisedIdentifier,
-      final Consumer<String> signatureConsumer) {
-    signerForIdentifier
-        .sign(normalisedIdentifier, signingRoot)
-        .ifPresentOrElse(
-            signatureConsumer,
-            () -> {
-              httpMetrics.getMissingSignerCounter().inc();
-              routingContext.fail(NOT_FOUND);
-            });
+  private void handleMissingSigner(final RoutingContext routingContext) {
+    httpMetrics.getMissingSignerCounter().inc();
+    routingContext.fail(NOT_FOUND);
   }
 
-  private void signWithSlashingProtection(
+  private boolean passesSlashingProtection(
       final RoutingContext routingContext,
       final String identifier,
       final Eth2SigningRequestBody eth2SigningRequestBody,
-      final Bytes signingRoot,
-      final String signature) {
+      final Bytes signingRoot) {
     try {
       if (maySign(Bytes.fromHexString(identifier), signingRoot, eth2SigningRequestBody)) {
         slashingMetrics.incrementSigningsPermitted();
-        respondWithSignature(routingContext, signature);
+        return true;
       } else {
         slashingMetrics.incrementSigningsPrevented();
+        pipelineMetrics.incrementStage(Stage.SLASHING_REJECTED);
         LOG.debug("Signing not allowed due to slashing protection rules failing");
         routingContext.fail(SLASHING_PROTECTION_ENFORCED);
+        return false;
       }
     } catch (final IllegalArgumentException e) {
       handleInvalidRequest(routingContext, e);
+      return false;
+    } catch (final RuntimeException e) {
+      // e.g. an unregistered validator, reported the same way by the batch signing endpoint
+      LOG.error("Slashing protection check failed for {}", identifier, e);
+      routingContext.fail(INTERNAL_ERROR);
+      return false;
     }
   }
 
@@ -177,11 +166,13 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
       case BLOCK:
         final BeaconBlock beaconBlock = eth2SigningRequestBody.getBlock();
         final UInt64 blockSlot = UInt64.valueOf(beaconBlock.slot.bigIntegerValue());
+        pipelineMetrics.incrementStage(Stage.SLASHING_CHECK);
         return slashingProtection
             .get()
             .maySignBlock(publicKey, signingRoot, blockSlot, forkInfo.getGenesisValidatorsRoot());
       case ATTESTATION:
         final AttestationData attestation = eth2SigningRequestBody.getAttestation();
+        pipelineMetrics.incrementStage(Stage.SLASHING_CHECK);
         return slashingProtection
             .get()
             .maySignAttestation(
@@ -195,105 +186,6 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
     }
   }
 
-  private Bytes computeSigningRoot(final Eth2SigningRequestBody body) {
-    switch (body.getType()) {
-      case BLOCK:
-        checkArgument(body.getBlock() != null, "block must be specified");
-        return signingRootUtil.signingRootForSignBlock(
-            body.getBlock().asInternalBeaconBlock(eth2Spec),
-            body.getForkInfo().asInternalForkInfo());
-      case ATTESTATION:
-        checkArgument(body.getAttestation() != null, "attestation must be specified");
-        return signingRootUtil.signingRootForSignAttestationData(
-            body.getAttestation().asInternalAttestationData(),
-            body.getForkInfo().asInternalForkInfo());
-      case AGGREGATE_AND_PROOF:
-        checkArgument(body.getAggregateAndProof() != null, "aggregateAndProof must be specified");
-        return signingRootUtil.signingRootForSignAggregateAndProof(
-            body.getAggregateAndProof().asInternalAggregateAndProof(),
-            body.getForkInfo().asInternalForkInfo());
-      case AGGREGATION_SLOT:
-        checkArgument(body.getAggregationSlot() != null, "aggregationSlot must be specified");
-        return signingRootUtil.signingRootForSignAggregationSlot(
-            body.getAggregationSlot().getSlot(), body.getForkInfo().asInternalForkInfo());
-      case RANDAO_REVEAL:
-        checkArgument(body.getRandaoReveal() != null, "randaoReveal must be specified");
-        return signingRootUtil.signingRootForRandaoReveal(
-            body.getRandaoReveal().getEpoch(), body.getForkInfo().asInternalForkInfo());
-      case VOLUNTARY_EXIT:
-        checkArgument(body.getVoluntaryExit() != null, "voluntaryExit must be specified");
-        return signingRootUtil.signingRootForSignVoluntaryExit(
-            body.getVoluntaryExit().asInternalVoluntaryExit(),
-            body.getForkInfo().asInternalForkInfo());
-      case DEPOSIT:
-        checkArgument(body.getDeposit() != null, "deposit must be specified");
-        final Bytes32 depositDomain =
-            compute_domain(Domain.DEPOSIT, body.getDeposit().getGenesisForkVersion(), Bytes32.ZERO);
-        return DepositSigningRootUtil.compute_signing_root(
-            body.getDeposit().asInternalDepositMessage(), depositDomain);
-      case SYNC_COMMITTEE_SIGNATURE:
-        final SyncCommitteeSignature syncCommitteSignature = body.getSyncCommitteeSignature();
-        checkArgument(syncCommitteSignature != null, "SyncCommitteeSignature must be specified");
-        return signingRootFromSyncCommitteeUtils(
-            syncCommitteSignature.getSlot(),
-            utils ->
-                utils.getSyncCommitteeSignatureSigningRoot(
-                    syncCommitteSignature.getBeaconBlockRoot(),
-                    eth2Spec.computeEpochAtSlot(syncCommitteSignature.getSlot()),
-                    body.getForkInfo().asInternalForkInfo()));
-      case SYNC_COMMITTEE_SELECTION_PROOF:
-        final SyncAggregatorSelectionData syncAggregatorSelectionData =
-            body.getSyncAggregatorSelectionData();
-        checkArgument(
-            syncAggregatorSelectionData != null, "SyncAggregatorSelectionData is required");
-        return signingRootFromSyncCommitteeUtils(
-            syncAggregatorSelectionData.getSlot(),
-            utils ->
-                utils.getSyncAggregatorSelectionDataSigningRoot(
-                    asInternalSyncAggregatorSelectionData(syncAggregatorSelectionData),
-                    body.getForkInfo().asInternalForkInfo()));
-      case SYNC_COMMITTEE_CONTRIBUTION_AND_PROOF:
-        final ContributionAndProof contributionAndProof = body.getContributionAndProof();
-        checkArgument(contributionAndProof != null, "ContributionAndProof is required");
-        return signingRootFromSyncCommitteeUtils(
-            contributionAndProof.contribution.slot,
-            utils ->
-                utils.getContributionAndProofSigningRoot(
-                    asInternalContributionAndProof(contributionAndProof),
-                    body.getForkInfo().asInternalForkInfo()));
-      default:
-        throw new IllegalStateException("Signing root unimplemented for type " + body.getType());
-    }
-  }
-
-  private tech.pegasys.teku.spec.datastructures.operations.versions.altair
-          .SyncAggregatorSelectionData
-      asInternalSyncAggregatorSelectionData(
-          final SyncAggregatorSelectionData syncAggregatorSelectionData) {
-    return SyncAggregatorSelectionDataSchema.INSTANCE.create(
-        syncAggregatorSelectionData.getSlot(), syncAggregatorSelectionData.getSubcommitteeIndex());
-  }
-
-  private tech.pegasys.teku.spec.datastructures.operations.versions.altair.ContributionAndProof
-      asInternalContributionAndProof(final ContributionAndProof contributionAndProof) {
-    final tech.pegasys.teku.spec.datastructures.operations.versions.altair.SyncCommitteeContribution
-        syncCommitteeContribution =
-            SyncCommitteeContribution.asInternalSyncCommitteeContribution(
-                eth2Spec, contributionAndProof.contribution);
-    return eth2Spec
-        .getSyncCommitteeUtilRequired(contributionAndProof.contribution.slot)
-        .createContributionAndProof(
-            contributionAndProof.aggregatorIndex,
-            syncCommitteeContribution,
-            contributionAndProof.selectionProof.asInternalBLSSignature());
-  }
-
-  private Bytes signingRootFromSyncCommitteeUtils(
-      final tech.pegasys.teku.infrastructure.unsigned.UInt64 slot,
-      final Function<SyncCommitteeUtil, Bytes> createSigningRoot) {
-    return createSigningRoot.apply(eth2Spec.getSyncCommitteeUtilRequired(slot));
-  }
-
   private UInt64 toUInt64(final tech.pegasys.teku.infrastructure.unsigned.UInt64 uInt64) {
     return UInt64.valueOf(uInt64.bigIntegerValue());
   }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.teku.api.schema.altair.ContributionAndProof;
+import tech.pegasys.teku.api.schema.altair.SyncCommitteeContribution;
+import tech.pegasys.teku.core.signatures.SigningRootUtil;
+import tech.pegasys.teku.spec.Spec;
+import tech.pegasys.teku.spec.datastructures.operations.versions.altair.SyncAggregatorSelectionDataSchema;
+import tech.pegasys.teku.spec.logic.common.util.SyncCommitteeUtil;
+import tech.pegasys.web3signer.core.util.DepositSigningRootUtil;
+
+import java.util.function.Function;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+
+/** Computes the signing root of eth2 signing requests, shared by the single and batch handlers. */
+public class Eth2SigningRootCalculator {
+
+  // enough for every committee attesting over a couple of epochs
+  private static final long SIGNING_ROOT_CACHE_SIZE = 8192;
+  private static final long SIGNING_ROOT_CACHE_RETAINED_SLOTS = 64;
+
+  private final Spec eth2Spec;
+  private final SigningRootUtil signingRootUtil;
+  private final SigningRootCache signingRootCache;
+  private final Eth2DomainCache domainCache = new Eth2DomainCache();
+
+  public Eth2SigningRootCalculator(final Spec eth2Spec, final MetricsSystem metricsSystem) {
+    this.eth2Spec = eth2Spec;
+    this.signingRootUtil = new SigningRootUtil(eth2Spec);
+    this.signingRootCache =
+        new SigningRootCache(
+            metricsSystem, SIGNING_ROOT_CACHE_SIZE, SIGNING_ROOT_CACHE_RETAINED_SLOTS);
+  }
+
+  /**
+   * Computes the signing root for the supplied request, verifying it matches the signing root
+   * given in the request (if any).
+   *
+   * @param body the eth2 signing request
+   * @return the signing root to be signed
+   * @throws IllegalArgumentException if the request is missing data for its type, or the supplied
+   *     signing root does not match the computed signing root
+   */
+  public Bytes computeSigningRoot(final Eth2SigningRequestBody body) {
+    final Bytes signingRoot = computeSigningRootFromData(body);
+    if (body.getSigningRoot() != null) {
+      checkArgument(
+          body.getSigningRoot().equals(signingRoot),
+          "Signing root %s must match signing computed signing root %s from data",
+          body.getSigningRoot(),
+          signingRoot);
+    }
+    return signingRoot;
+  }
+
+  private Bytes computeSigningRootFromData(final Eth2SigningRequestBody body) {
+    switch (body.getType()) {
+      case BLOCK:
+        checkArgument(body.getBlock() != null, "block must be specified");
+        return signingRootUtil.signingRootForSignBlock(
+            body.getBlock().asInternalBeaconBlock(eth2Spec),
+            domainCache.internalForkInfo(body.getForkInfo()));
+      case ATTESTATION:
+        checkArgument(body.getAttestation() != null, "attestation must be specified");
+        return signingRootCache.getOrCompute(
+            SigningRootCache.attestationKey(body.getAttestation(), body.getForkInfo()),
+            () ->
+                signingRootUtil.signingRootForSignAttestationData(
+                    body.getAttestation().asInternalAttestationData(),
+                    domainCache.internalForkInfo(body.getForkInfo())));
+      case AGGREGATE_AND_PROOF:
+        checkArgument(body.getAggregateAndProof() != null, "aggregateAndProof must be specified");
+        return signingRootUtil.signingRootForSignAggregateAndProof(
+            body.getAggregateAndProof().asInternalAggregateAndProof(),
+            domainCache.internalForkInfo(body.getForkInfo()));
+      case AGGREGATION_SLOT:
+        checkArgument(body.getAggregationSlot() != null, "aggregationSlot must be specified");
+        return signingRootUtil.signingRootForSignAggregationSlot(
+            body.getAggregationSlot().getSlot(), domainCache.internalForkInfo(body.getForkInfo()));
+      case RANDAO_REVEAL:
+        checkArgument(body.getRandaoReveal() != null, "randaoReveal must be specified");
+        return signingRootUtil.signingRootForRandaoReveal(
+            body.getRandaoReveal().getEpoch(), domainCache.internalForkInfo(body.getForkInfo()));
+      case VOLUNTARY_EXIT:
+        checkArgument(body.getVoluntaryExit() != null, "voluntaryExit must be specified");
+        return signingRootUtil.signingRootForSignVoluntaryExit(
+            body.getVoluntaryExit().asInternalVoluntaryExit(),
+            domainCache.internalForkInfo(body.getForkInfo()));
+      case DEPOSIT:
+        checkArgument(body.getDeposit() != null, "deposit must be specified");
+        final Bytes32 depositDomain =
+            domainCache.depositDomain(body.getDeposit().getGenesisForkVersion());
+        return DepositSigningRootUtil.compute_signing_root(
+            body.getDeposit().asInternalDepositMessage(), depositDomain);
+      case SYNC_COMMITTEE_SIGNATURE:
+        final SyncCommitteeSignature syncCommitteSignature = body.getSyncCommitteeSignature();
+        checkArgument(syncCommitteSignature != null, "SyncCommitteeSignature must be specified");
+        return signingRootCache.getOrCompute(
+            SigningRootCache.syncCommitteeSignatureKey(syncCommitteSignature, body.getForkInfo()),
+            () ->
+                signingRootFromSyncCommitteeUtils(
+                    syncCommitteSignature.getSlot(),
+                    utils ->
+                        utils.getSyncCommitteeSignatureSigningRoot(
+                            syncCommitteSignature.getBeaconBlockRoot(),
+                            eth2Spec.computeEpochAtSlot(syncCommitteSignature.getSlot()),
+                            domainCache.internalForkInfo(body.getForkInfo()))));
+      case SYNC_COMMITTEE_SELECTION_PROOF:
+        final SyncAggregatorSelectionData syncAggregatorSelectionData =
+            body.getSyncAggregatorSelectionData();
+        checkArgument(
+            syncAggregatorSelectionData != null, "SyncAggregatorSelectionData is required");
+        return signingRootFromSyncCommitteeUtils(
+            syncAggregatorSelectionData.getSlot(),
+            utils ->
+                utils.getSyncAggregatorSelectionDataSigningRoot(
+                    asInternalSyncAggregatorSelectionData(syncAggregatorSelectionData),
+                    domainCache.internalForkInfo(body.getForkInfo())));
+      case SYNC_COMMITTEE_CONTRIBUTION_AND_PROOF:
+        final ContributionAndProof contributionAndProof = body.getContributionAndProof();
+        checkArgument(contributionAndProof != null, "ContributionAndProof is required");
+        return signingRootFromSyncCommitteeUtils(
+            contributionAndProof.contribution.slot,
+            utils ->
+                utils.getContributionAndProofSigningRoot(
+                    asInternalContributionAndProof(contributionAndProof),
+                    domainCache.internalForkInfo(body.getForkInfo())));
+      default:
+        throw new IllegalStateException("Signing root unimplemented for type " + body.getType());
+    }
+  }
+
+  private tech.pegasys.teku.spec.datastructures.operations.versions.altair
+          .SyncAggregatorSelectionData
+      asInternalSyncAggregatorSelectionData(
+          final SyncAggregatorSelectionData syncAggregatorSelectionData) {
+    return SyncAggregatorSelectionDataSchema.INSTANCE.create(
+        syncAggregatorSelectionData.getSlot(), syncAggregatorSelectionData.getSubcommitteeIndex());
+  }
+
+  private tech.pegasys.teku.spec.datastructures.operations.versions.altair.ContributionAndProof
+      asInternalContributionAndProof(final ContributionAndProof contributionAndProof) {
+    final tech.pegasys.teku.spec.datastructures.operations.versions.altair.SyncCommitteeContribution
+        syncCommitteeContribution =
+            SyncCommitteeContribution.asInternalSyncCommitteeContribution(
+                eth2Spec, contributionAndProof.contribution);
+    return eth2Spec
+        .getSyncCommitteeUtilRequired(contributionAndProof.contribution.slot)
+        .createContributionAndProof(
+            contributionAndProof.aggregatorIndex,
+            syncCommitteeContribution,
+            contributionAndProof.selectionProof.asInternalBLSSignature());
+  }
+
+  private Bytes signingRootFromSyncCommitteeUtils(
+      final tech.pegasys.teku.infrastructure.unsigned.UInt64 slot,
+      final Function<SyncCommitteeUtil, Bytes> createSigningRoot) {
+    return createSigningRoot.apply(eth2Spec.getSyncCommitteeUtilRequired(slot));
+  }
+}
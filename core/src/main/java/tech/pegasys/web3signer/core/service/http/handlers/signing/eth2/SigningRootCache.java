@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * A bounded cache of signing roots for requests which are signed identically by many validators in
+ * the same slot, such as attestation data shared by a committee. Entries are keyed by the request
+ * payload and fork info, and entries for slots which have fallen too far behind the most recent
+ * slot seen are discarded.
+ *
+ * <p>Slots come from the requests, so a lookup far outside the retained window only moves the
+ * window once several lookups in a row agree with it, as happens after the beacon node has been
+ * unavailable. A single request with a bogus slot therefore neither evicts the cache nor stops
+ * later entries being cached. Slots are unsigned and compared as such.
+ */
+public class SigningRootCache {
+
+  static final int LOOKUPS_TO_MOVE_WINDOW = 3;
+
+  private final Cache<Key, Bytes> cache;
+  private final long retainedSlots;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  // guarded by this
+  private boolean windowStarted;
+  private long highestSlot;
+  private int lookupsOutsideWindow;
+
+  public SigningRootCache(
+      final MetricsSystem metricsSystem, final long maximumSize, final long retainedSlots) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.retainedSlots = retainedSlots;
+    final LabelledMetric<Counter> lookupCounter =
+        metricsSystem.createLabelledCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "eth2_signing_root_cache_lookup_count",
+            "Number of eth2 signing root cache lookups",
+            "result");
+    this.hitCounter = lookupCounter.labels("hit");
+    this.missCounter = lookupCounter.labels("miss");
+  }
+
+  public static Key attestationKey(final AttestationData attestation, final ForkInfo forkInfo) {
+    return new Key(
+        "attestation",
+        attestation.slot,
+        Arrays.asList(
+            attestation.index,
+            attestation.beacon_block_root,
+            attestation.source.epoch,
+            attestation.source.root,
+            attestation.target.epoch,
+            attestation.target.root),
+        forkInfo);
+  }
+
+  public static Key syncCommitteeSignatureKey(
+      final SyncCommitteeSignature syncCommitteeSignature, final ForkInfo forkInfo) {
+    return new Key(
+        "sync_committee_signature",
+        syncCommitteeSignature.getSlot(),
+        Arrays.asList(syncCommitteeSignature.getBeaconBlockRoot()),
+        forkInfo);
+  }
+
+  /**
+   * Returns the cached signing root for the key, computing and caching it if absent.
+   *
+   * @param key the request key
+   * @param signingRootSupplier computes the signing root on a cache miss
+   * @return the signing root for the request
+   */
+  public Bytes getOrCompute(final Key key, final Supplier<Bytes> signingRootSupplier) {
+    final Bytes cachedSigningRoot = cache.getIfPresent(key);
+    if (cachedSigningRoot != null) {
+      hitCounter.inc();
+      return cachedSigningRoot;
+    }
+
+    missCounter.inc();
+    final Bytes signingRoot = signingRootSupplier.get();
+    if (updateWindow(key.slot)) {
+      cache.put(key, signingRoot);
+    }
+    return signingRoot;
+  }
+
+  private synchronized boolean updateWindow(final long slot) {
+    if (windowStarted && !isWithinRetainedSlots(slot, highestSlot)) {
+      if (++lookupsOutsideWindow < LOOKUPS_TO_MOVE_WINDOW) {
+        return false;
+      }
+      // the window has moved, so entries either side of the new window are discarded
+      highestSlot = slot;
+      cache.asMap().keySet().removeIf(key -> !isWithinRetainedSlots(key.slot, slot));
+    } else if (!windowStarted || Long.compareUnsigned(slot, highestSlot) > 0) {
+      highestSlot = slot;
+      cache.asMap().keySet().removeIf(key -> isBeforeRetainedSlots(key.slot, slot));
+    }
+    windowStarted = true;
+    lookupsOutsideWindow = 0;
+    return true;
+  }
+
+  private boolean isWithinRetainedSlots(final long slot, final long windowSlot) {
+    final boolean belowMaximum =
+        Long.compareUnsigned(windowSlot, -1L - retainedSlots) > 0
+            || Long.compareUnsigned(slot, windowSlot + retainedSlots) <= 0;
+    return belowMaximum && !isBeforeRetainedSlots(slot, windowSlot);
+  }
+
+  private boolean isBeforeRetainedSlots(final long slot, final long windowSlot) {
+    return Long.compareUnsigned(windowSlot, retainedSlots) >= 0
+        && Long.compareUnsigned(slot, windowSlot - retainedSlots) < 0;
+  }
+
+  public static class Key {
+    private final String type;
+    // the unsigned slot
+    private final long slot;
+    private final List<Object> payload;
+    private final List<Object> fork;
+
+    private Key(
+        final String type, final UInt64 slot, final List<Object> payload, final ForkInfo forkInfo) {
+      final Fork fork = forkInfo.getFork();
+      this.type = type;
+      this.slot = slot.longValue();
+      this.payload = payload;
+      this.fork =
+          Arrays.asList(
+              fork.previous_version,
+              fork.current_version,
+              fork.epoch,
+              forkInfo.getGenesisValidatorsRoot());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return slot == key.slot
+          && type.equals(key.type)
+          && payload.equals(key.payload)
+          && fork.equals(key.fork);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, slot, payload, fork);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("type", type)
+          .add("slot", Long.toUnsignedString(slot))
+          .add("payload", payload)
+          .add("fork", fork)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.metrics;
+
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * Counts eth2 signing requests as they pass through each stage of the check-then-sign pipeline.
+ * Only blocks and attestations enter the slashing check stage, and the slashing rejected stage is
+ * the number of BLS signatures which were never computed because slashing protection rejected the
+ * request.
+ */
+public class Eth2SigningPipelineMetrics {
+
+  public enum Stage {
+    SIGNER_LOOKUP("signer_lookup"),
+    SLASHING_CHECK("slashing_check"),
+    SLASHING_REJECTED("slashing_rejected"),
+    SIGN("sign"),
+    RESPOND("respond");
+
+    private final String label;
+
+    Stage(final String label) {
+      this.label = label;
+    }
+  }
+
+  private final Map<Stage, Counter> stageCounters = new EnumMap<>(Stage.class);
+
+  public Eth2SigningPipelineMetrics(final MetricsSystem metricsSystem) {
+    final LabelledMetric<Counter> stageCounter =
+        metricsSystem.createLabelledCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "eth2_signing_pipeline_stage_count",
+            "Number of eth2 signing requests which have entered each stage of the signing pipeline",
+            "stage");
+    for (final Stage stage : Stage.values()) {
+      stageCounters.put(stage, stageCounter.labels(stage.label));
+    }
+  }
+
+  public void incrementStage(final Stage stage) {
+    stageCounters.get(stage).inc();
+  }
+}
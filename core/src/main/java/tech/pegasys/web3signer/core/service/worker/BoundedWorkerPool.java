@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.worker;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.core.metrics.BoundedWorkerPoolMetrics;
+import tech.pegasys.web3signer.core.metrics.BoundedWorkerPoolMetrics.PoolMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * A fixed size pool of worker threads in front of a bounded queue. Unlike the shared Vert.x worker
+ * pool, work submitted when the queue is full is rejected immediately with a {@link
+ * RejectedExecutionException} so callers can shed load rather than queue without limit.
+ */
+public class BoundedWorkerPool implements Executor {
+
+  private final String name;
+  private final ThreadPoolExecutor executor;
+  private final PoolMetrics metrics;
+
+  public BoundedWorkerPool(
+      final String name,
+      final int threadCount,
+      final int queueSize,
+      final BoundedWorkerPoolMetrics workerPoolMetrics) {
+    checkArgument(threadCount > 0, "Worker pool %s must have at least one thread", name);
+    checkArgument(queueSize > 0, "Worker pool %s must have a queue size of at least one", name);
+    this.name = name;
+    this.executor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            new ThreadFactoryBuilder().setNameFormat(name + "-worker-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+    this.metrics =
+        workerPoolMetrics.forPool(name, () -> executor.getQueue().size(), executor::getActiveCount);
+  }
+
+  /**
+   * Queues the task for execution on the pool.
+   *
+   * @param task the work to execute
+   * @throws RejectedExecutionException if the queue is full
+   */
+  @Override
+  public void execute(final Runnable task) {
+    final TimingContext queueWaitContext = metrics.submitted();
+    try {
+      executor.execute(
+          () -> {
+            queueWaitContext.stopTimer();
+            task.run();
+          });
+    } catch (final RejectedExecutionException e) {
+      metrics.rejected(queueWaitContext);
+      throw new RejectedExecutionException("Worker pool " + name + " is saturated", e);
+    }
+  }
+
+  /** Stops accepting work, letting the work already queued run to completion. */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.worker;
+
+import tech.pegasys.web3signer.core.metrics.GroupCommitMetrics;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * Collects slashing checks arriving concurrently into batches which are checked and committed in a
+ * single transaction, so that many validators attesting in the same slot share one commit.
+ *
+ * <p>The first request to arrive leads the batch: it waits until the batch is full, every request
+ * being checked has joined it, or the window elapses, then performs the batch on behalf of every
+ * request in it. A request arriving while no other check is in progress is therefore committed
+ * straight away. No request is answered before the batch it belongs to has been committed. If the
+ * batch fails, each of its requests is checked on its own, so one failing request does not fail
+ * the others.
+ */
+public class GroupCommitSlashingProtection implements SlashingProtection {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final SlashingProtection delegate;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final GroupCommitMetrics metrics;
+  // guarded by this
+  private Batch currentBatch;
+  // guarded by this, the requests either in the current batch or waiting for their batch to commit
+  private int activeRequests;
+
+  /**
+   * @param maxBatchSize the most requests committed in one batch, which is only reached if it is
+   *     below the number of threads which may make requests concurrently
+   */
+  public GroupCommitSlashingProtection(
+      final SlashingProtection delegate,
+      final long windowMillis,
+      final int maxBatchSize,
+      final GroupCommitMetrics metrics) {
+    this.delegate = delegate;
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes32 genesisValidatorsRoot) {
+    return submit(
+        SlashingCheckRequest.attestation(
+            publicKey, signingRoot, sourceEpoch, targetEpoch, genesisValidatorsRoot));
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final Bytes32 genesisValidatorsRoot) {
+    return submit(
+        SlashingCheckRequest.block(publicKey, signingRoot, blockSlot, genesisValidatorsRoot));
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheckRequest> requests) {
+    // callers which already batch their requests gain nothing from waiting for others
+    return delegate.maySignBatch(requests);
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    delegate.registerValidators(validators);
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    delegate.export(output);
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    delegate.importData(input);
+  }
+
+  @Override
+  public void prune() {
+    delegate.prune();
+  }
+
+  @VisibleForTesting
+  synchronized int queuedRequests() {
+    return currentBatch == null ? 0 : currentBatch.size();
+  }
+
+  private boolean submit(final SlashingCheckRequest request) {
+    final Batch batch;
+    final int index;
+    final boolean leader;
+    synchronized (this) {
+      activeRequests++;
+      leader = currentBatch == null;
+      if (leader) {
+        currentBatch = new Batch();
+      }
+      batch = currentBatch;
+      index = batch.add(request);
+      closeCurrentBatchIfReady();
+    }
+
+    try {
+      if (leader) {
+        awaitBatch(batch);
+        commit(batch);
+      }
+      return batch.result(index);
+    } finally {
+      synchronized (this) {
+        activeRequests--;
+        // the requests left may all be waiting in the current batch for this one to finish
+        closeCurrentBatchIfReady();
+      }
+    }
+  }
+
+  // must be called holding the lock on this
+  private void closeCurrentBatchIfReady() {
+    if (currentBatch != null
+        && (currentBatch.size() >= maxBatchSize || currentBatch.size() >= activeRequests)) {
+      currentBatch.full.countDown();
+      currentBatch = null;
+    }
+  }
+
+  private void awaitBatch(final Batch batch) {
+    try {
+      batch.full.await(windowMillis, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      if (currentBatch == batch) {
+        currentBatch = null;
+      }
+    }
+  }
+
+  private void commit(final Batch batch) {
+    final TimingContext timingContext = metrics.batchStarted(batch.size());
+    try {
+      final List<Boolean> results = delegate.maySignBatch(batch.requests);
+      for (int i = 0; i < batch.size(); i++) {
+        batch.results.get(i).complete(results.get(i));
+      }
+    } catch (final RuntimeException e) {
+      LOG.warn("Group commit of {} slashing checks failed, checking each on its own", batch.size());
+      LOG.debug("Group commit failure", e);
+      for (int i = 0; i < batch.size(); i++) {
+        checkIndividually(batch.requests.get(i), batch.results.get(i));
+      }
+    } catch (final Error e) {
+      batch.results.forEach(result -> result.completeExceptionally(e));
+    } finally {
+      timingContext.stopTimer();
+    }
+  }
+
+  private void checkIndividually(
+      final SlashingCheckRequest request, final CompletableFuture<Boolean> result) {
+    try {
+      result.complete(delegate.maySign(request));
+    } catch (final RuntimeException | Error e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  private static class Batch {
+    private final List<SlashingCheckRequest> requests = new ArrayList<>();
+    private final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    private final CountDownLatch full = new CountDownLatch(1);
+
+    private int add(final SlashingCheckRequest request) {
+      requests.add(request);
+      results.add(new CompletableFuture<>());
+      return requests.size() - 1;
+    }
+
+    private int size() {
+      return requests.size();
+    }
+
+    private boolean result(final int index) {
+      try {
+        return results.get(index).join();
+      } catch (final CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.core.metrics.BoundedWorkerPoolMetrics;
+import tech.pegasys.web3signer.core.service.worker.BoundedWorkerPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BoundedWorkerHandlerTest {
+
+  private final BoundedWorkerPool workerPool =
+      new BoundedWorkerPool("test", 1, 1, new BoundedWorkerPoolMetrics(new NoOpMetricsSystem()));
+  private final RoutingContext routingContext = mock(RoutingContext.class);
+  private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @BeforeEach
+  void setup() {
+    when(routingContext.response()).thenReturn(response);
+    when(routingContext.request()).thenReturn(mock(HttpServerRequest.class));
+    when(routingContext.currentRoute()).thenReturn(mock(Route.class));
+  }
+
+  @AfterEach
+  void teardown() {
+    release.countDown();
+    workerPool.shutdown();
+  }
+
+  @Test
+  void requestIsRejectedWithRetryAfterWhenPoolIsSaturated() {
+    workerPool.execute(this::awaitRelease);
+    workerPool.execute(this::awaitRelease);
+    final Handler<RoutingContext> delegate = mockHandler();
+
+    new BoundedWorkerHandler(delegate, workerPool).handle(routingContext);
+
+    verify(response).setStatusCode(503);
+    verify(response).putHeader("Retry-After", "1");
+    verify(response).end();
+    verify(delegate, never()).handle(any());
+  }
+
+  @Test
+  void requestIsRejectedWithRetryAfterWhenDelegatedPoolIsSaturated() {
+    final Handler<RoutingContext> delegate =
+        context -> {
+          throw new RejectedExecutionException("Worker pool slashing_protection is saturated");
+        };
+
+    new BoundedWorkerHandler(delegate, workerPool).handle(routingContext);
+
+    verify(response, timeout(1000)).end();
+    verify(response).setStatusCode(503);
+    verify(response).putHeader("Retry-After", "1");
+    verify(routingContext, never()).fail(any(Throwable.class));
+  }
+
+  @Test
+  void failureOfDelegateFailsRequest() {
+    final IllegalStateException failure = new IllegalStateException("failed");
+    final Handler<RoutingContext> delegate =
+        context -> {
+          throw failure;
+        };
+
+    new BoundedWorkerHandler(delegate, workerPool).handle(routingContext);
+
+    verify(routingContext, timeout(1000)).fail(failure);
+    verify(response, never()).setStatusCode(503);
+  }
+
+  @Test
+  void requestIsHandledOnPool() {
+    final Handler<RoutingContext> delegate = mockHandler();
+
+    new BoundedWorkerHandler(delegate, workerPool).handle(routingContext);
+
+    verify(delegate, timeout(1000)).handle(any());
+    verify(response, never()).setStatusCode(503);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Handler<RoutingContext> mockHandler() {
+    return mock(Handler.class);
+  }
+
+  private void awaitRelease() {
+    try {
+      release.await(10, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
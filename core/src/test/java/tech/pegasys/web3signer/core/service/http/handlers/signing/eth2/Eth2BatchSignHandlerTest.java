@@ -0,0 +1,354 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.type.Bytes4;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics.Stage;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.signing.KeyType;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameter;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class Eth2BatchSignHandlerTest {
+
+  private static final ForkInfo FORK_INFO =
+      new ForkInfo(
+          new Fork(
+              Bytes4.fromHexString("0x00000001"), Bytes4.fromHexString("0x00000001"), UInt64.ONE),
+          Bytes32.fromHexString(
+              "0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673"));
+  private static final String KEY_1 = "0x01";
+  private static final String KEY_2 = "0x02";
+  private static final String KEY_3 = "0x03";
+  private static final String UNKNOWN_KEY = "0x04";
+
+  private final ObjectMapper objectMapper =
+      new ObjectMapper()
+          .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .registerModule(new SigningJsonModule());
+  private final SignerForIdentifier<?> signer = mock(SignerForIdentifier.class);
+  private final SlashingProtection slashingProtection = mock(SlashingProtection.class);
+  private final Eth2SigningPipelineMetrics pipelineMetrics = mock(Eth2SigningPipelineMetrics.class);
+  private final Eth2SigningRootCalculator signingRootCalculator =
+      mock(Eth2SigningRootCalculator.class);
+  private final RoutingContext routingContext = mock(RoutingContext.class);
+  private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+  private final StringBuilder responseBody = new StringBuilder();
+  private ExecutorService signingExecutor;
+  private Eth2BatchSignHandler handler;
+
+  @BeforeEach
+  void setup() {
+    signingExecutor = Executors.newFixedThreadPool(4);
+    handler =
+        new Eth2BatchSignHandler(
+            signer,
+            new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS),
+            new SlashingProtectionMetrics(new NoOpMetricsSystem()),
+            pipelineMetrics,
+            Optional.of(slashingProtection),
+            objectMapper,
+            signingRootCalculator,
+            signingExecutor);
+
+    when(signer.isSignerAvailable(anyString()))
+        .thenAnswer(invocation -> !UNKNOWN_KEY.equals(invocation.getArgument(0)));
+    // earlier items take longer to sign, so results only come back in order if the handler waits
+    when(signer.sign(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              final String identifier = invocation.getArgument(0);
+              Thread.sleep(100L * (4 - Bytes.fromHexString(identifier).toInt()));
+              return Optional.of("signature-" + identifier);
+            });
+    when(signingRootCalculator.computeSigningRoot(any()))
+        .thenAnswer(
+            invocation -> ((Eth2SigningRequestBody) invocation.getArgument(0)).getSigningRoot());
+    when(routingContext.response()).thenReturn(response);
+    when(response.write(anyString()))
+        .thenAnswer(
+            invocation -> {
+              responseBody.append((String) invocation.getArgument(0));
+              return response;
+            });
+    when(response.end(anyString()))
+        .thenAnswer(
+            invocation -> {
+              responseBody.append((String) invocation.getArgument(0));
+              return null;
+            });
+  }
+
+  @AfterEach
+  void teardown() {
+    signingExecutor.shutdownNow();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void resultsAreReturnedInRequestOrderWithRefusedItemsNeverSigned() throws Exception {
+    // the first attestation is allowed and the second refused by slashing protection
+    when(slashingProtection.maySignBatch(anyList())).thenReturn(List.of(true, false));
+
+    handle(
+        item(KEY_1, attestation(1, 2)),
+        item(KEY_2, randaoReveal()),
+        item(KEY_3, attestation(1, 2)),
+        item(UNKNOWN_KEY, attestation(1, 2)));
+
+    assertThat(results())
+        .containsExactly(
+            signed(KEY_1),
+            signed(KEY_2),
+            new JsonObject().put("status", 412),
+            new JsonObject().put("status", 404));
+    final ArgumentCaptor<List<SlashingCheckRequest>> checks = ArgumentCaptor.forClass(List.class);
+    verify(slashingProtection).maySignBatch(checks.capture());
+    assertThat(checks.getValue())
+        .extracting(SlashingCheckRequest::getPublicKey)
+        .containsExactly(Bytes.fromHexString(KEY_1), Bytes.fromHexString(KEY_3));
+    verify(signer, never()).sign(eq(KEY_3), any());
+    verify(signer, never()).sign(eq(UNKNOWN_KEY), any());
+    // the randao reveal and the unknown key have no slashing check
+    verify(pipelineMetrics, times(2)).incrementStage(Stage.SLASHING_CHECK);
+    verify(pipelineMetrics, times(2)).incrementStage(Stage.SIGN);
+  }
+
+  @Test
+  void unregisteredValidatorFailsOnlyItsOwnItemWithInternalError() throws Exception {
+    when(slashingProtection.maySignBatch(anyList()))
+        .thenThrow(new IllegalStateException("Unregistered validator for " + KEY_3));
+    when(slashingProtection.maySign(any()))
+        .thenAnswer(
+            invocation -> {
+              final SlashingCheckRequest check = invocation.getArgument(0);
+              if (check.getPublicKey().equals(Bytes.fromHexString(KEY_3))) {
+                throw new IllegalStateException("Unregistered validator for " + KEY_3);
+              }
+              return !check.getPublicKey().equals(Bytes.fromHexString(KEY_2));
+            });
+
+    handle(
+        item(KEY_1, attestation(1, 2)),
+        item(KEY_2, attestation(1, 2)),
+        item(KEY_3, attestation(1, 2)));
+
+    assertThat(results())
+        .containsExactly(
+            signed(KEY_1),
+            new JsonObject().put("status", 412),
+            new JsonObject().put("status", Eth2SignForIdentifierHandler.INTERNAL_ERROR));
+    verify(slashingProtection, times(3)).maySign(any());
+    verify(signer, never()).sign(eq(KEY_2), any());
+    verify(signer, never()).sign(eq(KEY_3), any());
+  }
+
+  @Test
+  void malformedItemsAreRejectedWithoutFailingTheBatch() throws Exception {
+    when(slashingProtection.maySignBatch(anyList())).thenReturn(List.of(true));
+
+    handle(
+        new JsonObject().put("identifier", KEY_1),
+        item(KEY_2, attestation(1, 2)),
+        item("0xnot-hex", attestation(1, 2)),
+        new JsonObject().put("identifier", KEY_3).put("request", new JsonObject()));
+
+    assertThat(results())
+        .containsExactly(
+            new JsonObject().put("status", 400),
+            signed(KEY_2),
+            new JsonObject().put("status", 400),
+            new JsonObject().put("status", 400));
+    verify(signer, times(1)).sign(anyString(), any());
+    verify(pipelineMetrics, times(1)).incrementStage(Stage.SLASHING_CHECK);
+  }
+
+  @Test
+  void itemsAreSignedOnRequestThreadWhenSigningExecutorIsSaturated() throws Exception {
+    handler =
+        new Eth2BatchSignHandler(
+            signer,
+            new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS),
+            new SlashingProtectionMetrics(new NoOpMetricsSystem()),
+            pipelineMetrics,
+            Optional.of(slashingProtection),
+            objectMapper,
+            signingRootCalculator,
+            task -> {
+              throw new RejectedExecutionException("saturated");
+            });
+    when(slashingProtection.maySignBatch(anyList())).thenReturn(List.of(true, true));
+
+    handle(
+        item(KEY_1, attestation(1, 2)),
+        item(KEY_2, randaoReveal()),
+        item(KEY_3, attestation(2, 3)));
+
+    assertThat(results()).containsExactly(signed(KEY_1), signed(KEY_2), signed(KEY_3));
+  }
+
+  @Test
+  void requestWhichIsNotAnArrayIsRejected() {
+    handleBody(new JsonObject().put("identifier", KEY_1).encode());
+
+    verify(routingContext).fail(400);
+    verifyNoInteractions(slashingProtection);
+    verify(signer, never()).sign(anyString(), any());
+  }
+
+  @Test
+  void batchLargerThanMaximumSizeIsRejected() throws Exception {
+    final JsonObject[] items = new JsonObject[Eth2BatchSignHandler.MAX_BATCH_SIZE + 1];
+    for (int i = 0; i < items.length; i++) {
+      items[i] = item(KEY_1, attestation(i, i + 1));
+    }
+
+    handle(items);
+
+    verify(routingContext).fail(400);
+    verifyNoInteractions(slashingProtection);
+    verify(signer, never()).isSignerAvailable(anyString());
+  }
+
+  @Test
+  void emptyBatchReturnsEmptyArray() {
+    handleBody("[]");
+
+    assertThat(results()).isEmpty();
+    verify(routingContext, never()).fail(anyInt());
+    verifyNoInteractions(slashingProtection);
+  }
+
+  private void handle(final JsonObject... items) {
+    handleBody(new JsonArray(List.of(items)).encode());
+  }
+
+  private void handleBody(final String body) {
+    final RequestParameter bodyParameter = mock(RequestParameter.class);
+    when(bodyParameter.toString()).thenReturn(body);
+    final RequestParameters params = mock(RequestParameters.class);
+    when(params.body()).thenReturn(bodyParameter);
+    when(routingContext.get("parsedParameters")).thenReturn(params);
+
+    handler.handle(routingContext);
+  }
+
+  private List<JsonObject> results() {
+    final JsonArray results = new JsonArray(responseBody.toString());
+    final List<JsonObject> objects = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      objects.add(results.getJsonObject(i));
+    }
+    return objects;
+  }
+
+  private JsonObject item(final String identifier, final Eth2SigningRequestBody request)
+      throws Exception {
+    return new JsonObject()
+        .put("identifier", identifier)
+        .put("request", new JsonObject(objectMapper.writeValueAsString(request)));
+  }
+
+  private JsonObject signed(final String identifier) {
+    return new JsonObject().put("status", 200).put("signature", "signature-" + identifier);
+  }
+
+  private Eth2SigningRequestBody attestation(final int sourceEpoch, final int targetEpoch) {
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.ZERO,
+            Bytes32.ZERO,
+            new Checkpoint(UInt64.valueOf(sourceEpoch), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(targetEpoch), Bytes32.ZERO));
+    return new Eth2SigningRequestBody(
+        ArtifactType.ATTESTATION,
+        Bytes32.leftPad(Bytes.ofUnsignedInt(targetEpoch)),
+        FORK_INFO,
+        null,
+        attestationData,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+
+  private Eth2SigningRequestBody randaoReveal() {
+    return new Eth2SigningRequestBody(
+        ArtifactType.RANDAO_REVEAL,
+        Bytes32.ZERO,
+        FORK_INFO,
+        null,
+        null,
+        null,
+        null,
+        null,
+        new RandaoReveal(UInt64.valueOf(3)),
+        null,
+        null,
+        null,
+        null);
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.web3signer.core.util.DepositSigningRootUtil.compute_domain;
+
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.spec.constants.Domain;
+import tech.pegasys.teku.ssz.type.Bytes4;
+
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class Eth2DomainCacheTest {
+
+  private final Eth2DomainCache domainCache = new Eth2DomainCache();
+
+  @Test
+  void equalForkInfoIsConvertedOnce() {
+    final tech.pegasys.teku.spec.datastructures.state.ForkInfo first =
+        domainCache.internalForkInfo(forkInfo(Bytes32.ZERO));
+    final tech.pegasys.teku.spec.datastructures.state.ForkInfo second =
+        domainCache.internalForkInfo(forkInfo(Bytes32.ZERO));
+
+    assertThat(second).isSameAs(first);
+    assertThat(first).isEqualTo(forkInfo(Bytes32.ZERO).asInternalForkInfo());
+  }
+
+  @Test
+  void differentGenesisValidatorsRootIsConvertedSeparately() {
+    final Bytes32 genesisValidatorsRoot = Bytes32.random();
+    final tech.pegasys.teku.spec.datastructures.state.ForkInfo internalForkInfo =
+        domainCache.internalForkInfo(forkInfo(genesisValidatorsRoot));
+
+    assertThat(domainCache.internalForkInfo(forkInfo(Bytes32.ZERO))).isNotSameAs(internalForkInfo);
+    assertThat(internalForkInfo.getGenesisValidatorsRoot()).isEqualTo(genesisValidatorsRoot);
+  }
+
+  @Test
+  void depositDomainMatchesComputedDomain() {
+    final Bytes4 genesisForkVersion = Bytes4.fromHexString("0x00000001");
+
+    assertThat(domainCache.depositDomain(genesisForkVersion))
+        .isEqualTo(compute_domain(Domain.DEPOSIT, genesisForkVersion, Bytes32.ZERO));
+  }
+
+  private ForkInfo forkInfo(final Bytes32 genesisValidatorsRoot) {
+    return new ForkInfo(
+        new Fork(
+            Bytes4.fromHexString("0x00000001"), Bytes4.fromHexString("0x00000002"), UInt64.ONE),
+        genesisValidatorsRoot);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.type.Bytes4;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.Eth2SigningPipelineMetrics;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.signing.KeyType;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.ParsedHeaderValues;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameter;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class Eth2SignForIdentifierHandlerTest {
+
+  private static final ForkInfo FORK_INFO =
+      new ForkInfo(
+          new Fork(
+              Bytes4.fromHexString("0x00000001"), Bytes4.fromHexString("0x00000001"), UInt64.ONE),
+          Bytes32.fromHexString(
+              "0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673"));
+  private static final String KEY = "0x01";
+  private static final Bytes32 SIGNING_ROOT = Bytes32.fromHexString("0x02");
+
+  private final ObjectMapper objectMapper =
+      new ObjectMapper()
+          .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .registerModule(new SigningJsonModule());
+  private final SignerForIdentifier<?> signer = mock(SignerForIdentifier.class);
+  private final SlashingProtection slashingProtection = mock(SlashingProtection.class);
+  private final Eth2SigningRootCalculator signingRootCalculator =
+      mock(Eth2SigningRootCalculator.class);
+  private final RoutingContext routingContext = mock(RoutingContext.class);
+  private final HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+  private Eth2SignForIdentifierHandler handler;
+
+  @BeforeEach
+  void setup() {
+    handler =
+        new Eth2SignForIdentifierHandler(
+            signer,
+            new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS),
+            new SlashingProtectionMetrics(new NoOpMetricsSystem()),
+            mock(Eth2SigningPipelineMetrics.class),
+            Optional.of(slashingProtection),
+            objectMapper,
+            signingRootCalculator);
+
+    when(signer.isSignerAvailable(KEY)).thenReturn(true);
+    when(signer.sign(anyString(), any())).thenReturn(Optional.of("signature"));
+    when(signingRootCalculator.computeSigningRoot(any())).thenReturn(SIGNING_ROOT);
+    final ParsedHeaderValues parsedHeaders = mock(ParsedHeaderValues.class);
+    when(parsedHeaders.accept()).thenReturn(Collections.emptyList());
+    when(routingContext.parsedHeaders()).thenReturn(parsedHeaders);
+    when(routingContext.response()).thenReturn(response);
+  }
+
+  @Test
+  void attestationIsSignedOnlyAfterSlashingProtectionPermitsIt() throws Exception {
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any(), any()))
+        .thenReturn(true);
+
+    handle(KEY, attestation(1, 2));
+
+    final InOrder inOrder = inOrder(slashingProtection, signer);
+    inOrder
+        .verify(slashingProtection)
+        .maySignAttestation(
+            Bytes.fromHexString(KEY),
+            SIGNING_ROOT,
+            org.apache.tuweni.units.bigints.UInt64.valueOf(1),
+            org.apache.tuweni.units.bigints.UInt64.valueOf(2),
+            FORK_INFO.getGenesisValidatorsRoot());
+    inOrder.verify(signer).sign(KEY, SIGNING_ROOT);
+    verify(response).end("signature");
+    verify(routingContext, never()).fail(Eth2SignForIdentifierHandler.SLASHING_PROTECTION_ENFORCED);
+  }
+
+  @Test
+  void signerIsNeverInvokedWhenSlashingProtectionRefuses() throws Exception {
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any(), any()))
+        .thenReturn(false);
+
+    handle(KEY, attestation(1, 2));
+
+    verify(routingContext).fail(Eth2SignForIdentifierHandler.SLASHING_PROTECTION_ENFORCED);
+    verify(signer, never()).sign(anyString(), any());
+    verifyNoInteractions(response);
+  }
+
+  @Test
+  void unknownIdentifierIsNotFoundBeforeAnySlashingProtectionWrite() throws Exception {
+    handle("0x03", attestation(1, 2));
+
+    verify(routingContext).fail(Eth2SignForIdentifierHandler.NOT_FOUND);
+    verifyNoInteractions(slashingProtection);
+    verify(signer, never()).sign(anyString(), any());
+  }
+
+  @Test
+  void unregisteredValidatorFailsWithInternalError() throws Exception {
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any(), any()))
+        .thenThrow(new IllegalStateException("Unregistered validator for " + KEY));
+
+    handle(KEY, attestation(1, 2));
+
+    verify(routingContext).fail(Eth2SignForIdentifierHandler.INTERNAL_ERROR);
+    verify(signer, never()).sign(anyString(), any());
+    verifyNoInteractions(response);
+  }
+
+  private void handle(final String identifier, final Eth2SigningRequestBody request)
+      throws Exception {
+    final RequestParameter identifierParameter = mock(RequestParameter.class);
+    when(identifierParameter.toString()).thenReturn(identifier);
+    final RequestParameter bodyParameter = mock(RequestParameter.class);
+    when(bodyParameter.toString()).thenReturn(objectMapper.writeValueAsString(request));
+    final RequestParameters params = mock(RequestParameters.class);
+    when(params.pathParameter("identifier")).thenReturn(identifierParameter);
+    when(params.body()).thenReturn(bodyParameter);
+    when(routingContext.get("parsedParameters")).thenReturn(params);
+
+    handler.handle(routingContext);
+  }
+
+  private Eth2SigningRequestBody attestation(final int sourceEpoch, final int targetEpoch) {
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.ZERO,
+            Bytes32.ZERO,
+            new Checkpoint(UInt64.valueOf(sourceEpoch), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(targetEpoch), Bytes32.ZERO));
+    return new Eth2SigningRequestBody(
+        ArtifactType.ATTESTATION,
+        SIGNING_ROOT,
+        FORK_INFO,
+        null,
+        attestationData,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.type.Bytes4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+
+class SigningRootCacheTest {
+
+  private static final ForkInfo FORK_INFO =
+      new ForkInfo(
+          new Fork(
+              Bytes4.fromHexString("0x00000001"), Bytes4.fromHexString("0x00000001"), UInt64.ONE),
+          Bytes32.fromHexString(
+              "0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673"));
+
+  private final SigningRootCache cache = new SigningRootCache(new NoOpMetricsSystem(), 100, 2);
+  private final AtomicInteger computations = new AtomicInteger();
+
+  @Test
+  void identicalAttestationDataIsOnlyComputedOnce() {
+    final Bytes first = lookup(attestation(10, Bytes32.ZERO));
+    final Bytes second = lookup(attestation(10, Bytes32.ZERO));
+
+    assertThat(second).isEqualTo(first);
+    assertThat(computations).hasValue(1);
+  }
+
+  @Test
+  void differentAttestationDataIsComputedSeparately() {
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(10, Bytes32.random()));
+
+    assertThat(computations).hasValue(2);
+  }
+
+  @Test
+  void differentForkInfoIsComputedSeparately() {
+    final AttestationData attestation = attestation(10, Bytes32.ZERO);
+    final ForkInfo otherForkInfo = new ForkInfo(FORK_INFO.getFork(), Bytes32.random());
+    cache.getOrCompute(SigningRootCache.attestationKey(attestation, FORK_INFO), this::compute);
+    cache.getOrCompute(SigningRootCache.attestationKey(attestation, otherForkInfo), this::compute);
+
+    assertThat(computations).hasValue(2);
+  }
+
+  @Test
+  void entriesForOldSlotsAreEvictedWhenSlotAdvances() {
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(12, Bytes32.ZERO));
+    lookup(attestation(13, Bytes32.ZERO));
+    lookup(attestation(10, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(4);
+  }
+
+  @Test
+  void entriesWithinRetainedSlotsAreKept() {
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(12, Bytes32.ZERO));
+    lookup(attestation(10, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(2);
+  }
+
+  @Test
+  void farAheadSlotNeitherEvictsEntriesNorStopsCaching() {
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(UInt64.MAX_VALUE, Bytes32.ZERO));
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(11, Bytes32.ZERO));
+    lookup(attestation(11, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(3);
+  }
+
+  @Test
+  void farAheadSlotIsNotCached() {
+    lookup(attestation(10, Bytes32.ZERO));
+    lookup(attestation(UInt64.MAX_VALUE, Bytes32.ZERO));
+    lookup(attestation(UInt64.MAX_VALUE, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(3);
+  }
+
+  @Test
+  void windowMovesOnceLookupsOutsideItAgree() {
+    lookup(attestation(10, Bytes32.ZERO));
+    for (int i = 0; i < SigningRootCache.LOOKUPS_TO_MOVE_WINDOW; i++) {
+      lookup(attestation(100, Bytes32.fromHexStringLenient(Integer.toHexString(i))));
+    }
+    final int lastRoot = SigningRootCache.LOOKUPS_TO_MOVE_WINDOW - 1;
+    lookup(attestation(100, Bytes32.fromHexStringLenient(Integer.toHexString(lastRoot))));
+    lookup(attestation(10, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(SigningRootCache.LOOKUPS_TO_MOVE_WINDOW + 2);
+  }
+
+  @Test
+  void windowRecoversFromFarAheadFirstSlot() {
+    lookup(attestation(UInt64.MAX_VALUE, Bytes32.ZERO));
+    for (int i = 0; i < SigningRootCache.LOOKUPS_TO_MOVE_WINDOW; i++) {
+      lookup(attestation(10 + i, Bytes32.ZERO));
+    }
+    lookup(attestation(10 + SigningRootCache.LOOKUPS_TO_MOVE_WINDOW - 1, Bytes32.ZERO));
+
+    assertThat(computations).hasValue(SigningRootCache.LOOKUPS_TO_MOVE_WINDOW + 1);
+  }
+
+  private Bytes lookup(final AttestationData attestation) {
+    return cache.getOrCompute(
+        SigningRootCache.attestationKey(attestation, FORK_INFO), this::compute);
+  }
+
+  private Bytes compute() {
+    computations.incrementAndGet();
+    return Bytes32.random();
+  }
+
+  private AttestationData attestation(final long slot, final Bytes32 targetRoot) {
+    return attestation(UInt64.valueOf(slot), targetRoot);
+  }
+
+  private AttestationData attestation(final UInt64 slot, final Bytes32 targetRoot) {
+    return new AttestationData(
+        slot,
+        UInt64.ZERO,
+        Bytes32.ZERO,
+        new Checkpoint(UInt64.ZERO, Bytes32.ZERO),
+        new Checkpoint(UInt64.ONE, targetRoot));
+  }
+}
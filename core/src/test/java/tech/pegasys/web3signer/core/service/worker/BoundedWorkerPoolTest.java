@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.worker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.core.metrics.BoundedWorkerPoolMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledGauge;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class BoundedWorkerPoolTest {
+
+  private final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+  private final Counter rejectedCounter = mock(Counter.class);
+  private final OperationTimer queueWaitTimer = mock(OperationTimer.class);
+  private final LabelledGauge queueDepthGauge = mock(LabelledGauge.class);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private BoundedWorkerPoolMetrics workerPoolMetrics;
+  private BoundedWorkerPool workerPool;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    final LabelledMetric<Counter> submittedCounters = mock(LabelledMetric.class);
+    when(submittedCounters.labels(any())).thenReturn(mock(Counter.class));
+    final LabelledMetric<Counter> rejectedCounters = mock(LabelledMetric.class);
+    when(rejectedCounters.labels(any())).thenReturn(rejectedCounter);
+    final LabelledMetric<OperationTimer> timers = mock(LabelledMetric.class);
+    when(timers.labels(any())).thenReturn(queueWaitTimer);
+    when(metricsSystem.createLabelledCounter(
+            any(), eq("worker_pool_submitted_total"), any(), any()))
+        .thenReturn(submittedCounters);
+    when(metricsSystem.createLabelledCounter(any(), eq("worker_pool_rejected_total"), any(), any()))
+        .thenReturn(rejectedCounters);
+    when(metricsSystem.createLabelledTimer(any(), any(), any(), any())).thenReturn(timers);
+    when(metricsSystem.createLabelledGauge(any(), eq("worker_pool_queue_depth"), any(), any()))
+        .thenReturn(queueDepthGauge);
+    when(metricsSystem.createLabelledGauge(any(), eq("worker_pool_active_threads"), any(), any()))
+        .thenReturn(mock(LabelledGauge.class));
+    when(queueWaitTimer.startTimer()).thenAnswer(invocation -> mock(TimingContext.class));
+
+    workerPoolMetrics = new BoundedWorkerPoolMetrics(metricsSystem);
+    workerPool = new BoundedWorkerPool("test", 1, 1, workerPoolMetrics);
+  }
+
+  @AfterEach
+  void teardown() {
+    release.countDown();
+    workerPool.shutdown();
+  }
+
+  @Test
+  void workIsRejectedOnceThreadsAndQueueAreFull() {
+    final TimingContext runningContext = mock(TimingContext.class);
+    final TimingContext queuedContext = mock(TimingContext.class);
+    final TimingContext rejectedContext = mock(TimingContext.class);
+    when(queueWaitTimer.startTimer()).thenReturn(runningContext, queuedContext, rejectedContext);
+
+    workerPool.execute(this::awaitRelease);
+    verify(runningContext, timeout(1000)).stopTimer();
+    workerPool.execute(this::awaitRelease);
+
+    assertThatThrownBy(() -> workerPool.execute(() -> {}))
+        .isInstanceOf(RejectedExecutionException.class)
+        .hasMessageContaining("Worker pool test is saturated");
+    verify(rejectedCounter).inc();
+    // rejected work is not left timing as if it were still queued
+    verify(rejectedContext).stopTimer();
+    verify(queuedContext, never()).stopTimer();
+  }
+
+  @Test
+  void queueDepthIsReportedWithPoolNameLabel() {
+    final ArgumentCaptor<DoubleSupplier> queueDepth = ArgumentCaptor.forClass(DoubleSupplier.class);
+    verify(queueDepthGauge).labels(queueDepth.capture(), eq("test"));
+
+    workerPool.execute(this::awaitRelease);
+    workerPool.execute(this::awaitRelease);
+
+    assertThat(queueDepth.getValue().getAsDouble()).isEqualTo(1.0);
+  }
+
+  @Test
+  void poolsSharingMetricsAddTheirLabelsToTheSameGauges() {
+    final BoundedWorkerPool otherPool = new BoundedWorkerPool("other", 1, 1, workerPoolMetrics);
+    try {
+      verify(metricsSystem, times(1))
+          .createLabelledGauge(any(), eq("worker_pool_queue_depth"), any(), any());
+      verify(queueDepthGauge).labels(any(), eq("test"));
+      verify(queueDepthGauge).labels(any(), eq("other"));
+    } finally {
+      otherPool.shutdown();
+    }
+  }
+
+  @Test
+  void shutdownPoolRejectsWork() {
+    workerPool.shutdown();
+
+    assertThatThrownBy(() -> workerPool.execute(() -> {}))
+        .isInstanceOf(RejectedExecutionException.class);
+  }
+
+  private void awaitRelease() {
+    try {
+      release.await(10, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.worker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.core.metrics.GroupCommitMetrics;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class GroupCommitSlashingProtectionTest {
+
+  private static final Bytes32 GVR = Bytes32.leftPad(Bytes.of(1));
+
+  private final SlashingProtection delegate = mock(SlashingProtection.class);
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setup() {
+    executor = Executors.newCachedThreadPool();
+    // permits blocks and rejects attestations so results can be matched to their requests
+    when(delegate.maySignBatch(anyList()))
+        .thenAnswer(
+            invocation -> {
+              final List<SlashingCheckRequest> requests = invocation.getArgument(0);
+              return requests.stream()
+                  .map(r -> r.getType() == SlashingCheckRequest.Type.BLOCK)
+                  .collect(Collectors.toList());
+            });
+  }
+
+  @AfterEach
+  void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void requestIsCommittedWithoutWaitingWhenNoOtherRequestIsActive() {
+    final GroupCommitSlashingProtection slashingProtection =
+        groupCommit(TimeUnit.MINUTES.toMillis(1), 100);
+
+    assertTimeoutPreemptively(
+        Duration.ofSeconds(10),
+        () -> {
+          assertThat(slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.ONE, GVR))
+              .isTrue();
+          assertThat(
+                  slashingProtection.maySignAttestation(
+                      Bytes.of(1), Bytes.of(2), UInt64.ZERO, UInt64.ONE, GVR))
+              .isFalse();
+        });
+    verify(delegate, times(2)).maySignBatch(anyList());
+  }
+
+  @Test
+  void requestIsCommittedWhenWindowElapsesWhileAnotherBatchIsCommitting() throws Exception {
+    final CountDownLatch releaseFirstBatch = blockFirstBatch();
+    final GroupCommitSlashingProtection slashingProtection = groupCommit(10, 100);
+
+    final Future<Boolean> first = submitBlock(slashingProtection, 1);
+    verify(delegate, timeout(10_000)).maySignBatch(anyList());
+    final Future<Boolean> second = submitBlock(slashingProtection, 2);
+
+    assertThat(second.get(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(first).isNotDone();
+    releaseFirstBatch.countDown();
+    assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void concurrentRequestsAreCommittedInOneBatchOnceFull() throws Exception {
+    final CountDownLatch releaseFirstBatch = blockFirstBatch();
+    final GroupCommitSlashingProtection slashingProtection =
+        groupCommit(TimeUnit.MINUTES.toMillis(1), 2);
+
+    final Future<Boolean> first = submit(slashingProtection, 0);
+    verify(delegate, timeout(10_000)).maySignBatch(anyList());
+    final List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 1; i < 3; i++) {
+      results.add(submit(slashingProtection, i));
+    }
+
+    // the full batch is committed while the first is still committing and the window is open
+    assertThat(results.get(0).get(10, TimeUnit.SECONDS)).isFalse();
+    assertThat(results.get(1).get(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(first).isNotDone();
+    releaseFirstBatch.countDown();
+    assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+    final ArgumentCaptor<List<SlashingCheckRequest>> batchCaptor =
+        ArgumentCaptor.forClass(List.class);
+    verify(delegate, times(2)).maySignBatch(batchCaptor.capture());
+    assertThat(batchCaptor.getAllValues().get(1)).hasSize(2);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void requestsArrivingDuringACommitAreCommittedTogetherOnceItCompletes() throws Exception {
+    final CountDownLatch releaseFirstBatch = blockFirstBatch();
+    final GroupCommitSlashingProtection slashingProtection =
+        groupCommit(TimeUnit.MINUTES.toMillis(1), 100);
+
+    final Future<Boolean> first = submit(slashingProtection, 0);
+    verify(delegate, timeout(10_000)).maySignBatch(anyList());
+    final List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 1; i < 4; i++) {
+      results.add(submit(slashingProtection, i));
+    }
+    while (slashingProtection.queuedRequests() < 3) {
+      Thread.sleep(10);
+    }
+    releaseFirstBatch.countDown();
+
+    assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 1; i < 4; i++) {
+      assertThat(results.get(i - 1).get(10, TimeUnit.SECONDS)).isEqualTo(i % 2 == 0);
+    }
+    final ArgumentCaptor<List<SlashingCheckRequest>> batchCaptor =
+        ArgumentCaptor.forClass(List.class);
+    verify(delegate, times(2)).maySignBatch(batchCaptor.capture());
+    assertThat(batchCaptor.getAllValues().get(1)).hasSize(3);
+  }
+
+  @Test
+  void requestsAreCheckedIndividuallyWhenBatchFails() {
+    doThrow(new IllegalStateException("database failure")).when(delegate).maySignBatch(any());
+    when(delegate.maySign(any())).thenCallRealMethod();
+    when(delegate.maySignBlock(any(), any(), any(), any())).thenReturn(true);
+    when(delegate.maySignAttestation(any(), any(), any(), any(), any())).thenReturn(false);
+    final GroupCommitSlashingProtection slashingProtection = groupCommit(10, 100);
+
+    assertThat(slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.ONE, GVR))
+        .isTrue();
+    assertThat(
+            slashingProtection.maySignAttestation(
+                Bytes.of(1), Bytes.of(2), UInt64.ZERO, UInt64.ONE, GVR))
+        .isFalse();
+    verify(delegate).maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.ONE, GVR);
+    verify(delegate).maySignAttestation(Bytes.of(1), Bytes.of(2), UInt64.ZERO, UInt64.ONE, GVR);
+  }
+
+  @Test
+  void failureOfIndividualCheckIsReportedToRequest() {
+    doThrow(new IllegalStateException("database failure")).when(delegate).maySignBatch(any());
+    when(delegate.maySign(any())).thenCallRealMethod();
+    doThrow(new IllegalStateException("unregistered validator"))
+        .when(delegate)
+        .maySignBlock(any(), any(), any(), any());
+    final GroupCommitSlashingProtection slashingProtection = groupCommit(10, 100);
+
+    assertThatThrownBy(
+            () -> slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.ONE, GVR))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("unregistered validator");
+  }
+
+  @Test
+  void batchRequestsAreDelegatedDirectly() {
+    final GroupCommitSlashingProtection slashingProtection =
+        groupCommit(TimeUnit.MINUTES.toMillis(1), 100);
+    final List<SlashingCheckRequest> requests =
+        List.of(SlashingCheckRequest.block(Bytes.of(1), Bytes.of(2), UInt64.ONE, GVR));
+
+    assertThat(slashingProtection.maySignBatch(requests)).containsExactly(true);
+    verify(delegate).maySignBatch(requests);
+  }
+
+  private CountDownLatch blockFirstBatch() {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean first = new AtomicBoolean(true);
+    when(delegate.maySignBatch(anyList()))
+        .thenAnswer(
+            invocation -> {
+              if (first.getAndSet(false)) {
+                release.await(10, TimeUnit.SECONDS);
+              }
+              final List<SlashingCheckRequest> requests = invocation.getArgument(0);
+              return requests.stream()
+                  .map(r -> r.getType() == SlashingCheckRequest.Type.BLOCK)
+                  .collect(Collectors.toList());
+            });
+    return release;
+  }
+
+  // even requests are blocks, which are permitted, and odd requests are attestations, which are not
+  private Future<Boolean> submit(
+      final GroupCommitSlashingProtection slashingProtection, final int request) {
+    return request % 2 == 0
+        ? submitBlock(slashingProtection, request)
+        : executor.submit(
+            () ->
+                slashingProtection.maySignAttestation(
+                    Bytes.of(request), Bytes.of(2), UInt64.ZERO, UInt64.ONE, GVR));
+  }
+
+  private Future<Boolean> submitBlock(
+      final GroupCommitSlashingProtection slashingProtection, final int request) {
+    return executor.submit(
+        () -> slashingProtection.maySignBlock(Bytes.of(request), Bytes.of(2), UInt64.ONE, GVR));
+  }
+
+  private GroupCommitSlashingProtection groupCommit(
+      final long windowMillis, final int maxBatchSize) {
+    return new GroupCommitSlashingProtection(
+        delegate, windowMillis, maxBatchSize, new GroupCommitMetrics(new NoOpMetricsSystem()));
+  }
+}
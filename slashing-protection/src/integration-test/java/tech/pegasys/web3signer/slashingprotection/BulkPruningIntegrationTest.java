@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class BulkPruningIntegrationTest extends IntegrationTestBase {
+
+  @ParameterizedTest
+  @CsvSource({"1, 1", "2, 1", "3, 2", "100, 4"})
+  void prunesDataForAllRegisteredValidatorsInBatches(final int batchSize, final int parallelism) {
+    final SlashingProtection slashingProtection =
+        createSlashingProtection(3, 1, batchSize, parallelism);
+    for (int validatorId = 1; validatorId <= 3; validatorId++) {
+      insertValidatorAndCreateSlashingData(slashingProtection, 10, 10, validatorId);
+    }
+
+    slashingProtection.prune();
+
+    for (int validatorId = 1; validatorId <= 3; validatorId++) {
+      assertThat(blockSlots(validatorId)).containsExactlyElementsOf(range(7, 10));
+      assertThat(attestationTargetEpochs(validatorId)).containsExactlyElementsOf(range(7, 10));
+      assertThat(getWatermark(validatorId))
+          .isEqualToComparingFieldByField(
+              new SigningWatermark(
+                  validatorId, UInt64.valueOf(7), UInt64.valueOf(7), UInt64.valueOf(7)));
+    }
+  }
+
+  @Test
+  void prunesEachValidatorRelativeToItsOwnHighestSignedData() {
+    final SlashingProtection slashingProtection = createSlashingProtection(3, 2, 2, 2);
+    insertValidatorAndCreateSlashingData(slashingProtection, 20, 20, 1);
+    insertValidatorAndCreateSlashingData(slashingProtection, 4, 4, 2);
+
+    slashingProtection.prune();
+
+    assertThat(blockSlots(1)).containsExactlyElementsOf(range(14, 20));
+    assertThat(attestationTargetEpochs(1)).containsExactlyElementsOf(range(17, 20));
+    assertThat(blockSlots(2)).containsExactlyElementsOf(range(0, 4));
+    assertThat(attestationTargetEpochs(2)).containsExactlyElementsOf(range(1, 4));
+  }
+
+  @Test
+  void dataUnchangedForNonRegisteredValidators() {
+    final SlashingProtection slashingProtection = createSlashingProtection(3, 1, 2, 2);
+    insertValidatorAndCreateSlashingData(slashingProtection, 10, 10, 1);
+    jdbi.withHandle(h -> validators.registerValidators(h, List.of(Bytes.of(2))));
+    createSlashingData(10, 10, 2);
+    insertValidatorAndCreateSlashingData(slashingProtection, 10, 10, 3);
+
+    slashingProtection.prune();
+
+    assertThat(blockSlots(1)).containsExactlyElementsOf(range(7, 10));
+    assertThat(blockSlots(2)).containsExactlyElementsOf(range(0, 10));
+    assertThat(attestationTargetEpochs(2)).containsExactlyElementsOf(range(0, 10));
+    assertThat(getWatermark(2))
+        .isEqualToComparingFieldByField(
+            new SigningWatermark(2, UInt64.ZERO, UInt64.ZERO, UInt64.ZERO));
+    assertThat(blockSlots(3)).containsExactlyElementsOf(range(7, 10));
+  }
+
+  private SlashingProtection createSlashingProtection(
+      final int epochsToKeep,
+      final int slotsPerEpoch,
+      final int batchSize,
+      final int parallelism) {
+    return SlashingProtectionFactory.createSlashingProtection(
+        new TestSlashingProtectionParameters(
+            databaseUrl, USERNAME, PASSWORD, epochsToKeep, slotsPerEpoch) {
+          @Override
+          public boolean isPruningBulkEnabled() {
+            return true;
+          }
+
+          @Override
+          public int getPruningBatchSize() {
+            return batchSize;
+          }
+
+          @Override
+          public int getPruningParallelism() {
+            return parallelism;
+          }
+        });
+  }
+
+  private List<UInt64> blockSlots(final int validatorId) {
+    return fetchBlocks(validatorId).stream()
+        .map(SignedBlock::getSlot)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private List<UInt64> attestationTargetEpochs(final int validatorId) {
+    return fetchAttestations(validatorId).stream()
+        .map(SignedAttestation::getTargetEpoch)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static List<UInt64> range(final long from, final long to) {
+    return LongStream.range(from, to).mapToObj(UInt64::valueOf).collect(Collectors.toList());
+  }
+}
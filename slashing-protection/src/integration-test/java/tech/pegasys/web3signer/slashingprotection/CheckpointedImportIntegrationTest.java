@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.web3signer.slashingprotection.dao.ImportJournalDao;
+import tech.pegasys.web3signer.slashingprotection.dao.ImportJournalEntry;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dsl.InterchangeV5Format;
+import dsl.SignedArtifacts;
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CheckpointedImportIntegrationTest extends IntegrationTestBase {
+
+  private static final int CHECKPOINT_SIZE = 2;
+  private static final String INVALID_PUBLIC_KEY = "0xzz";
+
+  private final ImportJournalDao importJournalDao = new ImportJournalDao();
+
+  @BeforeEach
+  void enableCheckpointedImport() {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+              @Override
+              public int getImportCheckpointSize() {
+                return CHECKPOINT_SIZE;
+              }
+            });
+  }
+
+  @Test
+  void importsAllValidatorsAndCompletesJournal() throws JsonProcessingException {
+    slashingProtection.importData(interchangeData(publicKeys(1, 2, 3, 4, 5)));
+
+    assertThat(findAllBlocks()).hasSize(5);
+    assertThat(findInProgressImport()).isEmpty();
+    assertThat(completedImportCount()).isEqualTo(1);
+  }
+
+  @Test
+  void failedImportKeepsCommittedCheckpoints() throws JsonProcessingException {
+    final List<String> publicKeys = publicKeys(1, 2, 3);
+    publicKeys.add(INVALID_PUBLIC_KEY);
+
+    assertThatThrownBy(() -> slashingProtection.importData(interchangeData(publicKeys)))
+        .isInstanceOf(RuntimeException.class);
+
+    // the third validator shares its checkpoint with the failing validator so is rolled back
+    assertThat(validatorCount()).isEqualTo(2);
+    assertThat(findAllBlocks()).hasSize(2);
+    assertThat(findInProgressImport())
+        .hasValueSatisfying(entry -> assertThat(entry.getValidatorsImported()).isEqualTo(2));
+  }
+
+  @Test
+  void interruptedImportResumesAfterLastCheckpoint() throws JsonProcessingException {
+    final List<String> interruptedKeys = publicKeys(1, 2, 3);
+    interruptedKeys.add(INVALID_PUBLIC_KEY);
+    assertThatThrownBy(() -> slashingProtection.importData(interchangeData(interruptedKeys)))
+        .isInstanceOf(RuntimeException.class);
+
+    // removing a committed block shows that committed validators are skipped on resume
+    jdbi.useHandle(h -> h.execute("DELETE FROM signed_blocks WHERE validator_id = 1"));
+    slashingProtection.importData(interchangeData(publicKeys(1, 2, 3, 4, 5)));
+
+    assertThat(validatorCount()).isEqualTo(5);
+    assertThat(fetchBlocks(1)).isEmpty();
+    assertThat(findAllBlocks()).hasSize(4);
+    assertThat(findInProgressImport()).isEmpty();
+    assertThat(completedImportCount()).isEqualTo(1);
+  }
+
+  @Test
+  void differentDocumentDiscardsInterruptedImport() throws JsonProcessingException {
+    final List<String> interruptedKeys = publicKeys(1, 2, 3);
+    interruptedKeys.add(INVALID_PUBLIC_KEY);
+    assertThatThrownBy(() -> slashingProtection.importData(interchangeData(interruptedKeys)))
+        .isInstanceOf(RuntimeException.class);
+
+    final ByteArrayInputStream differentDocument = interchangeData(publicKeys(6, 7, 8));
+    assertThatThrownBy(() -> slashingProtection.importData(differentDocument))
+        .isInstanceOf(RuntimeException.class)
+        .hasMessage("Failed to import database content");
+    assertThat(validatorCount()).isEqualTo(2);
+    assertThat(findInProgressImport()).isEmpty();
+
+    slashingProtection.importData(interchangeData(publicKeys(6, 7, 8)));
+    assertThat(findAllBlocks()).hasSize(5);
+    assertThat(completedImportCount()).isEqualTo(1);
+  }
+
+  private List<String> publicKeys(final int... ids) {
+    return IntStream.of(ids)
+        .mapToObj(id -> Bytes.of(id).toHexString())
+        .collect(Collectors.toList());
+  }
+
+  private ByteArrayInputStream interchangeData(final List<String> publicKeys)
+      throws JsonProcessingException {
+    final List<SignedArtifacts> signedArtifacts =
+        publicKeys.stream()
+            .map(
+                publicKey ->
+                    new SignedArtifacts(
+                        publicKey,
+                        List.of(new SignedBlock(UInt64.valueOf(10), Bytes.of(1))),
+                        emptyList()))
+            .collect(Collectors.toList());
+    final InterchangeV5Format interchangeData =
+        new InterchangeV5Format(new Metadata("5", GVR), signedArtifacts);
+    return new ByteArrayInputStream(mapper.writeValueAsBytes(interchangeData));
+  }
+
+  private long validatorCount() {
+    return jdbi.withHandle(h -> validators.findAllValidators(h).count());
+  }
+
+  private Optional<ImportJournalEntry> findInProgressImport() {
+    return jdbi.withHandle(importJournalDao::findInProgress);
+  }
+
+  private int completedImportCount() {
+    return jdbi.withHandle(
+        h ->
+            h.createQuery("SELECT count(*) FROM import_journal WHERE completed")
+                .mapTo(Integer.class)
+                .one());
+  }
+}
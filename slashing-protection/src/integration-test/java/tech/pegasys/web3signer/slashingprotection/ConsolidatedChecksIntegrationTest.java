@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckVerdict;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Verifies the consolidated database checks make the same decisions as the individual checks of
+ * the block and attestation validators, which act as the reference implementation.
+ */
+public class ConsolidatedChecksIntegrationTest extends IntegrationTestBase {
+
+  private static final Bytes REFERENCE_KEY = Bytes.of(1);
+  private static final Bytes CONSOLIDATED_KEY = Bytes.of(2);
+  private static final List<Bytes> SIGNING_ROOTS = List.of(Bytes.of(10), Bytes.of(11));
+
+  @ParameterizedTest
+  @ValueSource(longs = {1, 2, 3, 4})
+  public void consolidatedChecksMatchValidatorChecks(final long seed) {
+    final SlashingProtection consolidated = createConsolidatedSlashingProtection();
+    slashingProtection.registerValidators(List.of(REFERENCE_KEY));
+    consolidated.registerValidators(List.of(CONSOLIDATED_KEY));
+    final int referenceId = validatorId(REFERENCE_KEY);
+    final int consolidatedId = validatorId(CONSOLIDATED_KEY);
+
+    // entries without a signing root conflict with any request for the same slot or epoch
+    for (final int validatorId : List.of(referenceId, consolidatedId)) {
+      jdbi.useHandle(
+          h -> {
+            signedBlocksDao.insertBlockProposal(
+                h, new SignedBlock(validatorId, UInt64.valueOf(7), null));
+            signedAttestationsDao.insertAttestation(
+                h, new SignedAttestation(validatorId, UInt64.valueOf(6), UInt64.valueOf(7), null));
+          });
+    }
+
+    final Random random = new Random(seed);
+    for (int i = 0; i < 400; i++) {
+      final Bytes signingRoot = SIGNING_ROOTS.get(random.nextInt(SIGNING_ROOTS.size()));
+      final int request = random.nextInt(20);
+      if (request == 0) {
+        final UInt64 slot = UInt64.valueOf(random.nextInt(20));
+        final UInt64 sourceEpoch = UInt64.valueOf(random.nextInt(20));
+        final UInt64 targetEpoch = sourceEpoch.add(random.nextInt(5));
+        for (final int validatorId : List.of(referenceId, consolidatedId)) {
+          jdbi.useHandle(
+              h -> {
+                lowWatermarkDao.updateSlotWatermarkFor(h, validatorId, slot);
+                lowWatermarkDao.updateEpochWatermarksFor(h, validatorId, sourceEpoch, targetEpoch);
+              });
+        }
+      } else if (request < 8) {
+        final UInt64 slot = UInt64.valueOf(random.nextInt(40));
+        assertThat(consolidated.maySignBlock(CONSOLIDATED_KEY, signingRoot, slot, GVR))
+            .describedAs("Block at slot %s with signing root %s", slot, signingRoot)
+            .isEqualTo(slashingProtection.maySignBlock(REFERENCE_KEY, signingRoot, slot, GVR));
+      } else {
+        final UInt64 sourceEpoch = UInt64.valueOf(random.nextInt(40));
+        // includes targets before the source, which are always rejected
+        final UInt64 targetEpoch =
+            UInt64.valueOf(Math.max(0, sourceEpoch.intValue() - 1 + random.nextInt(8)));
+        assertThat(
+                consolidated.maySignAttestation(
+                    CONSOLIDATED_KEY, signingRoot, sourceEpoch, targetEpoch, GVR))
+            .describedAs(
+                "Attestation %s-%s with signing root %s", sourceEpoch, targetEpoch, signingRoot)
+            .isEqualTo(
+                slashingProtection.maySignAttestation(
+                    REFERENCE_KEY, signingRoot, sourceEpoch, targetEpoch, GVR));
+      }
+    }
+
+    assertThat(blocks(consolidatedId)).isEqualTo(blocks(referenceId));
+    assertThat(attestations(consolidatedId)).isEqualTo(attestations(referenceId));
+    assertThat(getWatermark(consolidatedId))
+        .isEqualToIgnoringGivenFields(getWatermark(referenceId), "validatorId");
+  }
+
+  @Test
+  public void rejectedAttestationReturnsConflictingEntry() {
+    slashingProtection.registerValidators(List.of(REFERENCE_KEY));
+    final int validatorId = validatorId(REFERENCE_KEY);
+    insertAttestationAt(UInt64.valueOf(3), UInt64.valueOf(8), validatorId);
+
+    final SlashingCheckResult<SignedAttestation> result =
+        jdbi.withHandle(
+            h ->
+                signedAttestationsDao.checkAndInsertAttestation(
+                    h, validatorId, UInt64.valueOf(4), UInt64.valueOf(6), Bytes.of(10)));
+
+    assertThat(result.getVerdict())
+        .isEqualTo(SlashingCheckVerdict.SURROUNDED_BY_EXISTING_ATTESTATION);
+    assertThat(result.getConflict())
+        .hasValueSatisfying(
+            conflict ->
+                assertThat(conflict)
+                    .isEqualToComparingFieldByField(
+                        new SignedAttestation(
+                            validatorId, UInt64.valueOf(3), UInt64.valueOf(8), Bytes.of(100))));
+  }
+
+  @Test
+  public void safeBlockIsInsertedAndSetsWatermark() {
+    slashingProtection.registerValidators(List.of(REFERENCE_KEY));
+    final int validatorId = validatorId(REFERENCE_KEY);
+
+    final SlashingCheckResult<SignedBlock> result =
+        jdbi.withHandle(
+            h ->
+                signedBlocksDao.checkAndInsertBlock(
+                    h, validatorId, UInt64.valueOf(5), Bytes.of(10)));
+
+    assertThat(result.getVerdict()).isEqualTo(SlashingCheckVerdict.INSERTED);
+    assertThat(result.getConflict()).isEmpty();
+    assertThat(blocks(validatorId)).containsExactly("5:" + Bytes.of(10));
+    assertThat(getWatermark(validatorId).getSlot()).isEqualTo(UInt64.valueOf(5));
+  }
+
+  private SlashingProtection createConsolidatedSlashingProtection() {
+    return DbSlashingProtection.builder(
+            jdbi,
+            jdbi,
+            validators,
+            signedBlocksDao,
+            signedAttestationsDao,
+            new MetadataDao(),
+            lowWatermarkDao,
+            10_000,
+            32)
+        .consolidatedChecksEnabled(true)
+        .build();
+  }
+
+  private int validatorId(final Bytes publicKey) {
+    return jdbi.withHandle(h -> validators.retrieveValidators(h, List.of(publicKey)))
+        .get(0)
+        .getId();
+  }
+
+  private List<String> blocks(final int validatorId) {
+    return fetchBlocks(validatorId).stream()
+        .map(b -> b.getSlot() + ":" + signingRoot(b.getSigningRoot()))
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private List<String> attestations(final int validatorId) {
+    return fetchAttestations(validatorId).stream()
+        .map(
+            a ->
+                a.getSourceEpoch()
+                    + "-"
+                    + a.getTargetEpoch()
+                    + ":"
+                    + signingRoot(a.getSigningRoot()))
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static String signingRoot(final Optional<Bytes> signingRoot) {
+    return signingRoot.map(Bytes::toString).orElse("none");
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DbLanesIntegrationTest extends IntegrationTestBase {
+
+  private static final Bytes PUBLIC_KEY = Bytes.of(42);
+  private static final Bytes SIGNING_ROOT = Bytes.of(1);
+
+  @BeforeEach
+  void enableDbLanes() {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+              @Override
+              public boolean isDbLanesEnabled() {
+                return true;
+              }
+
+              @Override
+              public int getDbBlockPoolSize() {
+                return 1;
+              }
+
+              @Override
+              public int getDbAttestationPoolSize() {
+                return 1;
+              }
+            });
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+  }
+
+  @Test
+  void blocksAndAttestationsAreCheckedOnTheirOwnLanes() {
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR))
+        .isTrue();
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, Bytes.of(2), UInt64.valueOf(3), GVR))
+        .isFalse();
+    assertThat(
+            slashingProtection.maySignAttestation(
+                PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(1), UInt64.valueOf(2), GVR))
+        .isTrue();
+
+    assertThat(fetchBlocks(1)).hasSize(1);
+    assertThat(fetchAttestations(1)).hasSize(1);
+  }
+
+  @Test
+  void batchHoldingBlockAndAttestationIsChecked() {
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                SlashingCheckRequest.attestation(
+                    PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(1), UInt64.valueOf(2), GVR),
+                SlashingCheckRequest.block(PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR)));
+
+    assertThat(results).containsExactly(true, true);
+    assertThat(fetchBlocks(1)).hasSize(1);
+    assertThat(fetchAttestations(1)).hasSize(1);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+
+public class IncrementalPruningIntegrationTest extends IntegrationTestBase {
+  private static final List<Integer> VALIDATOR_IDS = List.of(1, 2, 3);
+  private static final int EPOCHS_TO_KEEP = 3;
+  private static final int SLOTS_PER_EPOCH = 1;
+  // half way through the slot at the start of the quiet window
+  private static final Instant QUIET_TIME = Instant.ofEpochMilli(6_000);
+
+  @Test
+  void spreadsPruningAcrossRunsWithinRowBudget() {
+    createSlashingDataForValidators();
+    final IncrementalDbPruner pruner = createPruner(QUIET_TIME, 4, Duration.ofDays(1));
+
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+
+    // the first run deletes up to the row budget from the blocks of the first validator
+    assertThat(fetchBlocks(1)).hasSize(6);
+    assertThat(fetchAttestations(1)).hasSize(10);
+    assertThat(fetchBlocks(2)).hasSize(10);
+
+    // 14 rows to delete for each of the 3 validators
+    for (int run = 1; run < 11; run++) {
+      pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+    }
+
+    for (final int validatorId : VALIDATOR_IDS) {
+      assertThat(fetchBlocks(validatorId)).hasSize(3);
+      assertThat(fetchAttestations(validatorId)).hasSize(3);
+      assertThat(getWatermark(validatorId))
+          .isEqualToComparingFieldByField(
+              new SigningWatermark(
+                  validatorId, UInt64.valueOf(7), UInt64.valueOf(7), UInt64.valueOf(7)));
+    }
+  }
+
+  @Test
+  void doesNotPruneOutsideOfQuietPartOfSlot() {
+    createSlashingDataForValidators();
+    final IncrementalDbPruner pruner =
+        createPruner(Instant.ofEpochMilli(4_000), 100, Duration.ZERO);
+
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+
+    for (final int validatorId : VALIDATOR_IDS) {
+      assertThat(fetchBlocks(validatorId)).hasSize(10);
+      assertThat(fetchAttestations(validatorId)).hasSize(10);
+    }
+  }
+
+  @Test
+  void startsNextPassOnlyOncePassIntervalHasElapsed() {
+    createSlashingDataForValidators();
+    final IncrementalDbPruner pruner = createPruner(QUIET_TIME, 100, Duration.ofDays(1));
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+    assertThat(fetchBlocks(1)).hasSize(3);
+
+    for (int slot = 10; slot < 20; slot++) {
+      insertBlockAt(UInt64.valueOf(slot), 1);
+    }
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+
+    assertThat(fetchBlocks(1)).hasSize(13);
+  }
+
+  @Test
+  void startsNextPassImmediatelyWhenPassIntervalHasElapsed() {
+    createSlashingDataForValidators();
+    final IncrementalDbPruner pruner = createPruner(QUIET_TIME, 100, Duration.ZERO);
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+    assertThat(fetchBlocks(1)).hasSize(3);
+
+    for (int slot = 10; slot < 20; slot++) {
+      insertBlockAt(UInt64.valueOf(slot), 1);
+    }
+    pruner.prune(VALIDATOR_IDS, EPOCHS_TO_KEEP, SLOTS_PER_EPOCH);
+
+    assertThat(fetchBlocks(1)).hasSize(3);
+  }
+
+  private void createSlashingDataForValidators() {
+    VALIDATOR_IDS.forEach(v -> insertValidatorAndCreateSlashingData(slashingProtection, 10, 10, v));
+  }
+
+  private IncrementalDbPruner createPruner(
+      final Instant now, final long rowBudget, final Duration passInterval) {
+    return new IncrementalDbPruner(
+        jdbi,
+        signedBlocksDao,
+        signedAttestationsDao,
+        lowWatermarkDao,
+        2,
+        Duration.ofMinutes(1),
+        rowBudget,
+        passInterval,
+        new SlotClock(0, 12, Clock.fixed(now, ZoneOffset.UTC)),
+        new PruningMetrics(new NoOpMetricsSystem()),
+        new AdvisoryValidatorLocker());
+  }
+}
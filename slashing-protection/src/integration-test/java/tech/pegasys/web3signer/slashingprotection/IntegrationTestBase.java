@@ -78,6 +78,19 @@ public class IntegrationTestBase {
     }
   }
 
+  protected SlashingProtection createBulkImportSlashingProtection() {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    return SlashingProtectionFactory.createSlashingProtection(
+        new TestSlashingProtectionParameters(
+            databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+          @Override
+          public boolean isImportBulkEnabled() {
+            return true;
+          }
+        });
+  }
+
   @AfterEach()
   public void cleanup() {
     if (db != null) {
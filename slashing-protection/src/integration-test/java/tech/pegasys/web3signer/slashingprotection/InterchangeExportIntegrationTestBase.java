@@ -15,13 +15,17 @@ package tech.pegasys.web3signer.slashingprotection;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
 import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import com.opentable.db.postgres.embedded.EmbeddedPostgres;
 import dsl.InterchangeV5Format;
@@ -177,6 +181,33 @@ public class InterchangeExportIntegrationTestBase extends IntegrationTestBase {
         .hasSize(TOTAL_ATTESTATIONS_SIGNED + EPOCH_OFFSET - ATTESTATION_SLOT_WATER_MARK.intValue());
   }
 
+  @Test
+  void gzipCompressedExportMatchesUncompressedExportAndCanBeImported() throws IOException {
+    final int validatorId = 1;
+    slashingProtection.registerValidators(List.of(Bytes.of(validatorId)));
+    insertBlockAt(UInt64.valueOf(3), validatorId);
+    insertAttestationAt(UInt64.valueOf(4), UInt64.valueOf(5), validatorId);
+    jdbi.useTransaction(
+        h -> {
+          lowWatermarkDao.updateSlotWatermarkFor(h, validatorId, UInt64.ZERO);
+          lowWatermarkDao.updateEpochWatermarksFor(h, validatorId, UInt64.ZERO, UInt64.ZERO);
+        });
+
+    final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+    slashingProtection.export(uncompressed);
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    slashingProtection.export(compressed, InterchangeCompression.GZIP);
+
+    try (final InputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(in.readAllBytes()).isEqualTo(uncompressed.toByteArray());
+    }
+
+    slashingProtection.importData(new ByteArrayInputStream(compressed.toByteArray()));
+    assertThat(findAllBlocks()).hasSize(1);
+    assertThat(findAllAttestations()).hasSize(1);
+  }
+
   private InterchangeV5Format getExportObjectFromDatabase() throws IOException {
     final OutputStream exportOutput = new ByteArrayOutputStream();
     slashingProtection.export(exportOutput);
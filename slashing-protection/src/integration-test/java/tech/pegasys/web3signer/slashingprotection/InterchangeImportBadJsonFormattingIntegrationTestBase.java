@@ -62,4 +62,13 @@ public class InterchangeImportBadJsonFormattingIntegrationTestBase extends Integ
         .hasMessage(("Failed to import database content"));
     assertDbIsEmpty(jdbi);
   }
+
+  @Test
+  void metadataAfterDataThrowsExceptionAndLeavesDbEmpty() {
+    final URL importFile = Resources.getResource("interchange/metadataAfterData.json");
+    assertThatThrownBy(() -> slashingProtection.importData(importFile.openStream()))
+        .isInstanceOf(RuntimeException.class)
+        .hasMessage(("Failed to import database content"));
+    assertDbIsEmpty(jdbi);
+  }
 }
@@ -16,13 +16,19 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.google.common.io.Resources;
+import dsl.InterchangeV5Format;
+import dsl.SignedArtifacts;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.junit.jupiter.api.Test;
@@ -200,4 +206,40 @@ public class InterchangeImportConflictsIntegrationTestBase extends IntegrationTe
                 Bytes.fromHexString(
                     "0x4ff6f743a43f3b4f95350831aeaf0a122a1a392922c45d804280284a69eb850b")));
   }
+
+  @Test
+  void duplicateEntriesSpanningInsertBatchesAreOnlyInsertedOnce() throws IOException {
+    final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock> blocks =
+        IntStream.range(0, 1200)
+            .mapToObj(
+                i ->
+                    new tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock(
+                        UInt64.valueOf(i % 600), Bytes.of(1)))
+            .collect(Collectors.toList());
+    final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation>
+        attestations =
+            IntStream.range(0, 1200)
+                .mapToObj(
+                    i ->
+                        new tech.pegasys.web3signer.slashingprotection.interchange.model
+                            .SignedAttestation(
+                            UInt64.valueOf(i % 600), UInt64.valueOf(i % 600 + 1), Bytes.of(1)))
+                .collect(Collectors.toList());
+    final InterchangeV5Format interchangeData =
+        new InterchangeV5Format(
+            new Metadata("5", GVR),
+            List.of(
+                new SignedArtifacts("0x01", blocks, attestations),
+                new SignedArtifacts("0x02", blocks, attestations)));
+
+    slashingProtection.importData(
+        new ByteArrayInputStream(mapper.writeValueAsBytes(interchangeData)));
+
+    assertThat(fetchBlocks(1)).hasSize(600);
+    assertThat(fetchBlocks(2)).hasSize(600);
+    assertThat(fetchAttestations(1)).hasSize(600);
+    assertThat(fetchAttestations(2)).hasSize(600);
+    assertThat(getWatermark(1).getSlot()).isEqualTo(UInt64.ZERO);
+    assertThat(getWatermark(1).getTargetEpoch()).isEqualTo(UInt64.ONE);
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.web3signer.slashingprotection.dao.LockLeaseDao;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalLockingIntegrationTest extends IntegrationTestBase {
+
+  private static final Bytes PUBLIC_KEY = Bytes.of(42);
+  private static final Bytes SIGNING_ROOT = Bytes.of(1);
+
+  @BeforeEach
+  void closeAdvisoryLockingInstance() {
+    ((DbSlashingProtection) slashingProtection).close();
+  }
+
+  @Test
+  void slashingChecksAreMadeWithLocalLocks() {
+    final SlashingProtection localSlashingProtection = createSlashingProtection(true, 10000);
+    localSlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(
+            localSlashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR))
+        .isTrue();
+    assertThat(
+            localSlashingProtection.maySignBlock(PUBLIC_KEY, Bytes.of(2), UInt64.valueOf(3), GVR))
+        .isFalse();
+    assertThat(
+            localSlashingProtection.maySignAttestation(
+                PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(1), UInt64.valueOf(2), GVR))
+        .isTrue();
+    assertThat(
+            localSlashingProtection.maySignAttestation(
+                PUBLIC_KEY, Bytes.of(2), UInt64.valueOf(1), UInt64.valueOf(2), GVR))
+        .isFalse();
+    assertThat(jdbi.withHandle(new LockLeaseDao()::findActiveOwner)).isPresent();
+  }
+
+  @Test
+  void secondInstanceWithLocalLockingCannotStart() {
+    createSlashingProtection(true, 10000);
+
+    assertThatThrownBy(() -> createSlashingProtection(true, 500))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("in use by another instance using local locking");
+  }
+
+  @Test
+  void instanceWithAdvisoryLocksCannotStartWhileLocalLockingLeaseIsHeld() {
+    createSlashingProtection(true, 10000);
+
+    assertThatThrownBy(() -> createSlashingProtection(false, 10000))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("in use by another instance using local locking");
+  }
+
+  @Test
+  void instanceWithAdvisoryLocksCannotStartWhileLeaseOfDisconnectedInstanceIsUnexpired() {
+    // an instance whose session was lost no longer holds the locking mode lock, but keeps
+    // locking validators in memory until its lease expires
+    jdbi.useHandle(h -> new LockLeaseDao().acquireLease(h, "disconnected-instance", 60000));
+
+    assertThatThrownBy(() -> createSlashingProtection(false, 10000))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("which holds the lease disconnected-instance");
+  }
+
+  @Test
+  void leaseExpiryDoesNotDependOnSessionTimeZone() {
+    jdbi.useTransaction(
+        h -> {
+          h.execute("SET LOCAL TIME ZONE 'Pacific/Pago_Pago'");
+          new LockLeaseDao().acquireLease(h, "other-time-zone", 60000);
+        });
+
+    // the other session is 25 hours ahead, so would see the lease as expired if the zone of the
+    // session writing it was lost
+    jdbi.useTransaction(
+        h -> {
+          h.execute("SET LOCAL TIME ZONE 'Pacific/Kiritimati'");
+          assertThat(new LockLeaseDao().findActiveOwner(h)).contains("other-time-zone");
+          assertThat(new LockLeaseDao().acquireLease(h, "another-instance", 60000)).isFalse();
+        });
+  }
+
+  @Test
+  void instanceWithLocalLockingCannotStartWhileAdvisoryLockingInstanceRuns() {
+    createSlashingProtection(false, 10000);
+
+    assertThatThrownBy(() -> createSlashingProtection(true, 500))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("or by instances using advisory locks");
+    assertThat(jdbi.withHandle(new LockLeaseDao()::findActiveOwner)).isEmpty();
+  }
+
+  @Test
+  void closingReleasesLeaseSoOtherInstancesCanStart() {
+    final DbSlashingProtection localSlashingProtection =
+        (DbSlashingProtection) createSlashingProtection(true, 60000);
+    localSlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    localSlashingProtection.close();
+
+    assertThat(jdbi.withHandle(new LockLeaseDao()::findActiveOwner)).isEmpty();
+    final SlashingProtection advisorySlashingProtection = createSlashingProtection(false, 60000);
+    advisorySlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    assertThat(
+            advisorySlashingProtection.maySignBlock(
+                PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR))
+        .isTrue();
+    assertThatThrownBy(
+            () ->
+                localSlashingProtection.maySignBlock(
+                    PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("refusing to lock validators");
+  }
+
+  @Test
+  void expiredLeaseIsTakenOver() {
+    jdbi.useHandle(h -> new LockLeaseDao().acquireLease(h, "stopped-instance", 1));
+
+    final SlashingProtection localSlashingProtection = createSlashingProtection(true, 10000);
+    localSlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(
+            localSlashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR))
+        .isTrue();
+    assertThat(jdbi.withHandle(new LockLeaseDao()::findActiveOwner))
+        .hasValueSatisfying(owner -> assertThat(owner).isNotEqualTo("stopped-instance"));
+  }
+
+  private SlashingProtection createSlashingProtection(
+      final boolean localLockingEnabled, final long leaseMillis) {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    return SlashingProtectionFactory.createSlashingProtection(
+        new TestSlashingProtectionParameters(
+            databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+          @Override
+          public boolean isLocalLockingEnabled() {
+            return localLockingEnabled;
+          }
+
+          @Override
+          public long getLocalLockingLeaseMillis() {
+            return leaseMillis;
+          }
+        });
+  }
+}
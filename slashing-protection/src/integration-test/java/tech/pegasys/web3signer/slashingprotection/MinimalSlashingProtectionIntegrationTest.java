@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import dsl.InterchangeV5Format;
+import dsl.SignedArtifacts;
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MinimalSlashingProtectionIntegrationTest extends IntegrationTestBase {
+
+  private static final Bytes PUBLIC_KEY = Bytes.of(42);
+  private static final Bytes SIGNING_ROOT = Bytes.of(1);
+  private static final Bytes OTHER_SIGNING_ROOT = Bytes.of(2);
+
+  @BeforeEach
+  void enableMinimalSlashingProtection() {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+              @Override
+              public boolean isMinimalEnabled() {
+                return true;
+              }
+            });
+  }
+
+  @Test
+  void blockIsOnlySignableAboveHighestSignedSlotOrAsRepeat() {
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(10, SIGNING_ROOT)).isTrue();
+    assertThat(maySignBlock(10, SIGNING_ROOT)).isTrue();
+    assertThat(maySignBlock(10, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(9, SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(11, OTHER_SIGNING_ROOT)).isTrue();
+    assertThat(findAllBlocks()).isEmpty();
+  }
+
+  @Test
+  void attestationIsOnlySignableAboveHighestSignedEpochsOrAsRepeat() {
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignAttestation(2, 3, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(2, 3, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(2, 3, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(1, 4, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(3, 3, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(5, 4, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(3, 4, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(3, 5, OTHER_SIGNING_ROOT)).isTrue();
+    assertThat(findAllAttestations()).isEmpty();
+  }
+
+  @Test
+  void registrationSeedsStateFromExistingSigningHistory() {
+    insertValidator(PUBLIC_KEY, 1);
+    insertBlockAt(UInt64.valueOf(20), 1);
+    insertAttestationAt(UInt64.valueOf(5), UInt64.valueOf(6), 1);
+
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(20, SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(21, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(5, 6, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(4, 7, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(5, 7, SIGNING_ROOT)).isTrue();
+  }
+
+  @Test
+  void switchingBetweenModesNeverAllowsSigningAgainWithDifferentSigningRoot() {
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    assertThat(maySignBlock(10, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(2, 3, SIGNING_ROOT)).isTrue();
+
+    final SlashingProtection fullSlashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl,
+                USERNAME,
+                PASSWORD,
+                Path.of(getClass().getResource("/hikari.properties").getPath())));
+    fullSlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(fullSlashingProtection, 10, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(fullSlashingProtection, 9, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(fullSlashingProtection, 2, 3, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(fullSlashingProtection, 1, 4, OTHER_SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(fullSlashingProtection, 11, OTHER_SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(fullSlashingProtection, 3, 4, OTHER_SIGNING_ROOT)).isTrue();
+
+    enableMinimalSlashingProtection();
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(11, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(3, 4, SIGNING_ROOT)).isFalse();
+    assertThat(maySignBlock(12, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(4, 5, SIGNING_ROOT)).isTrue();
+  }
+
+  @Test
+  void batchWithUnregisteredValidatorIsRejectedBeforeAnyCheck() {
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThatThrownBy(
+            () ->
+                slashingProtection.maySignBatch(
+                    List.of(
+                        SlashingCheckRequest.block(
+                            PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(3), GVR),
+                        SlashingCheckRequest.block(
+                            Bytes.of(99), SIGNING_ROOT, UInt64.valueOf(3), GVR))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Unregistered validator for " + Bytes.of(99));
+
+    assertThat(maySignBlock(3, OTHER_SIGNING_ROOT)).isTrue();
+  }
+
+  @Test
+  void importedHistoryIsCollapsedToWatermarksAndExported() throws IOException {
+    final InterchangeV5Format interchangeData =
+        new InterchangeV5Format(
+            new Metadata("5", GVR),
+            List.of(
+                new SignedArtifacts(
+                    PUBLIC_KEY.toHexString(),
+                    List.of(
+                        new SignedBlock(UInt64.valueOf(8), SIGNING_ROOT),
+                        new SignedBlock(UInt64.valueOf(5), OTHER_SIGNING_ROOT)),
+                    List.of(
+                        new SignedAttestation(
+                            UInt64.valueOf(1), UInt64.valueOf(2), OTHER_SIGNING_ROOT),
+                        new SignedAttestation(
+                            UInt64.valueOf(3), UInt64.valueOf(4), SIGNING_ROOT)))));
+    slashingProtection.importData(
+        new ByteArrayInputStream(mapper.writeValueAsBytes(interchangeData)));
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(8, SIGNING_ROOT)).isTrue();
+    assertThat(maySignBlock(7, SIGNING_ROOT)).isFalse();
+    assertThat(maySignAttestation(3, 4, SIGNING_ROOT)).isTrue();
+    assertThat(maySignAttestation(2, 5, SIGNING_ROOT)).isFalse();
+    assertThat(findAllBlocks()).isEmpty();
+    assertThat(findAllAttestations()).isEmpty();
+
+    final ByteArrayOutputStream exportOutput = new ByteArrayOutputStream();
+    slashingProtection.export(exportOutput);
+    final InterchangeV5Format exported =
+        mapper.readValue(exportOutput.toByteArray(), InterchangeV5Format.class);
+
+    assertThat(exported.getMetadata().getGenesisValidatorsRoot()).isEqualTo(GVR);
+    assertThat(exported.getSignedArtifacts()).hasSize(1);
+    final SignedArtifacts artifacts = exported.getSignedArtifacts().get(0);
+    assertThat(artifacts.getPublicKey()).isEqualTo(PUBLIC_KEY.toHexString());
+    assertThat(artifacts.getSignedBlocks()).hasSize(1);
+    assertThat(artifacts.getSignedBlocks().get(0).getSlot()).isEqualTo(UInt64.valueOf(8));
+    assertThat(artifacts.getSignedBlocks().get(0).getSigningRoot()).isEqualTo(SIGNING_ROOT);
+    assertThat(artifacts.getSignedAttestations()).hasSize(1);
+    final SignedAttestation attestation = artifacts.getSignedAttestations().get(0);
+    assertThat(attestation.getSourceEpoch()).isEqualTo(UInt64.valueOf(3));
+    assertThat(attestation.getTargetEpoch()).isEqualTo(UInt64.valueOf(4));
+    assertThat(attestation.getSigningRoot()).isEqualTo(SIGNING_ROOT);
+  }
+
+  private boolean maySignBlock(final long slot, final Bytes signingRoot) {
+    return maySignBlock(slashingProtection, slot, signingRoot);
+  }
+
+  private boolean maySignBlock(
+      final SlashingProtection slashingProtection, final long slot, final Bytes signingRoot) {
+    return slashingProtection.maySignBlock(PUBLIC_KEY, signingRoot, UInt64.valueOf(slot), GVR);
+  }
+
+  private boolean maySignAttestation(
+      final long sourceEpoch, final long targetEpoch, final Bytes signingRoot) {
+    return maySignAttestation(slashingProtection, sourceEpoch, targetEpoch, signingRoot);
+  }
+
+  private boolean maySignAttestation(
+      final SlashingProtection slashingProtection,
+      final long sourceEpoch,
+      final long targetEpoch,
+      final Bytes signingRoot) {
+    return slashingProtection.maySignAttestation(
+        PUBLIC_KEY, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), GVR);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import dsl.InterchangeV5Format;
+import dsl.SignedArtifacts;
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs the export tests with validators fetched in parallel and compact output. */
+public class ParallelInterchangeExportIntegrationTest extends InterchangeExportIntegrationTestBase {
+
+  private static final int EXPORT_PARALLELISM = 3;
+
+  @BeforeEach
+  void enableParallelExport() {
+    final Path dbCPConfigurationFile =
+        Path.of(getClass().getResource("/hikari.properties").getPath());
+    slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl, USERNAME, PASSWORD, dbCPConfigurationFile) {
+              @Override
+              public int getExportParallelism() {
+                return EXPORT_PARALLELISM;
+              }
+
+              @Override
+              public boolean isExportCompactEnabled() {
+                return true;
+              }
+            });
+  }
+
+  @Test
+  void validatorsAreExportedInOrderWithoutIndentation() throws IOException {
+    final int validatorCount = EXPORT_PARALLELISM * 5;
+    for (int validatorId = 1; validatorId <= validatorCount; validatorId++) {
+      slashingProtection.registerValidators(List.of(Bytes.of(validatorId)));
+      insertBlockAt(UInt64.valueOf(validatorId), validatorId);
+      final int id = validatorId;
+      jdbi.useTransaction(h -> lowWatermarkDao.updateSlotWatermarkFor(h, id, UInt64.ZERO));
+    }
+
+    final ByteArrayOutputStream exportOutput = new ByteArrayOutputStream();
+    slashingProtection.export(exportOutput);
+    final String export = exportOutput.toString();
+
+    assertThat(export).doesNotContain("\n");
+    final List<SignedArtifacts> signedArtifacts =
+        mapper.readValue(export, InterchangeV5Format.class).getSignedArtifacts();
+    assertThat(signedArtifacts.stream().map(SignedArtifacts::getPublicKey))
+        .containsExactlyElementsOf(
+            IntStream.rangeClosed(1, validatorCount)
+                .mapToObj(id -> Bytes.of(id).toHexString())
+                .collect(Collectors.toList()));
+    for (int i = 0; i < validatorCount; i++) {
+      assertThat(signedArtifacts.get(i).getSignedBlocks().get(0).getSlot())
+          .isEqualTo(UInt64.valueOf(i + 1));
+    }
+  }
+}
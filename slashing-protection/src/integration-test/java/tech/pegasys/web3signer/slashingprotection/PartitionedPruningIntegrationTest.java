@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.PartitionedTable;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingPartition;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingPartitionsDao;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedPruningIntegrationTest extends IntegrationTestBase {
+
+  private final SlashingPartitionsDao slashingPartitionsDao = new SlashingPartitionsDao();
+
+  @Test
+  void convertsTablesAndDropsPartitionsBelowRetentionWindow() {
+    final SlashingProtection slashingProtection = createSlashingProtection(10, 1, 3);
+    insertValidatorAndCreateSlashingData(slashingProtection, 30, 30, 1);
+
+    slashingProtection.prune();
+
+    for (final PartitionedTable table : PartitionedTable.values()) {
+      assertThat(jdbi.withHandle(h -> slashingPartitionsDao.isPartitioned(h, table))).isTrue();
+      final List<SlashingPartition> partitions =
+          jdbi.withHandle(h -> slashingPartitionsDao.findPartitions(h, table));
+      assertThat(partitions.get(0).getLowerBound()).isEqualTo(UInt64.valueOf(18));
+      assertThat(partitions.get(partitions.size() - 1).getUpperBound())
+          .isEqualTo(UInt64.valueOf(36));
+    }
+
+    // the watermark matches per validator pruning, rows below it are only removed with their
+    // partition so the partition holding 18 to 20 is kept
+    assertThat(getWatermark(1))
+        .isEqualToComparingFieldByField(
+            new SigningWatermark(1, UInt64.valueOf(20), UInt64.valueOf(20), UInt64.valueOf(20)));
+    assertThat(blockSlots(1)).containsExactlyElementsOf(range(18, 30));
+    assertThat(attestationTargetEpochs(1)).containsExactlyElementsOf(range(18, 30));
+  }
+
+  @Test
+  void keepsRowsOfValidatorsThatHaveNotSignedRecently() {
+    final SlashingProtection slashingProtection = createSlashingProtection(10, 1, 3);
+    insertValidatorAndCreateSlashingData(slashingProtection, 30, 30, 1);
+    insertValidatorAndCreateSlashingData(slashingProtection, 5, 5, 2);
+
+    slashingProtection.prune();
+
+    assertThat(attestationTargetEpochs(1)).containsExactlyElementsOf(range(18, 30));
+    assertThat(blockSlots(2)).containsExactlyElementsOf(range(0, 5));
+    assertThat(attestationTargetEpochs(2)).containsExactlyElementsOf(range(0, 5));
+
+    // rows moved into the history partition still protect the validator
+    assertThat(
+            slashingProtection.maySignAttestation(
+                Bytes.of(2), Bytes.of(99), UInt64.valueOf(3), UInt64.valueOf(4), GVR))
+        .isFalse();
+    assertThat(slashingProtection.maySignBlock(Bytes.of(2), Bytes.of(99), UInt64.valueOf(4), GVR))
+        .isFalse();
+    assertThat(
+            slashingProtection.maySignAttestation(
+                Bytes.of(2), Bytes.of(99), UInt64.valueOf(4), UInt64.valueOf(6), GVR))
+        .isTrue();
+  }
+
+  @Test
+  void keepsRowsSignedWhileRetainedRowsAreCopied() {
+    final SlashingProtection slashingProtection = createSlashingProtection(10, 1, 3);
+    insertValidatorAndCreateSlashingData(slashingProtection, 30, 30, 1);
+    insertValidatorAndCreateSlashingData(slashingProtection, 5, 5, 2);
+    slashingProtection.prune();
+
+    final PartitionedTable table = PartitionedTable.SIGNED_BLOCKS;
+    final SlashingPartition lowest =
+        jdbi.withHandle(h -> slashingPartitionsDao.findPartitions(h, table)).get(0);
+    jdbi.useTransaction(h -> slashingPartitionsDao.copyRetainedRows(h, table, lowest));
+    assertThat(slashingProtection.maySignBlock(Bytes.of(2), Bytes.of(99), UInt64.valueOf(19), GVR))
+        .isTrue();
+    final int signedSinceCopy =
+        jdbi.inTransaction(h -> slashingPartitionsDao.replaceLowestPartition(h, table, lowest));
+
+    assertThat(signedSinceCopy).isEqualTo(1);
+    assertThat(
+            jdbi.withHandle(h -> slashingPartitionsDao.findPartitions(h, table))
+                .get(0)
+                .getLowerBound())
+        .isEqualTo(lowest.getUpperBound());
+    assertThat(blockSlots(1)).containsExactlyElementsOf(range(20, 30));
+    assertThat(blockSlots(2)).hasSize(6).containsAll(range(0, 5)).contains(UInt64.valueOf(19));
+    assertThat(slashingProtection.maySignBlock(Bytes.of(2), Bytes.of(98), UInt64.valueOf(19), GVR))
+        .isFalse();
+  }
+
+  @Test
+  void addsPartitionsForNewEpochsAndPrunesThem() {
+    final SlashingProtection slashingProtection = createSlashingProtection(10, 1, 100);
+    insertValidatorAndCreateSlashingData(slashingProtection, 30, 30, 1);
+    slashingProtection.prune();
+
+    // beyond the partitions created ahead, so stored in the future partition
+    assertThat(
+            slashingProtection.maySignAttestation(
+                Bytes.of(1), Bytes.of(99), UInt64.valueOf(999), UInt64.valueOf(1000), GVR))
+        .isTrue();
+    assertThat(
+            slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(99), UInt64.valueOf(1000), GVR))
+        .isTrue();
+
+    slashingProtection.prune();
+
+    assertThat(attestationTargetEpochs(1)).containsExactly(UInt64.valueOf(1000));
+    assertThat(blockSlots(1)).containsExactly(UInt64.valueOf(1000));
+    final List<SlashingPartition> partitions =
+        jdbi.withHandle(
+            h -> slashingPartitionsDao.findPartitions(h, PartitionedTable.SIGNED_ATTESTATIONS));
+    assertThat(partitions.get(0).getLowerBound()).isEqualTo(UInt64.valueOf(900));
+    assertThat(partitions.get(partitions.size() - 1).getUpperBound())
+        .isEqualTo(UInt64.valueOf(1300));
+    assertThat(
+            slashingProtection.maySignAttestation(
+                Bytes.of(1), Bytes.of(98), UInt64.valueOf(999), UInt64.valueOf(1000), GVR))
+        .isFalse();
+  }
+
+  private SlashingProtection createSlashingProtection(
+      final int epochsToKeep, final int slotsPerEpoch, final long partitionEpochs) {
+    return SlashingProtectionFactory.createSlashingProtection(
+        new TestSlashingProtectionParameters(
+            databaseUrl, USERNAME, PASSWORD, epochsToKeep, slotsPerEpoch) {
+          @Override
+          public long getPruningPartitionEpochs() {
+            return partitionEpochs;
+          }
+        });
+  }
+
+  private List<UInt64> blockSlots(final int validatorId) {
+    return fetchBlocks(validatorId).stream()
+        .map(SignedBlock::getSlot)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private List<UInt64> attestationTargetEpochs(final int validatorId) {
+    return fetchAttestations(validatorId).stream()
+        .map(SignedAttestation::getTargetEpoch)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static List<UInt64> range(final long from, final long to) {
+    return LongStream.range(from, to).mapToObj(UInt64::valueOf).collect(Collectors.toList());
+  }
+}
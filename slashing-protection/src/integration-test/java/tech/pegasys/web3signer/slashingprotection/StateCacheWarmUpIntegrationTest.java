@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.SlashingStateCache.AttestationState;
+import tech.pegasys.web3signer.slashingprotection.SlashingStateCache.BlockState;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+public class StateCacheWarmUpIntegrationTest extends IntegrationTestBase {
+
+  private final SlashingStateCache stateCache =
+      new SlashingStateCache(true, lowWatermarkDao, signedAttestationsDao, signedBlocksDao);
+
+  @Test
+  void warmUpLoadsStateOfAllValidatorsFromDatabase() {
+    insertValidator(Bytes.of(1), 1);
+    insertValidator(Bytes.of(2), 2);
+    insertBlockAt(UInt64.valueOf(5), 1);
+    insertBlockAt(UInt64.valueOf(8), 1);
+    insertAttestationAt(UInt64.valueOf(2), UInt64.valueOf(3), 1);
+    insertAttestationAt(UInt64.valueOf(3), UInt64.valueOf(4), 1);
+    jdbi.useHandle(
+        h -> {
+          lowWatermarkDao.updateSlotWatermarkFor(h, 1, UInt64.valueOf(5));
+          lowWatermarkDao.updateEpochWatermarksFor(h, 1, UInt64.valueOf(2), UInt64.valueOf(3));
+        });
+
+    stateCache.warmUp(jdbi, List.of(1, 2));
+    // state served after the warm up comes from memory, so ignores data written directly
+    insertBlockAt(UInt64.valueOf(20), 1);
+    insertAttestationAt(UInt64.valueOf(10), UInt64.valueOf(20), 1);
+
+    final BlockState blockState = blockState(1);
+    assertThat(blockState.isNewerThanAllSigned(UInt64.valueOf(9))).isTrue();
+    assertThat(blockState.isNewerThanAllSigned(UInt64.valueOf(8))).isFalse();
+    final AttestationState attestationState = attestationState(1);
+    assertThat(attestationState.isNewerThanAllSigned(UInt64.valueOf(3), UInt64.valueOf(5)))
+        .isTrue();
+    assertThat(attestationState.isNewerThanAllSigned(UInt64.valueOf(2), UInt64.valueOf(5)))
+        .isFalse();
+    assertThat(
+            attestationState
+                .getSurroundSpans()
+                .surroundsExistingAttestation(UInt64.valueOf(1), UInt64.valueOf(5)))
+        .contains(true);
+
+    assertThat(blockState(2).hasWatermark()).isFalse();
+    assertThat(attestationState(2).hasWatermark()).isFalse();
+  }
+
+  @Test
+  void warmUpKeepsStateAlreadyLoadedByRequests() {
+    insertValidator(Bytes.of(1), 1);
+    insertBlockAt(UInt64.valueOf(5), 1);
+    jdbi.useHandle(h -> lowWatermarkDao.updateSlotWatermarkFor(h, 1, UInt64.valueOf(5)));
+    final BlockState loadedState = blockState(1);
+
+    insertBlockAt(UInt64.valueOf(6), 1);
+    stateCache.warmUp(jdbi, List.of(1));
+
+    assertThat(blockState(1)).isSameAs(loadedState);
+  }
+
+  @Test
+  void checksAfterWarmUpOnRegistrationRemainProtected() {
+    insertValidator(Bytes.of(1), 1);
+    insertBlockAt(UInt64.valueOf(8), 1);
+    jdbi.useHandle(h -> lowWatermarkDao.updateSlotWatermarkFor(h, 1, UInt64.valueOf(8)));
+    final SlashingProtection slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(
+            new TestSlashingProtectionParameters(
+                databaseUrl,
+                USERNAME,
+                PASSWORD,
+                Path.of(getClass().getResource("/hikari.properties").getPath())) {
+              @Override
+              public boolean isStateCacheEnabled() {
+                return true;
+              }
+
+              @Override
+              public boolean isLocalLockingEnabled() {
+                return true;
+              }
+            });
+
+    slashingProtection.registerValidators(List.of(Bytes.of(1)));
+
+    assertThat(slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.valueOf(8), GVR))
+        .isFalse();
+    assertThat(slashingProtection.maySignBlock(Bytes.of(1), Bytes.of(2), UInt64.valueOf(9), GVR))
+        .isTrue();
+  }
+
+  private BlockState blockState(final int validatorId) {
+    return stateCache.callLocked(
+        DbLocker.LockType.BLOCK,
+        validatorId,
+        () -> jdbi.withHandle(h -> stateCache.blockState(h, validatorId)).orElseThrow());
+  }
+
+  private AttestationState attestationState(final int validatorId) {
+    return stateCache.callLocked(
+        DbLocker.LockType.ATTESTATION,
+        validatorId,
+        () -> jdbi.withHandle(h -> stateCache.attestationState(h, validatorId)).orElseThrow());
+  }
+}
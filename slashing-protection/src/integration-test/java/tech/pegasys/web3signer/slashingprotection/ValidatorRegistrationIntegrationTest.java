@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import dsl.TestSlashingProtectionParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+public class ValidatorRegistrationIntegrationTest extends IntegrationTestBase {
+
+  private static final int VALIDATOR_COUNT = 2_500;
+
+  private final List<Bytes> publicKeys =
+      IntStream.range(0, VALIDATOR_COUNT)
+          .mapToObj(Bytes::ofUnsignedInt)
+          .collect(Collectors.toList());
+
+  @Test
+  void registersValidatorsInChunksAlongsideExistingValidators() {
+    for (int i = 0; i < 10; i++) {
+      insertValidator(publicKeys.get(i * 200), 100_000 + i);
+    }
+
+    slashingProtection.registerValidators(publicKeys);
+
+    assertThat(validatorCount()).isEqualTo(VALIDATOR_COUNT);
+    assertThat(maySignBlock(slashingProtection, publicKeys.get(0))).isTrue();
+    assertThat(maySignBlock(slashingProtection, publicKeys.get(VALIDATOR_COUNT - 1))).isTrue();
+  }
+
+  @Test
+  void registeringAgainOnlyAddsNewValidators() {
+    slashingProtection.registerValidators(publicKeys.subList(0, 1_000));
+    slashingProtection.registerValidators(publicKeys);
+
+    assertThat(validatorCount()).isEqualTo(VALIDATOR_COUNT);
+    assertThat(maySignBlock(slashingProtection, publicKeys.get(500))).isTrue();
+    assertThat(maySignBlock(slashingProtection, publicKeys.get(2_000))).isTrue();
+  }
+
+  @Test
+  void instancesRegisteringConcurrentlyShareValidatorIds() {
+    final SlashingProtection otherSlashingProtection = createSlashingProtection();
+
+    CompletableFuture.allOf(
+            CompletableFuture.runAsync(() -> slashingProtection.registerValidators(publicKeys)),
+            CompletableFuture.runAsync(
+                () -> otherSlashingProtection.registerValidators(publicKeys)))
+        .join();
+
+    assertThat(validatorCount()).isEqualTo(VALIDATOR_COUNT);
+    assertThat(maySignBlock(slashingProtection, publicKeys.get(1_234))).isTrue();
+    assertThat(maySignBlock(otherSlashingProtection, publicKeys.get(1_234))).isTrue();
+    assertThat(fetchBlocks(validatorId(publicKeys.get(1_234)))).hasSize(1);
+  }
+
+  private SlashingProtection createSlashingProtection() {
+    return SlashingProtectionFactory.createSlashingProtection(
+        new TestSlashingProtectionParameters(
+            databaseUrl,
+            USERNAME,
+            PASSWORD,
+            Path.of(getClass().getResource("/hikari.properties").getPath())));
+  }
+
+  private boolean maySignBlock(final SlashingProtection slashingProtection, final Bytes publicKey) {
+    return slashingProtection.maySignBlock(publicKey, Bytes.of(1), UInt64.valueOf(10), GVR);
+  }
+
+  private int validatorCount() {
+    return jdbi.withHandle(
+        h -> h.createQuery("SELECT count(*) FROM validators").mapTo(Integer.class).one());
+  }
+
+  private int validatorId(final Bytes publicKey) {
+    return jdbi.withHandle(
+        h -> validators.retrieveValidators(h, List.of(publicKey)).get(0).getId());
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares index size and range scan latency of the slashing protection tables when epochs and
+ * slots are stored as NUMERIC(20) (schema version 9) and as BIGINT (schema version 10). The index
+ * and table sizes are printed once the tables have been populated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EpochColumnBenchmark {
+
+  private static final int VALIDATOR_COUNT = 16;
+  private static final int EPOCH_COUNT = 50_000;
+  private static final int SCAN_LENGTH = 1024;
+  private static final String BIGINT_OFFSET = "-9223372036854775808";
+
+  @Param({"numeric", "bigint"})
+  public String columnType;
+
+  private EmbeddedPostgres db;
+  private Connection connection;
+  private PreparedStatement targetEpochScan;
+  private PreparedStatement surroundingScan;
+  private PreparedStatement blockSlotScan;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SQLException {
+    db = EmbeddedPostgres.start();
+    Flyway.configure()
+        .locations("/migrations/postgresql/")
+        .dataSource(db.getPostgresDatabase())
+        .target(isBigint() ? "10" : "9")
+        .load()
+        .migrate();
+
+    connection = db.getPostgresDatabase().getConnection();
+    try (final Statement statement = connection.createStatement()) {
+      final String offset = isBigint() ? BIGINT_OFFSET : "0";
+      statement.execute(
+          "INSERT INTO validators (id, public_key) "
+              + "SELECT v, int4send(v) FROM generate_series(1, "
+              + VALIDATOR_COUNT
+              + ") v");
+      statement.execute(
+          "INSERT INTO signed_attestations "
+              + "(validator_id, source_epoch, target_epoch, signing_root) "
+              + "SELECT v, e + "
+              + offset
+              + ", e + 1 + "
+              + offset
+              + ", int8send(e) FROM generate_series(1, "
+              + VALIDATOR_COUNT
+              + ") v, generate_series(0, "
+              + (EPOCH_COUNT - 1)
+              + ") e");
+      statement.execute(
+          "INSERT INTO signed_blocks (validator_id, slot, signing_root) "
+              + "SELECT v, s + "
+              + offset
+              + ", int8send(s) FROM generate_series(1, "
+              + VALIDATOR_COUNT
+              + ") v, generate_series(0, "
+              + (EPOCH_COUNT - 1)
+              + ") s");
+      statement.execute("VACUUM ANALYZE");
+      printSizes(statement);
+    }
+
+    targetEpochScan =
+        connection.prepareStatement(
+            "SELECT source_epoch, target_epoch FROM signed_attestations "
+                + "WHERE validator_id = ? AND target_epoch >= ?");
+    surroundingScan =
+        connection.prepareStatement(
+            "SELECT source_epoch, target_epoch FROM signed_attestations "
+                + "WHERE validator_id = ? AND source_epoch < ? AND target_epoch > ? "
+                + "ORDER BY target_epoch DESC LIMIT 1");
+    blockSlotScan =
+        connection.prepareStatement(
+            "SELECT slot FROM signed_blocks WHERE validator_id = ? AND slot >= ? "
+                + "ORDER BY slot ASC LIMIT "
+                + SCAN_LENGTH);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, SQLException {
+    connection.close();
+    db.close();
+  }
+
+  /** Reads the most recent attestations, as done when loading the surround spans. */
+  @Benchmark
+  public long targetEpochRangeScan() throws SQLException {
+    targetEpochScan.setInt(1, randomValidator());
+    bindEpoch(targetEpochScan, 2, EPOCH_COUNT - SCAN_LENGTH);
+    return sumEpochs(targetEpochScan, 2);
+  }
+
+  /** Searches for a surrounding attestation, which walks the target epoch index without a match. */
+  @Benchmark
+  public long surroundingAttestationScan() throws SQLException {
+    final long epoch = EPOCH_COUNT - SCAN_LENGTH;
+    surroundingScan.setInt(1, randomValidator());
+    bindEpoch(surroundingScan, 2, epoch);
+    bindEpoch(surroundingScan, 3, epoch + 1);
+    return sumEpochs(surroundingScan, 1);
+  }
+
+  @Benchmark
+  public long blockSlotRangeScan() throws SQLException {
+    blockSlotScan.setInt(1, randomValidator());
+    bindEpoch(blockSlotScan, 2, ThreadLocalRandom.current().nextInt(EPOCH_COUNT - SCAN_LENGTH));
+    return sumEpochs(blockSlotScan, 1);
+  }
+
+  private boolean isBigint() {
+    return columnType.equals("bigint");
+  }
+
+  private int randomValidator() {
+    return ThreadLocalRandom.current().nextInt(VALIDATOR_COUNT) + 1;
+  }
+
+  private void bindEpoch(final PreparedStatement statement, final int index, final long epoch)
+      throws SQLException {
+    if (isBigint()) {
+      statement.setLong(index, SortableUInt64.encode(UInt64.valueOf(epoch)));
+    } else {
+      statement.setBigDecimal(index, BigDecimal.valueOf(epoch));
+    }
+  }
+
+  private long sumEpochs(final PreparedStatement statement, final int columns)
+      throws SQLException {
+    long sum = 0;
+    try (final ResultSet resultSet = statement.executeQuery()) {
+      while (resultSet.next()) {
+        for (int column = 1; column <= columns; column++) {
+          sum +=
+              isBigint()
+                  ? resultSet.getLong(column)
+                  : resultSet.getBigDecimal(column).longValue();
+        }
+      }
+    }
+    return sum;
+  }
+
+  private void printSizes(final Statement statement) throws SQLException {
+    try (final ResultSet resultSet =
+        statement.executeQuery(
+            "SELECT relname, pg_relation_size(oid) AS table_size, "
+                + "pg_indexes_size(oid) AS index_size FROM pg_class "
+                + "WHERE relname IN ('signed_attestations', 'signed_blocks') ORDER BY relname")) {
+      while (resultSet.next()) {
+        System.out.printf(
+            "%n%s (%s): table %d bytes, indexes %d bytes%n",
+            resultSet.getString("relname"),
+            columnType,
+            resultSet.getLong("table_size"),
+            resultSet.getLong("index_size"));
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.file.FileSlashingProtection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import dsl.TestSlashingProtectionParameters;
+import org.apache.commons.io.FileUtils;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the latency of slashing protection checks between the Postgres database and the file
+ * backed store. Each operation signs a new block or attestation, so every check results in a
+ * durable write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlashingProtectionBenchmark {
+
+  private static final Bytes32 GVR = Bytes32.leftPad(Bytes.of(100));
+  private static final Bytes SIGNING_ROOT = Bytes32.leftPad(Bytes.of(1));
+  private static final int VALIDATOR_COUNT = 64;
+
+  @Param({"file", "postgres"})
+  public String store;
+
+  private final AtomicLong counter = new AtomicLong();
+  private List<Bytes> validators;
+  private SlashingProtection slashingProtection;
+  private EmbeddedPostgres db;
+  private Path storeDirectory;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    if (store.equals("file")) {
+      storeDirectory = Files.createTempDirectory("slashing-protection-benchmark");
+      slashingProtection = FileSlashingProtection.create(storeDirectory, 10_000, 32);
+    } else {
+      db = EmbeddedPostgres.start();
+      Flyway.configure()
+          .locations("/migrations/postgresql/")
+          .dataSource(db.getPostgresDatabase())
+          .load()
+          .migrate();
+      slashingProtection =
+          SlashingProtectionFactory.createSlashingProtection(
+              new TestSlashingProtectionParameters(
+                  db.getJdbcUrl("postgres", "postgres"), "postgres", "postgres"));
+    }
+
+    validators =
+        IntStream.range(0, VALIDATOR_COUNT)
+            .mapToObj(i -> (Bytes) Bytes32.leftPad(Bytes.ofUnsignedInt(i + 1)))
+            .collect(Collectors.toList());
+    slashingProtection.registerValidators(validators);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (slashingProtection instanceof Closeable) {
+      ((Closeable) slashingProtection).close();
+    }
+    if (db != null) {
+      db.close();
+    }
+    if (storeDirectory != null) {
+      FileUtils.deleteDirectory(storeDirectory.toFile());
+    }
+  }
+
+  @Benchmark
+  public boolean signBlock() {
+    final long count = counter.incrementAndGet();
+    return slashingProtection.maySignBlock(
+        validator(count), SIGNING_ROOT, UInt64.valueOf(count / VALIDATOR_COUNT), GVR);
+  }
+
+  @Benchmark
+  public boolean signAttestation() {
+    final long count = counter.incrementAndGet();
+    final UInt64 targetEpoch = UInt64.valueOf(count / VALIDATOR_COUNT + 1);
+    return slashingProtection.maySignAttestation(
+        validator(count), SIGNING_ROOT, targetEpoch.subtract(1), targetEpoch, GVR);
+  }
+
+  private Bytes validator(final long count) {
+    return validators.get((int) (count % VALIDATOR_COUNT));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.ValidatorLock;
+import tech.pegasys.web3signer.slashingprotection.dao.LockLeaseDao;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+
+/**
+ * Locks validators with Postgres transaction scoped advisory locks, so the locks are shared by
+ * every Web3Signer instance using the database.
+ *
+ * <p>Given a session handle, the locker also holds the locking mode lock in shared mode for as long
+ * as the session lasts. An instance locking validators in memory takes that lock exclusively, so
+ * neither can start while the other is running. As that instance keeps locking validators until its
+ * lease expires, even if its session was lost, the locker also refuses to start while the lease is
+ * held.
+ */
+public class AdvisoryValidatorLocker implements ValidatorLocker {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final Optional<Handle> sessionHandle;
+  private final LockLeaseDao lockLeaseDao;
+
+  /** Creates a locker which does not exclude instances locking validators in memory. */
+  public AdvisoryValidatorLocker() {
+    this.sessionHandle = Optional.empty();
+    this.lockLeaseDao = new LockLeaseDao();
+  }
+
+  /**
+   * Creates a locker holding the locking mode lock on a session of its own, which must not be
+   * shared with any other database work.
+   */
+  public AdvisoryValidatorLocker(final Handle sessionHandle, final LockLeaseDao lockLeaseDao) {
+    this.sessionHandle = Optional.of(sessionHandle);
+    this.lockLeaseDao = lockLeaseDao;
+  }
+
+  /**
+   * Takes the locking mode lock in shared mode, then checks no local locking lease is held.
+   *
+   * @throws IllegalStateException if an instance locking validators in memory is using the
+   *     database
+   */
+  public void start() {
+    sessionHandle.ifPresent(
+        handle -> {
+          if (!DbLocker.tryLockLockingModeShared(handle)) {
+            throw new IllegalStateException(
+                "Slashing protection database is in use by another instance using local locking");
+          }
+          final Optional<String> leaseOwner = lockLeaseDao.findActiveOwner(handle);
+          if (leaseOwner.isPresent()) {
+            DbLocker.unlockLockingModeShared(handle);
+            throw new IllegalStateException(
+                "Slashing protection database is in use by another instance using local locking, "
+                    + "which holds the lease "
+                    + leaseOwner.get());
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    sessionHandle.ifPresent(
+        handle -> {
+          try {
+            DbLocker.unlockLockingModeShared(handle);
+          } catch (final RuntimeException e) {
+            LOG.warn("Failed to release the slashing protection database locking mode lock", e);
+          } finally {
+            handle.close();
+          }
+        });
+  }
+
+  @Override
+  public boolean isAdvisory() {
+    return true;
+  }
+
+  @Override
+  public <T> T inTransaction(
+      final Jdbi jdbi,
+      final TransactionIsolationLevel isolationLevel,
+      final List<ValidatorLock> locks,
+      final HandleCallback<T, RuntimeException> callback) {
+    return jdbi.inTransaction(
+        isolationLevel,
+        h -> {
+          locks.forEach(
+              lock -> DbLocker.lockForValidator(h, lock.getLockType(), lock.getValidatorId()));
+          return callback.withHandle(h);
+        });
+  }
+}
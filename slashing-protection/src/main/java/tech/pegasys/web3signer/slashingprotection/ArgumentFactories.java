@@ -12,7 +12,6 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
-import java.math.BigDecimal;
 import java.sql.Types;
 
 import org.apache.tuweni.bytes.Bytes;
@@ -38,13 +37,13 @@ public class ArgumentFactories {
   public static class UInt64ArgumentFactory extends AbstractArgumentFactory<UInt64> {
 
     public UInt64ArgumentFactory() {
-      super(Types.NUMERIC);
+      super(Types.BIGINT);
     }
 
     @Override
     protected Argument build(final UInt64 value, final ConfigRegistry config) {
       return (position, statement, ctx) ->
-          statement.setBigDecimal(position, new BigDecimal(value.toBigInteger()));
+          statement.setLong(position, SortableUInt64.encode(value));
     }
   }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_UNCOMMITTED;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.PruningPosition;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Prunes slashing protection data for all validators using set based statements. Validators are
+ * split into ranges of consecutive ids which are pruned in parallel. For each range the watermarks
+ * are advanced in a single statement, as the per validator {@link DbPruner} would move them, and
+ * rows below the watermarks are then deleted in bounded batches paged by validator id and slot or
+ * target epoch.
+ */
+public class BulkDbPruner implements ValidatorSetPruner {
+  private static final Logger LOG = LogManager.getLogger();
+  // bounds the advisory locks held by a watermark update to stay within the postgres lock table
+  static final int VALIDATORS_PER_RANGE = 500;
+
+  private final Jdbi jdbi;
+  private final SignedBlocksDao signedBlocksDao;
+  private final SignedAttestationsDao signedAttestationsDao;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final int batchSize;
+  private final int parallelism;
+  private final PruningMetrics pruningMetrics;
+  private final ValidatorLocker validatorLocker;
+
+  public BulkDbPruner(
+      final Jdbi jdbi,
+      final SignedBlocksDao signedBlocksDao,
+      final SignedAttestationsDao signedAttestationsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final int batchSize,
+      final int parallelism,
+      final PruningMetrics pruningMetrics,
+      final ValidatorLocker validatorLocker) {
+    checkArgument(batchSize > 0, "batchSize must be a positive value, but was %s", batchSize);
+    checkArgument(parallelism > 0, "parallelism must be a positive value, but was %s", parallelism);
+    this.jdbi = jdbi;
+    this.signedBlocksDao = signedBlocksDao;
+    this.signedAttestationsDao = signedAttestationsDao;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+    this.pruningMetrics = pruningMetrics;
+    this.validatorLocker = validatorLocker;
+  }
+
+  @Override
+  public Collection<Integer> prune(
+      final Collection<Integer> validatorIds, final long epochsToKeep, final long slotsPerEpoch) {
+    checkArgument(
+        epochsToKeep > 0, "epochsToKeep must be a positive value, but was %s", epochsToKeep);
+    checkArgument(
+        slotsPerEpoch > 0, "slotsPerEpoch must be a positive value, but was %s", slotsPerEpoch);
+    final long slotsToKeep = Math.multiplyExact(epochsToKeep, slotsPerEpoch);
+    final List<List<Integer>> ranges =
+        Lists.partition(new ArrayList<>(new TreeSet<>(validatorIds)), VALIDATORS_PER_RANGE);
+
+    LOG.info("Pruning slashing protection database for {} validators", validatorIds.size());
+    pruningMetrics.passStarted(validatorIds.size());
+    final long startTime = System.nanoTime();
+    final ExecutorService executorService =
+        Executors.newFixedThreadPool(
+            Math.min(parallelism, Math.max(ranges.size(), 1)),
+            new ThreadFactoryBuilder().setNameFormat("slashing-db-bulk-pruner-%d").build());
+    long deletedRows = 0;
+    try {
+      final List<Future<Long>> results =
+          ranges.stream()
+              .map(r -> executorService.submit(() -> pruneRange(r, slotsToKeep, epochsToKeep)))
+              .collect(Collectors.toList());
+      for (final Future<Long> result : results) {
+        deletedRows += result.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while pruning slashing protection data", e);
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Failed to prune slashing protection data", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    final Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+    pruningMetrics.passCompleted(deletedRows, duration);
+    LOG.info(
+        "Pruned {} rows for {} validators in {} ms",
+        deletedRows,
+        validatorIds.size(),
+        duration.toMillis());
+    return validatorIds;
+  }
+
+  private long pruneRange(
+      final List<Integer> validatorIds, final long slotsToKeep, final long epochsToKeep) {
+    final int firstValidatorId = validatorIds.get(0);
+    final int lastValidatorId = validatorIds.get(validatorIds.size() - 1);
+
+    advanceWatermarks(
+        validatorIds,
+        LockType.BLOCK,
+        h -> lowWatermarkDao.advanceSlotWatermarks(h, validatorIds, slotsToKeep));
+    final long deletedBlocks =
+        deleteBelowWatermarks(
+            "signed_blocks",
+            firstValidatorId,
+            (h, after) ->
+                signedBlocksDao.deleteBlocksBelowWatermark(h, after, lastValidatorId, batchSize));
+
+    advanceWatermarks(
+        validatorIds,
+        LockType.ATTESTATION,
+        h -> lowWatermarkDao.advanceEpochWatermarks(h, validatorIds, epochsToKeep));
+    final long deletedAttestations =
+        deleteBelowWatermarks(
+            "signed_attestations",
+            firstValidatorId,
+            (h, after) ->
+                signedAttestationsDao.deleteAttestationsBelowWatermark(
+                    h, after, lastValidatorId, batchSize));
+
+    pruningMetrics.validatorsPruned(validatorIds.size());
+    LOG.debug(
+        "Pruned {} blocks and {} attestations for validators {} to {}",
+        deletedBlocks,
+        deletedAttestations,
+        firstValidatorId,
+        lastValidatorId);
+    return deletedBlocks + deletedAttestations;
+  }
+
+  private void advanceWatermarks(
+      final List<Integer> validatorIds,
+      final LockType lockType,
+      final ToIntFunction<Handle> watermarkUpdate) {
+    // the locks are held from the start of the callback until the transaction has ended
+    final AtomicReference<TimingContext> lockHoldTimer = new AtomicReference<>();
+    try {
+      validatorLocker.inTransaction(
+          jdbi,
+          READ_UNCOMMITTED,
+          lockType,
+          validatorIds,
+          h -> {
+            lockHoldTimer.set(pruningMetrics.locksAcquired());
+            return watermarkUpdate.applyAsInt(h);
+          });
+    } finally {
+      final TimingContext timingContext = lockHoldTimer.get();
+      if (timingContext != null) {
+        timingContext.stopTimer();
+      }
+    }
+  }
+
+  private long deleteBelowWatermarks(
+      final String table,
+      final int firstValidatorId,
+      final BiFunction<Handle, PruningPosition, List<PruningPosition>> batchDelete) {
+    long deleted = 0;
+    PruningPosition after = PruningPosition.before(firstValidatorId);
+    while (true) {
+      final PruningPosition position = after;
+      final List<PruningPosition> batch;
+      final TimingContext timingContext = pruningMetrics.batchStarted();
+      try {
+        batch = jdbi.inTransaction(READ_UNCOMMITTED, h -> batchDelete.apply(h, position));
+      } finally {
+        timingContext.stopTimer();
+      }
+      deleted += batch.size();
+      pruningMetrics.rowsDeleted(table, batch.size());
+      if (batch.size() < batchSize) {
+        return deleted;
+      }
+      // continuing from the last deleted row avoids rescanning the dead index entries of the rows
+      // already deleted in this pass
+      after = Collections.max(batch);
+    }
+  }
+}
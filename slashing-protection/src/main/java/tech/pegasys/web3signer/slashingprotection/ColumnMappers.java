@@ -65,10 +65,10 @@ public class ColumnMappers {
 
       return Optional.of(
           (ColumnMapper<UInt64>)
-              (r, columnNumber, ctx) ->
-                  r.getBigDecimal(columnNumber) == null
-                      ? null
-                      : UInt64.valueOf(r.getBigDecimal(columnNumber).toBigInteger()));
+              (r, columnNumber, ctx) -> {
+                final long value = r.getLong(columnNumber);
+                return r.wasNull() ? null : SortableUInt64.decode(value);
+              });
     }
   }
 }
@@ -25,6 +25,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.util.Properties;
 import javax.sql.DataSource;
@@ -32,6 +34,8 @@ import javax.sql.DataSource;
 import com.google.common.annotations.VisibleForTesting;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.jdbi.v3.core.ConnectionException;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.argument.Arguments;
 import org.jdbi.v3.core.mapper.ColumnMappers;
@@ -53,19 +57,58 @@ public class DbConnection {
     return jdbi;
   }
 
-  public static Jdbi createPruningConnection(
+  /**
+   * Creates a connection pool for one lane of slashing protection database work, such as block
+   * proposals, so that it does not queue for connections behind other lanes. The saturation of the
+   * pool is reported as metrics labelled with the lane name.
+   */
+  public static Jdbi createLaneConnection(
       final String jdbcUrl,
       final String username,
       final String password,
-      final Path configurationFile) {
-    final HikariDataSource datasource =
-        createDataSource(jdbcUrl, username, password, configurationFile);
-    datasource.setMaximumPoolSize(1); // we only need 1 connection in pool for pruning
-    final Jdbi jdbi = Jdbi.create(datasource);
+      final Path configurationFile,
+      final String lane,
+      final int poolSize,
+      final DbPoolMetrics poolMetrics) {
+    final HikariConfig hikariConfig =
+        createHikariConfig(jdbcUrl, username, password, configurationFile);
+    final String poolName = hikariConfig.getPoolName();
+    hikariConfig.setPoolName((poolName == null ? "slashing-protection" : poolName) + "-" + lane);
+    if (poolSize > 0) {
+      hikariConfig.setMaximumPoolSize(poolSize);
+    }
+    hikariConfig.setMetricsTrackerFactory(poolMetrics.forLane(lane));
+    final Jdbi jdbi = Jdbi.create(new HikariDataSource(hikariConfig));
     configureJdbi(jdbi);
     return jdbi;
   }
 
+  /**
+   * Opens a connection outside of any pool, for locks held by its session. Closing the handle
+   * closes the connection, ending the session and releasing anything it still holds.
+   */
+  public static Handle createSessionHandle(
+      final String jdbcUrl,
+      final String username,
+      final String password,
+      final Path configurationFile) {
+    final HikariConfig hikariConfig =
+        createHikariConfig(jdbcUrl, username, password, configurationFile);
+    final Properties connectionProperties = new Properties();
+    connectionProperties.putAll(hikariConfig.getDataSourceProperties());
+    if (!isEmpty(hikariConfig.getUsername())) {
+      connectionProperties.setProperty("user", hikariConfig.getUsername());
+    }
+    if (!isEmpty(hikariConfig.getPassword())) {
+      connectionProperties.setProperty("password", hikariConfig.getPassword());
+    }
+    try {
+      return Jdbi.open(DriverManager.getConnection(jdbcUrl, connectionProperties));
+    } catch (final SQLException e) {
+      throw new ConnectionException(e);
+    }
+  }
+
   public static void configureJdbi(final Jdbi jdbi) {
     jdbi.getConfig(Arguments.class)
         .register(new BytesArgumentFactory())
@@ -82,6 +125,15 @@ public class DbConnection {
       final String username,
       final String password,
       final Path hikariConfigurationFile) {
+    return new HikariDataSource(
+        createHikariConfig(jdbcUrl, username, password, hikariConfigurationFile));
+  }
+
+  private static HikariConfig createHikariConfig(
+      final String jdbcUrl,
+      final String username,
+      final String password,
+      final Path hikariConfigurationFile) {
     final Properties hikariConfigurationProperties =
         loadHikariConfigurationProperties(hikariConfigurationFile);
 
@@ -94,7 +146,7 @@ public class DbConnection {
       hikariConfig.setPassword(password);
     }
 
-    return new HikariDataSource(hikariConfig);
+    return hikariConfig;
   }
 
   @VisibleForTesting
@@ -12,9 +12,14 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
 import org.jdbi.v3.core.Handle;
 
 public class DbLocker {
+  // lock type ordinals are never negative, so this key cannot match the lock of a validator
+  private static final int LOCKING_MODE_LOCK_KEY = -1;
 
   public enum LockType {
     BLOCK,
@@ -25,4 +30,84 @@ public class DbLocker {
       final Handle handle, final LockType lockType, final int validatorId) {
     handle.execute("SELECT pg_advisory_xact_lock(?, ?)", lockType.ordinal(), validatorId);
   }
+
+  /**
+   * Takes the locking mode lock in shared mode for the session of the handle, as held by every
+   * instance using advisory locks. It is held until released or the session ends.
+   *
+   * @return true if the lock was taken, false if an instance locking in memory holds it
+   */
+  public static boolean tryLockLockingModeShared(final Handle handle) {
+    return tryLockLockingMode(handle, "pg_try_advisory_lock_shared");
+  }
+
+  /**
+   * Takes the locking mode lock in exclusive mode for the session of the handle, as held by an
+   * instance locking validators in memory. It is held until released or the session ends.
+   *
+   * @return true if the lock was taken, false if any other instance holds it
+   */
+  public static boolean tryLockLockingModeExclusive(final Handle handle) {
+    return tryLockLockingMode(handle, "pg_try_advisory_lock");
+  }
+
+  public static void unlockLockingModeShared(final Handle handle) {
+    handle.execute("SELECT pg_advisory_unlock_shared(?, 0)", LOCKING_MODE_LOCK_KEY);
+  }
+
+  public static void unlockLockingModeExclusive(final Handle handle) {
+    handle.execute("SELECT pg_advisory_unlock(?, 0)", LOCKING_MODE_LOCK_KEY);
+  }
+
+  private static boolean tryLockLockingMode(final Handle handle, final String lockFunction) {
+    return handle
+        .createQuery("SELECT " + lockFunction + "(?, 0)")
+        .bind(0, LOCKING_MODE_LOCK_KEY)
+        .mapTo(Boolean.class)
+        .one();
+  }
+
+  /** The lock of one type held for a validator. */
+  public static class ValidatorLock {
+    private final LockType lockType;
+    private final int validatorId;
+
+    public ValidatorLock(final LockType lockType, final int validatorId) {
+      this.lockType = lockType;
+      this.validatorId = validatorId;
+    }
+
+    public LockType getLockType() {
+      return lockType;
+    }
+
+    public int getValidatorId() {
+      return validatorId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final ValidatorLock that = (ValidatorLock) o;
+      return validatorId == that.validatorId && lockType == that.lockType;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(lockType, validatorId);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("lockType", lockType)
+          .add("validatorId", validatorId)
+          .toString();
+    }
+  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledGauge;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * Reports the saturation of the connection pools of the slashing protection database lanes, so it
+ * is visible when a lane such as block proposals is waiting for connections. A gauge can only be
+ * created once for each metrics system, so a single instance is shared by the pools of all lanes,
+ * which report to the same metrics labelled with the lane.
+ */
+public class DbPoolMetrics {
+
+  private final LabelledGauge activeConnections;
+  private final LabelledGauge idleConnections;
+  private final LabelledGauge maxConnections;
+  private final LabelledGauge pendingThreads;
+  private final LabelledMetric<Counter> connectionTimeouts;
+
+  public DbPoolMetrics(final MetricsSystem metricsSystem) {
+    activeConnections =
+        metricsSystem.createLabelledGauge(
+            ETH2_SLASHING_PROTECTION,
+            "db_pool_active_connections",
+            "Number of connections in use in a database pool",
+            "lane");
+    idleConnections =
+        metricsSystem.createLabelledGauge(
+            ETH2_SLASHING_PROTECTION,
+            "db_pool_idle_connections",
+            "Number of idle connections in a database pool",
+            "lane");
+    maxConnections =
+        metricsSystem.createLabelledGauge(
+            ETH2_SLASHING_PROTECTION,
+            "db_pool_max_connections",
+            "Maximum number of connections in a database pool",
+            "lane");
+    pendingThreads =
+        metricsSystem.createLabelledGauge(
+            ETH2_SLASHING_PROTECTION,
+            "db_pool_pending_threads",
+            "Number of threads waiting for a connection from a database pool",
+            "lane");
+    connectionTimeouts =
+        metricsSystem.createLabelledCounter(
+            ETH2_SLASHING_PROTECTION,
+            "db_pool_connection_timeouts",
+            "Number of times a connection from a database pool was not available within the "
+                + "connection timeout",
+            "lane");
+  }
+
+  /** Returns the factory reporting the metrics of the pool of the given lane. */
+  public MetricsTrackerFactory forLane(final String lane) {
+    return (poolName, poolStats) -> {
+      activeConnections.labels(poolStats::getActiveConnections, lane);
+      idleConnections.labels(poolStats::getIdleConnections, lane);
+      maxConnections.labels(poolStats::getMaxConnections, lane);
+      pendingThreads.labels(poolStats::getPendingThreads, lane);
+      final Counter laneConnectionTimeouts = connectionTimeouts.labels(lane);
+
+      return new IMetricsTracker() {
+        @Override
+        public void recordConnectionTimeout() {
+          laneConnectionTimeouts.inc();
+        }
+      };
+    };
+  }
+}
@@ -14,7 +14,6 @@ package tech.pegasys.web3signer.slashingprotection;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_UNCOMMITTED;
-import static tech.pegasys.web3signer.slashingprotection.DbLocker.lockForValidator;
 
 import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
@@ -24,6 +23,7 @@ import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.tuweni.units.bigints.UInt64;
@@ -36,16 +36,19 @@ public class DbPruner {
   private final SignedBlocksDao signedBlocksDao;
   private final SignedAttestationsDao signedAttestationsDao;
   private final LowWatermarkDao lowWatermarkDao;
+  private final ValidatorLocker validatorLocker;
 
   public DbPruner(
       final Jdbi jdbi,
       final SignedBlocksDao signedBlocksDao,
       final SignedAttestationsDao signedAttestationsDao,
-      final LowWatermarkDao lowWatermarkDao) {
+      final LowWatermarkDao lowWatermarkDao,
+      final ValidatorLocker validatorLocker) {
     this.jdbi = jdbi;
     this.signedBlocksDao = signedBlocksDao;
     this.signedAttestationsDao = signedAttestationsDao;
     this.lowWatermarkDao = lowWatermarkDao;
+    this.validatorLocker = validatorLocker;
   }
 
   public void pruneForValidator(
@@ -61,12 +64,12 @@ public class DbPruner {
 
   private void pruneBlocks(final int validatorId, final long slotsToKeep) {
     final boolean hasWatermark =
-        jdbi.inTransaction(
+        validatorLocker.inTransaction(
+            jdbi,
             READ_UNCOMMITTED,
-            h -> {
-              lockForValidator(h, LockType.BLOCK, validatorId);
-              return moveWatermarkForBlock(validatorId, slotsToKeep, h);
-            });
+            LockType.BLOCK,
+            List.of(validatorId),
+            h -> moveWatermarkForBlock(validatorId, slotsToKeep, h));
 
     if (hasWatermark) {
       jdbi.useTransaction(
@@ -93,12 +96,12 @@ public class DbPruner {
 
   private void pruneAttestations(final int validatorId, final long epochsToKeep) {
     final boolean hasWatermark =
-        jdbi.inTransaction(
+        validatorLocker.inTransaction(
+            jdbi,
             READ_UNCOMMITTED,
-            h -> {
-              lockForValidator(h, LockType.ATTESTATION, validatorId);
-              return moveWatermarkForAttestation(validatorId, epochsToKeep, h);
-            });
+            LockType.ATTESTATION,
+            List.of(validatorId),
+            h -> moveWatermarkForAttestation(validatorId, epochsToKeep, h));
 
     if (hasWatermark) {
       jdbi.useTransaction(
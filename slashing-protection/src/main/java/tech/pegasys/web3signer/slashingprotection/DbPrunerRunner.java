@@ -12,7 +12,9 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,6 +24,7 @@ public class DbPrunerRunner {
   private final SlashingProtectionParameters slashingProtectionParameters;
   private final SlashingProtection slashingProtection;
   private final ScheduledExecutorService executorService;
+  private final Optional<SlotClock> slotClock;
 
   public DbPrunerRunner(
       final SlashingProtectionParameters slashingProtectionParameters,
@@ -30,9 +33,17 @@ public class DbPrunerRunner {
     this.slashingProtectionParameters = slashingProtectionParameters;
     this.slashingProtection = slashingProtection;
     this.executorService = executorService;
+    this.slotClock =
+        SlashingProtectionFactory.isIncrementalPruning(slashingProtectionParameters)
+            ? Optional.of(SlashingProtectionFactory.createSlotClock(slashingProtectionParameters))
+            : Optional.empty();
   }
 
   public void schedule() {
+    if (slotClock.isPresent()) {
+      scheduleIncrement(slotClock.get());
+      return;
+    }
     executorService.scheduleAtFixedRate(
         this::runPruning,
         slashingProtectionParameters.getPruningInterval(),
@@ -40,6 +51,18 @@ public class DbPrunerRunner {
         slashingProtectionParameters.getPruningIntervalTimeUnit());
   }
 
+  // incremental pruning runs in the quiet part of every slot, rescheduling after each run so runs
+  // that overrun the quiet window move to the next slot rather than queueing up
+  private void scheduleIncrement(final SlotClock clock) {
+    executorService.schedule(
+        () -> {
+          runPruning();
+          scheduleIncrement(clock);
+        },
+        clock.untilNextQuietWindow().toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
   public void execute() {
     executorService.execute(this::runPruning);
   }
@@ -14,16 +14,21 @@ package tech.pegasys.web3signer.slashingprotection;
 
 import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
 import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_COMMITTED;
-import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.SERIALIZABLE;
-import static tech.pegasys.web3signer.slashingprotection.DbLocker.lockForValidator;
 
 import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.DbLocker.ValidatorLock;
+import tech.pegasys.web3signer.slashingprotection.SlashingStateCache.AttestationState;
+import tech.pegasys.web3signer.slashingprotection.SlashingStateCache.BlockState;
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
-import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingPartitionsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeManager;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeV5Manager;
@@ -31,41 +36,58 @@ import tech.pegasys.web3signer.slashingprotection.validator.AttestationValidator
 import tech.pegasys.web3signer.slashingprotection.validator.BlockValidator;
 import tech.pegasys.web3signer.slashingprotection.validator.GenesisValidatorRootValidator;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
-import com.google.common.collect.Streams;
+import com.google.common.collect.Lists;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 
-public class DbSlashingProtection implements SlashingProtection {
+public class DbSlashingProtection implements SlashingProtection, Closeable {
 
   private static final Logger LOG = LogManager.getLogger();
+  private static final int REGISTRATION_CHUNK_SIZE = 1000;
+  // Postgres sizes its shared lock table for max_locks_per_transaction (64 by default) locks per
+  // connection, so a batch is checked in transactions which each hold at most that many locks
+  private static final int BATCH_TRANSACTION_SIZE = 64;
   private final Jdbi jdbi;
+  private final Jdbi blockJdbi;
+  private final Jdbi attestationJdbi;
+  private final ValidatorLocker validatorLocker;
   private final ValidatorsDao validatorsDao;
   private final SignedBlocksDao signedBlocksDao;
   private final SignedAttestationsDao signedAttestationsDao;
-  private final BiMap<Bytes, Integer> registeredValidators;
+  private final RegisteredValidators registeredValidators;
   private final InterchangeManager interchangeManager;
   private final LowWatermarkDao lowWatermarkDao;
   private final GenesisValidatorRootValidator gvrValidator;
   private final DbPruner dbPruner;
+  private final Optional<PartitionedDbPruner> partitionedDbPruner;
+  private final Optional<ValidatorSetPruner> validatorSetPruner;
   private final long pruningEpochsToKeep;
   private final long pruningSlotsPerEpoch;
+  private final SlashingStateCache stateCache;
+  private final boolean consolidatedChecksEnabled;
 
   public DbSlashingProtection(
       final Jdbi jdbi,
@@ -78,16 +100,16 @@ public class DbSlashingProtection implements SlashingProtection {
       final long pruningEpochsToKeep,
       final long pruningSlotsPerEpoch) {
     this(
-        jdbi,
-        pruningJdbi,
-        validatorsDao,
-        signedBlocksDao,
-        signedAttestationsDao,
-        metadataDao,
-        lowWatermarkDao,
-        pruningEpochsToKeep,
-        pruningSlotsPerEpoch,
-        HashBiMap.create());
+        builder(
+            jdbi,
+            pruningJdbi,
+            validatorsDao,
+            signedBlocksDao,
+            signedAttestationsDao,
+            metadataDao,
+            lowWatermarkDao,
+            pruningEpochsToKeep,
+            pruningSlotsPerEpoch));
   }
 
   public DbSlashingProtection(
@@ -100,30 +122,96 @@ public class DbSlashingProtection implements SlashingProtection {
       final LowWatermarkDao lowWatermarkDao,
       final long pruningEpochsToKeep,
       final long pruningSlotsPerEpoch,
-      final BiMap<Bytes, Integer> registeredValidators) {
-    this.jdbi = jdbi;
-    this.validatorsDao = validatorsDao;
-    this.signedBlocksDao = signedBlocksDao;
-    this.signedAttestationsDao = signedAttestationsDao;
-    this.lowWatermarkDao = lowWatermarkDao;
-    this.registeredValidators = registeredValidators;
-    this.gvrValidator = new GenesisValidatorRootValidator(jdbi, metadataDao);
+      final RegisteredValidators registeredValidators) {
+    this(
+        builder(
+                jdbi,
+                pruningJdbi,
+                validatorsDao,
+                signedBlocksDao,
+                signedAttestationsDao,
+                metadataDao,
+                lowWatermarkDao,
+                pruningEpochsToKeep,
+                pruningSlotsPerEpoch)
+            .registeredValidators(registeredValidators));
+  }
+
+  private DbSlashingProtection(final Builder builder) {
+    this.jdbi = builder.jdbi;
+    this.validatorLocker = builder.validatorLocker;
+    this.blockJdbi = builder.blockJdbi;
+    this.attestationJdbi = builder.attestationJdbi;
+    this.validatorsDao = builder.validatorsDao;
+    this.signedBlocksDao = builder.signedBlocksDao;
+    this.signedAttestationsDao = builder.signedAttestationsDao;
+    this.lowWatermarkDao = builder.lowWatermarkDao;
+    this.registeredValidators = builder.registeredValidators;
+    this.gvrValidator = new GenesisValidatorRootValidator(jdbi, builder.metadataDao);
     this.interchangeManager =
         new InterchangeV5Manager(
             jdbi,
             validatorsDao,
             signedBlocksDao,
             signedAttestationsDao,
-            metadataDao,
+            builder.metadataDao,
             lowWatermarkDao,
             new ObjectMapper()
                 .registerModule(new InterchangeModule())
-                .configure(FLUSH_AFTER_WRITE_VALUE, true)
-                .enable(SerializationFeature.INDENT_OUTPUT));
+                .configure(FLUSH_AFTER_WRITE_VALUE, false)
+                .configure(SerializationFeature.INDENT_OUTPUT, !builder.exportCompactEnabled),
+            builder.importBulkEnabled,
+            builder.importCheckpointSize,
+            builder.exportParallelism);
     this.dbPruner =
-        new DbPruner(pruningJdbi, signedBlocksDao, signedAttestationsDao, lowWatermarkDao);
-    this.pruningEpochsToKeep = pruningEpochsToKeep;
-    this.pruningSlotsPerEpoch = pruningSlotsPerEpoch;
+        new DbPruner(
+            builder.pruningJdbi,
+            signedBlocksDao,
+            signedAttestationsDao,
+            lowWatermarkDao,
+            validatorLocker);
+    this.partitionedDbPruner =
+        builder.pruningPartitionEpochs > 0
+            ? Optional.of(
+                new PartitionedDbPruner(
+                    builder.pruningJdbi,
+                    new SlashingPartitionsDao(),
+                    lowWatermarkDao,
+                    builder.pruningPartitionEpochs,
+                    validatorLocker))
+            : Optional.empty();
+    this.validatorSetPruner = builder.validatorSetPruner;
+    this.pruningEpochsToKeep = builder.pruningEpochsToKeep;
+    this.pruningSlotsPerEpoch = builder.pruningSlotsPerEpoch;
+    this.stateCache = builder.stateCache;
+    // the state cache needs each decision made under its lock, so it keeps the individual checks
+    this.consolidatedChecksEnabled = builder.consolidatedChecksEnabled && !stateCache.isEnabled();
+  }
+
+  /**
+   * Creates a builder for the slashing protection, with the optional features disabled and all
+   * database work on the given jdbi other than pruning.
+   */
+  public static Builder builder(
+      final Jdbi jdbi,
+      final Jdbi pruningJdbi,
+      final ValidatorsDao validatorsDao,
+      final SignedBlocksDao signedBlocksDao,
+      final SignedAttestationsDao signedAttestationsDao,
+      final MetadataDao metadataDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final long pruningEpochsToKeep,
+      final long pruningSlotsPerEpoch) {
+    return new Builder(
+        jdbi,
+        pruningJdbi,
+        validatorsDao,
+        signedBlocksDao,
+        signedAttestationsDao,
+        metadataDao,
+        lowWatermarkDao,
+        pruningEpochsToKeep,
+        pruningSlotsPerEpoch);
   }
 
   @Override
@@ -132,6 +220,8 @@ public class DbSlashingProtection implements SlashingProtection {
       LOG.info("Importing slashing protection database");
       interchangeManager.importData(input);
       LOG.info("Import complete");
+      gvrValidator.reset();
+      stateCache.invalidateAll();
     } catch (final IOException | UnsupportedOperationException | IllegalArgumentException e) {
       throw new RuntimeException("Failed to import database content", e);
     }
@@ -139,9 +229,14 @@ public class DbSlashingProtection implements SlashingProtection {
 
   @Override
   public void export(final OutputStream output) {
+    export(output, InterchangeCompression.NONE);
+  }
+
+  @Override
+  public void export(final OutputStream output, final InterchangeCompression compression) {
     try {
       LOG.info("Exporting slashing protection database");
-      interchangeManager.export(output);
+      interchangeManager.export(output, compression);
       LOG.info("Export complete");
     } catch (IOException e) {
       throw new RuntimeException("Failed to export database content", e);
@@ -161,38 +256,92 @@ public class DbSlashingProtection implements SlashingProtection {
       return false;
     }
 
-    return jdbi.inTransaction(
-        READ_COMMITTED,
-        handle -> {
-          final AttestationValidator attestationValidator =
-              new AttestationValidator(
-                  handle,
-                  publicKey,
-                  signingRoot,
-                  sourceEpoch,
-                  targetEpoch,
-                  validatorId,
-                  signedAttestationsDao,
-                  lowWatermarkDao);
-
-          if (attestationValidator.sourceGreaterThanTargetEpoch()) {
-            return false;
-          }
-
-          lockForValidator(handle, LockType.ATTESTATION, validatorId);
-
-          if (attestationValidator.hasSourceOlderThanWatermark()
-              || attestationValidator.hasTargetOlderThanWatermark()
-              || attestationValidator.directlyConflictsWithExistingEntry()
-              || attestationValidator.isSurroundedByExistingAttestation()
-              || attestationValidator.surroundsExistingAttestation()) {
-            return false;
-          }
-          if (!attestationValidator.alreadyExists()) {
-            attestationValidator.persist();
-          }
-          return true;
-        });
+    final List<ValidatorLock> locks =
+        List.of(new ValidatorLock(LockType.ATTESTATION, validatorId));
+    return stateCache.callLocked(
+        locks,
+        () ->
+            validatorLocker.inTransaction(
+                attestationJdbi,
+                READ_COMMITTED,
+                transactionLocks(locks),
+                handle ->
+                    checkAndPersistAttestation(
+                        handle, publicKey, signingRoot, sourceEpoch, targetEpoch, validatorId)));
+  }
+
+  private boolean checkAndPersistAttestation(
+      final Handle handle,
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final int validatorId) {
+    if (consolidatedChecksEnabled) {
+      final SlashingCheckResult<SignedAttestation> result =
+          signedAttestationsDao.checkAndInsertAttestation(
+              handle, validatorId, sourceEpoch, targetEpoch, signingRoot);
+      if (!result.getVerdict().isSafeToSign()) {
+        LOG.warn(
+            "Attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={} is not safe to sign: {}",
+            signingRoot,
+            sourceEpoch,
+            targetEpoch,
+            publicKey,
+            result);
+      }
+      return result.getVerdict().isSafeToSign();
+    }
+
+    final AttestationValidator attestationValidator =
+        new AttestationValidator(
+            handle,
+            publicKey,
+            signingRoot,
+            sourceEpoch,
+            targetEpoch,
+            validatorId,
+            signedAttestationsDao,
+            lowWatermarkDao);
+
+    if (attestationValidator.sourceGreaterThanTargetEpoch()) {
+      return false;
+    }
+
+    final Optional<AttestationState> state = stateCache.attestationState(handle, validatorId);
+    if (state.isPresent()) {
+      if (state.get().isLastSigned(targetEpoch, signingRoot)) {
+        return true;
+      }
+      if (state.get().isNewerThanAllSigned(sourceEpoch, targetEpoch)) {
+        signedAttestationsDao.insertAttestation(
+            handle, new SignedAttestation(validatorId, sourceEpoch, targetEpoch, signingRoot));
+        state.get().recordSigned(sourceEpoch, targetEpoch, signingRoot);
+        return true;
+      }
+    }
+
+    final Optional<SurroundSpans> surroundSpans = state.map(AttestationState::getSurroundSpans);
+    if (attestationValidator.hasSourceOlderThanWatermark()
+        || attestationValidator.hasTargetOlderThanWatermark()
+        || attestationValidator.directlyConflictsWithExistingEntry()
+        || attestationValidator.isSurroundedByExistingAttestation(surroundSpans)
+        || attestationValidator.surroundsExistingAttestation(surroundSpans)) {
+      return false;
+    }
+    if (!attestationValidator.alreadyExists()) {
+      attestationValidator.persist();
+      state.ifPresent(
+          s -> {
+            if (s.hasWatermark()) {
+              s.recordSigned(sourceEpoch, targetEpoch, signingRoot);
+            } else {
+              // persisting the first attestation sets the watermark, so reload the state
+              stateCache.invalidate(new ValidatorLock(LockType.ATTESTATION, validatorId));
+            }
+          });
+    }
+    return true;
   }
 
   @Override
@@ -205,75 +354,372 @@ public class DbSlashingProtection implements SlashingProtection {
     if (!gvrValidator.checkGenesisValidatorsRootAndInsertIfEmpty(genesisValidatorsRoot)) {
       return false;
     }
-    return jdbi.inTransaction(
-        READ_COMMITTED,
-        h -> {
-          final BlockValidator blockValidator =
-              new BlockValidator(
-                  h, signingRoot, blockSlot, validatorId, signedBlocksDao, lowWatermarkDao);
-
-          lockForValidator(h, LockType.BLOCK, validatorId);
-
-          if (blockValidator.isOlderThanWatermark()
-              || blockValidator.directlyConflictsWithExistingEntry()) {
-            return false;
-          }
-          if (!blockValidator.alreadyExists()) {
-            blockValidator.persist();
-          }
-          return true;
-        });
+    final List<ValidatorLock> locks = List.of(new ValidatorLock(LockType.BLOCK, validatorId));
+    return stateCache.callLocked(
+        locks,
+        () ->
+            validatorLocker.inTransaction(
+                blockJdbi,
+                READ_COMMITTED,
+                transactionLocks(locks),
+                h -> checkAndPersistBlock(h, signingRoot, blockSlot, validatorId)));
+  }
+
+  private boolean checkAndPersistBlock(
+      final Handle handle, final Bytes signingRoot, final UInt64 blockSlot, final int validatorId) {
+    if (consolidatedChecksEnabled) {
+      final SlashingCheckResult<SignedBlock> result =
+          signedBlocksDao.checkAndInsertBlock(handle, validatorId, blockSlot, signingRoot);
+      if (!result.getVerdict().isSafeToSign()) {
+        LOG.warn(
+            "Block signingRoot={} slot={} for validator {} is not safe to sign: {}",
+            signingRoot,
+            blockSlot,
+            validatorId,
+            result);
+      }
+      return result.getVerdict().isSafeToSign();
+    }
+
+    final BlockValidator blockValidator =
+        new BlockValidator(
+            handle, signingRoot, blockSlot, validatorId, signedBlocksDao, lowWatermarkDao);
+
+    final Optional<BlockState> state = stateCache.blockState(handle, validatorId);
+    if (state.isPresent()) {
+      if (state.get().isLastSigned(blockSlot, signingRoot)) {
+        return true;
+      }
+      if (state.get().isNewerThanAllSigned(blockSlot)) {
+        signedBlocksDao.insertBlockProposal(
+            handle, new SignedBlock(validatorId, blockSlot, signingRoot));
+        state.get().recordSigned(blockSlot, signingRoot);
+        return true;
+      }
+    }
+
+    if (blockValidator.isOlderThanWatermark()
+        || blockValidator.directlyConflictsWithExistingEntry()) {
+      return false;
+    }
+    if (!blockValidator.alreadyExists()) {
+      blockValidator.persist();
+      state.ifPresent(
+          s -> {
+            if (s.hasWatermark()) {
+              s.recordSigned(blockSlot, signingRoot);
+            } else {
+              // persisting the first block sets the watermark, so reload the state
+              stateCache.invalidate(new ValidatorLock(LockType.BLOCK, validatorId));
+            }
+          });
+    }
+    return true;
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheckRequest> requests) {
+    final Boolean[] results = new Boolean[requests.size()];
+    final Map<Bytes32, Boolean> gvrResults = new HashMap<>();
+    final List<Integer> pendingIndexes = new ArrayList<>();
+    final int[] validatorIds = new int[requests.size()];
+    // as for the single checks an unregistered validator is an error, raised before any checking
+    for (int i = 0; i < requests.size(); i++) {
+      validatorIds[i] = validatorId(requests.get(i).getPublicKey());
+    }
+
+    for (int i = 0; i < requests.size(); i++) {
+      final SlashingCheckRequest request = requests.get(i);
+      // the genesis validators root is checked once per distinct value in the batch
+      final boolean validGvr =
+          gvrResults.computeIfAbsent(
+              request.getGenesisValidatorsRoot(),
+              gvrValidator::checkGenesisValidatorsRootAndInsertIfEmpty);
+      if (!validGvr) {
+        results[i] = false;
+        continue;
+      }
+      pendingIndexes.add(i);
+    }
+
+    // validator locks are held until the end of each transaction, so they are always acquired in
+    // the same (type, validator) order to avoid deadlocking with other batches
+    pendingIndexes.sort(
+        Comparator.<Integer, SlashingCheckRequest.Type>comparing(i -> requests.get(i).getType())
+            .thenComparingInt(i -> validatorIds[i]));
+    for (final List<Integer> chunk : Lists.partition(pendingIndexes, BATCH_TRANSACTION_SIZE)) {
+      checkBatchChunk(requests, validatorIds, chunk, results);
+    }
+
+    return Arrays.asList(results);
+  }
+
+  private void checkBatchChunk(
+      final List<SlashingCheckRequest> requests,
+      final int[] validatorIds,
+      final List<Integer> chunk,
+      final Boolean[] results) {
+    final List<ValidatorLock> stateLocks =
+        chunk.stream()
+            .map(i -> new ValidatorLock(lockType(requests.get(i)), validatorIds[i]))
+            .collect(Collectors.toList());
+    // a chunk holding a block proposal uses the block lane so it never waits behind attestations
+    final Jdbi chunkJdbi =
+        chunk.stream().anyMatch(i -> requests.get(i).getType() == SlashingCheckRequest.Type.BLOCK)
+            ? blockJdbi
+            : attestationJdbi;
+    stateCache.callLocked(
+        stateLocks,
+        () ->
+            validatorLocker.inTransaction(
+                chunkJdbi,
+                READ_COMMITTED,
+                transactionLocks(stateLocks),
+                h -> {
+                  for (final int i : chunk) {
+                    final SlashingCheckRequest request = requests.get(i);
+                    if (request.getType() == SlashingCheckRequest.Type.BLOCK) {
+                      results[i] =
+                          checkAndPersistBlock(
+                              h, request.getSigningRoot(), request.getBlockSlot(), validatorIds[i]);
+                    } else {
+                      results[i] =
+                          checkAndPersistAttestation(
+                              h,
+                              request.getPublicKey(),
+                              request.getSigningRoot(),
+                              request.getSourceEpoch(),
+                              request.getTargetEpoch(),
+                              validatorIds[i]);
+                    }
+                  }
+                  return null;
+                }));
   }
 
   @Override
   public void registerValidators(final List<Bytes> validators) {
-    if (validators.isEmpty()) {
+    // keys registered by an earlier load are skipped, so a reload only touches the new keys
+    final List<Bytes> unregisteredValidators = registeredValidators.unregistered(validators);
+    if (unregisteredValidators.isEmpty()) {
       return;
     }
 
-    jdbi.useTransaction(
-        SERIALIZABLE,
-        h -> {
-          final List<Validator> existingRegisteredValidators =
-              validatorsDao.retrieveValidators(h, validators);
-          final List<Bytes> existingValidatorsPublicKeys =
-              existingRegisteredValidators.stream()
-                  .map(Validator::getPublicKey)
-                  .collect(Collectors.toList());
+    // keys which already have an id are published before anything is inserted, so they are able
+    // to sign while the keys new to the database are still being registered
+    final List<Bytes> validatorsMissingFromDb = new ArrayList<>();
+    for (final List<Bytes> chunk :
+        Lists.partition(unregisteredValidators, REGISTRATION_CHUNK_SIZE)) {
+      registeredValidators.registerAll(
+          jdbi.withHandle(h -> validatorsDao.retrieveValidators(h, chunk)));
+      validatorsMissingFromDb.addAll(registeredValidators.unregistered(chunk));
+    }
 
-          final List<Bytes> validatorsMissingFromDb = new ArrayList<>(validators);
-          validatorsMissingFromDb.removeAll(existingValidatorsPublicKeys);
+    for (final List<Bytes> chunk :
+        Lists.partition(validatorsMissingFromDb, REGISTRATION_CHUNK_SIZE)) {
+      registeredValidators.registerAll(
+          jdbi.inTransaction(READ_COMMITTED, h -> validatorsDao.registerValidators(h, chunk)));
+      // keys inserted concurrently by another instance were skipped by the insert
+      final List<Bytes> concurrentlyRegistered = registeredValidators.unregistered(chunk);
+      if (!concurrentlyRegistered.isEmpty()) {
+        registeredValidators.registerAll(
+            jdbi.withHandle(h -> validatorsDao.retrieveValidators(h, concurrentlyRegistered)));
+      }
+    }
+    LOG.info(
+        "Registered {} validators with the slashing protection database",
+        unregisteredValidators.size());
 
-          final List<Validator> newlyRegisteredValidators =
-              validatorsDao.registerValidators(h, validatorsMissingFromDb);
+    warmUpStateCache(unregisteredValidators);
+  }
 
-          Streams.concat(existingRegisteredValidators.stream(), newlyRegisteredValidators.stream())
-              .forEach(v -> registeredValidators.put(v.getPublicKey(), v.getId()));
-        });
+  private void warmUpStateCache(final List<Bytes> validators) {
+    if (!stateCache.isEnabled()) {
+      return;
+    }
+    final List<Integer> validatorIds =
+        validators.stream()
+            .map(registeredValidators::getId)
+            .filter(id -> id != RegisteredValidators.UNREGISTERED)
+            .collect(Collectors.toList());
+    try {
+      LOG.info("Warming up slashing protection state for {} validators", validatorIds.size());
+      stateCache.warmUp(jdbi, validatorIds);
+      LOG.info("Slashing protection state warm up complete");
+    } catch (final RuntimeException e) {
+      // the state of validators that were not warmed up is loaded by their first request instead
+      LOG.warn("Failed to warm up slashing protection state", e);
+    }
   }
 
   @Override
   public void prune() {
-    final Set<Integer> validatorKeys = registeredValidators.values();
+    final Set<Integer> validatorKeys = registeredValidators.validatorIds();
+    if (partitionedDbPruner.isEmpty() && validatorSetPruner.isPresent()) {
+      // set based pruners report their own progress, and incremental pruning runs every slot so
+      // only the validators with moved watermarks lose their cached state
+      final Collection<Integer> prunedValidators =
+          validatorSetPruner
+              .get()
+              .prune(Set.copyOf(validatorKeys), pruningEpochsToKeep, pruningSlotsPerEpoch);
+      stateCache.invalidate(prunedValidators);
+      return;
+    }
     LOG.info("Pruning slashing protection database for {} validators", validatorKeys.size());
-    final AtomicInteger pruningCount = new AtomicInteger();
-    validatorKeys.forEach(
-        v -> {
-          LOG.debug(
-              "Pruning {} of {} validator {}",
-              pruningCount::incrementAndGet,
-              validatorKeys::size,
-              () -> registeredValidators.inverse().get(v));
-          dbPruner.pruneForValidator(v, pruningEpochsToKeep, pruningSlotsPerEpoch);
-        });
+    if (partitionedDbPruner.isPresent()) {
+      partitionedDbPruner
+          .get()
+          .prune(Set.copyOf(validatorKeys), pruningEpochsToKeep, pruningSlotsPerEpoch);
+    } else {
+      final AtomicInteger pruningCount = new AtomicInteger();
+      validatorKeys.forEach(
+          v -> {
+            LOG.debug(
+                "Pruning {} of {} validator {}",
+                pruningCount::incrementAndGet,
+                validatorKeys::size,
+                () -> registeredValidators.getPublicKey(v));
+            dbPruner.pruneForValidator(v, pruningEpochsToKeep, pruningSlotsPerEpoch);
+          });
+    }
+    stateCache.invalidateAll();
     LOG.info("Pruning slashing protection database complete");
   }
 
+  /** Releases the database locks which exclude instances locking validators differently. */
+  @Override
+  public void close() {
+    validatorLocker.close();
+  }
+
+  private List<ValidatorLock> transactionLocks(final List<ValidatorLock> locks) {
+    // the consolidated check functions take the advisory locks themselves
+    return consolidatedChecksEnabled && validatorLocker.isAdvisory() ? List.of() : locks;
+  }
+
+  private LockType lockType(final SlashingCheckRequest request) {
+    return request.getType() == SlashingCheckRequest.Type.BLOCK
+        ? LockType.BLOCK
+        : LockType.ATTESTATION;
+  }
+
   private int validatorId(final Bytes publicKey) {
-    final Integer validatorId = registeredValidators.get(publicKey);
-    if (validatorId == null) {
+    final int validatorId = registeredValidators.getId(publicKey);
+    if (validatorId == RegisteredValidators.UNREGISTERED) {
       throw new IllegalStateException("Unregistered validator for " + publicKey);
     }
     return validatorId;
   }
+
+  public static class Builder {
+    private final Jdbi jdbi;
+    private final Jdbi pruningJdbi;
+    private final ValidatorsDao validatorsDao;
+    private final SignedBlocksDao signedBlocksDao;
+    private final SignedAttestationsDao signedAttestationsDao;
+    private final MetadataDao metadataDao;
+    private final LowWatermarkDao lowWatermarkDao;
+    private final long pruningEpochsToKeep;
+    private final long pruningSlotsPerEpoch;
+    private RegisteredValidators registeredValidators = new RegisteredValidators();
+    private SlashingStateCache stateCache = SlashingStateCache.disabled();
+    private boolean consolidatedChecksEnabled;
+    private long pruningPartitionEpochs;
+    private Optional<ValidatorSetPruner> validatorSetPruner = Optional.empty();
+    private boolean importBulkEnabled;
+    private int importCheckpointSize;
+    private int exportParallelism = 1;
+    private boolean exportCompactEnabled;
+    private Jdbi blockJdbi;
+    private Jdbi attestationJdbi;
+    private ValidatorLocker validatorLocker = new AdvisoryValidatorLocker();
+
+    private Builder(
+        final Jdbi jdbi,
+        final Jdbi pruningJdbi,
+        final ValidatorsDao validatorsDao,
+        final SignedBlocksDao signedBlocksDao,
+        final SignedAttestationsDao signedAttestationsDao,
+        final MetadataDao metadataDao,
+        final LowWatermarkDao lowWatermarkDao,
+        final long pruningEpochsToKeep,
+        final long pruningSlotsPerEpoch) {
+      this.jdbi = jdbi;
+      this.pruningJdbi = pruningJdbi;
+      this.validatorsDao = validatorsDao;
+      this.signedBlocksDao = signedBlocksDao;
+      this.signedAttestationsDao = signedAttestationsDao;
+      this.metadataDao = metadataDao;
+      this.lowWatermarkDao = lowWatermarkDao;
+      this.pruningEpochsToKeep = pruningEpochsToKeep;
+      this.pruningSlotsPerEpoch = pruningSlotsPerEpoch;
+      this.blockJdbi = jdbi;
+      this.attestationJdbi = jdbi;
+    }
+
+    public Builder registeredValidators(final RegisteredValidators registeredValidators) {
+      this.registeredValidators = registeredValidators;
+      return this;
+    }
+
+    public Builder stateCache(final SlashingStateCache stateCache) {
+      this.stateCache = stateCache;
+      return this;
+    }
+
+    public Builder consolidatedChecksEnabled(final boolean consolidatedChecksEnabled) {
+      this.consolidatedChecksEnabled = consolidatedChecksEnabled;
+      return this;
+    }
+
+    /** Prunes using range partitioned tables when above zero. */
+    public Builder pruningPartitionEpochs(final long pruningPartitionEpochs) {
+      this.pruningPartitionEpochs = pruningPartitionEpochs;
+      return this;
+    }
+
+    public Builder validatorSetPruner(final Optional<ValidatorSetPruner> validatorSetPruner) {
+      this.validatorSetPruner = validatorSetPruner;
+      return this;
+    }
+
+    public Builder importBulkEnabled(final boolean importBulkEnabled) {
+      this.importBulkEnabled = importBulkEnabled;
+      return this;
+    }
+
+    public Builder importCheckpointSize(final int importCheckpointSize) {
+      this.importCheckpointSize = importCheckpointSize;
+      return this;
+    }
+
+    public Builder exportParallelism(final int exportParallelism) {
+      this.exportParallelism = exportParallelism;
+      return this;
+    }
+
+    public Builder exportCompactEnabled(final boolean exportCompactEnabled) {
+      this.exportCompactEnabled = exportCompactEnabled;
+      return this;
+    }
+
+    /**
+     * @param blockJdbi used for block proposal checks, and batches containing one
+     * @param attestationJdbi used for attestation checks
+     */
+    public Builder laneJdbis(final Jdbi blockJdbi, final Jdbi attestationJdbi) {
+      this.blockJdbi = blockJdbi;
+      this.attestationJdbi = attestationJdbi;
+      return this;
+    }
+
+    public Builder validatorLocker(final ValidatorLocker validatorLocker) {
+      this.validatorLocker = validatorLocker;
+      return this;
+    }
+
+    public DbSlashingProtection build() {
+      return new DbSlashingProtection(this);
+    }
+  }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_UNCOMMITTED;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.PruningPosition;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Prunes slashing protection data a few validators at a time, so a pruning pass is spread over many
+ * short runs rather than holding database connections and validator locks for the whole pass. Each
+ * run only starts within the quiet part of a slot and stops when its time or row budget is spent or
+ * the quiet part of the slot ends, continuing from the same validator and row on the next run. A
+ * new pass starts once the pass interval has elapsed since the previous pass started.
+ *
+ * <p>Progress is kept in memory, so a pass that is interrupted by a restart starts again from the
+ * first validator.
+ */
+public class IncrementalDbPruner implements ValidatorSetPruner {
+  private static final Logger LOG = LogManager.getLogger();
+  static final int VALIDATORS_PER_CHUNK = 100;
+
+  private final Jdbi jdbi;
+  private final SignedBlocksDao signedBlocksDao;
+  private final SignedAttestationsDao signedAttestationsDao;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final int batchSize;
+  private final Duration timeBudget;
+  private final long rowBudget;
+  private final Duration passInterval;
+  private final SlotClock slotClock;
+  private final PruningMetrics pruningMetrics;
+  private final ValidatorLocker validatorLocker;
+
+  private Optional<Long> passStartTime = Optional.empty();
+  private boolean passInProgress;
+  private long passDeletedRows;
+  private int lastPrunedValidatorId;
+  private Optional<Chunk> chunk = Optional.empty();
+
+  public IncrementalDbPruner(
+      final Jdbi jdbi,
+      final SignedBlocksDao signedBlocksDao,
+      final SignedAttestationsDao signedAttestationsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final int batchSize,
+      final Duration timeBudget,
+      final long rowBudget,
+      final Duration passInterval,
+      final SlotClock slotClock,
+      final PruningMetrics pruningMetrics,
+      final ValidatorLocker validatorLocker) {
+    checkArgument(batchSize > 0, "batchSize must be a positive value, but was %s", batchSize);
+    checkArgument(rowBudget > 0, "rowBudget must be a positive value, but was %s", rowBudget);
+    this.jdbi = jdbi;
+    this.signedBlocksDao = signedBlocksDao;
+    this.signedAttestationsDao = signedAttestationsDao;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.batchSize = batchSize;
+    this.timeBudget = timeBudget;
+    this.rowBudget = rowBudget;
+    this.passInterval = passInterval;
+    this.slotClock = slotClock;
+    this.pruningMetrics = pruningMetrics;
+    this.validatorLocker = validatorLocker;
+  }
+
+  @Override
+  public synchronized Collection<Integer> prune(
+      final Collection<Integer> validatorIds, final long epochsToKeep, final long slotsPerEpoch) {
+    checkArgument(
+        epochsToKeep > 0, "epochsToKeep must be a positive value, but was %s", epochsToKeep);
+    checkArgument(
+        slotsPerEpoch > 0, "slotsPerEpoch must be a positive value, but was %s", slotsPerEpoch);
+    final Optional<Duration> quietTime = slotClock.remainingQuietTime();
+    if (quietTime.isEmpty()) {
+      LOG.debug("Skipping pruning outside of the quiet part of the slot");
+      return List.of();
+    }
+    final long startTime = System.nanoTime();
+    if (!passInProgress) {
+      if (!isPassDue(startTime)) {
+        return List.of();
+      }
+      startPass(startTime, validatorIds.size());
+    }
+
+    final long deadline = startTime + min(timeBudget, quietTime.get()).toNanos();
+    final long slotsToKeep = Math.multiplyExact(epochsToKeep, slotsPerEpoch);
+    final List<Integer> movedWatermarks = new ArrayList<>();
+    long remainingRows = rowBudget;
+    while (remainingRows > 0 && System.nanoTime() < deadline) {
+      if (chunk.isEmpty()) {
+        final List<Integer> chunkValidatorIds =
+            validatorIds.stream()
+                .filter(v -> v > lastPrunedValidatorId)
+                .sorted()
+                .limit(VALIDATORS_PER_CHUNK)
+                .collect(Collectors.toList());
+        if (chunkValidatorIds.isEmpty()) {
+          completePass();
+          return movedWatermarks;
+        }
+        chunk = Optional.of(startChunk(chunkValidatorIds, slotsToKeep, epochsToKeep));
+        movedWatermarks.addAll(chunkValidatorIds);
+        continue;
+      }
+
+      final Chunk current = chunk.get();
+      final int limit = (int) Math.min(batchSize, remainingRows);
+      final List<PruningPosition> deleted = deleteBatch(current, limit);
+      remainingRows -= deleted.size();
+      passDeletedRows += deleted.size();
+      pruningMetrics.rowsDeleted(current.table.getTableName(), deleted.size());
+      if (deleted.size() < limit) {
+        completeTable(current);
+      } else {
+        current.position = Collections.max(deleted);
+      }
+    }
+    LOG.debug(
+        "Pruned {} rows in {} ms, up to validator {}",
+        rowBudget - remainingRows,
+        Duration.ofNanos(System.nanoTime() - startTime).toMillis(),
+        lastPrunedValidatorId);
+    return movedWatermarks;
+  }
+
+  private boolean isPassDue(final long now) {
+    return passStartTime.map(t -> now - t >= passInterval.toNanos()).orElse(true);
+  }
+
+  private void startPass(final long now, final int validatorCount) {
+    LOG.info("Starting incremental pruning of {} validators", validatorCount);
+    passStartTime = Optional.of(now);
+    passInProgress = true;
+    passDeletedRows = 0;
+    lastPrunedValidatorId = 0;
+    pruningMetrics.passStarted(validatorCount);
+  }
+
+  private void completePass() {
+    final Duration duration = Duration.ofNanos(System.nanoTime() - passStartTime.orElseThrow());
+    pruningMetrics.passCompleted(passDeletedRows, duration);
+    LOG.info(
+        "Incremental pruning pass deleted {} rows in {} ms", passDeletedRows, duration.toMillis());
+    passInProgress = false;
+  }
+
+  private Chunk startChunk(
+      final List<Integer> validatorIds, final long slotsToKeep, final long epochsToKeep) {
+    advanceWatermarks(
+        validatorIds,
+        LockType.BLOCK,
+        h -> lowWatermarkDao.advanceSlotWatermarks(h, validatorIds, slotsToKeep));
+    advanceWatermarks(
+        validatorIds,
+        LockType.ATTESTATION,
+        h -> lowWatermarkDao.advanceEpochWatermarks(h, validatorIds, epochsToKeep));
+    return new Chunk(validatorIds);
+  }
+
+  private void completeTable(final Chunk current) {
+    if (current.table == PrunedTable.SIGNED_BLOCKS) {
+      current.table = PrunedTable.SIGNED_ATTESTATIONS;
+      current.position = PruningPosition.before(current.firstValidatorId());
+    } else {
+      lastPrunedValidatorId = current.lastValidatorId();
+      pruningMetrics.validatorsPruned(current.validatorIds.size());
+      chunk = Optional.empty();
+    }
+  }
+
+  private void advanceWatermarks(
+      final List<Integer> validatorIds,
+      final LockType lockType,
+      final ToIntFunction<Handle> watermarkUpdate) {
+    // the locks are held from the start of the callback until the transaction has ended
+    final AtomicReference<TimingContext> lockHoldTimer = new AtomicReference<>();
+    try {
+      validatorLocker.inTransaction(
+          jdbi,
+          READ_UNCOMMITTED,
+          lockType,
+          validatorIds,
+          h -> {
+            lockHoldTimer.set(pruningMetrics.locksAcquired());
+            return watermarkUpdate.applyAsInt(h);
+          });
+    } finally {
+      final TimingContext timingContext = lockHoldTimer.get();
+      if (timingContext != null) {
+        timingContext.stopTimer();
+      }
+    }
+  }
+
+  private List<PruningPosition> deleteBatch(final Chunk current, final int limit) {
+    final TimingContext timingContext = pruningMetrics.batchStarted();
+    try {
+      return jdbi.inTransaction(
+          READ_UNCOMMITTED,
+          h ->
+              current.table == PrunedTable.SIGNED_BLOCKS
+                  ? signedBlocksDao.deleteBlocksBelowWatermark(
+                      h, current.position, current.lastValidatorId(), limit)
+                  : signedAttestationsDao.deleteAttestationsBelowWatermark(
+                      h, current.position, current.lastValidatorId(), limit));
+    } finally {
+      timingContext.stopTimer();
+    }
+  }
+
+  private static Duration min(final Duration a, final Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  private enum PrunedTable {
+    SIGNED_BLOCKS("signed_blocks"),
+    SIGNED_ATTESTATIONS("signed_attestations");
+
+    private final String tableName;
+
+    PrunedTable(final String tableName) {
+      this.tableName = tableName;
+    }
+
+    String getTableName() {
+      return tableName;
+    }
+  }
+
+  /** Validators whose watermarks have been advanced and rows below them are being deleted. */
+  private static class Chunk {
+    private final List<Integer> validatorIds;
+    private PrunedTable table = PrunedTable.SIGNED_BLOCKS;
+    private PruningPosition position;
+
+    Chunk(final List<Integer> validatorIds) {
+      this.validatorIds = validatorIds;
+      this.position = PruningPosition.before(firstValidatorId());
+    }
+
+    int firstValidatorId() {
+      return validatorIds.get(0);
+    }
+
+    int lastValidatorId() {
+      return validatorIds.get(validatorIds.size() - 1);
+    }
+  }
+}
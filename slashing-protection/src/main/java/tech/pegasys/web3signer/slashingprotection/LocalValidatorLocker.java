@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.ValidatorLock;
+import tech.pegasys.web3signer.slashingprotection.dao.LockLeaseDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+
+/**
+ * Locks validators with striped in-memory locks, avoiding a database round trip for each lock.
+ * In-memory locks only exclude work within this process, so they are only safe while this is the
+ * single Web3Signer instance using the database.
+ *
+ * <p>That is enforced with the locking mode lock, held exclusively for as long as the session of
+ * the handle given to the locker lasts, which instances using advisory locks hold shared. A lease
+ * in the database is also renewed in the background on the same session; once it cannot be renewed
+ * before it expires, for instance because the session was lost along with the lock, no further
+ * locks are granted.
+ */
+public class LocalValidatorLocker implements ValidatorLocker {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int LOCK_STRIPES = 1024;
+
+  private final Handle sessionHandle;
+  private final LockLeaseDao lockLeaseDao;
+  private final long leaseDurationMillis;
+  private final String owner = UUID.randomUUID().toString();
+  private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+  private final ScheduledExecutorService leaseRenewer =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("lock-lease-renewer").setDaemon(true).build());
+  private volatile long leaseValidUntilNanos;
+  private volatile boolean leaseLost;
+  private boolean lockingModeLockHeld;
+
+  /**
+   * @param sessionHandle a handle on a connection of its own, which must not be shared with any
+   *     other database work as the locking mode lock is held by its session
+   */
+  public LocalValidatorLocker(
+      final Handle sessionHandle, final LockLeaseDao lockLeaseDao, final long leaseDurationMillis) {
+    checkArgument(leaseDurationMillis > 0, "Lease duration must be positive");
+    this.sessionHandle = sessionHandle;
+    this.lockLeaseDao = lockLeaseDao;
+    this.leaseDurationMillis = leaseDurationMillis;
+  }
+
+  /**
+   * Takes the locking mode lock and the lease and starts renewing the lease. A lease left by an
+   * instance which has stopped expires within one lease duration, as does the lock of a session
+   * the database has not yet noticed is gone, so acquiring is retried for that long before failing.
+   *
+   * @throws IllegalStateException if the database is in use by another instance
+   */
+  public void start() {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseDurationMillis);
+    while (!tryAcquire()) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new IllegalStateException(
+            "Slashing protection database is in use by another instance using local locking, "
+                + "or by instances using advisory locks");
+      }
+      LOG.info("Waiting for other instances to release the slashing protection database");
+      try {
+        Thread.sleep(Math.min(leaseDurationMillis, 1000));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted waiting for the lock lease", e);
+      }
+    }
+    final long renewalInterval = Math.max(leaseDurationMillis / 3, 1);
+    leaseRenewer.scheduleWithFixedDelay(
+        this::renewLeaseInBackground, renewalInterval, renewalInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public <T> T inTransaction(
+      final Jdbi jdbi,
+      final TransactionIsolationLevel isolationLevel,
+      final List<ValidatorLock> validatorLocks,
+      final HandleCallback<T, RuntimeException> callback) {
+    checkLease();
+    // bulkGet orders the stripes consistently, so overlapping lock sets cannot deadlock
+    final List<Lock> acquired = new ArrayList<>(validatorLocks.size());
+    try {
+      for (final Lock lock : locks.bulkGet(validatorLocks)) {
+        lock.lock();
+        acquired.add(lock);
+      }
+      // the lease may have been lost while waiting for the stripes
+      checkLease();
+      return jdbi.inTransaction(isolationLevel, callback);
+    } finally {
+      for (int i = acquired.size() - 1; i >= 0; i--) {
+        acquired.get(i).unlock();
+      }
+    }
+  }
+
+  /**
+   * Stops granting locks and, once the work holding locks has finished, releases the lease and the
+   * locking mode lock so that another instance can start without waiting for the lease to expire.
+   */
+  @Override
+  public void close() {
+    leaseLost = true;
+    leaseRenewer.shutdown();
+    // taking every stripe in index order waits for work in progress, which then cannot be joined
+    // by new work as it finds the lease gone once it holds its stripes
+    final List<Lock> acquired = new ArrayList<>(LOCK_STRIPES);
+    try {
+      for (int i = 0; i < locks.size(); i++) {
+        final Lock lock = locks.getAt(i);
+        lock.lock();
+        acquired.add(lock);
+      }
+      release();
+    } finally {
+      for (int i = acquired.size() - 1; i >= 0; i--) {
+        acquired.get(i).unlock();
+      }
+    }
+  }
+
+  private void checkLease() {
+    if (leaseLost || System.nanoTime() - leaseValidUntilNanos >= 0) {
+      throw new IllegalStateException(
+          "Lock lease on the slashing protection database is not held, "
+              + "refusing to lock validators");
+    }
+  }
+
+  private synchronized boolean tryAcquire() {
+    if (!lockingModeLockHeld) {
+      lockingModeLockHeld = DbLocker.tryLockLockingModeExclusive(sessionHandle);
+    }
+    return lockingModeLockHeld && renewLease();
+  }
+
+  private synchronized boolean renewLease() {
+    final long requestedAt = System.nanoTime();
+    final boolean renewed = lockLeaseDao.acquireLease(sessionHandle, owner, leaseDurationMillis);
+    if (renewed) {
+      // measured from before the request so the local expiry is never later than the database's
+      leaseValidUntilNanos = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseDurationMillis);
+    }
+    return renewed;
+  }
+
+  private synchronized void release() {
+    try {
+      lockLeaseDao.releaseLease(sessionHandle, owner);
+      if (lockingModeLockHeld) {
+        DbLocker.unlockLockingModeExclusive(sessionHandle);
+        lockingModeLockHeld = false;
+      }
+    } catch (final RuntimeException e) {
+      LOG.warn("Failed to release the lock lease on the slashing protection database", e);
+    } finally {
+      sessionHandle.close();
+    }
+  }
+
+  private void renewLeaseInBackground() {
+    try {
+      if (!renewLease()) {
+        leaseLost = true;
+        LOG.error("Lock lease on the slashing protection database was taken by another instance");
+        leaseRenewer.shutdown();
+      }
+    } catch (final RuntimeException e) {
+      LOG.warn("Failed to renew lock lease on the slashing protection database", e);
+    }
+  }
+}
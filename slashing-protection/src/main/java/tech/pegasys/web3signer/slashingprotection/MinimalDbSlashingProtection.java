@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_COMMITTED;
+
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MinimalSigningStateDao;
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeManager;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
+import tech.pegasys.web3signer.slashingprotection.interchange.MinimalInterchangeManager;
+import tech.pegasys.web3signer.slashingprotection.validator.GenesisValidatorRootValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Slashing protection following the minimal strategy of EIP-3076, which refuses anything at or
+ * below the highest signed block slot, below the highest signed source epoch or at or below the
+ * highest signed target epoch, unless it repeats the last signed block or attestation. Only one
+ * row of state is kept per validator, each check is a single conditional update and there is
+ * nothing to prune.
+ *
+ * <p>The same statement raises the low watermarks of the validator, so a database can be switched
+ * back to full slashing protection without allowing anything signed here to be signed again with
+ * a different signing root.
+ */
+public class MinimalDbSlashingProtection implements SlashingProtection {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int REGISTRATION_CHUNK_SIZE = 1000;
+
+  private final Jdbi jdbi;
+  private final Jdbi blockJdbi;
+  private final Jdbi attestationJdbi;
+  private final ValidatorsDao validatorsDao;
+  private final MinimalSigningStateDao minimalSigningStateDao;
+  private final RegisteredValidators registeredValidators;
+  private final GenesisValidatorRootValidator gvrValidator;
+  private final InterchangeManager interchangeManager;
+
+  public MinimalDbSlashingProtection(
+      final Jdbi jdbi,
+      final Jdbi blockJdbi,
+      final Jdbi attestationJdbi,
+      final ValidatorsDao validatorsDao,
+      final MinimalSigningStateDao minimalSigningStateDao,
+      final MetadataDao metadataDao,
+      final RegisteredValidators registeredValidators,
+      final boolean exportCompactEnabled) {
+    this.jdbi = jdbi;
+    this.blockJdbi = blockJdbi;
+    this.attestationJdbi = attestationJdbi;
+    this.validatorsDao = validatorsDao;
+    this.minimalSigningStateDao = minimalSigningStateDao;
+    this.registeredValidators = registeredValidators;
+    this.gvrValidator = new GenesisValidatorRootValidator(jdbi, metadataDao);
+    this.interchangeManager =
+        new MinimalInterchangeManager(
+            jdbi,
+            validatorsDao,
+            minimalSigningStateDao,
+            metadataDao,
+            new ObjectMapper()
+                .registerModule(new InterchangeModule())
+                .configure(FLUSH_AFTER_WRITE_VALUE, false)
+                .configure(SerializationFeature.INDENT_OUTPUT, !exportCompactEnabled));
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes32 genesisValidatorsRoot) {
+    final int validatorId = validatorId(publicKey);
+
+    if (!gvrValidator.checkGenesisValidatorsRootAndInsertIfEmpty(genesisValidatorsRoot)) {
+      return false;
+    }
+
+    return attestationJdbi.withHandle(
+        h -> checkAttestation(h, publicKey, signingRoot, sourceEpoch, targetEpoch, validatorId));
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final Bytes32 genesisValidatorsRoot) {
+    final int validatorId = validatorId(publicKey);
+
+    if (!gvrValidator.checkGenesisValidatorsRootAndInsertIfEmpty(genesisValidatorsRoot)) {
+      return false;
+    }
+
+    return blockJdbi.withHandle(h -> checkBlock(h, publicKey, signingRoot, blockSlot, validatorId));
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheckRequest> requests) {
+    final Map<Bytes32, Boolean> gvrResults = new HashMap<>();
+    // as for the single checks an unregistered validator is an error, raised before any checking
+    final int[] validatorIds =
+        requests.stream().mapToInt(r -> validatorId(r.getPublicKey())).toArray();
+    final Jdbi batchJdbi =
+        requests.stream().anyMatch(r -> r.getType() == SlashingCheckRequest.Type.BLOCK)
+            ? blockJdbi
+            : attestationJdbi;
+    return batchJdbi.withHandle(
+        h -> {
+          final List<Boolean> results = new ArrayList<>(requests.size());
+          for (int i = 0; i < requests.size(); i++) {
+            final SlashingCheckRequest request = requests.get(i);
+            final int validatorId = validatorIds[i];
+            // the genesis validators root is checked once per distinct value in the batch
+            final boolean validGvr =
+                gvrResults.computeIfAbsent(
+                    request.getGenesisValidatorsRoot(),
+                    gvrValidator::checkGenesisValidatorsRootAndInsertIfEmpty);
+            if (!validGvr) {
+              results.add(false);
+            } else if (request.getType() == SlashingCheckRequest.Type.BLOCK) {
+              results.add(
+                  checkBlock(
+                      h,
+                      request.getPublicKey(),
+                      request.getSigningRoot(),
+                      request.getBlockSlot(),
+                      validatorId));
+            } else {
+              results.add(
+                  checkAttestation(
+                      h,
+                      request.getPublicKey(),
+                      request.getSigningRoot(),
+                      request.getSourceEpoch(),
+                      request.getTargetEpoch(),
+                      validatorId));
+            }
+          }
+          return results;
+        });
+  }
+
+  private boolean checkBlock(
+      final Handle handle,
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final int validatorId) {
+    final boolean safeToSign =
+        minimalSigningStateDao.updateBlock(handle, validatorId, blockSlot, signingRoot);
+    if (!safeToSign) {
+      LOG.warn(
+          "Block slot {} for validator {} is not above the highest signed slot",
+          blockSlot,
+          publicKey);
+    }
+    return safeToSign;
+  }
+
+  private boolean checkAttestation(
+      final Handle handle,
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final int validatorId) {
+    if (sourceEpoch.compareTo(targetEpoch) > 0) {
+      LOG.warn(
+          "Attestation source epoch {} is greater than target epoch {} for validator {}",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return false;
+    }
+    final boolean safeToSign =
+        minimalSigningStateDao.updateAttestation(
+            handle, validatorId, sourceEpoch, targetEpoch, signingRoot);
+    if (!safeToSign) {
+      LOG.warn(
+          "Attestation sourceEpoch={} targetEpoch={} for validator {} is not above the highest "
+              + "signed epochs",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+    }
+    return safeToSign;
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    // keys registered by an earlier load are skipped, so a reload only touches the new keys
+    final List<Bytes> unregisteredValidators = registeredValidators.unregistered(validators);
+    for (final List<Bytes> chunk :
+        Lists.partition(unregisteredValidators, REGISTRATION_CHUNK_SIZE)) {
+      // validators are only published once their signing state exists
+      registeredValidators.registerAll(
+          jdbi.inTransaction(READ_COMMITTED, h -> registerValidatorsChunk(h, chunk)));
+    }
+  }
+
+  private List<Validator> registerValidatorsChunk(final Handle h, final List<Bytes> validators) {
+    final List<Validator> chunkValidators =
+        new ArrayList<>(validatorsDao.retrieveValidators(h, validators));
+    final List<Bytes> validatorsMissingFromDb = new ArrayList<>(validators);
+    chunkValidators.forEach(v -> validatorsMissingFromDb.remove(v.getPublicKey()));
+    if (!validatorsMissingFromDb.isEmpty()) {
+      final List<Validator> newlyRegisteredValidators =
+          validatorsDao.registerValidators(h, validatorsMissingFromDb);
+      chunkValidators.addAll(newlyRegisteredValidators);
+      // keys inserted concurrently by another instance were skipped by the insert
+      newlyRegisteredValidators.forEach(v -> validatorsMissingFromDb.remove(v.getPublicKey()));
+      if (!validatorsMissingFromDb.isEmpty()) {
+        chunkValidators.addAll(validatorsDao.retrieveValidators(h, validatorsMissingFromDb));
+      }
+    }
+    minimalSigningStateDao.registerValidators(
+        h, chunkValidators.stream().map(Validator::getId).collect(Collectors.toList()));
+    return chunkValidators;
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    try {
+      LOG.info("Importing slashing protection database");
+      interchangeManager.importData(input);
+      LOG.info("Import complete");
+      gvrValidator.reset();
+    } catch (final IOException | UnsupportedOperationException | IllegalArgumentException e) {
+      throw new RuntimeException("Failed to import database content", e);
+    }
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    export(output, InterchangeCompression.NONE);
+  }
+
+  @Override
+  public void export(final OutputStream output, final InterchangeCompression compression) {
+    try {
+      LOG.info("Exporting slashing protection database");
+      interchangeManager.export(output, compression);
+      LOG.info("Export complete");
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to export database content", e);
+    }
+  }
+
+  @Override
+  public void prune() {
+    LOG.debug("Minimal slashing protection keeps no signing history, so has nothing to prune");
+  }
+
+  private int validatorId(final Bytes publicKey) {
+    final int validatorId = registeredValidators.getId(publicKey);
+    if (validatorId == RegisteredValidators.UNREGISTERED) {
+      throw new IllegalStateException("Unregistered validator for " + publicKey);
+    }
+    return validatorId;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_COMMITTED;
+
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.PartitionedTable;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingPartition;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingPartitionsDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Prunes slashing protection data kept in range partitioned signed_blocks and signed_attestations
+ * tables. Watermarks of all validators are advanced in bulk, as the per validator {@link DbPruner}
+ * would move them, and partitions entirely below the retention window are then dropped rather than
+ * having their rows deleted. The few rows that must be kept from a dropped partition, those of
+ * validators that have not signed recently, are moved into the history partition.
+ *
+ * <p>The tables are converted to the partitioned layout on first use, and partitions are created
+ * ahead of the highest signed slot and epoch on each run.
+ */
+public class PartitionedDbPruner implements ValidatorSetPruner {
+  private static final Logger LOG = LogManager.getLogger();
+  static final int PARTITIONS_AHEAD = 2;
+
+  private final Jdbi jdbi;
+  private final SlashingPartitionsDao slashingPartitionsDao;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final long partitionEpochs;
+  private final ValidatorLocker validatorLocker;
+
+  public PartitionedDbPruner(
+      final Jdbi jdbi,
+      final SlashingPartitionsDao slashingPartitionsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final long partitionEpochs,
+      final ValidatorLocker validatorLocker) {
+    checkArgument(
+        partitionEpochs > 0,
+        "partitionEpochs must be a positive value, but was %s",
+        partitionEpochs);
+    this.jdbi = jdbi;
+    this.slashingPartitionsDao = slashingPartitionsDao;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.partitionEpochs = partitionEpochs;
+    this.validatorLocker = validatorLocker;
+  }
+
+  @Override
+  public Collection<Integer> prune(
+      final Collection<Integer> validatorIds, final long epochsToKeep, final long slotsPerEpoch) {
+    checkArgument(
+        epochsToKeep > 0, "epochsToKeep must be a positive value, but was %s", epochsToKeep);
+    checkArgument(
+        slotsPerEpoch > 0, "slotsPerEpoch must be a positive value, but was %s", slotsPerEpoch);
+    final long partitionSlots = Math.multiplyExact(partitionEpochs, slotsPerEpoch);
+    final long slotsToKeep = Math.multiplyExact(epochsToKeep, slotsPerEpoch);
+
+    prepareTable(PartitionedTable.SIGNED_BLOCKS, partitionSlots);
+    final int movedSlotWatermarks =
+        advanceWatermarks(
+            PartitionedTable.SIGNED_BLOCKS,
+            validatorIds,
+            h -> lowWatermarkDao.advanceSlotWatermarks(h, validatorIds, slotsToKeep));
+    final int droppedBlockPartitions = dropPartitions(PartitionedTable.SIGNED_BLOCKS, slotsToKeep);
+
+    prepareTable(PartitionedTable.SIGNED_ATTESTATIONS, partitionEpochs);
+    final int movedEpochWatermarks =
+        advanceWatermarks(
+            PartitionedTable.SIGNED_ATTESTATIONS,
+            validatorIds,
+            h -> lowWatermarkDao.advanceEpochWatermarks(h, validatorIds, epochsToKeep));
+    final int droppedAttestationPartitions =
+        dropPartitions(PartitionedTable.SIGNED_ATTESTATIONS, epochsToKeep);
+
+    LOG.info(
+        "Moved {} slot and {} epoch watermarks, dropped {} block and {} attestation partitions",
+        movedSlotWatermarks,
+        movedEpochWatermarks,
+        droppedBlockPartitions,
+        droppedAttestationPartitions);
+    return validatorIds;
+  }
+
+  private void prepareTable(final PartitionedTable table, final long partitionSize) {
+    final boolean partitioned =
+        jdbi.withHandle(h -> slashingPartitionsDao.isPartitioned(h, table));
+    if (!partitioned) {
+      convertTable(table, partitionSize);
+    }
+    addPartitionsAhead(table, partitionSize);
+  }
+
+  private void convertTable(final PartitionedTable table, final long partitionSize) {
+    LOG.info("Converting {} to a partitioned table", table.getTableName());
+    jdbi.useTransaction(
+        h -> {
+          final UInt64 lowest =
+              floor(slashingPartitionsDao.findMinKey(h, table).orElse(UInt64.ZERO), partitionSize);
+          final UInt64 highest = slashingPartitionsDao.findMaxKey(h, table).orElse(UInt64.ZERO);
+          final List<UInt64> boundaries = new ArrayList<>();
+          boundaries.add(lowest);
+          for (Optional<UInt64> next = nextBoundary(lowest, partitionSize);
+              next.isPresent() && boundaries.get(boundaries.size() - 1).compareTo(highest) <= 0;
+              next = nextBoundary(next.get(), partitionSize)) {
+            boundaries.add(next.get());
+          }
+          slashingPartitionsDao.convertToPartitioned(h, table, boundaries);
+        });
+    LOG.info("Converted {} to a partitioned table", table.getTableName());
+  }
+
+  private void addPartitionsAhead(final PartitionedTable table, final long partitionSize) {
+    jdbi.useTransaction(
+        h -> {
+          final UInt64 highest = slashingPartitionsDao.findMaxKey(h, table).orElse(UInt64.ZERO);
+          final Optional<UInt64> target =
+              nextBoundary(
+                  floor(highest, partitionSize),
+                  Math.multiplyExact(partitionSize, PARTITIONS_AHEAD + 1));
+          final List<SlashingPartition> partitions = slashingPartitionsDao.findPartitions(h, table);
+          if (target.isEmpty() || partitions.isEmpty()) {
+            return;
+          }
+          UInt64 lower = partitions.get(partitions.size() - 1).getUpperBound();
+          while (lower.compareTo(target.get()) < 0) {
+            final UInt64 upper = nextBoundary(lower, partitionSize).orElseThrow();
+            LOG.debug("Adding {} partition from {} to {}", table.getTableName(), lower, upper);
+            slashingPartitionsDao.addPartition(h, table, lower, upper);
+            lower = upper;
+          }
+        });
+  }
+
+  private int advanceWatermarks(
+      final PartitionedTable table,
+      final Collection<Integer> validatorIds,
+      final ToIntFunction<Handle> watermarkUpdate) {
+    return validatorLocker.inTransaction(
+        jdbi, READ_COMMITTED, table.getLockType(), validatorIds, watermarkUpdate::applyAsInt);
+  }
+
+  private int dropPartitions(final PartitionedTable table, final long amountToKeep) {
+    final Optional<UInt64> maxKey =
+        jdbi.withHandle(h -> slashingPartitionsDao.findMaxKey(h, table));
+    if (maxKey.isEmpty() || maxKey.get().compareTo(UInt64.valueOf(amountToKeep)) < 0) {
+      return 0;
+    }
+    final UInt64 pruningPoint = maxKey.get().subtract(amountToKeep).add(1);
+
+    int dropped = 0;
+    for (final SlashingPartition partition :
+        jdbi.withHandle(h -> slashingPartitionsDao.findPartitions(h, table))) {
+      if (partition.getUpperBound().compareTo(pruningPoint) > 0) {
+        break;
+      }
+      // rows are copied before the table is locked, so only the swap blocks signing
+      final int retained =
+          jdbi.inTransaction(h -> slashingPartitionsDao.copyRetainedRows(h, table, partition))
+              + jdbi.inTransaction(
+                  h -> slashingPartitionsDao.replaceLowestPartition(h, table, partition));
+      LOG.debug(
+          "Dropped {} partition {}, keeping {} rows in history partition",
+          table.getTableName(),
+          partition,
+          retained);
+      dropped++;
+    }
+    return dropped;
+  }
+
+  private static UInt64 floor(final UInt64 value, final long partitionSize) {
+    return value.subtract(value.mod(partitionSize));
+  }
+
+  private static Optional<UInt64> nextBoundary(final UInt64 boundary, final long size) {
+    return UInt64.MAX_VALUE.subtract(boundary).compareTo(UInt64.valueOf(size)) < 0
+        ? Optional.empty()
+        : Optional.of(boundary.add(size));
+  }
+}
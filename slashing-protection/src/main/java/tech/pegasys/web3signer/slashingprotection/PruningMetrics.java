@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+public class PruningMetrics {
+
+  private final Counter validatorsPruned;
+  private final LabelledMetric<Counter> rowsDeleted;
+  private final OperationTimer batchTimer;
+  private final OperationTimer lockTimer;
+  private final AtomicInteger passValidators = new AtomicInteger();
+  private final AtomicInteger passValidatorsPruned = new AtomicInteger();
+  private volatile double rowsPerSecond;
+
+  public PruningMetrics(final MetricsSystem metricsSystem) {
+    validatorsPruned =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "pruning_validators_pruned",
+            "The number of validators whose slashing protection data has been pruned");
+
+    rowsDeleted =
+        metricsSystem.createLabelledCounter(
+            ETH2_SLASHING_PROTECTION,
+            "pruning_rows_deleted",
+            "The number of rows deleted from the slashing protection database by pruning",
+            "table");
+
+    batchTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "pruning_batch_latency",
+            "Time taken to delete a batch of rows when pruning");
+
+    lockTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "pruning_lock_hold_time",
+            "Time pruning held the validator locks also taken by signing requests");
+
+    metricsSystem.createGauge(
+        ETH2_SLASHING_PROTECTION,
+        "pruning_progress",
+        "Fraction of validators pruned in the current or most recent pruning pass",
+        this::progress);
+
+    metricsSystem.createGauge(
+        ETH2_SLASHING_PROTECTION,
+        "pruning_rows_per_second",
+        "Rows deleted per second by the most recently completed pruning pass",
+        () -> rowsPerSecond);
+  }
+
+  public void passStarted(final int validatorCount) {
+    passValidators.set(validatorCount);
+    passValidatorsPruned.set(0);
+  }
+
+  public void validatorsPruned(final int validatorCount) {
+    validatorsPruned.inc(validatorCount);
+    passValidatorsPruned.addAndGet(validatorCount);
+  }
+
+  public void rowsDeleted(final String table, final long rowCount) {
+    rowsDeleted.labels(table).inc(rowCount);
+  }
+
+  public TimingContext batchStarted() {
+    return batchTimer.startTimer();
+  }
+
+  public TimingContext locksAcquired() {
+    return lockTimer.startTimer();
+  }
+
+  public void passCompleted(final long rowCount, final Duration duration) {
+    final long nanos = duration.toNanos();
+    rowsPerSecond = nanos == 0 ? rowCount : rowCount * 1e9 / nanos;
+  }
+
+  private double progress() {
+    final int validators = passValidators.get();
+    return validators == 0 ? 1.0 : (double) passValidatorsPruned.get() / validators;
+  }
+}
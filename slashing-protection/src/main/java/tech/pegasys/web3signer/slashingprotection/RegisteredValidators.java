@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * The database ids of the validators registered by this process, looked up by public key on every
+ * slashing check and by id when pruning.
+ *
+ * <p>Entries are held in parallel arrays indexed by two open addressing tables of primitive ints,
+ * one hashed on the public key and one on the validator id, so there is no boxing and no per entry
+ * node. Registration publishes a new immutable snapshot, which leaves lookups lock free while keys
+ * are being registered in the background.
+ */
+public class RegisteredValidators {
+
+  public static final int UNREGISTERED = -1;
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  public static RegisteredValidators of(final Map<Bytes, Integer> validators) {
+    final RegisteredValidators registeredValidators = new RegisteredValidators();
+    registeredValidators.registerAll(
+        validators.entrySet().stream()
+            .map(e -> new Validator(e.getValue(), e.getKey()))
+            .collect(Collectors.toList()));
+    return registeredValidators;
+  }
+
+  /** @return the validator id of the public key or {@link #UNREGISTERED} */
+  public int getId(final Bytes publicKey) {
+    return snapshot.idOf(publicKey);
+  }
+
+  /** @return the public key of the validator id or null if it is not registered */
+  public Bytes getPublicKey(final int validatorId) {
+    return snapshot.publicKeyOf(validatorId);
+  }
+
+  public boolean contains(final Bytes publicKey) {
+    return getId(publicKey) != UNREGISTERED;
+  }
+
+  public int size() {
+    return snapshot.size;
+  }
+
+  public Set<Integer> validatorIds() {
+    final Snapshot current = snapshot;
+    final Set<Integer> validatorIds = new HashSet<>(current.size * 2);
+    for (int i = 0; i < current.size; i++) {
+      validatorIds.add(current.ids[i]);
+    }
+    return validatorIds;
+  }
+
+  /** @return the public keys which are not registered yet, in their original order */
+  public List<Bytes> unregistered(final List<Bytes> publicKeys) {
+    final Snapshot current = snapshot;
+    return publicKeys.stream()
+        .filter(publicKey -> current.idOf(publicKey) == UNREGISTERED)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  public synchronized void registerAll(final Collection<Validator> validators) {
+    if (!validators.isEmpty()) {
+      snapshot = snapshot.with(validators);
+    }
+  }
+
+  private static class Snapshot {
+    private static final Snapshot EMPTY = new Snapshot(new Bytes[0], new int[0], 0);
+
+    private final Bytes[] publicKeys;
+    private final int[] ids;
+    private final int size;
+    // slots hold the entry index + 1, so that zero marks an empty slot
+    private final int[] keySlots;
+    private final int[] idSlots;
+
+    private Snapshot(final Bytes[] publicKeys, final int[] ids, final int size) {
+      this.publicKeys = publicKeys;
+      this.ids = ids;
+      this.size = size;
+      final int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+      this.keySlots = new int[capacity];
+      this.idSlots = new int[capacity];
+      for (int i = 0; i < size; i++) {
+        keySlots[freeSlot(keySlots, publicKeys[i].hashCode())] = i + 1;
+        idSlots[freeSlot(idSlots, ids[i])] = i + 1;
+      }
+    }
+
+    private Snapshot with(final Collection<Validator> validators) {
+      final Map<Bytes, Integer> added = new LinkedHashMap<>();
+      validators.forEach(v -> added.put(v.getPublicKey(), v.getId()));
+      final Bytes[] newPublicKeys = Arrays.copyOf(publicKeys, size + added.size());
+      final int[] newIds = Arrays.copyOf(ids, size + added.size());
+      int newSize = size;
+      for (final Map.Entry<Bytes, Integer> entry : added.entrySet()) {
+        final int existing = indexOfKey(entry.getKey());
+        if (existing >= 0) {
+          newIds[existing] = entry.getValue();
+        } else {
+          newPublicKeys[newSize] = entry.getKey();
+          newIds[newSize] = entry.getValue();
+          newSize++;
+        }
+      }
+      return new Snapshot(newPublicKeys, newIds, newSize);
+    }
+
+    private int idOf(final Bytes publicKey) {
+      final int index = indexOfKey(publicKey);
+      return index < 0 ? UNREGISTERED : ids[index];
+    }
+
+    private Bytes publicKeyOf(final int validatorId) {
+      final int mask = idSlots.length - 1;
+      for (int slot = spread(validatorId) & mask; idSlots[slot] != 0; slot = (slot + 1) & mask) {
+        if (ids[idSlots[slot] - 1] == validatorId) {
+          return publicKeys[idSlots[slot] - 1];
+        }
+      }
+      return null;
+    }
+
+    private int indexOfKey(final Bytes publicKey) {
+      final int mask = keySlots.length - 1;
+      for (int slot = spread(publicKey.hashCode()) & mask;
+          keySlots[slot] != 0;
+          slot = (slot + 1) & mask) {
+        if (publicKeys[keySlots[slot] - 1].equals(publicKey)) {
+          return keySlots[slot] - 1;
+        }
+      }
+      return -1;
+    }
+
+    private static int freeSlot(final int[] slots, final int hash) {
+      final int mask = slots.length - 1;
+      int slot = spread(hash) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private static int spread(final int hash) {
+      final int h = hash * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/** A single block or attestation to be checked as part of a batch of slashing checks. */
+public class SlashingCheckRequest {
+
+  public enum Type {
+    BLOCK,
+    ATTESTATION
+  }
+
+  private final Type type;
+  private final Bytes publicKey;
+  private final Bytes signingRoot;
+  private final UInt64 blockSlot;
+  private final UInt64 sourceEpoch;
+  private final UInt64 targetEpoch;
+  private final Bytes32 genesisValidatorsRoot;
+
+  private SlashingCheckRequest(
+      final Type type,
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes32 genesisValidatorsRoot) {
+    this.type = type;
+    this.publicKey = publicKey;
+    this.signingRoot = signingRoot;
+    this.blockSlot = blockSlot;
+    this.sourceEpoch = sourceEpoch;
+    this.targetEpoch = targetEpoch;
+    this.genesisValidatorsRoot = genesisValidatorsRoot;
+  }
+
+  public static SlashingCheckRequest block(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final Bytes32 genesisValidatorsRoot) {
+    return new SlashingCheckRequest(
+        Type.BLOCK, publicKey, signingRoot, blockSlot, null, null, genesisValidatorsRoot);
+  }
+
+  public static SlashingCheckRequest attestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes32 genesisValidatorsRoot) {
+    return new SlashingCheckRequest(
+        Type.ATTESTATION,
+        publicKey,
+        signingRoot,
+        null,
+        sourceEpoch,
+        targetEpoch,
+        genesisValidatorsRoot);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public Bytes getPublicKey() {
+    return publicKey;
+  }
+
+  public Bytes getSigningRoot() {
+    return signingRoot;
+  }
+
+  public UInt64 getBlockSlot() {
+    return blockSlot;
+  }
+
+  public UInt64 getSourceEpoch() {
+    return sourceEpoch;
+  }
+
+  public UInt64 getTargetEpoch() {
+    return targetEpoch;
+  }
+
+  public Bytes32 getGenesisValidatorsRoot() {
+    return genesisValidatorsRoot;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("type", type)
+        .add("publicKey", publicKey)
+        .add("signingRoot", signingRoot)
+        .add("blockSlot", blockSlot)
+        .add("sourceEpoch", sourceEpoch)
+        .add("targetEpoch", targetEpoch)
+        .add("genesisValidatorsRoot", genesisValidatorsRoot)
+        .toString();
+  }
+}
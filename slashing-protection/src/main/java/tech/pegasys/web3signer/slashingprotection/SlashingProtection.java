@@ -12,8 +12,12 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
+
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import org.apache.tuweni.bytes.Bytes;
@@ -32,10 +36,51 @@ public interface SlashingProtection {
   boolean maySignBlock(
       Bytes publicKey, Bytes signingRoot, UInt64 blockSlot, Bytes32 genesisValidatorsRoot);
 
+  /**
+   * Evaluates a single block or attestation slashing check.
+   *
+   * @param request the check to perform
+   * @return true if it is safe to sign
+   */
+  default boolean maySign(final SlashingCheckRequest request) {
+    if (request.getType() == SlashingCheckRequest.Type.BLOCK) {
+      return maySignBlock(
+          request.getPublicKey(),
+          request.getSigningRoot(),
+          request.getBlockSlot(),
+          request.getGenesisValidatorsRoot());
+    }
+    return maySignAttestation(
+        request.getPublicKey(),
+        request.getSigningRoot(),
+        request.getSourceEpoch(),
+        request.getTargetEpoch(),
+        request.getGenesisValidatorsRoot());
+  }
+
+  /**
+   * Evaluates a batch of block and attestation slashing checks, grouping the database work into as
+   * few transactions as possible.
+   *
+   * @param requests the checks to perform
+   * @return for each request, in the same order, true if it is safe to sign
+   * @throws IllegalStateException if any request is for an unregistered validator, in which case
+   *     none of the requests are checked, as for the single checks
+   */
+  List<Boolean> maySignBatch(List<SlashingCheckRequest> requests);
+
   void registerValidators(List<Bytes> validators);
 
   void export(OutputStream output);
 
+  default void export(final OutputStream output, final InterchangeCompression compression) {
+    try (final OutputStream compressed = compression.compressingStream(output)) {
+      export(compressed);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to compress exported content", e);
+    }
+  }
+
   void importData(InputStream output);
 
   void prune();
@@ -13,42 +13,166 @@
 package tech.pegasys.web3signer.slashingprotection;
 
 import tech.pegasys.web3signer.slashingprotection.dao.DatabaseVersionDao;
+import tech.pegasys.web3signer.slashingprotection.dao.LockLeaseDao;
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MinimalSigningStateDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+import tech.pegasys.web3signer.slashingprotection.file.FileSlashingProtection;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 
 public class SlashingProtectionFactory {
 
-  public static final int EXPECTED_DATABASE_VERSION = 8;
+  public static final int EXPECTED_DATABASE_VERSION = 14;
 
   public static SlashingProtection createSlashingProtection(
       final SlashingProtectionParameters slashingProtectionParameters) {
+    return createSlashingProtection(slashingProtectionParameters, new NoOpMetricsSystem());
+  }
+
+  public static SlashingProtection createSlashingProtection(
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final MetricsSystem metricsSystem) {
+    if (slashingProtectionParameters.getFileStorePath() != null) {
+      return FileSlashingProtection.create(
+          slashingProtectionParameters.getFileStorePath(),
+          slashingProtectionParameters.getPruningEpochsToKeep(),
+          slashingProtectionParameters.getPruningSlotsPerEpoch());
+    }
+
+    // cached state is only valid while nothing else writes to the database, which is only
+    // enforced when validators are locked in memory
+    if (slashingProtectionParameters.isStateCacheEnabled()
+        && !slashingProtectionParameters.isLocalLockingEnabled()) {
+      throw new IllegalStateException(
+          "Slashing protection state cache can only be enabled with local locking");
+    }
+
+    // the pools of all lanes report to the same labelled metrics
+    final DbPoolMetrics dbPoolMetrics = new DbPoolMetrics(metricsSystem);
+    final boolean lanesEnabled = slashingProtectionParameters.isDbLanesEnabled();
+    // with lanes enabled this pool is only used for background work such as registering
+    // validators, otherwise it is shared by all slashing protection work except pruning
     final Jdbi jdbi =
-        DbConnection.createConnection(
-            slashingProtectionParameters.getDbUrl(),
-            slashingProtectionParameters.getDbUsername(),
-            slashingProtectionParameters.getDbPassword(),
-            slashingProtectionParameters.getDbPoolConfigurationFile());
+        createLaneConnection(
+            slashingProtectionParameters,
+            lanesEnabled ? "background" : "shared",
+            0,
+            dbPoolMetrics);
 
     verifyVersion(jdbi);
 
-    // create separate Jdbi instance for pruning operations
+    final Jdbi blockJdbi;
+    final Jdbi attestationJdbi;
+    if (lanesEnabled) {
+      blockJdbi =
+          createLaneConnection(
+              slashingProtectionParameters,
+              "blocks",
+              slashingProtectionParameters.getDbBlockPoolSize(),
+              dbPoolMetrics);
+      attestationJdbi =
+          createLaneConnection(
+              slashingProtectionParameters,
+              "attestations",
+              slashingProtectionParameters.getDbAttestationPoolSize(),
+              dbPoolMetrics);
+    } else {
+      blockJdbi = jdbi;
+      attestationJdbi = jdbi;
+    }
+
+    if (slashingProtectionParameters.isMinimalEnabled()) {
+      return new MinimalDbSlashingProtection(
+          jdbi,
+          blockJdbi,
+          attestationJdbi,
+          new ValidatorsDao(),
+          new MinimalSigningStateDao(),
+          new MetadataDao(),
+          new RegisteredValidators(),
+          slashingProtectionParameters.isExportCompactEnabled());
+    }
+
+    final ValidatorLocker validatorLocker = createValidatorLocker(slashingProtectionParameters);
+
+    // create separate Jdbi instance for pruning operations, which only needs a single connection
+    // unless bulk pruning runs in parallel
     final Jdbi pruningJdbi =
-        DbConnection.createPruningConnection(
+        createLaneConnection(
+            slashingProtectionParameters,
+            "pruning",
+            slashingProtectionParameters.isPruningBulkEnabled()
+                    && !isIncrementalPruning(slashingProtectionParameters)
+                ? slashingProtectionParameters.getPruningParallelism()
+                : 1,
+            dbPoolMetrics);
+
+    return createSlashingProtection(
+        jdbi,
+        pruningJdbi,
+        blockJdbi,
+        attestationJdbi,
+        validatorLocker,
+        slashingProtectionParameters,
+        new PruningMetrics(metricsSystem),
+        metricsSystem);
+  }
+
+  private static Jdbi createLaneConnection(
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final String lane,
+      final int poolSize,
+      final DbPoolMetrics dbPoolMetrics) {
+    return DbConnection.createLaneConnection(
+        slashingProtectionParameters.getDbUrl(),
+        slashingProtectionParameters.getDbUsername(),
+        slashingProtectionParameters.getDbPassword(),
+        slashingProtectionParameters.getDbPoolConfigurationFile(),
+        lane,
+        poolSize,
+        dbPoolMetrics);
+  }
+
+  private static ValidatorLocker createValidatorLocker(
+      final SlashingProtectionParameters slashingProtectionParameters) {
+    // the locking mode lock and the lease are held on a session of their own, which lasts until
+    // the signer stops
+    final Handle sessionHandle =
+        DbConnection.createSessionHandle(
             slashingProtectionParameters.getDbUrl(),
             slashingProtectionParameters.getDbUsername(),
             slashingProtectionParameters.getDbPassword(),
             slashingProtectionParameters.getDbPoolConfigurationFile());
+    try {
+      if (slashingProtectionParameters.isLocalLockingEnabled()) {
+        final LocalValidatorLocker localValidatorLocker =
+            new LocalValidatorLocker(
+                sessionHandle,
+                new LockLeaseDao(),
+                slashingProtectionParameters.getLocalLockingLeaseMillis());
+        localValidatorLocker.start();
+        return localValidatorLocker;
+      }
 
-    return createSlashingProtection(
-        jdbi,
-        pruningJdbi,
-        slashingProtectionParameters.getPruningEpochsToKeep(),
-        slashingProtectionParameters.getPruningSlotsPerEpoch());
+      final AdvisoryValidatorLocker advisoryValidatorLocker =
+          new AdvisoryValidatorLocker(sessionHandle, new LockLeaseDao());
+      advisoryValidatorLocker.start();
+      return advisoryValidatorLocker;
+    } catch (final RuntimeException e) {
+      sessionHandle.close();
+      throw e;
+    }
   }
 
   private static void verifyVersion(final Jdbi jdbi) {
@@ -75,17 +199,93 @@ public class SlashingProtectionFactory {
   private static SlashingProtection createSlashingProtection(
       final Jdbi jdbi,
       final Jdbi pruningJdbi,
-      final long pruningEpochsToKeep,
-      final long pruningSlotsPerEpoch) {
-    return new DbSlashingProtection(
-        jdbi,
-        pruningJdbi,
-        new ValidatorsDao(),
-        new SignedBlocksDao(),
-        new SignedAttestationsDao(),
-        new MetadataDao(),
-        new LowWatermarkDao(),
-        pruningEpochsToKeep,
-        pruningSlotsPerEpoch);
+      final Jdbi blockJdbi,
+      final Jdbi attestationJdbi,
+      final ValidatorLocker validatorLocker,
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final PruningMetrics pruningMetrics,
+      final MetricsSystem metricsSystem) {
+    final SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+    final SignedAttestationsDao signedAttestationsDao = new SignedAttestationsDao();
+    final LowWatermarkDao lowWatermarkDao = new LowWatermarkDao();
+    final Optional<ValidatorSetPruner> validatorSetPruner;
+    if (isIncrementalPruning(slashingProtectionParameters)) {
+      validatorSetPruner =
+          Optional.of(
+              new IncrementalDbPruner(
+                  pruningJdbi,
+                  signedBlocksDao,
+                  signedAttestationsDao,
+                  lowWatermarkDao,
+                  slashingProtectionParameters.getPruningBatchSize(),
+                  Duration.ofMillis(slashingProtectionParameters.getPruningTimeBudgetMillis()),
+                  slashingProtectionParameters.getPruningRowBudget(),
+                  Duration.of(
+                      slashingProtectionParameters.getPruningInterval(),
+                      slashingProtectionParameters.getPruningIntervalTimeUnit().toChronoUnit()),
+                  createSlotClock(slashingProtectionParameters),
+                  pruningMetrics,
+                  validatorLocker));
+    } else if (slashingProtectionParameters.isPruningBulkEnabled()) {
+      validatorSetPruner =
+          Optional.of(
+              new BulkDbPruner(
+                  pruningJdbi,
+                  signedBlocksDao,
+                  signedAttestationsDao,
+                  lowWatermarkDao,
+                  slashingProtectionParameters.getPruningBatchSize(),
+                  slashingProtectionParameters.getPruningParallelism(),
+                  pruningMetrics,
+                  validatorLocker));
+    } else {
+      validatorSetPruner = Optional.empty();
+    }
+    return DbSlashingProtection.builder(
+            jdbi,
+            pruningJdbi,
+            new ValidatorsDao(),
+            signedBlocksDao,
+            signedAttestationsDao,
+            new MetadataDao(),
+            lowWatermarkDao,
+            slashingProtectionParameters.getPruningEpochsToKeep(),
+            slashingProtectionParameters.getPruningSlotsPerEpoch())
+        .stateCache(
+            new SlashingStateCache(
+                slashingProtectionParameters.isStateCacheEnabled(),
+                lowWatermarkDao,
+                signedAttestationsDao,
+                signedBlocksDao,
+                metricsSystem))
+        .consolidatedChecksEnabled(slashingProtectionParameters.isConsolidatedChecksEnabled())
+        .pruningPartitionEpochs(slashingProtectionParameters.getPruningPartitionEpochs())
+        .validatorSetPruner(validatorSetPruner)
+        .importBulkEnabled(slashingProtectionParameters.isImportBulkEnabled())
+        .importCheckpointSize(slashingProtectionParameters.getImportCheckpointSize())
+        .exportParallelism(slashingProtectionParameters.getExportParallelism())
+        .exportCompactEnabled(slashingProtectionParameters.isExportCompactEnabled())
+        .laneJdbis(blockJdbi, attestationJdbi)
+        .validatorLocker(validatorLocker)
+        .build();
+  }
+
+  /**
+   * Incremental pruning only applies to the database store when the tables are not partitioned, in
+   * every other case pruning runs in full at the pruning interval.
+   */
+  static boolean isIncrementalPruning(
+      final SlashingProtectionParameters slashingProtectionParameters) {
+    return slashingProtectionParameters.isPruningIncrementalEnabled()
+        && slashingProtectionParameters.getFileStorePath() == null
+        && slashingProtectionParameters.getPruningPartitionEpochs() == 0;
+  }
+
+  static SlotClock createSlotClock(
+      final SlashingProtectionParameters slashingProtectionParameters) {
+    return new SlotClock(
+        slashingProtectionParameters.getPruningGenesisTime(),
+        slashingProtectionParameters.getPruningSecondsPerSlot(),
+        Clock.systemUTC());
   }
 }
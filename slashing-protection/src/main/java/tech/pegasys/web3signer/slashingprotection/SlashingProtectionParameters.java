@@ -27,6 +27,8 @@ public interface SlashingProtectionParameters {
 
   Path getDbPoolConfigurationFile();
 
+  Path getFileStorePath();
+
   boolean isPruningEnabled();
 
   long getPruningEpochsToKeep();
@@ -36,4 +38,52 @@ public interface SlashingProtectionParameters {
   long getPruningInterval();
 
   TimeUnit getPruningIntervalTimeUnit();
+
+  long getPruningPartitionEpochs();
+
+  boolean isPruningBulkEnabled();
+
+  int getPruningBatchSize();
+
+  int getPruningParallelism();
+
+  boolean isPruningIncrementalEnabled();
+
+  long getPruningTimeBudgetMillis();
+
+  long getPruningRowBudget();
+
+  long getPruningGenesisTime();
+
+  long getPruningSecondsPerSlot();
+
+  boolean isStateCacheEnabled();
+
+  boolean isConsolidatedChecksEnabled();
+
+  boolean isImportBulkEnabled();
+
+  int getImportCheckpointSize();
+
+  int getExportParallelism();
+
+  boolean isExportCompactEnabled();
+
+  boolean isMinimalEnabled();
+
+  boolean isDbLanesEnabled();
+
+  int getDbBlockPoolSize();
+
+  int getDbAttestationPoolSize();
+
+  boolean isLocalLockingEnabled();
+
+  long getLocalLockingLeaseMillis();
+
+  boolean isBackgroundRegistrationEnabled();
+
+  long getGroupCommitWindowMillis();
+
+  int getGroupCommitMaxBatchSize();
 }
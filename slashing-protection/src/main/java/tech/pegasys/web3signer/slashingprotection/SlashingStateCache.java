@@ -0,0 +1,446 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.DbLocker.ValidatorLock;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Write-through cache of the slashing relevant state of each validator: the low watermarks, the
+ * highest signed epochs/slot, the most recently signed signing root and the surround spans of its
+ * attestations. It allows requests which are strictly newer than anything signed so far to be
+ * checked in memory, leaving only the insert to the database, and surround votes to be detected
+ * without searching the signed attestations.
+ *
+ * <p>The state is only valid while this process is the sole writer of slashing protection data for
+ * its validators, so it is only enabled together with local locking, whose database lease and
+ * locking mode lock keep any other signer or import from writing. State is loaded under the
+ * validator's database lock, and an in-memory lock is held for the whole transaction so the cache
+ * never runs ahead of committed data. Any failure discards the state of the validators involved so
+ * it is reloaded from the database.
+ */
+public class SlashingStateCache {
+
+  private static final int WARM_UP_CHUNK_SIZE = 1000;
+  private final boolean enabled;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final SignedAttestationsDao signedAttestationsDao;
+  private final SignedBlocksDao signedBlocksDao;
+  private final Map<Integer, ValidatorState> validatorStates = new ConcurrentHashMap<>();
+  // incremented whenever state is discarded, so warm up never installs state read before then
+  private final AtomicLong invalidations = new AtomicLong();
+  private final Counter warmUpValidators;
+  private volatile double warmUpSeconds;
+
+  public SlashingStateCache(
+      final boolean enabled,
+      final LowWatermarkDao lowWatermarkDao,
+      final SignedAttestationsDao signedAttestationsDao,
+      final SignedBlocksDao signedBlocksDao) {
+    this(enabled, lowWatermarkDao, signedAttestationsDao, signedBlocksDao, new NoOpMetricsSystem());
+  }
+
+  public SlashingStateCache(
+      final boolean enabled,
+      final LowWatermarkDao lowWatermarkDao,
+      final SignedAttestationsDao signedAttestationsDao,
+      final SignedBlocksDao signedBlocksDao,
+      final MetricsSystem metricsSystem) {
+    this.enabled = enabled;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.signedAttestationsDao = signedAttestationsDao;
+    this.signedBlocksDao = signedBlocksDao;
+    this.warmUpValidators =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "state_cache_warm_up_validators",
+            "The number of validators whose slashing protection state has been warmed up");
+    metricsSystem.createGauge(
+        ETH2_SLASHING_PROTECTION,
+        "state_cache_warm_up_duration_seconds",
+        "Time taken by the most recent warm up of the slashing protection state cache",
+        () -> warmUpSeconds);
+  }
+
+  public static SlashingStateCache disabled() {
+    return new SlashingStateCache(false, null, null, null);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Runs the operation holding the in-memory locks for the given validators. Locks are acquired in
+   * the order given, which must be consistent with the order database locks are taken in.
+   */
+  public <T> T callLocked(final List<ValidatorLock> locks, final Supplier<T> operation) {
+    if (!enabled) {
+      return operation.get();
+    }
+
+    int lockedCount = 0;
+    try {
+      for (final ValidatorLock lock : locks) {
+        lockFor(lock).lock();
+        lockedCount++;
+      }
+      return operation.get();
+    } catch (final RuntimeException | Error e) {
+      for (int i = 0; i < lockedCount; i++) {
+        invalidate(locks.get(i));
+      }
+      throw e;
+    } finally {
+      for (int i = lockedCount - 1; i >= 0; i--) {
+        lockFor(locks.get(i)).unlock();
+      }
+    }
+  }
+
+  public <T> T callLocked(
+      final LockType lockType, final int validatorId, final Supplier<T> operation) {
+    return callLocked(List.of(new ValidatorLock(lockType, validatorId)), operation);
+  }
+
+  /**
+   * Returns the attestation state of the validator, loading it from the database if required. The
+   * caller must hold both the in-memory and database attestation locks for the validator.
+   */
+  public Optional<AttestationState> attestationState(final Handle handle, final int validatorId) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    final ValidatorState state = validatorState(validatorId);
+    if (state.attestationState == null) {
+      final Optional<SigningWatermark> watermark =
+          lowWatermarkDao.findLowWatermarkForValidator(handle, validatorId);
+      final Optional<UInt64> maxSourceEpoch =
+          signedAttestationsDao.findMaxSourceEpoch(handle, validatorId);
+      state.attestationState =
+          new AttestationState(
+              watermark.map(SigningWatermark::getSourceEpoch).orElse(null),
+              watermark.map(SigningWatermark::getTargetEpoch).orElse(null),
+              maxSourceEpoch.orElse(null),
+              signedAttestationsDao.findMaxTargetEpoch(handle, validatorId).orElse(null),
+              loadSurroundSpans(handle, validatorId, maxSourceEpoch));
+    }
+    return Optional.of(state.attestationState);
+  }
+
+  private SurroundSpans loadSurroundSpans(
+      final Handle handle, final int validatorId, final Optional<UInt64> maxSourceEpoch) {
+    final SurroundSpans surroundSpans = new SurroundSpans(SurroundSpans.DEFAULT_HISTORY_LENGTH);
+    maxSourceEpoch.ifPresent(
+        epoch ->
+            signedAttestationsDao
+                .findAttestationsWithTargetEpochFrom(
+                    handle,
+                    validatorId,
+                    SurroundSpans.lowestRequiredTargetEpoch(
+                        epoch, SurroundSpans.DEFAULT_HISTORY_LENGTH))
+                .forEach(a -> surroundSpans.record(a.getSourceEpoch(), a.getTargetEpoch())));
+    return surroundSpans;
+  }
+
+  /**
+   * Returns the block state of the validator, loading it from the database if required. The caller
+   * must hold both the in-memory and database block locks for the validator.
+   */
+  public Optional<BlockState> blockState(final Handle handle, final int validatorId) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    final ValidatorState state = validatorState(validatorId);
+    if (state.blockState == null) {
+      final Optional<SigningWatermark> watermark =
+          lowWatermarkDao.findLowWatermarkForValidator(handle, validatorId);
+      state.blockState =
+          new BlockState(
+              watermark.map(SigningWatermark::getSlot).orElse(null),
+              signedBlocksDao.findMaxSlot(handle, validatorId).orElse(null));
+    }
+    return Optional.of(state.blockState);
+  }
+
+  /**
+   * Loads the state of the given validators with a few set based queries, chunked by validator, so
+   * the first requests after a restart are checked in memory rather than each loading the state
+   * of its validator. State already loaded by a request, or discarded while the warm up was
+   * reading, is left alone and loaded on demand as before.
+   */
+  public void warmUp(final Jdbi jdbi, final List<Integer> validatorIds) {
+    if (!enabled || validatorIds.isEmpty()) {
+      return;
+    }
+    final long start = System.nanoTime();
+    for (final List<Integer> chunk : Lists.partition(validatorIds, WARM_UP_CHUNK_SIZE)) {
+      final long invalidationsBeforeRead = invalidations.get();
+      final Map<Integer, ValidatorState> loadedStates = jdbi.withHandle(h -> loadStates(h, chunk));
+      loadedStates.forEach(
+          (validatorId, loaded) -> {
+            callLocked(
+                LockType.BLOCK,
+                validatorId,
+                () -> {
+                  final ValidatorState state = validatorState(validatorId);
+                  if (state.blockState == null && invalidations.get() == invalidationsBeforeRead) {
+                    state.blockState = loaded.blockState;
+                  }
+                  return null;
+                });
+            callLocked(
+                LockType.ATTESTATION,
+                validatorId,
+                () -> {
+                  final ValidatorState state = validatorState(validatorId);
+                  if (state.attestationState == null
+                      && invalidations.get() == invalidationsBeforeRead) {
+                    state.attestationState = loaded.attestationState;
+                  }
+                  return null;
+                });
+          });
+      warmUpValidators.inc(chunk.size());
+    }
+    warmUpSeconds = (System.nanoTime() - start) / 1e9;
+  }
+
+  private Map<Integer, ValidatorState> loadStates(
+      final Handle handle, final List<Integer> validatorIds) {
+    final Map<Integer, SigningWatermark> watermarks =
+        lowWatermarkDao.findLowWatermarksForValidators(handle, validatorIds).stream()
+            .collect(Collectors.toMap(SigningWatermark::getValidatorId, Function.identity()));
+    final Map<Integer, UInt64> maxSlots =
+        signedBlocksDao.findLatestBlocks(handle, validatorIds).stream()
+            .collect(Collectors.toMap(SignedBlock::getValidatorId, SignedBlock::getSlot));
+    final Map<Integer, List<SignedAttestation>> attestations =
+        signedAttestationsDao
+            .findRecentAttestations(handle, validatorIds, SurroundSpans.DEFAULT_HISTORY_LENGTH)
+            .stream()
+            .collect(Collectors.groupingBy(SignedAttestation::getValidatorId));
+
+    final Map<Integer, ValidatorState> states = new HashMap<>();
+    for (final int validatorId : validatorIds) {
+      final Optional<SigningWatermark> watermark = Optional.ofNullable(watermarks.get(validatorId));
+      final ValidatorState state = new ValidatorState();
+      state.blockState =
+          new BlockState(
+              watermark.map(SigningWatermark::getSlot).orElse(null), maxSlots.get(validatorId));
+      final SurroundSpans surroundSpans = new SurroundSpans(SurroundSpans.DEFAULT_HISTORY_LENGTH);
+      UInt64 maxSourceEpoch = null;
+      UInt64 maxTargetEpoch = null;
+      for (final SignedAttestation attestation :
+          attestations.getOrDefault(validatorId, List.of())) {
+        surroundSpans.record(attestation.getSourceEpoch(), attestation.getTargetEpoch());
+        maxSourceEpoch = max(maxSourceEpoch, attestation.getSourceEpoch());
+        maxTargetEpoch = max(maxTargetEpoch, attestation.getTargetEpoch());
+      }
+      state.attestationState =
+          new AttestationState(
+              watermark.map(SigningWatermark::getSourceEpoch).orElse(null),
+              watermark.map(SigningWatermark::getTargetEpoch).orElse(null),
+              maxSourceEpoch,
+              maxTargetEpoch,
+              surroundSpans);
+      states.put(validatorId, state);
+    }
+    return states;
+  }
+
+  /** Discards the state of a validator. The caller must hold the in-memory lock. */
+  public void invalidate(final ValidatorLock lock) {
+    invalidations.incrementAndGet();
+    final ValidatorState state = validatorStates.get(lock.getValidatorId());
+    if (state == null) {
+      return;
+    }
+    if (lock.getLockType() == LockType.ATTESTATION) {
+      state.attestationState = null;
+    } else {
+      state.blockState = null;
+    }
+  }
+
+  /** Discards the state of all validators, e.g. after pruning or importing data. */
+  public void invalidateAll() {
+    invalidate(validatorStates.keySet());
+  }
+
+  /** Discards the state of the given validators, e.g. after their watermarks have been moved. */
+  public void invalidate(final Collection<Integer> validatorIds) {
+    if (!enabled) {
+      return;
+    }
+    invalidations.incrementAndGet();
+    validatorIds.stream()
+        .filter(validatorStates::containsKey)
+        .forEach(
+            validatorId -> {
+              for (final LockType lockType : LockType.values()) {
+                final ValidatorLock lock = new ValidatorLock(lockType, validatorId);
+                callLocked(
+                    List.of(lock),
+                    () -> {
+                      invalidate(lock);
+                      return null;
+                    });
+              }
+            });
+  }
+
+  private ValidatorState validatorState(final int validatorId) {
+    return validatorStates.computeIfAbsent(validatorId, id -> new ValidatorState());
+  }
+
+  private ReentrantLock lockFor(final ValidatorLock lock) {
+    final ValidatorState state = validatorState(lock.getValidatorId());
+    return lock.getLockType() == LockType.ATTESTATION ? state.attestationLock : state.blockLock;
+  }
+
+  private static class ValidatorState {
+    private final ReentrantLock attestationLock = new ReentrantLock();
+    private final ReentrantLock blockLock = new ReentrantLock();
+    private AttestationState attestationState;
+    private BlockState blockState;
+  }
+
+  public static class AttestationState {
+    private final UInt64 watermarkSourceEpoch;
+    private final UInt64 watermarkTargetEpoch;
+    private final SurroundSpans surroundSpans;
+    private UInt64 maxSourceEpoch;
+    private UInt64 maxTargetEpoch;
+    private UInt64 lastTargetEpoch;
+    private Bytes lastSigningRoot;
+
+    private AttestationState(
+        final UInt64 watermarkSourceEpoch,
+        final UInt64 watermarkTargetEpoch,
+        final UInt64 maxSourceEpoch,
+        final UInt64 maxTargetEpoch,
+        final SurroundSpans surroundSpans) {
+      this.watermarkSourceEpoch = watermarkSourceEpoch;
+      this.watermarkTargetEpoch = watermarkTargetEpoch;
+      this.maxSourceEpoch = maxSourceEpoch;
+      this.maxTargetEpoch = maxTargetEpoch;
+      this.surroundSpans = surroundSpans;
+    }
+
+    public SurroundSpans getSurroundSpans() {
+      return surroundSpans;
+    }
+
+    public boolean isLastSigned(final UInt64 targetEpoch, final Bytes signingRoot) {
+      return targetEpoch.equals(lastTargetEpoch) && signingRoot.equals(lastSigningRoot);
+    }
+
+    /**
+     * An attestation at or above the watermarks whose source is no lower, and whose target is
+     * higher, than any signed attestation can neither conflict with, surround, nor be surrounded by
+     * an existing attestation.
+     */
+    public boolean isNewerThanAllSigned(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+      if (watermarkSourceEpoch == null || watermarkTargetEpoch == null) {
+        return false;
+      }
+      if (sourceEpoch.compareTo(watermarkSourceEpoch) < 0
+          || targetEpoch.compareTo(watermarkTargetEpoch) < 0) {
+        return false;
+      }
+      return maxTargetEpoch == null
+          || (sourceEpoch.compareTo(maxSourceEpoch) >= 0
+              && targetEpoch.compareTo(maxTargetEpoch) > 0);
+    }
+
+    public void recordSigned(
+        final UInt64 sourceEpoch, final UInt64 targetEpoch, final Bytes signingRoot) {
+      maxSourceEpoch = max(maxSourceEpoch, sourceEpoch);
+      maxTargetEpoch = max(maxTargetEpoch, targetEpoch);
+      surroundSpans.record(sourceEpoch, targetEpoch);
+      lastTargetEpoch = targetEpoch;
+      lastSigningRoot = signingRoot;
+    }
+
+    public boolean hasWatermark() {
+      return watermarkSourceEpoch != null && watermarkTargetEpoch != null;
+    }
+  }
+
+  public static class BlockState {
+    private final UInt64 watermarkSlot;
+    private UInt64 maxSlot;
+    private UInt64 lastSlot;
+    private Bytes lastSigningRoot;
+
+    private BlockState(final UInt64 watermarkSlot, final UInt64 maxSlot) {
+      this.watermarkSlot = watermarkSlot;
+      this.maxSlot = maxSlot;
+    }
+
+    public boolean isLastSigned(final UInt64 slot, final Bytes signingRoot) {
+      return slot.equals(lastSlot) && signingRoot.equals(lastSigningRoot);
+    }
+
+    /** A block at or above the watermark and above any signed block cannot conflict. */
+    public boolean isNewerThanAllSigned(final UInt64 slot) {
+      if (watermarkSlot == null || slot.compareTo(watermarkSlot) < 0) {
+        return false;
+      }
+      return maxSlot == null || slot.compareTo(maxSlot) > 0;
+    }
+
+    public void recordSigned(final UInt64 slot, final Bytes signingRoot) {
+      maxSlot = max(maxSlot, slot);
+      lastSlot = slot;
+      lastSigningRoot = signingRoot;
+    }
+
+    public boolean hasWatermark() {
+      return watermarkSlot != null;
+    }
+  }
+
+  private static UInt64 max(final UInt64 current, final UInt64 value) {
+    return current == null || value.compareTo(current) > 0 ? value : current;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Tracks the position within the current slot to find the quiet part of each slot in which no
+ * signing duties are scheduled. Blocks are proposed at the start of a slot, attestations are made a
+ * third of the way through the slot and aggregated two thirds of the way through, so the quiet
+ * window runs from half way through the slot until aggregation starts.
+ */
+public class SlotClock {
+  private final long genesisTimeMillis;
+  private final long slotMillis;
+  private final long quietWindowStartMillis;
+  private final long quietWindowEndMillis;
+  private final Clock clock;
+
+  public SlotClock(final long genesisTime, final long secondsPerSlot, final Clock clock) {
+    checkArgument(
+        secondsPerSlot > 0, "secondsPerSlot must be a positive value, but was %s", secondsPerSlot);
+    this.genesisTimeMillis = Duration.ofSeconds(genesisTime).toMillis();
+    this.slotMillis = Duration.ofSeconds(secondsPerSlot).toMillis();
+    this.quietWindowStartMillis = slotMillis / 2;
+    this.quietWindowEndMillis = slotMillis * 2 / 3;
+    this.clock = clock;
+  }
+
+  /** Time until the start of the next quiet window, excluding one that has already started. */
+  public Duration untilNextQuietWindow() {
+    final long offset = offsetInSlot();
+    return Duration.ofMillis(
+        offset < quietWindowStartMillis
+            ? quietWindowStartMillis - offset
+            : slotMillis - offset + quietWindowStartMillis);
+  }
+
+  /** Time left in the current quiet window, or empty if outside of the quiet window. */
+  public Optional<Duration> remainingQuietTime() {
+    final long offset = offsetInSlot();
+    return offset >= quietWindowStartMillis && offset < quietWindowEndMillis
+        ? Optional.of(Duration.ofMillis(quietWindowEndMillis - offset))
+        : Optional.empty();
+  }
+
+  private long offsetInSlot() {
+    return Math.floorMod(clock.millis() - genesisTimeMillis, slotMillis);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Maps unsigned 64 bit epochs and slots onto signed BIGINT columns. Flipping the sign bit shifts
+ * the unsigned range down by 2^63, so zero is stored as Long.MIN_VALUE and comparisons and
+ * ordering on the stored values match the unsigned values.
+ */
+public final class SortableUInt64 {
+
+  private SortableUInt64() {}
+
+  public static long encode(final UInt64 value) {
+    return value.toBytes().toLong() ^ Long.MIN_VALUE;
+  }
+
+  public static UInt64 decode(final long value) {
+    return UInt64.fromBytes(Bytes.ofUnsignedLong(value ^ Long.MIN_VALUE));
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Min-max surround spans of the attestations signed by a single validator, allowing surround votes
+ * to be detected in constant time regardless of the number of attestations signed.
+ *
+ * <p>For each source epoch e the min span is the smallest distance from e to the target of an
+ * attestation with a source greater than e, and the max span the largest distance from e to the
+ * target of an attestation with a source less than e. An attestation (s, t) surrounds an existing
+ * attestation if minSpan(s) is less than t - s, and is surrounded by one if maxSpan(s) is greater
+ * than t - s.
+ *
+ * <p>Spans are kept for a window of source epochs ending at the highest source signed. Distances
+ * are stored as unsigned 16 bit values which saturate. Checks which fall outside the window or
+ * which can't be answered from a saturated value return empty, and the caller must fall back to
+ * searching the attestations. Instances are not thread safe.
+ */
+public class SurroundSpans {
+
+  public static final int DEFAULT_HISTORY_LENGTH = 1024;
+
+  // a saturated distance means the distance is at least this value, for min spans it is also used
+  // when there is no attestation with a greater source
+  private static final int MAX_DISTANCE = Character.MAX_VALUE;
+  // keeps all epoch arithmetic well within the range of a long
+  private static final long MAX_EPOCH = Long.MAX_VALUE / 4;
+
+  private final int historyLength;
+  private char[] minSpans;
+  private char[] maxSpans;
+  private long highestSourceEpoch = -1;
+  private long highestTargetEpoch = -1;
+  private boolean valid = true;
+
+  public SurroundSpans(final int historyLength) {
+    this.historyLength = historyLength;
+  }
+
+  /** The lowest target epoch of the attestations which must be recorded to answer checks. */
+  public static UInt64 lowestRequiredTargetEpoch(
+      final UInt64 highestSourceEpoch, final int historyLength) {
+    final UInt64 lowestSpan = UInt64.valueOf(historyLength - 1);
+    return highestSourceEpoch.compareTo(lowestSpan) > 0
+        ? highestSourceEpoch.subtract(lowestSpan)
+        : UInt64.ZERO;
+  }
+
+  public void record(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    if (!valid) {
+      return;
+    }
+    if (!isTrackable(sourceEpoch)
+        || !isTrackable(targetEpoch)
+        || sourceEpoch.compareTo(targetEpoch) > 0) {
+      valid = false;
+      return;
+    }
+
+    final long source = sourceEpoch.toLong();
+    final long target = targetEpoch.toLong();
+    if (source > highestSourceEpoch) {
+      advanceWindow(source);
+    }
+    highestTargetEpoch = Math.max(highestTargetEpoch, target);
+
+    // the min span of earlier source epochs can only decrease by the distance to this target, once
+    // a span is already no more than that the spans before it are too
+    for (long epoch = source - 1; epoch >= windowStart(); epoch--) {
+      final int index = index(epoch);
+      final char distance = distance(target - epoch);
+      if (minSpans[index] <= distance) {
+        break;
+      }
+      minSpans[index] = distance;
+    }
+
+    // similarly once the max span of a later source epoch is no less than the distance to this
+    // target the spans after it are too
+    final long lastEpoch = Math.min(target - 1, highestSourceEpoch);
+    for (long epoch = Math.max(source + 1, windowStart()); epoch <= lastEpoch; epoch++) {
+      final int index = index(epoch);
+      final char distance = distance(target - epoch);
+      if (maxSpans[index] >= distance) {
+        break;
+      }
+      maxSpans[index] = distance;
+    }
+  }
+
+  /**
+   * Returns whether an attestation with the given epochs surrounds a recorded attestation, or
+   * empty if the spans can't answer the check.
+   */
+  public Optional<Boolean> surroundsExistingAttestation(
+      final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    if (highestSourceEpoch < 0 && valid) {
+      return Optional.of(false);
+    }
+    if (!isCheckable(sourceEpoch, targetEpoch)) {
+      return Optional.empty();
+    }
+    final long source = sourceEpoch.toLong();
+    final long distance = targetEpoch.toLong() - source;
+    if (source >= highestSourceEpoch) {
+      // no attestation has a greater source
+      return Optional.of(false);
+    }
+
+    final int minSpan = minSpans[index(source)];
+    if (minSpan == MAX_DISTANCE) {
+      return distance <= MAX_DISTANCE ? Optional.of(false) : Optional.empty();
+    }
+    return Optional.of(minSpan < distance);
+  }
+
+  /**
+   * Returns whether an attestation with the given epochs is surrounded by a recorded attestation,
+   * or empty if the spans can't answer the check.
+   */
+  public Optional<Boolean> isSurroundedByExistingAttestation(
+      final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    if (highestSourceEpoch < 0 && valid) {
+      return Optional.of(false);
+    }
+    if (!isCheckable(sourceEpoch, targetEpoch)) {
+      return Optional.empty();
+    }
+    final long source = sourceEpoch.toLong();
+    final long target = targetEpoch.toLong();
+    if (source > highestSourceEpoch) {
+      // every attestation has a lower source
+      return Optional.of(highestTargetEpoch > target);
+    }
+
+    final int maxSpan = maxSpans[index(source)];
+    final long distance = target - source;
+    if (maxSpan == MAX_DISTANCE) {
+      return distance < MAX_DISTANCE ? Optional.of(true) : Optional.empty();
+    }
+    return Optional.of(maxSpan > distance);
+  }
+
+  private boolean isCheckable(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    return valid
+        && isTrackable(sourceEpoch)
+        && isTrackable(targetEpoch)
+        && sourceEpoch.compareTo(targetEpoch) <= 0
+        && sourceEpoch.toLong() >= windowStart();
+  }
+
+  private void advanceWindow(final long source) {
+    if (minSpans == null) {
+      minSpans = new char[historyLength];
+      maxSpans = new char[historyLength];
+      Arrays.fill(minSpans, (char) MAX_DISTANCE);
+      highestSourceEpoch = source;
+      return;
+    }
+
+    // no recorded attestation has a source greater than the new epochs, and all of them have a
+    // lower source so the max span is the distance to the highest target
+    final long firstNewEpoch = Math.max(highestSourceEpoch + 1, source - historyLength + 1);
+    for (long epoch = firstNewEpoch; epoch <= source; epoch++) {
+      final int index = index(epoch);
+      minSpans[index] = (char) MAX_DISTANCE;
+      maxSpans[index] = distance(Math.max(0, highestTargetEpoch - epoch));
+    }
+    highestSourceEpoch = source;
+  }
+
+  private long windowStart() {
+    return Math.max(0, highestSourceEpoch - historyLength + 1);
+  }
+
+  private int index(final long epoch) {
+    return (int) (epoch % historyLength);
+  }
+
+  private static char distance(final long distance) {
+    return (char) Math.min(distance, MAX_DISTANCE);
+  }
+
+  private static boolean isTrackable(final UInt64 epoch) {
+    return epoch.fitsLong() && epoch.toLong() <= MAX_EPOCH;
+  }
+}
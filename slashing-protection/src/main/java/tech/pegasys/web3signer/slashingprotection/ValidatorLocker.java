@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.DbLocker.ValidatorLock;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+
+/**
+ * Serialises slashing protection database work on the same validator. Signing checks and pruning
+ * both run their transactions through the locker so that they never act on a validator at the
+ * same time.
+ */
+public interface ValidatorLocker extends AutoCloseable {
+
+  /**
+   * Runs the callback in a transaction, holding the given locks until the transaction has ended.
+   * Locks are taken in the order given, which callers keep in (lock type, validator id) order.
+   */
+  <T> T inTransaction(
+      Jdbi jdbi,
+      TransactionIsolationLevel isolationLevel,
+      List<ValidatorLock> locks,
+      HandleCallback<T, RuntimeException> callback);
+
+  /** Whether the locks are the Postgres advisory locks also taken by database functions. */
+  default boolean isAdvisory() {
+    return false;
+  }
+
+  /** Releases whatever the locker holds to exclude other instances, when the signer stops. */
+  @Override
+  default void close() {}
+
+  /** Runs the callback in a transaction holding the lock of one type for each of the validators. */
+  default <T> T inTransaction(
+      final Jdbi jdbi,
+      final TransactionIsolationLevel isolationLevel,
+      final LockType lockType,
+      final Collection<Integer> validatorIds,
+      final HandleCallback<T, RuntimeException> callback) {
+    final List<ValidatorLock> locks =
+        new TreeSet<>(validatorIds).stream()
+            .map(validatorId -> new ValidatorLock(lockType, validatorId))
+            .collect(Collectors.toList());
+    return inTransaction(jdbi, isolationLevel, locks, callback);
+  }
+}
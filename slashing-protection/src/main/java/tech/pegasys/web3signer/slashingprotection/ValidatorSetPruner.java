@@ -0,0 +1,27 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.util.Collection;
+
+/** Prunes the slashing protection data of a set of validators in a single operation. */
+public interface ValidatorSetPruner {
+
+  /**
+   * Prunes the data of the validators.
+   *
+   * @return the validators whose watermarks may have been moved
+   */
+  Collection<Integer> prune(
+      Collection<Integer> validatorIds, long epochsToKeep, long slotsPerEpoch);
+}
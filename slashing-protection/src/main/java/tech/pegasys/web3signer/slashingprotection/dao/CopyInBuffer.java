@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import tech.pegasys.web3signer.slashingprotection.SortableUInt64;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Rows written to a table using COPY in the text format. Rows are buffered and sent to the database
+ * once enough have been added or the buffer is flushed, so memory use is bounded by the number of
+ * buffered rows.
+ */
+public class CopyInBuffer {
+  static final int ROWS_PER_COPY = 10_000;
+
+  private final CopyManager copyManager;
+  private final String table;
+  private final String copySql;
+  private final StringBuilder rows = new StringBuilder();
+  private int rowCount;
+
+  CopyInBuffer(final Handle handle, final String table, final String... columns) {
+    try {
+      this.copyManager = handle.getConnection().unwrap(PGConnection.class).getCopyAPI();
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Database connection does not support COPY", e);
+    }
+    this.table = table;
+    this.copySql = String.format("COPY %s (%s) FROM STDIN", table, String.join(", ", columns));
+  }
+
+  public void addRow(final Object... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        rows.append('\t');
+      }
+      rows.append(format(values[i]));
+    }
+    rows.append('\n');
+    rowCount++;
+    if (rowCount >= ROWS_PER_COPY) {
+      flush();
+    }
+  }
+
+  public void flush() throws IOException {
+    if (rowCount == 0) {
+      return;
+    }
+    try {
+      copyManager.copyIn(copySql, new StringReader(rows.toString()));
+    } catch (final SQLException e) {
+      throw new IllegalStateException("Failed to copy rows into " + table, e);
+    }
+    rows.setLength(0);
+    rowCount = 0;
+  }
+
+  private static String format(final Object value) {
+    if (value == null) {
+      return "\\N";
+    } else if (value instanceof UInt64) {
+      return Long.toString(SortableUInt64.encode((UInt64) value));
+    } else if (value instanceof Bytes) {
+      // bytea hex format, with the backslash escaped for the COPY text format
+      return "\\\\x" + ((Bytes) value).toUnprefixedHexString();
+    } else {
+      return value.toString();
+    }
+  }
+}
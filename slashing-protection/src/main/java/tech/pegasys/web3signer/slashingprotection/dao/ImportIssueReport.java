@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+/** The entries of one validator in an imported interchange file that share an issue. */
+public class ImportIssueReport {
+  private final int validatorId;
+  private final ImportIssue issue;
+  private final boolean nullSigningRoot;
+  private final List<Integer> entryIndexes;
+
+  public ImportIssueReport(
+      final int validatorId,
+      final ImportIssue issue,
+      final boolean nullSigningRoot,
+      final List<Integer> entryIndexes) {
+    this.validatorId = validatorId;
+    this.issue = issue;
+    this.nullSigningRoot = nullSigningRoot;
+    this.entryIndexes = entryIndexes;
+  }
+
+  public int getValidatorId() {
+    return validatorId;
+  }
+
+  public ImportIssue getIssue() {
+    return issue;
+  }
+
+  public boolean hasNullSigningRoot() {
+    return nullSigningRoot;
+  }
+
+  public List<Integer> getEntryIndexes() {
+    return entryIndexes;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorId", validatorId)
+        .add("issue", issue)
+        .add("nullSigningRoot", nullSigningRoot)
+        .add("entryIndexes", entryIndexes)
+        .toString();
+  }
+}
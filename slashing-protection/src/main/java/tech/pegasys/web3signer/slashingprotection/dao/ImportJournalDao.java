@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.Handle;
+
+/**
+ * Records the progress of checkpointed interchange imports. Progress is updated in the same
+ * transaction as the validators it covers, so the journal never runs ahead of the imported data.
+ */
+public class ImportJournalDao {
+
+  public Optional<ImportJournalEntry> findInProgress(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT id, validators_imported, content_digest FROM import_journal "
+                + "WHERE NOT completed")
+        .mapToBean(ImportJournalEntry.class)
+        .findFirst();
+  }
+
+  public ImportJournalEntry startImport(final Handle handle) {
+    return handle
+        .createUpdate(
+            "INSERT INTO import_journal (validators_imported, content_digest) VALUES (0, ?)")
+        .bind(0, Bytes.EMPTY)
+        .executeAndReturnGeneratedKeys("id", "validators_imported", "content_digest")
+        .mapToBean(ImportJournalEntry.class)
+        .one();
+  }
+
+  public void updateProgress(
+      final Handle handle, final int id, final int validatorsImported, final Bytes contentDigest) {
+    handle
+        .createUpdate(
+            "UPDATE import_journal SET validators_imported = ?, content_digest = ?, "
+                + "updated_at = now() WHERE id = ?")
+        .bind(0, validatorsImported)
+        .bind(1, contentDigest)
+        .bind(2, id)
+        .execute();
+  }
+
+  public void completeImport(final Handle handle, final int id) {
+    handle
+        .createUpdate("UPDATE import_journal SET completed = TRUE, updated_at = now() WHERE id = ?")
+        .bind(0, id)
+        .execute();
+  }
+
+  public void discardImport(final Handle handle, final int id) {
+    handle.createUpdate("DELETE FROM import_journal WHERE id = ?").bind(0, id).execute();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.bytes.Bytes;
+
+public class ImportJournalEntry {
+  private int id;
+  private int validatorsImported;
+  private Bytes contentDigest;
+
+  // needed for JDBI bean mapping
+  public ImportJournalEntry() {}
+
+  public ImportJournalEntry(final int id, final int validatorsImported, final Bytes contentDigest) {
+    this.id = id;
+    this.validatorsImported = validatorsImported;
+    this.contentDigest = contentDigest;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public void setId(final int id) {
+    this.id = id;
+  }
+
+  public int getValidatorsImported() {
+    return validatorsImported;
+  }
+
+  public void setValidatorsImported(final int validatorsImported) {
+    this.validatorsImported = validatorsImported;
+  }
+
+  public Bytes getContentDigest() {
+    return contentDigest;
+  }
+
+  public void setContentDigest(final Bytes contentDigest) {
+    this.contentDigest = contentDigest;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("id", id)
+        .add("validatorsImported", validatorsImported)
+        .add("contentDigest", contentDigest)
+        .toString();
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.StatementContext;
+
+/**
+ * Resolves interchange entries copied into temporary staging tables against the signed blocks and
+ * attestations in the database using set based statements. Each staged entry is given an outcome:
+ * the first entry for a slot, or attestation target epoch, that is not already in the database is
+ * inserted and every other entry is reported as already existing or conflicting. The staging tables
+ * are dropped when the transaction ends.
+ */
+public class ImportStagingDao {
+
+  public void createStagingTables(final Handle handle) {
+    handle.execute(
+        "CREATE TEMPORARY TABLE import_blocks ("
+            + "validator_id INTEGER NOT NULL, position BIGINT NOT NULL, "
+            + "entry_index INTEGER NOT NULL, slot BIGINT NOT NULL, signing_root BYTEA, "
+            + "outcome TEXT) ON COMMIT DROP");
+    handle.execute(
+        "CREATE TEMPORARY TABLE import_attestations ("
+            + "validator_id INTEGER NOT NULL, position BIGINT NOT NULL, "
+            + "entry_index INTEGER NOT NULL, source_epoch BIGINT NOT NULL, "
+            + "target_epoch BIGINT NOT NULL, signing_root BYTEA, outcome TEXT, "
+            + "surrounded BOOLEAN NOT NULL DEFAULT false, "
+            + "surrounds BOOLEAN NOT NULL DEFAULT false) ON COMMIT DROP");
+  }
+
+  /** Rows are validator id, position in the file, index in the validator, slot and signing root. */
+  public CopyInBuffer createBlockBuffer(final Handle handle) {
+    return new CopyInBuffer(
+        handle, "import_blocks", "validator_id", "position", "entry_index", "slot", "signing_root");
+  }
+
+  /**
+   * Rows are validator id, position in the file, index in the validator, source epoch, target epoch
+   * and signing root.
+   */
+  public CopyInBuffer createAttestationBuffer(final Handle handle) {
+    return new CopyInBuffer(
+        handle,
+        "import_attestations",
+        "validator_id",
+        "position",
+        "entry_index",
+        "source_epoch",
+        "target_epoch",
+        "signing_root");
+  }
+
+  public void resolveBlocks(final Handle handle) {
+    handle.execute("ANALYZE import_blocks");
+    handle.execute(
+        "UPDATE import_blocks i SET outcome = r.outcome FROM ("
+            + "SELECT s.position, CASE "
+            + "WHEN b.validator_id IS NOT NULL THEN CASE "
+            + "WHEN s.signing_root IS NOT DISTINCT FROM b.signing_root THEN 'ALREADY_EXISTS' "
+            + "ELSE 'CONFLICTS_WITH_EXISTING' END "
+            + "WHEN s.position = first_value(s.position) OVER w THEN 'INSERTED' "
+            + "WHEN s.signing_root IS NOT DISTINCT FROM first_value(s.signing_root) OVER w "
+            + "THEN 'ALREADY_EXISTS' "
+            + "ELSE 'CONFLICTS_WITH_EXISTING' END AS outcome "
+            + "FROM import_blocks s "
+            + "LEFT JOIN signed_blocks b ON b.validator_id = s.validator_id AND b.slot = s.slot "
+            + "WINDOW w AS (PARTITION BY s.validator_id, s.slot ORDER BY s.position)) r "
+            + "WHERE i.position = r.position");
+  }
+
+  /**
+   * Gives each staged attestation an outcome and flags the valid ones that surround, or are
+   * surrounded by, an attestation in the database or one inserted by the import. The surround
+   * flags use the lowest and highest target epochs seen below and above each source epoch.
+   */
+  public void resolveAttestations(final Handle handle) {
+    handle.execute("ANALYZE import_attestations");
+    handle.execute(
+        "UPDATE import_attestations i SET outcome = r.outcome FROM ("
+            + "SELECT s.position, CASE "
+            + "WHEN s.source_epoch > s.target_epoch THEN 'SOURCE_GREATER_THAN_TARGET' "
+            + "WHEN a.validator_id IS NOT NULL THEN CASE "
+            + "WHEN s.signing_root IS NOT DISTINCT FROM a.signing_root THEN 'ALREADY_EXISTS' "
+            + "ELSE 'CONFLICTS_WITH_EXISTING' END "
+            + "WHEN s.position = first_value(s.position) OVER w THEN 'INSERTED' "
+            + "WHEN s.signing_root IS NOT DISTINCT FROM first_value(s.signing_root) OVER w "
+            + "THEN 'ALREADY_EXISTS' "
+            + "ELSE 'CONFLICTS_WITH_EXISTING' END AS outcome "
+            + "FROM import_attestations s "
+            + "LEFT JOIN signed_attestations a "
+            + "ON a.validator_id = s.validator_id AND a.target_epoch = s.target_epoch "
+            + "WINDOW w AS (PARTITION BY s.validator_id, s.target_epoch, "
+            + "s.source_epoch > s.target_epoch ORDER BY s.position)) r "
+            + "WHERE i.position = r.position");
+    handle.execute(
+        "WITH epochs AS ("
+            + "SELECT validator_id, source_epoch, target_epoch FROM signed_attestations "
+            + "WHERE validator_id IN (SELECT validator_id FROM import_attestations) "
+            + "UNION ALL "
+            + "SELECT validator_id, source_epoch, target_epoch FROM import_attestations "
+            + "WHERE outcome = 'INSERTED' "
+            + "UNION ALL "
+            + "SELECT validator_id, source_epoch, NULL FROM import_attestations "
+            + "WHERE source_epoch <= target_epoch), "
+            + "per_source AS ("
+            + "SELECT validator_id, source_epoch, MIN(target_epoch) AS min_target, "
+            + "MAX(target_epoch) AS max_target FROM epochs GROUP BY validator_id, source_epoch), "
+            + "spans AS ("
+            + "SELECT validator_id, source_epoch, "
+            + "MAX(max_target) OVER (PARTITION BY validator_id ORDER BY source_epoch "
+            + "ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING) AS max_target_below, "
+            + "MIN(min_target) OVER (PARTITION BY validator_id ORDER BY source_epoch "
+            + "ROWS BETWEEN 1 FOLLOWING AND UNBOUNDED FOLLOWING) AS min_target_above "
+            + "FROM per_source) "
+            + "UPDATE import_attestations i SET "
+            + "surrounded = COALESCE(s.max_target_below > i.target_epoch, false), "
+            + "surrounds = COALESCE(s.min_target_above < i.target_epoch, false) "
+            + "FROM spans s WHERE s.validator_id = i.validator_id "
+            + "AND s.source_epoch = i.source_epoch AND i.source_epoch <= i.target_epoch");
+  }
+
+  public int insertResolvedBlocks(final Handle handle) {
+    return handle.execute(
+        "INSERT INTO signed_blocks (validator_id, slot, signing_root) "
+            + "SELECT validator_id, slot, signing_root FROM import_blocks "
+            + "WHERE outcome = 'INSERTED' ORDER BY validator_id, slot");
+  }
+
+  public int insertResolvedAttestations(final Handle handle) {
+    return handle.execute(
+        "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch, signing_root) "
+            + "SELECT validator_id, source_epoch, target_epoch, signing_root "
+            + "FROM import_attestations WHERE outcome = 'INSERTED' "
+            + "ORDER BY validator_id, target_epoch");
+  }
+
+  /**
+   * Raises the slot watermark of each validator to its lowest inserted block when that is above
+   * the current watermark.
+   *
+   * @return the watermarks that changed
+   */
+  public List<SigningWatermark> updateSlotWatermarks(final Handle handle) {
+    return handle
+        .createQuery(
+            "INSERT INTO low_watermarks (validator_id, slot) "
+                + "SELECT validator_id, MIN(slot) FROM import_blocks "
+                + "WHERE outcome = 'INSERTED' GROUP BY validator_id "
+                + "ON CONFLICT (validator_id) DO UPDATE SET slot = EXCLUDED.slot "
+                + "WHERE low_watermarks.slot IS NULL OR low_watermarks.slot < EXCLUDED.slot "
+                + "RETURNING validator_id, slot")
+        .mapToBean(SigningWatermark.class)
+        .list();
+  }
+
+  /**
+   * Raises the source and target epoch watermarks of each validator to its lowest inserted source
+   * and target epochs when those are above the current watermarks.
+   *
+   * @return the watermarks of the validators with inserted attestations
+   */
+  public List<SigningWatermark> updateEpochWatermarks(final Handle handle) {
+    return handle
+        .createQuery(
+            "INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch) "
+                + "SELECT validator_id, MIN(source_epoch), MIN(target_epoch) "
+                + "FROM import_attestations WHERE outcome = 'INSERTED' GROUP BY validator_id "
+                + "ON CONFLICT (validator_id) DO UPDATE SET "
+                + "source_epoch = GREATEST(low_watermarks.source_epoch, EXCLUDED.source_epoch), "
+                + "target_epoch = GREATEST(low_watermarks.target_epoch, EXCLUDED.target_epoch) "
+                + "RETURNING validator_id, source_epoch, target_epoch")
+        .mapToBean(SigningWatermark.class)
+        .list();
+  }
+
+  public List<ImportIssueReport> findBlockIssues(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, outcome AS issue, signing_root IS NULL AS null_signing_root, "
+                + "array_agg(entry_index ORDER BY position) AS entry_indexes "
+                + "FROM import_blocks WHERE outcome <> 'INSERTED' "
+                + "GROUP BY validator_id, outcome, signing_root IS NULL ORDER BY validator_id")
+        .map(ImportStagingDao::mapIssueReport)
+        .list();
+  }
+
+  public List<ImportIssueReport> findAttestationIssues(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, outcome AS issue, signing_root IS NULL AS null_signing_root, "
+                + "array_agg(entry_index ORDER BY position) AS entry_indexes "
+                + "FROM import_attestations WHERE outcome <> 'INSERTED' "
+                + "GROUP BY validator_id, outcome, signing_root IS NULL "
+                + "UNION ALL "
+                + "SELECT validator_id, 'SURROUNDED_BY_EXISTING', false, "
+                + "array_agg(entry_index ORDER BY position) "
+                + "FROM import_attestations WHERE surrounded GROUP BY validator_id "
+                + "UNION ALL "
+                + "SELECT validator_id, 'SURROUNDS_EXISTING', false, "
+                + "array_agg(entry_index ORDER BY position) "
+                + "FROM import_attestations WHERE surrounds GROUP BY validator_id "
+                + "ORDER BY validator_id")
+        .map(ImportStagingDao::mapIssueReport)
+        .list();
+  }
+
+  private static ImportIssueReport mapIssueReport(
+      final ResultSet rs, final StatementContext ctx) throws SQLException {
+    return new ImportIssueReport(
+        rs.getInt("validator_id"),
+        ImportIssue.valueOf(rs.getString("issue")),
+        rs.getBoolean("null_signing_root"),
+        Arrays.asList((Integer[]) rs.getArray("entry_indexes").getArray()));
+  }
+}
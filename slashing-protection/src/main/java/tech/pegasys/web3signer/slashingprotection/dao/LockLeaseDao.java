@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Optional;
+
+import org.jdbi.v3.core.Handle;
+
+public class LockLeaseDao {
+  private static final int LOCK_LEASE_ROW_ID = 1;
+
+  /**
+   * Takes the lease for the owner, or extends it if the owner already holds it.
+   *
+   * @return true if the owner now holds the lease, false if it is held by another owner
+   */
+  public boolean acquireLease(final Handle handle, final String owner, final long durationMillis) {
+    return handle
+            .createUpdate(
+                "INSERT INTO lock_lease (id, owner, expires_at) "
+                    + "VALUES (:id, :owner, now() + :duration * interval '1 millisecond') "
+                    + "ON CONFLICT (id) DO UPDATE "
+                    + "SET owner = EXCLUDED.owner, expires_at = EXCLUDED.expires_at "
+                    + "WHERE lock_lease.owner = EXCLUDED.owner OR lock_lease.expires_at < now()")
+            .bind("id", LOCK_LEASE_ROW_ID)
+            .bind("owner", owner)
+            .bind("duration", durationMillis)
+            .execute()
+        == 1;
+  }
+
+  public void releaseLease(final Handle handle, final String owner) {
+    handle
+        .createUpdate("DELETE FROM lock_lease WHERE id = ? AND owner = ?")
+        .bind(0, LOCK_LEASE_ROW_ID)
+        .bind(1, owner)
+        .execute();
+  }
+
+  public Optional<String> findActiveOwner(final Handle handle) {
+    return handle
+        .createQuery("SELECT owner FROM lock_lease WHERE id = ? AND expires_at >= now()")
+        .bind(0, LOCK_LEASE_ROW_ID)
+        .mapTo(String.class)
+        .findFirst();
+  }
+}
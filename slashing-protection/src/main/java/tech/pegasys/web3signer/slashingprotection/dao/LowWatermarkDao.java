@@ -12,6 +12,8 @@
  */
 package tech.pegasys.web3signer.slashingprotection.dao;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.tuweni.units.bigints.UInt64;
@@ -30,6 +32,17 @@ public class LowWatermarkDao {
         .findFirst();
   }
 
+  public List<SigningWatermark> findLowWatermarksForValidators(
+      final Handle handle, final Collection<Integer> validatorIds) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, slot, source_epoch, target_epoch "
+                + "FROM low_watermarks WHERE validator_id = ANY(:validator_ids)")
+        .bindArray("validator_ids", Integer.class, validatorIds)
+        .mapToBean(SigningWatermark.class)
+        .list();
+  }
+
   public void updateEpochWatermarksFor(
       final Handle handle,
       final int validatorId,
@@ -58,4 +71,62 @@ public class LowWatermarkDao {
         .bind("slot", slot)
         .execute();
   }
+
+  /**
+   * Moves the slot watermark of each of the validators with a slot watermark up to its nearest
+   * block at or above the slot slotsToKeep below its highest signed block, in a single statement.
+   * This is the same watermark as calculated by the per validator pruning.
+   *
+   * @return the number of validators with a moved watermark
+   */
+  public int advanceSlotWatermarks(
+      final Handle handle, final Collection<Integer> validatorIds, final long slotsToKeep) {
+    return handle
+        .createUpdate(
+            "UPDATE low_watermarks lw SET slot = n.slot "
+                + "FROM low_watermarks w, "
+                + "LATERAL (SELECT max(sb.slot) AS max_slot FROM signed_blocks sb "
+                + "WHERE sb.validator_id = w.validator_id) m, "
+                + "LATERAL (SELECT sb.slot FROM signed_blocks sb "
+                + "WHERE sb.validator_id = w.validator_id AND sb.slot >= GREATEST(w.slot, "
+                + "CASE WHEN m.max_slot < :min + :keep THEN :min ELSE m.max_slot - :keep + 1 END) "
+                + "ORDER BY sb.slot LIMIT 1) n "
+                + "WHERE lw.validator_id = w.validator_id AND w.validator_id = ANY(:validator_ids) "
+                + "AND w.slot IS NOT NULL AND lw.slot < n.slot")
+        .bind("min", Long.MIN_VALUE)
+        .bind("keep", slotsToKeep)
+        .bindArray("validator_ids", Integer.class, validatorIds)
+        .execute();
+  }
+
+  /**
+   * Moves the epoch watermarks of each of the validators with epoch watermarks up to its nearest
+   * attestation with a target epoch at or above the epoch epochsToKeep below its highest signed
+   * target epoch, in a single statement. This is the same watermark as calculated by the per
+   * validator pruning.
+   *
+   * @return the number of validators with moved watermarks
+   */
+  public int advanceEpochWatermarks(
+      final Handle handle, final Collection<Integer> validatorIds, final long epochsToKeep) {
+    return handle
+        .createUpdate(
+            "UPDATE low_watermarks lw "
+                + "SET source_epoch = n.source_epoch, target_epoch = n.target_epoch "
+                + "FROM low_watermarks w, "
+                + "LATERAL (SELECT max(sa.target_epoch) AS max_target FROM signed_attestations sa "
+                + "WHERE sa.validator_id = w.validator_id) m, "
+                + "LATERAL (SELECT sa.source_epoch, sa.target_epoch FROM signed_attestations sa "
+                + "WHERE sa.validator_id = w.validator_id AND sa.target_epoch >= GREATEST("
+                + "w.target_epoch, CASE WHEN m.max_target < :min + :keep THEN :min "
+                + "ELSE m.max_target - :keep + 1 END) "
+                + "ORDER BY sa.target_epoch LIMIT 1) n "
+                + "WHERE lw.validator_id = w.validator_id AND w.validator_id = ANY(:validator_ids) "
+                + "AND w.target_epoch IS NOT NULL AND lw.target_epoch < n.target_epoch "
+                + "AND lw.source_epoch <= n.source_epoch")
+        .bind("min", Long.MIN_VALUE)
+        .bind("keep", epochsToKeep)
+        .bindArray("validator_ids", Integer.class, validatorIds)
+        .execute();
+  }
 }
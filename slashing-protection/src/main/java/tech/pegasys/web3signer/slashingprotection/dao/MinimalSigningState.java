@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+public class MinimalSigningState {
+  private int validatorId;
+  private UInt64 blockSlot;
+  private Bytes blockSigningRoot;
+  private UInt64 sourceEpoch;
+  private UInt64 targetEpoch;
+  private Bytes attestationSigningRoot;
+
+  // needed for JDBI bean mapping
+  public MinimalSigningState() {}
+
+  public MinimalSigningState(
+      final int validatorId,
+      final UInt64 blockSlot,
+      final Bytes blockSigningRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes attestationSigningRoot) {
+    this.validatorId = validatorId;
+    this.blockSlot = blockSlot;
+    this.blockSigningRoot = blockSigningRoot;
+    this.sourceEpoch = sourceEpoch;
+    this.targetEpoch = targetEpoch;
+    this.attestationSigningRoot = attestationSigningRoot;
+  }
+
+  public int getValidatorId() {
+    return validatorId;
+  }
+
+  public void setValidatorId(final int validatorId) {
+    this.validatorId = validatorId;
+  }
+
+  public UInt64 getBlockSlot() {
+    return blockSlot;
+  }
+
+  public void setBlockSlot(final UInt64 blockSlot) {
+    this.blockSlot = blockSlot;
+  }
+
+  public Bytes getBlockSigningRoot() {
+    return blockSigningRoot;
+  }
+
+  public void setBlockSigningRoot(final Bytes blockSigningRoot) {
+    this.blockSigningRoot = blockSigningRoot;
+  }
+
+  public UInt64 getSourceEpoch() {
+    return sourceEpoch;
+  }
+
+  public void setSourceEpoch(final UInt64 sourceEpoch) {
+    this.sourceEpoch = sourceEpoch;
+  }
+
+  public UInt64 getTargetEpoch() {
+    return targetEpoch;
+  }
+
+  public void setTargetEpoch(final UInt64 targetEpoch) {
+    this.targetEpoch = targetEpoch;
+  }
+
+  public Bytes getAttestationSigningRoot() {
+    return attestationSigningRoot;
+  }
+
+  public void setAttestationSigningRoot(final Bytes attestationSigningRoot) {
+    this.attestationSigningRoot = attestationSigningRoot;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorId", validatorId)
+        .add("blockSlot", blockSlot)
+        .add("blockSigningRoot", blockSigningRoot)
+        .add("sourceEpoch", sourceEpoch)
+        .add("targetEpoch", targetEpoch)
+        .add("attestationSigningRoot", attestationSigningRoot)
+        .toString();
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
+
+/**
+ * Keeps a single row of signing state per validator for the minimal slashing protection mode. A
+ * request is approved by a single conditional update, which only succeeds when the request is
+ * above everything signed before or is a repeat of the last signed request.
+ *
+ * <p>The minimal and full modes share the database, so each approval also raises the low
+ * watermarks above the approved slot or target epoch, which the full mode refuses anything below,
+ * and registration merges in the signing history and low watermarks written by the full mode.
+ */
+public class MinimalSigningStateDao {
+
+  private static final String SLOT_WATERMARK_UPSERT =
+      "INSERT INTO low_watermarks (validator_id, slot) ";
+  private static final String SLOT_WATERMARK_CONFLICT =
+      "ON CONFLICT (validator_id) DO UPDATE "
+          + "SET slot = GREATEST(low_watermarks.slot, EXCLUDED.slot) ";
+  private static final String EPOCH_WATERMARKS_UPSERT =
+      "INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch) ";
+  private static final String EPOCH_WATERMARKS_CONFLICT =
+      "ON CONFLICT (validator_id) DO UPDATE "
+          + "SET source_epoch = GREATEST(low_watermarks.source_epoch, EXCLUDED.source_epoch), "
+          + "target_epoch = GREATEST(low_watermarks.target_epoch, EXCLUDED.target_epoch) ";
+
+  /**
+   * Creates or raises the state of validators to the highest slot and epochs of any signing
+   * history or low watermark already in the database, so switching an existing database to the
+   * minimal mode never allows signing below its history. A low watermark allows signing at its own
+   * slot or target epoch, so it is stored one below. Signing roots are dropped when the state is
+   * raised, as they are not known for the history.
+   */
+  public void registerValidators(final Handle handle, final List<Integer> validatorIds) {
+    final PreparedBatch batch =
+        handle.prepareBatch(
+            "INSERT INTO minimal_signing_states "
+                + "(validator_id, block_slot, source_epoch, target_epoch) "
+                + "SELECT :validator_id, "
+                + "GREATEST((SELECT max(slot) FROM signed_blocks "
+                + "WHERE validator_id = :validator_id), "
+                + "(SELECT slot - 1 FROM low_watermarks "
+                + "WHERE validator_id = :validator_id AND slot > :min)), "
+                + "GREATEST((SELECT max(source_epoch) FROM signed_attestations "
+                + "WHERE validator_id = :validator_id), "
+                + "(SELECT source_epoch FROM low_watermarks "
+                + "WHERE validator_id = :validator_id AND target_epoch > :min)), "
+                + "GREATEST((SELECT max(target_epoch) FROM signed_attestations "
+                + "WHERE validator_id = :validator_id), "
+                + "(SELECT target_epoch - 1 FROM low_watermarks "
+                + "WHERE validator_id = :validator_id AND target_epoch > :min)) "
+                + "ON CONFLICT (validator_id) DO UPDATE SET "
+                + "block_signing_root = CASE "
+                + "WHEN EXCLUDED.block_slot > minimal_signing_states.block_slot THEN NULL "
+                + "ELSE minimal_signing_states.block_signing_root END, "
+                + "block_slot = GREATEST(minimal_signing_states.block_slot, EXCLUDED.block_slot), "
+                + "attestation_signing_root = CASE "
+                + "WHEN EXCLUDED.target_epoch > minimal_signing_states.target_epoch "
+                + "OR EXCLUDED.source_epoch > minimal_signing_states.source_epoch THEN NULL "
+                + "ELSE minimal_signing_states.attestation_signing_root END, "
+                + "source_epoch = "
+                + "GREATEST(minimal_signing_states.source_epoch, EXCLUDED.source_epoch), "
+                + "target_epoch = "
+                + "GREATEST(minimal_signing_states.target_epoch, EXCLUDED.target_epoch)");
+    validatorIds.forEach(id -> batch.bind("validator_id", id).bind("min", Long.MIN_VALUE).add());
+    batch.execute();
+  }
+
+  /** @return true if the block is above the highest signed slot or repeats the last block */
+  public boolean updateBlock(
+      final Handle handle, final int validatorId, final UInt64 slot, final Bytes signingRoot) {
+    return handle
+        .createQuery(
+            "WITH approved AS (UPDATE minimal_signing_states "
+                + "SET block_slot = :slot, block_signing_root = :signing_root "
+                + "WHERE validator_id = :validator_id AND (block_slot IS NULL "
+                + "OR block_slot < :slot "
+                + "OR (block_slot = :slot AND block_signing_root = :signing_root)) "
+                + "RETURNING validator_id) "
+                + SLOT_WATERMARK_UPSERT
+                + "SELECT validator_id, :watermark_slot FROM approved "
+                + SLOT_WATERMARK_CONFLICT
+                + "RETURNING validator_id")
+        .bind("validator_id", validatorId)
+        .bind("slot", slot)
+        .bind("signing_root", signingRoot)
+        .bind("watermark_slot", next(slot))
+        .mapTo(Integer.class)
+        .findFirst()
+        .isPresent();
+  }
+
+  /**
+   * @return true if the attestation source is at or above the highest signed source and its target
+   *     is above the highest signed target, or it repeats the last attestation
+   */
+  public boolean updateAttestation(
+      final Handle handle,
+      final int validatorId,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes signingRoot) {
+    return handle
+        .createQuery(
+            "WITH approved AS (UPDATE minimal_signing_states "
+                + "SET source_epoch = GREATEST(source_epoch, :source_epoch), "
+                + "target_epoch = :target_epoch, attestation_signing_root = :signing_root "
+                + "WHERE validator_id = :validator_id AND (target_epoch IS NULL "
+                + "OR (source_epoch <= :source_epoch AND target_epoch < :target_epoch) "
+                + "OR (source_epoch = :source_epoch AND target_epoch = :target_epoch "
+                + "AND attestation_signing_root = :signing_root)) "
+                + "RETURNING validator_id) "
+                + EPOCH_WATERMARKS_UPSERT
+                + "SELECT validator_id, :source_epoch, :watermark_target_epoch FROM approved "
+                + EPOCH_WATERMARKS_CONFLICT
+                + "RETURNING validator_id")
+        .bind("validator_id", validatorId)
+        .bind("source_epoch", sourceEpoch)
+        .bind("target_epoch", targetEpoch)
+        .bind("signing_root", signingRoot)
+        .bind("watermark_target_epoch", next(targetEpoch))
+        .mapTo(Integer.class)
+        .findFirst()
+        .isPresent();
+  }
+
+  /**
+   * Raises the state of a validator to include the given state, as when its signing history is
+   * imported. A signing root is taken with its slot or target epoch only when that is higher than
+   * the existing one.
+   */
+  public void mergeState(final Handle handle, final MinimalSigningState state) {
+    handle
+        .createUpdate(
+            "INSERT INTO minimal_signing_states (validator_id, block_slot, block_signing_root, "
+                + "source_epoch, target_epoch, attestation_signing_root) "
+                + "VALUES (:validator_id, :block_slot, :block_signing_root, "
+                + ":source_epoch, :target_epoch, :attestation_signing_root) "
+                + "ON CONFLICT (validator_id) DO UPDATE SET "
+                + "block_signing_root = CASE WHEN minimal_signing_states.block_slot IS NULL "
+                + "OR EXCLUDED.block_slot > minimal_signing_states.block_slot "
+                + "THEN EXCLUDED.block_signing_root "
+                + "ELSE minimal_signing_states.block_signing_root END, "
+                + "block_slot = GREATEST(minimal_signing_states.block_slot, EXCLUDED.block_slot), "
+                + "attestation_signing_root = CASE "
+                + "WHEN minimal_signing_states.target_epoch IS NULL "
+                + "OR EXCLUDED.target_epoch > minimal_signing_states.target_epoch "
+                + "THEN EXCLUDED.attestation_signing_root "
+                + "ELSE minimal_signing_states.attestation_signing_root END, "
+                + "source_epoch = "
+                + "GREATEST(minimal_signing_states.source_epoch, EXCLUDED.source_epoch), "
+                + "target_epoch = "
+                + "GREATEST(minimal_signing_states.target_epoch, EXCLUDED.target_epoch)")
+        .bindBean(state)
+        .execute();
+
+    if (state.getBlockSlot() != null) {
+      handle
+          .createUpdate(
+              SLOT_WATERMARK_UPSERT
+                  + "VALUES (:validator_id, :watermark_slot) "
+                  + SLOT_WATERMARK_CONFLICT)
+          .bind("validator_id", state.getValidatorId())
+          .bind("watermark_slot", next(state.getBlockSlot()))
+          .execute();
+    }
+    if (state.getTargetEpoch() != null) {
+      handle
+          .createUpdate(
+              EPOCH_WATERMARKS_UPSERT
+                  + "VALUES (:validator_id, :source_epoch, :watermark_target_epoch) "
+                  + EPOCH_WATERMARKS_CONFLICT)
+          .bind("validator_id", state.getValidatorId())
+          .bind("source_epoch", state.getSourceEpoch())
+          .bind("watermark_target_epoch", next(state.getTargetEpoch()))
+          .execute();
+    }
+  }
+
+  public Optional<MinimalSigningState> findState(final Handle handle, final int validatorId) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, block_slot, block_signing_root, source_epoch, target_epoch, "
+                + "attestation_signing_root FROM minimal_signing_states WHERE validator_id = ?")
+        .bind(0, validatorId)
+        .mapToBean(MinimalSigningState.class)
+        .findFirst();
+  }
+
+  public Stream<MinimalSigningState> findAllStates(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, block_slot, block_signing_root, source_epoch, target_epoch, "
+                + "attestation_signing_root FROM minimal_signing_states ORDER BY validator_id")
+        .mapToBean(MinimalSigningState.class)
+        .stream();
+  }
+
+  // the full mode allows signing at the watermark, so it is kept above what has been signed here
+  private static UInt64 next(final UInt64 value) {
+    return value.equals(UInt64.MAX_VALUE) ? value : value.add(1);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+
+/**
+ * Slashing protection tables that can be range partitioned. The partition key column has the same
+ * name in the low_watermarks table, where it holds the validator's watermark.
+ */
+public enum PartitionedTable {
+  SIGNED_BLOCKS("signed_blocks", "slot", LockType.BLOCK),
+  SIGNED_ATTESTATIONS("signed_attestations", "target_epoch", LockType.ATTESTATION);
+
+  private final String tableName;
+  private final String keyColumn;
+  private final LockType lockType;
+
+  PartitionedTable(final String tableName, final String keyColumn, final LockType lockType) {
+    this.tableName = tableName;
+    this.keyColumn = keyColumn;
+    this.lockType = lockType;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  public LockType getLockType() {
+    return lockType;
+  }
+
+  String historyPartition() {
+    return tableName + "_history";
+  }
+
+  String futurePartition() {
+    return tableName + "_future";
+  }
+}
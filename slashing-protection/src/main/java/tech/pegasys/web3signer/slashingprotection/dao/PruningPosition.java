@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Position of a signed block or attestation row in (validator id, slot or target epoch) order,
+ * used to page through the rows being pruned.
+ */
+public class PruningPosition implements Comparable<PruningPosition> {
+  private static final Comparator<PruningPosition> ORDER =
+      Comparator.comparingInt(PruningPosition::getValidatorId)
+          .thenComparing(PruningPosition::getKey);
+
+  private final int validatorId;
+  private final UInt64 key;
+
+  public PruningPosition(final int validatorId, final UInt64 key) {
+    this.validatorId = validatorId;
+    this.key = key;
+  }
+
+  /** Position ordered before every row of the validator. */
+  public static PruningPosition before(final int validatorId) {
+    return new PruningPosition(validatorId - 1, UInt64.MAX_VALUE);
+  }
+
+  public int getValidatorId() {
+    return validatorId;
+  }
+
+  public UInt64 getKey() {
+    return key;
+  }
+
+  @Override
+  public int compareTo(final PruningPosition other) {
+    return ORDER.compare(this, other);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final PruningPosition that = (PruningPosition) o;
+    return validatorId == that.validatorId && Objects.equals(key, that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(validatorId, key);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorId", validatorId)
+        .add("key", key)
+        .toString();
+  }
+}
@@ -14,6 +14,10 @@ package tech.pegasys.web3signer.slashingprotection.dao;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.SortableUInt64;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -21,6 +25,7 @@ import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
 
 public class SignedAttestationsDao {
 
@@ -110,6 +115,22 @@ public class SignedAttestationsDao {
         .execute();
   }
 
+  public void insertAttestations(
+      final Handle handle, final List<SignedAttestation> signedAttestations) {
+    final PreparedBatch batch =
+        handle.prepareBatch(
+            "INSERT INTO signed_attestations (validator_id, signing_root, source_epoch, target_epoch) VALUES (?, ?, ?, ?)");
+    signedAttestations.forEach(
+        a ->
+            batch
+                .bind(0, a.getValidatorId())
+                .bind(1, a.getSigningRoot())
+                .bind(2, a.getSourceEpoch())
+                .bind(3, a.getTargetEpoch())
+                .add());
+    batch.execute();
+  }
+
   public Stream<SignedAttestation> findAllAttestationsSignedBy(
       final Handle handle, final int validatorId) {
     return handle
@@ -121,6 +142,31 @@ public class SignedAttestationsDao {
         .stream();
   }
 
+  /**
+   * Streams the attestations with source and target epochs at or above the given epochs in target
+   * epoch order. The rows are read through a cursor of the given fetch size, which requires the
+   * handle to be in a transaction.
+   */
+  public Stream<SignedAttestation> findAttestationsSignedFromEpochs(
+      final Handle handle,
+      final int validatorId,
+      final UInt64 minSourceEpoch,
+      final UInt64 minTargetEpoch,
+      final int fetchSize) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, source_epoch, target_epoch, signing_root "
+                + "FROM signed_attestations "
+                + "WHERE validator_id = ? AND source_epoch >= ? AND target_epoch >= ? "
+                + "ORDER BY target_epoch")
+        .bind(0, validatorId)
+        .bind(1, minSourceEpoch)
+        .bind(2, minTargetEpoch)
+        .setFetchSize(fetchSize)
+        .mapToBean(SignedAttestation.class)
+        .stream();
+  }
+
   public void deleteAttestationsBelowWatermark(final Handle handle, final int validatorId) {
     handle
         .createUpdate(
@@ -131,6 +177,118 @@ public class SignedAttestationsDao {
         .execute();
   }
 
+  /**
+   * Deletes up to limit attestations below the target epoch watermarks of validators, taking rows
+   * in validator id and target epoch order from after the given position up to the last validator
+   * id.
+   *
+   * @return the positions of the deleted attestations
+   */
+  public List<PruningPosition> deleteAttestationsBelowWatermark(
+      final Handle handle,
+      final PruningPosition after,
+      final int lastValidatorId,
+      final int limit) {
+    return handle
+        .createQuery(
+            "DELETE FROM signed_attestations d USING ("
+                + "SELECT sa.validator_id, sa.target_epoch FROM signed_attestations sa "
+                + "JOIN low_watermarks lw ON lw.validator_id = sa.validator_id "
+                + "WHERE (sa.validator_id, sa.target_epoch) > (:after_validator_id, :after_epoch) "
+                + "AND sa.validator_id <= :last_validator_id AND sa.target_epoch < lw.target_epoch "
+                + "ORDER BY sa.validator_id, sa.target_epoch LIMIT :limit) b "
+                + "WHERE d.validator_id = b.validator_id AND d.target_epoch = b.target_epoch "
+                + "RETURNING d.validator_id, d.target_epoch")
+        .bind("after_validator_id", after.getValidatorId())
+        .bind("after_epoch", after.getKey())
+        .bind("last_validator_id", lastValidatorId)
+        .bind("limit", limit)
+        .map(
+            (rs, ctx) ->
+                new PruningPosition(
+                    rs.getInt("validator_id"), SortableUInt64.decode(rs.getLong("target_epoch"))))
+        .list();
+  }
+
+  /**
+   * Checks the attestation against all slashing rules and inserts it when it is safe to sign, in a
+   * single database round trip. Takes the attestation advisory lock for the validator.
+   */
+  public SlashingCheckResult<SignedAttestation> checkAndInsertAttestation(
+      final Handle handle,
+      final int validatorId,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes signingRoot) {
+    checkNotNull(signingRoot, "Signing root must not be null");
+    return handle
+        .createQuery(
+            "SELECT verdict, conflict_source_epoch, conflict_target_epoch, conflict_signing_root "
+                + "FROM check_and_insert_attestation(?, ?, ?, ?, ?)")
+        .bind(0, LockType.ATTESTATION.ordinal())
+        .bind(1, validatorId)
+        .bind(2, sourceEpoch)
+        .bind(3, targetEpoch)
+        .bind(4, signingRoot)
+        .map(
+            (rs, ctx) -> {
+              final Long conflictSourceEpoch = rs.getObject("conflict_source_epoch", Long.class);
+              final Long conflictTargetEpoch = rs.getObject("conflict_target_epoch", Long.class);
+              final byte[] conflictSigningRoot = rs.getBytes("conflict_signing_root");
+              final Optional<SignedAttestation> conflict =
+                  conflictSourceEpoch == null || conflictTargetEpoch == null
+                      ? Optional.empty()
+                      : Optional.of(
+                          new SignedAttestation(
+                              validatorId,
+                              SortableUInt64.decode(conflictSourceEpoch),
+                              SortableUInt64.decode(conflictTargetEpoch),
+                              conflictSigningRoot == null
+                                  ? null
+                                  : Bytes.wrap(conflictSigningRoot)));
+              return new SlashingCheckResult<>(
+                  SlashingCheckVerdict.fromCode(rs.getInt("verdict")), conflict);
+            })
+        .one();
+  }
+
+  public List<SignedAttestation> findAttestationsWithTargetEpochFrom(
+      final Handle handle, final int validatorId, final UInt64 targetEpoch) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, source_epoch, target_epoch, signing_root "
+                + "FROM signed_attestations "
+                + "WHERE validator_id = ? AND target_epoch >= ?")
+        .bind(0, validatorId)
+        .bind(1, targetEpoch)
+        .mapToBean(SignedAttestation.class)
+        .list();
+  }
+
+  /**
+   * Finds the attestations of each of the validators with a target epoch within the given number
+   * of epochs of its highest signed source epoch. These include the attestations with the highest
+   * source and target epochs, as a target is never below its source.
+   */
+  public List<SignedAttestation> findRecentAttestations(
+      final Handle handle, final Collection<Integer> validatorIds, final int epochs) {
+    return handle
+        .createQuery(
+            "SELECT sa.validator_id, sa.source_epoch, sa.target_epoch, sa.signing_root "
+                + "FROM signed_attestations sa, "
+                + "(SELECT validator_id, max(source_epoch) AS max_source "
+                + "FROM signed_attestations WHERE validator_id = ANY(:validator_ids) "
+                + "GROUP BY validator_id) m "
+                + "WHERE sa.validator_id = m.validator_id AND sa.target_epoch >= "
+                + "CASE WHEN m.max_source < :min + :span THEN :min "
+                + "ELSE m.max_source - :span END")
+        .bindArray("validator_ids", Integer.class, validatorIds)
+        .bind("min", Long.MIN_VALUE)
+        .bind("span", epochs - 1)
+        .mapToBean(SignedAttestation.class)
+        .list();
+  }
+
   public Optional<UInt64> findMaxTargetEpoch(final Handle handle, final int validatorId) {
     return handle
         .createQuery("SELECT max(target_epoch) FROM signed_attestations WHERE validator_id = ?")
@@ -139,6 +297,14 @@ public class SignedAttestationsDao {
         .findFirst();
   }
 
+  public Optional<UInt64> findMaxSourceEpoch(final Handle handle, final int validatorId) {
+    return handle
+        .createQuery("SELECT max(source_epoch) FROM signed_attestations WHERE validator_id = ?")
+        .bind(0, validatorId)
+        .mapTo(UInt64.class)
+        .findFirst();
+  }
+
   public Optional<SignedAttestation> findNearestAttestationWithTargetEpoch(
       final Handle handle, final int validatorId, final UInt64 targetEpoch) {
     return handle
@@ -14,6 +14,10 @@ package tech.pegasys.web3signer.slashingprotection.dao;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import tech.pegasys.web3signer.slashingprotection.DbLocker.LockType;
+import tech.pegasys.web3signer.slashingprotection.SortableUInt64;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -21,6 +25,7 @@ import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.PreparedBatch;
 
 public class SignedBlocksDao {
 
@@ -54,6 +59,40 @@ public class SignedBlocksDao {
         .findFirst();
   }
 
+  /**
+   * Checks the block against all slashing rules and inserts it when it is safe to sign, in a single
+   * database round trip. Takes the block advisory lock for the validator.
+   */
+  public SlashingCheckResult<SignedBlock> checkAndInsertBlock(
+      final Handle handle, final int validatorId, final UInt64 slot, final Bytes signingRoot) {
+    checkNotNull(signingRoot, "Signing root must not be null");
+    return handle
+        .createQuery(
+            "SELECT verdict, conflict_slot, conflict_signing_root "
+                + "FROM check_and_insert_block(?, ?, ?, ?)")
+        .bind(0, LockType.BLOCK.ordinal())
+        .bind(1, validatorId)
+        .bind(2, slot)
+        .bind(3, signingRoot)
+        .map(
+            (rs, ctx) -> {
+              final Long conflictSlot = rs.getObject("conflict_slot", Long.class);
+              final byte[] conflictSigningRoot = rs.getBytes("conflict_signing_root");
+              return new SlashingCheckResult<>(
+                  SlashingCheckVerdict.fromCode(rs.getInt("verdict")),
+                  Optional.ofNullable(conflictSlot)
+                      .map(
+                          conflict ->
+                              new SignedBlock(
+                                  validatorId,
+                                  SortableUInt64.decode(conflict),
+                                  conflictSigningRoot == null
+                                      ? null
+                                      : Bytes.wrap(conflictSigningRoot))));
+            })
+        .one();
+  }
+
   public void insertBlockProposal(final Handle handle, final SignedBlock signedBlock) {
     handle
         .createUpdate(
@@ -64,6 +103,20 @@ public class SignedBlocksDao {
         .execute();
   }
 
+  public void insertBlockProposals(final Handle handle, final List<SignedBlock> signedBlocks) {
+    final PreparedBatch batch =
+        handle.prepareBatch(
+            "INSERT INTO signed_blocks (validator_id, slot, signing_root) VALUES (?, ?, ?)");
+    signedBlocks.forEach(
+        b ->
+            batch
+                .bind(0, b.getValidatorId())
+                .bind(1, b.getSlot())
+                .bind(2, b.getSigningRoot())
+                .add());
+    batch.execute();
+  }
+
   public Stream<SignedBlock> findAllBlockSignedBy(final Handle handle, final int validatorId) {
     return handle
         .createQuery(
@@ -73,6 +126,23 @@ public class SignedBlocksDao {
         .stream();
   }
 
+  /**
+   * Streams the blocks at or above the given slot in slot order. The rows are read through a
+   * cursor of the given fetch size, which requires the handle to be in a transaction.
+   */
+  public Stream<SignedBlock> findBlocksSignedFromSlot(
+      final Handle handle, final int validatorId, final UInt64 minSlot, final int fetchSize) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, slot, signing_root FROM signed_blocks "
+                + "WHERE validator_id = ? AND slot >= ? ORDER BY slot")
+        .bind(0, validatorId)
+        .bind(1, minSlot)
+        .setFetchSize(fetchSize)
+        .mapToBean(SignedBlock.class)
+        .stream();
+  }
+
   public void deleteBlocksBelowWatermark(final Handle handle, final int validatorId) {
     handle
         .createUpdate(
@@ -83,6 +153,38 @@ public class SignedBlocksDao {
         .execute();
   }
 
+  /**
+   * Deletes up to limit blocks below the slot watermarks of validators, taking rows in validator id
+   * and slot order from after the given position up to the last validator id.
+   *
+   * @return the positions of the deleted blocks
+   */
+  public List<PruningPosition> deleteBlocksBelowWatermark(
+      final Handle handle,
+      final PruningPosition after,
+      final int lastValidatorId,
+      final int limit) {
+    return handle
+        .createQuery(
+            "DELETE FROM signed_blocks d USING ("
+                + "SELECT sb.validator_id, sb.slot FROM signed_blocks sb "
+                + "JOIN low_watermarks lw ON lw.validator_id = sb.validator_id "
+                + "WHERE (sb.validator_id, sb.slot) > (:after_validator_id, :after_slot) "
+                + "AND sb.validator_id <= :last_validator_id AND sb.slot < lw.slot "
+                + "ORDER BY sb.validator_id, sb.slot LIMIT :limit) b "
+                + "WHERE d.validator_id = b.validator_id AND d.slot = b.slot "
+                + "RETURNING d.validator_id, d.slot")
+        .bind("after_validator_id", after.getValidatorId())
+        .bind("after_slot", after.getKey())
+        .bind("last_validator_id", lastValidatorId)
+        .bind("limit", limit)
+        .map(
+            (rs, ctx) ->
+                new PruningPosition(
+                    rs.getInt("validator_id"), SortableUInt64.decode(rs.getLong("slot"))))
+        .list();
+  }
+
   public Optional<UInt64> findMaxSlot(final Handle handle, final int validatorId) {
     return handle
         .createQuery("SELECT max(slot) FROM signed_blocks WHERE validator_id = ?")
@@ -91,6 +193,19 @@ public class SignedBlocksDao {
         .findFirst();
   }
 
+  /** @return the block with the highest slot of each of the validators that signed a block */
+  public List<SignedBlock> findLatestBlocks(
+      final Handle handle, final Collection<Integer> validatorIds) {
+    return handle
+        .createQuery(
+            "SELECT DISTINCT ON (validator_id) validator_id, slot, signing_root "
+                + "FROM signed_blocks WHERE validator_id = ANY(:validator_ids) "
+                + "ORDER BY validator_id, slot DESC")
+        .bindArray("validator_ids", Integer.class, validatorIds)
+        .mapToBean(SignedBlock.class)
+        .list();
+  }
+
   public Optional<SignedBlock> findNearestBlockWithSlot(
       final Handle handle, final int validatorId, final UInt64 slot) {
     return handle
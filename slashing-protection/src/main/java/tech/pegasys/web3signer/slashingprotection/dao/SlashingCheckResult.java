@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Verdict of a consolidated slashing check with the entry that caused a rejection. For watermark
+ * verdicts the entry holds the watermark.
+ */
+public class SlashingCheckResult<T> {
+
+  private final SlashingCheckVerdict verdict;
+  private final Optional<T> conflict;
+
+  public SlashingCheckResult(final SlashingCheckVerdict verdict, final Optional<T> conflict) {
+    this.verdict = verdict;
+    this.conflict = conflict;
+  }
+
+  public SlashingCheckVerdict getVerdict() {
+    return verdict;
+  }
+
+  public Optional<T> getConflict() {
+    return conflict;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("verdict", verdict)
+        .add("conflict", conflict.orElse(null))
+        .toString();
+  }
+}
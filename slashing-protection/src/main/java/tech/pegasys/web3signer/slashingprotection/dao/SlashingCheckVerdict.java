@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Arrays;
+
+/** Outcome of the consolidated slashing check functions, codes match the database functions. */
+public enum SlashingCheckVerdict {
+  INSERTED(0, true),
+  ALREADY_EXISTS(1, true),
+  SOURCE_GREATER_THAN_TARGET(2, false),
+  SOURCE_BELOW_WATERMARK(3, false),
+  TARGET_BELOW_WATERMARK(4, false),
+  SLOT_BELOW_WATERMARK(5, false),
+  CONFLICTS_WITH_EXISTING_ENTRY(6, false),
+  SURROUNDED_BY_EXISTING_ATTESTATION(7, false),
+  SURROUNDS_EXISTING_ATTESTATION(8, false);
+
+  private final int code;
+  private final boolean safeToSign;
+
+  SlashingCheckVerdict(final int code, final boolean safeToSign) {
+    this.code = code;
+    this.safeToSign = safeToSign;
+  }
+
+  public boolean isSafeToSign() {
+    return safeToSign;
+  }
+
+  public static SlashingCheckVerdict fromCode(final int code) {
+    return Arrays.stream(values())
+        .filter(v -> v.code == code)
+        .findFirst()
+        .orElseThrow(() -> new IllegalStateException("Unknown slashing check verdict " + code));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.units.bigints.UInt64;
+
+public class SlashingPartition {
+  private String partitionName;
+  private String tableName;
+  private UInt64 lowerBound;
+  private UInt64 upperBound;
+
+  // needed for JDBI
+  public SlashingPartition() {}
+
+  public SlashingPartition(
+      final String partitionName,
+      final String tableName,
+      final UInt64 lowerBound,
+      final UInt64 upperBound) {
+    this.partitionName = partitionName;
+    this.tableName = tableName;
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+  }
+
+  public String getPartitionName() {
+    return partitionName;
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  public UInt64 getLowerBound() {
+    return lowerBound;
+  }
+
+  public UInt64 getUpperBound() {
+    return upperBound;
+  }
+
+  public void setPartitionName(final String partitionName) {
+    this.partitionName = partitionName;
+  }
+
+  public void setTableName(final String tableName) {
+    this.tableName = tableName;
+  }
+
+  public void setLowerBound(final UInt64 lowerBound) {
+    this.lowerBound = lowerBound;
+  }
+
+  public void setUpperBound(final UInt64 upperBound) {
+    this.upperBound = upperBound;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("partitionName", partitionName)
+        .add("lowerBound", lowerBound)
+        .add("upperBound", upperBound)
+        .toString();
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.slashingprotection.SortableUInt64;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+
+/**
+ * Maintains the optional range partitioned layout of the signed_blocks and signed_attestations
+ * tables. Besides the registered partitions, each table has a history partition covering all keys
+ * below the lowest registered partition and a future partition covering all keys above the highest,
+ * so that inserts always find a partition.
+ *
+ * <p>Partitioned tables cannot have unique indexes or foreign keys on all supported Postgres
+ * versions, so these are created on each partition. As the partition key is part of the unique
+ * key, this gives the same guarantee as the unique constraint on the unpartitioned table.
+ */
+public class SlashingPartitionsDao {
+
+  public boolean isPartitioned(final Handle handle, final PartitionedTable table) {
+    return handle
+        .createQuery(
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))")
+        .bind(0, table.getTableName())
+        .mapTo(Boolean.class)
+        .one();
+  }
+
+  public List<SlashingPartition> findPartitions(
+      final Handle handle, final PartitionedTable table) {
+    return handle
+        .createQuery(
+            "SELECT partition_name, table_name, lower_bound, upper_bound "
+                + "FROM slashing_partitions WHERE table_name = ? ORDER BY lower_bound")
+        .bind(0, table.getTableName())
+        .mapToBean(SlashingPartition.class)
+        .list();
+  }
+
+  public Optional<UInt64> findMinKey(final Handle handle, final PartitionedTable table) {
+    return handle
+        .createQuery(
+            String.format("SELECT min(%s) FROM %s", table.getKeyColumn(), table.getTableName()))
+        .mapTo(UInt64.class)
+        .findFirst();
+  }
+
+  public Optional<UInt64> findMaxKey(final Handle handle, final PartitionedTable table) {
+    return handle
+        .createQuery(
+            String.format("SELECT max(%s) FROM %s", table.getKeyColumn(), table.getTableName()))
+        .mapTo(UInt64.class)
+        .findFirst();
+  }
+
+  /**
+   * Replaces the table with a partitioned table holding the same rows. A partition is created
+   * between each pair of consecutive boundaries, with the history and future partitions below the
+   * first and above the last boundary.
+   */
+  public void convertToPartitioned(
+      final Handle handle, final PartitionedTable table, final List<UInt64> boundaries) {
+    checkArgument(!boundaries.isEmpty(), "At least one partition boundary is required");
+    final String tableName = table.getTableName();
+    final String unpartitioned = tableName + "_unpartitioned";
+
+    handle.execute(String.format("ALTER TABLE %s RENAME TO %s", tableName, unpartitioned));
+    handle.execute(
+        String.format(
+            "CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS) PARTITION BY RANGE (%s)",
+            tableName, unpartitioned, table.getKeyColumn()));
+
+    createPartition(
+        handle, table, table.historyPartition(), "MINVALUE", literal(boundaries.get(0)));
+    for (int i = 1; i < boundaries.size(); i++) {
+      final UInt64 lower = boundaries.get(i - 1);
+      final UInt64 upper = boundaries.get(i);
+      createPartition(handle, table, partitionName(table, lower), literal(lower), literal(upper));
+      registerPartition(handle, table, lower, upper);
+    }
+    createPartition(
+        handle,
+        table,
+        table.futurePartition(),
+        literal(boundaries.get(boundaries.size() - 1)),
+        "MAXVALUE");
+
+    handle.execute(String.format("INSERT INTO %s SELECT * FROM %s", tableName, unpartitioned));
+    handle.execute(String.format("DROP TABLE %s", unpartitioned));
+  }
+
+  /**
+   * Adds a partition directly above the highest existing partition, moving any rows in its range
+   * out of the future partition.
+   */
+  public void addPartition(
+      final Handle handle, final PartitionedTable table, final UInt64 lower, final UInt64 upper) {
+    checkArgument(lower.compareTo(upper) < 0, "Partition lower bound must be below upper bound");
+    final String tableName = table.getTableName();
+    final String future = table.futurePartition();
+
+    handle.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", tableName, future));
+    createPartition(handle, table, partitionName(table, lower), literal(lower), literal(upper));
+    handle.execute(
+        String.format(
+            "INSERT INTO %s SELECT * FROM %s WHERE %s < %s",
+            tableName, future, table.getKeyColumn(), literal(upper)));
+    handle.execute(
+        String.format(
+            "DELETE FROM %s WHERE %s < %s", future, table.getKeyColumn(), literal(upper)));
+    handle.execute(
+        String.format(
+            "ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM (%s) TO (MAXVALUE)",
+            tableName, future, literal(upper)));
+    registerPartition(handle, table, lower, upper);
+  }
+
+  /**
+   * Prepares the replacement of the history partition for when the lowest registered partition is
+   * dropped. Rows at or above their validator's low watermark, or of validators without a
+   * watermark, are copied from the history partition and the lowest partition into a new table,
+   * which is indexed and constrained to the extended history range. Only the copied partitions are
+   * read, so signing continues while the rows are copied.
+   *
+   * @return the number of rows copied
+   */
+  public int copyRetainedRows(
+      final Handle handle, final PartitionedTable table, final SlashingPartition partition) {
+    final String replacement = replacementHistory(table);
+    final String key = table.getKeyColumn();
+
+    handle.execute(String.format("DROP TABLE IF EXISTS %s", replacement));
+    handle.execute(
+        String.format(
+            "CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS)", replacement, table.getTableName()));
+    final int retained =
+        insertRetainedRows(handle, table, table.historyPartition(), partition, false)
+            + insertRetainedRows(handle, table, partition.getPartitionName(), partition, false);
+    createPartitionConstraints(handle, table, replacement);
+    // lets the replacement be attached without scanning it for rows outside the partition range
+    handle.execute(
+        String.format(
+            "ALTER TABLE %1$s ADD CONSTRAINT %1$s_range CHECK (%2$s IS NOT NULL AND %2$s < %3$s)",
+            replacement, key, literal(partition.getUpperBound())));
+    return retained;
+  }
+
+  /**
+   * Drops the lowest registered partition and replaces the history partition with the table
+   * prepared by {@link #copyRetainedRows}, extended over the dropped partition's range. Rows
+   * signed into either partition since the copy are added once the table is locked; rows already
+   * copied are skipped on their unique index, so no rows are written or deleted under the lock
+   * other than these.
+   *
+   * @return the number of rows signed since the copy that were kept
+   */
+  public int replaceLowestPartition(
+      final Handle handle, final PartitionedTable table, final SlashingPartition partition) {
+    final String tableName = table.getTableName();
+    final String history = table.historyPartition();
+    final String replacement = replacementHistory(table);
+
+    handle.execute(String.format("LOCK TABLE %s IN ACCESS EXCLUSIVE MODE", tableName));
+    final int signedSinceCopy =
+        insertRetainedRows(handle, table, history, partition, true)
+            + insertRetainedRows(handle, table, partition.getPartitionName(), partition, true);
+
+    handle.execute(
+        String.format(
+            "ALTER TABLE %s DETACH PARTITION %s", tableName, partition.getPartitionName()));
+    handle.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", tableName, history));
+    handle.execute(String.format("DROP TABLE %s", partition.getPartitionName()));
+    handle.execute(String.format("DROP TABLE %s", history));
+    handle.execute(String.format("ALTER TABLE %s RENAME TO %s", replacement, history));
+    handle.execute(
+        String.format(
+            "ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM (MINVALUE) TO (%s)",
+            tableName, history, literal(partition.getUpperBound())));
+    handle.execute(String.format("ALTER TABLE %s DROP CONSTRAINT %s_range", history, replacement));
+    handle.execute(
+        "DELETE FROM slashing_partitions WHERE partition_name = ?", partition.getPartitionName());
+    return signedSinceCopy;
+  }
+
+  private int insertRetainedRows(
+      final Handle handle,
+      final PartitionedTable table,
+      final String source,
+      final SlashingPartition partition,
+      final boolean skipCopied) {
+    // validators with a watermark at or above the partition's upper bound have no rows to keep in
+    // either the partition or the history partition below it, so only the remaining validators
+    // are probed through the index rather than the tables scanned
+    return handle
+        .createUpdate(
+            String.format(
+                "INSERT INTO %1$s SELECT t.* FROM "
+                    + "(SELECT v.id, lw.%3$s AS watermark FROM validators v "
+                    + "LEFT JOIN low_watermarks lw ON lw.validator_id = v.id "
+                    + "WHERE lw.%3$s IS NULL OR lw.%3$s < :upper) c, "
+                    + "LATERAL (SELECT * FROM %2$s p WHERE p.validator_id = c.id "
+                    + "AND (c.watermark IS NULL OR p.%3$s >= c.watermark)) t%4$s",
+                replacementHistory(table),
+                source,
+                table.getKeyColumn(),
+                skipCopied ? " ON CONFLICT DO NOTHING" : ""))
+        .bind("upper", partition.getUpperBound())
+        .execute();
+  }
+
+  private void createPartition(
+      final Handle handle,
+      final PartitionedTable table,
+      final String partitionName,
+      final String from,
+      final String to) {
+    handle.execute(
+        String.format(
+            "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM (%s) TO (%s)",
+            partitionName, table.getTableName(), from, to));
+    createPartitionConstraints(handle, table, partitionName);
+  }
+
+  private void createPartitionConstraints(
+      final Handle handle, final PartitionedTable table, final String partitionName) {
+    handle.execute(
+        String.format(
+            "CREATE UNIQUE INDEX ON %s (validator_id, %s)", partitionName, table.getKeyColumn()));
+    handle.execute(
+        String.format(
+            "ALTER TABLE %s ADD FOREIGN KEY (validator_id) REFERENCES validators(id)",
+            partitionName));
+  }
+
+  private void registerPartition(
+      final Handle handle, final PartitionedTable table, final UInt64 lower, final UInt64 upper) {
+    handle
+        .createUpdate(
+            "INSERT INTO slashing_partitions "
+                + "(partition_name, table_name, lower_bound, upper_bound) VALUES (?, ?, ?, ?)")
+        .bind(0, partitionName(table, lower))
+        .bind(1, table.getTableName())
+        .bind(2, lower)
+        .bind(3, upper)
+        .execute();
+  }
+
+  private static String replacementHistory(final PartitionedTable table) {
+    return table.historyPartition() + "_next";
+  }
+
+  private static String partitionName(final PartitionedTable table, final UInt64 lower) {
+    return table.getTableName() + "_p" + lower.toBigInteger();
+  }
+
+  private static String literal(final UInt64 value) {
+    return Long.toString(SortableUInt64.encode(value));
+  }
+}
@@ -37,9 +37,15 @@ public class ValidatorsDao {
     return result.get(0);
   }
 
+  /**
+   * Inserts the validators which are not in the database yet. Validators inserted concurrently by
+   * another instance are skipped instead of failing the batch, so they are missing from the
+   * returned list and need to be retrieved.
+   */
   public List<Validator> registerValidators(final Handle handle, final List<Bytes> validators) {
     final PreparedBatch batch =
-        handle.prepareBatch("INSERT INTO validators (public_key) VALUES (?)");
+        handle.prepareBatch(
+            "INSERT INTO validators (public_key) VALUES (?) ON CONFLICT (public_key) DO NOTHING");
     validators.forEach(b -> batch.bind(0, b).add());
     return batch.executeAndReturnGeneratedKeys().mapToBean(Validator.class).list();
   }
@@ -56,7 +62,7 @@ public class ValidatorsDao {
 
   public Stream<Validator> findAllValidators(final Handle handle) {
     return handle
-        .createQuery("SELECT id, public_key FROM validators")
+        .createQuery("SELECT id, public_key FROM validators ORDER BY id")
         .mapToBean(Validator.class)
         .stream();
   }
@@ -0,0 +1,889 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeCompression;
+import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
+import tech.pegasys.web3signer.slashingprotection.interchange.OptionalMinValueTracker;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Slashing protection backed by an append-only log in a local directory rather than a database.
+ * The history of every validator is held in memory and rebuilt from the log on startup; each
+ * permitted signing is appended and synced to the log before it is reported as safe to sign.
+ *
+ * <p>The same slashing rules as {@link
+ * tech.pegasys.web3signer.slashingprotection.DbSlashingProtection} are applied. The store is
+ * locked to a single process, so it cannot be shared between Web3Signer instances.
+ */
+public class FileSlashingProtection implements SlashingProtection, Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final String FORMAT_VERSION = "5";
+
+  private final BiMap<Bytes, Integer> validatorIds = Maps.synchronizedBiMap(HashBiMap.create());
+  private final Map<Integer, ValidatorHistory> histories = new ConcurrentHashMap<>();
+  private final Object registrationLock = new Object();
+  private final Object genesisValidatorsRootLock = new Object();
+  private final long pruningEpochsToKeep;
+  private final long pruningSlotsPerEpoch;
+  private final ObjectMapper mapper;
+  private final SlashingProtectionLog log;
+  private volatile Bytes32 genesisValidatorsRoot;
+  // guarded by registrationLock
+  private int nextValidatorId = 1;
+
+  private FileSlashingProtection(
+      final Path directory, final long pruningEpochsToKeep, final long pruningSlotsPerEpoch)
+      throws IOException {
+    this.pruningEpochsToKeep = pruningEpochsToKeep;
+    this.pruningSlotsPerEpoch = pruningSlotsPerEpoch;
+    this.mapper =
+        new ObjectMapper()
+            .registerModule(new InterchangeModule())
+            .configure(FLUSH_AFTER_WRITE_VALUE, true)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    this.log = SlashingProtectionLog.open(directory, new StoreLoader());
+  }
+
+  public static FileSlashingProtection create(
+      final Path directory, final long pruningEpochsToKeep, final long pruningSlotsPerEpoch) {
+    try {
+      final FileSlashingProtection slashingProtection =
+          new FileSlashingProtection(directory, pruningEpochsToKeep, pruningSlotsPerEpoch);
+      LOG.info(
+          "Loaded slashing protection store {} with {} validators",
+          directory,
+          slashingProtection.histories.size());
+      return slashingProtection;
+    } catch (final IOException e) {
+      throw new IllegalStateException("Failed to open slashing protection store " + directory, e);
+    }
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes32 genesisValidatorsRoot) {
+    final ValidatorHistory history = registeredHistory(publicKey);
+    if (!checkGenesisValidatorsRootAndInsertIfEmpty(genesisValidatorsRoot)) {
+      return false;
+    }
+    return callLockedAndPersist(
+        List.of(history),
+        records ->
+            checkAndRecordAttestation(
+                history, signingRoot, sourceEpoch, targetEpoch, records));
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final Bytes32 genesisValidatorsRoot) {
+    final ValidatorHistory history = registeredHistory(publicKey);
+    if (!checkGenesisValidatorsRootAndInsertIfEmpty(genesisValidatorsRoot)) {
+      return false;
+    }
+    return callLockedAndPersist(
+        List.of(history), records -> checkAndRecordBlock(history, signingRoot, blockSlot, records));
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheckRequest> requests) {
+    final Boolean[] results = new Boolean[requests.size()];
+    final Map<Bytes32, Boolean> gvrResults = new HashMap<>();
+    final Map<Integer, ValidatorHistory> pendingHistories = new LinkedHashMap<>();
+    // as for the single checks an unregistered validator is an error, raised before any checking
+    final List<ValidatorHistory> requestHistories =
+        requests.stream()
+            .map(request -> registeredHistory(request.getPublicKey()))
+            .collect(Collectors.toList());
+
+    for (int i = 0; i < requests.size(); i++) {
+      final SlashingCheckRequest request = requests.get(i);
+      // the genesis validators root is checked once per distinct value in the batch
+      final boolean validGvr =
+          gvrResults.computeIfAbsent(
+              request.getGenesisValidatorsRoot(), this::checkGenesisValidatorsRootAndInsertIfEmpty);
+      if (!validGvr) {
+        results[i] = false;
+        continue;
+      }
+      pendingHistories.put(i, requestHistories.get(i));
+    }
+
+    if (!pendingHistories.isEmpty()) {
+      // all permitted requests in the batch share a single sync of the log
+      callLockedAndPersist(
+          pendingHistories.values(),
+          records -> {
+            pendingHistories.forEach(
+                (i, history) -> {
+                  final SlashingCheckRequest request = requests.get(i);
+                  if (request.getType() == SlashingCheckRequest.Type.BLOCK) {
+                    results[i] =
+                        checkAndRecordBlock(
+                            history, request.getSigningRoot(), request.getBlockSlot(), records);
+                  } else {
+                    results[i] =
+                        checkAndRecordAttestation(
+                            history,
+                            request.getSigningRoot(),
+                            request.getSourceEpoch(),
+                            request.getTargetEpoch(),
+                            records);
+                  }
+                });
+            return null;
+          });
+    }
+
+    return Arrays.asList(results);
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    if (validators.isEmpty()) {
+      return;
+    }
+
+    synchronized (registrationLock) {
+      final LogRecords records = new LogRecords();
+      final List<ValidatorHistory> newHistories = new ArrayList<>();
+      for (final Bytes publicKey : new LinkedHashSet<>(validators)) {
+        if (!validatorIds.containsKey(publicKey)) {
+          final ValidatorHistory history = new ValidatorHistory(nextValidatorId++, publicKey);
+          history.writeTo(records);
+          newHistories.add(history);
+        }
+      }
+      persist(records);
+      newHistories.forEach(this::addHistory);
+    }
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    LOG.info("Exporting slashing protection database");
+    try (final JsonGenerator jsonGenerator = mapper.getFactory().createGenerator(output)) {
+      final Bytes32 gvr = genesisValidatorsRoot;
+      if (gvr == null) {
+        throw new RuntimeException("No genesis validators root for slashing protection data");
+      }
+
+      jsonGenerator.writeStartObject();
+      jsonGenerator.writeFieldName("metadata");
+      mapper.writeValue(jsonGenerator, new Metadata(FORMAT_VERSION, gvr));
+
+      jsonGenerator.writeArrayFieldStart("data");
+      for (final ValidatorHistory history : sortedHistories(histories.values())) {
+        history.lock.lock();
+        try {
+          writeValidator(jsonGenerator, history);
+        } finally {
+          history.lock.unlock();
+        }
+      }
+      jsonGenerator.writeEndArray();
+
+      jsonGenerator.writeEndObject();
+    } catch (final IOException e) {
+      throw new RuntimeException("Failed to export database content", e);
+    }
+    LOG.info("Export complete");
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    try {
+      LOG.info("Importing slashing protection database");
+      final Interchange interchange =
+          readInterchange(InterchangeCompression.decompressingStream(input));
+      callWithStoreLocked(
+          () -> {
+            importInterchange(interchange);
+            return null;
+          });
+      LOG.info("Import complete");
+    } catch (final IOException | UnsupportedOperationException | IllegalArgumentException e) {
+      throw new RuntimeException("Failed to import database content", e);
+    }
+  }
+
+  @Override
+  public void prune() {
+    LOG.info("Pruning slashing protection store for {} validators", histories.size());
+    callWithStoreLocked(
+        () -> {
+          histories
+              .values()
+              .forEach(history -> history.prune(pruningEpochsToKeep, pruningSlotsPerEpoch));
+          log.rewrite(snapshot());
+          return null;
+        });
+    LOG.info("Pruning slashing protection store complete");
+  }
+
+  @Override
+  public void close() throws IOException {
+    log.close();
+  }
+
+  private boolean checkAndRecordBlock(
+      final ValidatorHistory history,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final LogRecords records) {
+    final Optional<UInt64> minimumSlot = history.getSlotWatermark();
+    if (minimumSlot.map(slot -> blockSlot.compareTo(slot) < 0).orElse(false)) {
+      LOG.warn(
+          "Block slot {} is below minimum existing block slot {}", blockSlot, minimumSlot.get());
+      return false;
+    }
+
+    final Optional<SignedBlock> existingBlock = history.findBlock(blockSlot);
+    if (existingBlock.isPresent()) {
+      // a block with a different or unknown signing root in the slot is a conflict
+      return hasSigningRoot(existingBlock.get().getSigningRoot(), signingRoot);
+    }
+
+    final SignedBlock block = new SignedBlock(history.getValidatorId(), blockSlot, signingRoot);
+    history.addBlock(block);
+    records.onBlock(block);
+    if (minimumSlot.isEmpty()) {
+      history.setSlotWatermark(blockSlot);
+      records.onSlotWatermark(history.getValidatorId(), blockSlot);
+    }
+    return true;
+  }
+
+  private boolean checkAndRecordAttestation(
+      final ValidatorHistory history,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final LogRecords records) {
+    final Bytes publicKey = history.getPublicKey();
+    if (sourceEpoch.compareTo(targetEpoch) > 0) {
+      LOG.warn(
+          "Detected sourceEpoch {} greater than targetEpoch {} for {}",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return false;
+    }
+
+    final Optional<UInt64> minimumSourceEpoch = history.getSourceEpochWatermark();
+    if (minimumSourceEpoch.map(epoch -> sourceEpoch.compareTo(epoch) < 0).orElse(false)) {
+      LOG.warn(
+          "Attestation source epoch {} is below minimum existing attestation source epoch {}",
+          sourceEpoch,
+          minimumSourceEpoch.get());
+      return false;
+    }
+    final Optional<UInt64> minimumTargetEpoch = history.getTargetEpochWatermark();
+    if (minimumTargetEpoch.map(epoch -> targetEpoch.compareTo(epoch) < 0).orElse(false)) {
+      LOG.warn(
+          "Attestation target epoch {} is below minimum existing attestation target epoch {}",
+          targetEpoch,
+          minimumTargetEpoch.get());
+      return false;
+    }
+
+    final Optional<SignedAttestation> existingAttestation = history.findAttestation(targetEpoch);
+    final boolean alreadyExists =
+        existingAttestation.isPresent()
+            && hasSigningRoot(existingAttestation.get().getSigningRoot(), signingRoot);
+    if (existingAttestation.isPresent() && !alreadyExists) {
+      return false;
+    }
+    if (history.isSurroundedByExistingAttestation(sourceEpoch, targetEpoch)) {
+      LOG.warn(
+          "Detected surrounding attestations for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
+          signingRoot,
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return false;
+    }
+    if (history.surroundsExistingAttestation(sourceEpoch, targetEpoch)) {
+      LOG.warn(
+          "Detected surrounded attestations for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
+          signingRoot,
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return false;
+    }
+    if (alreadyExists) {
+      return true;
+    }
+
+    final SignedAttestation attestation =
+        new SignedAttestation(history.getValidatorId(), sourceEpoch, targetEpoch, signingRoot);
+    history.addAttestation(attestation);
+    records.onAttestation(attestation);
+    if (minimumSourceEpoch.isEmpty() && minimumTargetEpoch.isEmpty()) {
+      history.setEpochWatermarks(sourceEpoch, targetEpoch);
+      records.onEpochWatermarks(history.getValidatorId(), sourceEpoch, targetEpoch);
+    }
+    return true;
+  }
+
+  private boolean checkGenesisValidatorsRootAndInsertIfEmpty(final Bytes32 suppliedGvr) {
+    Bytes32 storedGvr = genesisValidatorsRoot;
+    if (storedGvr == null) {
+      synchronized (genesisValidatorsRootLock) {
+        if (genesisValidatorsRoot == null) {
+          final LogRecords records = new LogRecords();
+          records.onGenesisValidatorsRoot(suppliedGvr);
+          persist(records);
+          genesisValidatorsRoot = suppliedGvr;
+        }
+        storedGvr = genesisValidatorsRoot;
+      }
+    }
+
+    if (!storedGvr.equals(suppliedGvr)) {
+      LOG.warn(
+          "Supplied genesis validators root {} does not match value in slashing protection store",
+          suppliedGvr);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Runs the operation holding the locks of the given validators, then appends and syncs any
+   * records it produced. Locks are held until the records are durable, so no other request can
+   * act on data which could still be lost. If the records cannot be persisted, the changes the
+   * operation made to the histories are reverted before the locks are released.
+   */
+  private <T> T callLockedAndPersist(
+      final Collection<ValidatorHistory> lockedHistories,
+      final Function<LogRecords, T> operation) {
+    final List<ValidatorHistory> orderedHistories = sortedHistories(lockedHistories);
+    orderedHistories.forEach(history -> history.lock.lock());
+    try {
+      final LogRecords records = new LogRecords();
+      final T result = operation.apply(records);
+      try {
+        persist(records);
+      } catch (final RuntimeException e) {
+        records.replay(new HistoryRollback());
+        throw e;
+      }
+      return result;
+    } finally {
+      orderedHistories.forEach(history -> history.lock.unlock());
+    }
+  }
+
+  /** Runs the operation with all writes to the store blocked. */
+  private <T> T callWithStoreLocked(final Supplier<T> operation) {
+    synchronized (registrationLock) {
+      synchronized (genesisValidatorsRootLock) {
+        return callLockedAndPersist(histories.values(), records -> operation.get());
+      }
+    }
+  }
+
+  private void persist(final LogRecords records) {
+    if (records.isEmpty()) {
+      // nothing new to write, but a request matching existing history must not be approved once
+      // that history may not have reached the log
+      log.checkNotFailed();
+    } else {
+      log.sync(log.append(records));
+    }
+  }
+
+  private Stream<LogRecords> snapshot() {
+    final LogRecords metadataRecords = new LogRecords();
+    if (genesisValidatorsRoot != null) {
+      metadataRecords.onGenesisValidatorsRoot(genesisValidatorsRoot);
+    }
+    return Stream.concat(
+        Stream.of(metadataRecords),
+        sortedHistories(histories.values()).stream()
+            .map(
+                history -> {
+                  final LogRecords records = new LogRecords();
+                  history.writeTo(records);
+                  return records;
+                }));
+  }
+
+  private ValidatorHistory registeredHistory(final Bytes publicKey) {
+    final Integer validatorId = validatorIds.get(publicKey);
+    if (validatorId == null) {
+      throw new IllegalStateException("Unregistered validator for " + publicKey);
+    }
+    return histories.get(validatorId);
+  }
+
+  private void addHistory(final ValidatorHistory history) {
+    histories.put(history.getValidatorId(), history);
+    validatorIds.put(history.getPublicKey(), history.getValidatorId());
+  }
+
+  private static boolean hasSigningRoot(
+      final Optional<Bytes> existingSigningRoot, final Bytes signingRoot) {
+    return signingRoot != null && existingSigningRoot.map(signingRoot::equals).orElse(false);
+  }
+
+  private static List<ValidatorHistory> sortedHistories(
+      final Collection<ValidatorHistory> histories) {
+    return histories.stream()
+        .distinct()
+        .sorted(Comparator.comparingInt(ValidatorHistory::getValidatorId))
+        .collect(Collectors.toList());
+  }
+
+  private void writeValidator(final JsonGenerator jsonGenerator, final ValidatorHistory history)
+      throws IOException {
+    final Optional<UInt64> slotWatermark = history.getSlotWatermark();
+    final Optional<UInt64> sourceEpochWatermark = history.getSourceEpochWatermark();
+    final Optional<UInt64> targetEpochWatermark = history.getTargetEpochWatermark();
+    if (slotWatermark.isEmpty() && targetEpochWatermark.isEmpty()) {
+      LOG.warn(
+          "No low watermark available, producing empty export for validator {}",
+          history.getPublicKey());
+      return;
+    }
+
+    LOG.info("Exporting entries for validator {}", history.getPublicKey().toHexString());
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeStringField("pubkey", history.getPublicKey().toHexString());
+
+    jsonGenerator.writeArrayFieldStart("signed_blocks");
+    if (slotWatermark.isPresent()) {
+      for (final SignedBlock block : history.getBlocks()) {
+        if (block.getSlot().compareTo(slotWatermark.get()) >= 0) {
+          mapper.writeValue(
+              jsonGenerator,
+              new tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock(
+                  block.getSlot(), block.getSigningRoot().orElse(null)));
+        }
+      }
+    }
+    jsonGenerator.writeEndArray();
+
+    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    if (sourceEpochWatermark.isPresent() && targetEpochWatermark.isPresent()) {
+      for (final SignedAttestation attestation : history.getAttestations()) {
+        if (attestation.getSourceEpoch().compareTo(sourceEpochWatermark.get()) >= 0
+            && attestation.getTargetEpoch().compareTo(targetEpochWatermark.get()) >= 0) {
+          mapper.writeValue(
+              jsonGenerator,
+              new tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation(
+                  attestation.getSourceEpoch(),
+                  attestation.getTargetEpoch(),
+                  attestation.getSigningRoot().orElse(null)));
+        }
+      }
+    }
+    jsonGenerator.writeEndArray();
+
+    jsonGenerator.writeEndObject();
+  }
+
+  private Interchange readInterchange(final InputStream input) throws IOException {
+    try (final JsonParser jsonParser = mapper.getFactory().createParser(input)) {
+      final ObjectNode rootNode = mapper.readTree(jsonParser);
+
+      final Metadata metadata = mapper.treeToValue(rootNode.get("metadata"), Metadata.class);
+      if (!metadata.getFormatVersion().equals(FORMAT_VERSION)) {
+        throw new IllegalStateException(
+            "Expecting an interchange_format_version of " + FORMAT_VERSION);
+      }
+
+      final List<InterchangeValidator> validators = new ArrayList<>();
+      final ArrayNode dataNode = rootNode.withArray("data");
+      for (int i = 0; i < dataNode.size(); i++) {
+        try {
+          validators.add(readValidator(dataNode.get(i)));
+        } catch (final IllegalArgumentException e) {
+          LOG.error("Failed to parse validator {}, due to {}", i, e.getMessage());
+          throw e;
+        }
+      }
+      return new Interchange(Bytes32.wrap(metadata.getGenesisValidatorsRoot()), validators);
+    }
+  }
+
+  private InterchangeValidator readValidator(final JsonNode node) throws IOException {
+    if (node.isArray()) {
+      throw new IllegalStateException("Element of 'data' was not an object");
+    }
+    final ObjectNode parentNode = (ObjectNode) node;
+    final Bytes publicKey = Bytes.fromHexString(parentNode.required("pubkey").textValue());
+
+    final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock> blocks =
+        new ArrayList<>();
+    for (final JsonNode blockNode : parentNode.withArray("signed_blocks")) {
+      blocks.add(
+          mapper.treeToValue(
+              blockNode,
+              tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock.class));
+    }
+
+    final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation>
+        attestations = new ArrayList<>();
+    for (final JsonNode attestationNode : parentNode.withArray("signed_attestations")) {
+      attestations.add(
+          mapper.treeToValue(
+              attestationNode,
+              tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation
+                  .class));
+    }
+    return new InterchangeValidator(publicKey, blocks, attestations);
+  }
+
+  /**
+   * Applies the interchange data to copies of the affected validators, so nothing is changed if
+   * the import fails, then persists it as a single append to the log.
+   */
+  private void importInterchange(final Interchange interchange) {
+    final Bytes32 storedGvr = genesisValidatorsRoot;
+    if (storedGvr != null && !storedGvr.equals(interchange.genesisValidatorsRoot)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Supplied genesis validators root %s does not match value in database",
+              interchange.genesisValidatorsRoot));
+    }
+
+    final LogRecords records = new LogRecords();
+    if (storedGvr == null) {
+      records.onGenesisValidatorsRoot(interchange.genesisValidatorsRoot);
+    }
+
+    final Map<Bytes, ValidatorHistory> importedHistories = new LinkedHashMap<>();
+    int importNextValidatorId = nextValidatorId;
+    for (final InterchangeValidator validator : interchange.validators) {
+      ValidatorHistory history = importedHistories.get(validator.publicKey);
+      if (history == null) {
+        final Integer validatorId = validatorIds.get(validator.publicKey);
+        if (validatorId == null) {
+          history = new ValidatorHistory(importNextValidatorId++, validator.publicKey);
+          records.onValidator(history.getValidatorId(), history.getPublicKey());
+        } else {
+          history = histories.get(validatorId).copy();
+        }
+        importedHistories.put(validator.publicKey, history);
+      }
+      importBlocks(history, validator.blocks, records);
+      importAttestations(history, validator.attestations, records);
+    }
+
+    persist(records);
+
+    genesisValidatorsRoot = interchange.genesisValidatorsRoot;
+    nextValidatorId = importNextValidatorId;
+    importedHistories
+        .values()
+        .forEach(
+            history -> {
+              final ValidatorHistory existing = histories.get(history.getValidatorId());
+              if (existing == null) {
+                addHistory(history);
+              } else {
+                existing.replaceWith(history);
+              }
+            });
+  }
+
+  private void importBlocks(
+      final ValidatorHistory history,
+      final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock> blocks,
+      final LogRecords records) {
+    final OptionalMinValueTracker minSlotTracker = new OptionalMinValueTracker();
+    for (int i = 0; i < blocks.size(); i++) {
+      final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock jsonBlock =
+          blocks.get(i);
+      final String blockIdentifierString =
+          String.format("Block with index %d for validator %s", i, history.getPublicKey());
+
+      final Optional<SignedBlock> existingBlock = history.findBlock(jsonBlock.getSlot());
+      if (existingBlock.isPresent()) {
+        if (hasSigningRoot(existingBlock.get().getSigningRoot(), jsonBlock.getSigningRoot())) {
+          LOG.debug("{} - already exists in database, not imported", blockIdentifierString);
+        } else {
+          LOG.warn("{} - conflicts with an existing entry, not imported", blockIdentifierString);
+        }
+        continue;
+      }
+
+      final SignedBlock block =
+          new SignedBlock(
+              history.getValidatorId(), jsonBlock.getSlot(), jsonBlock.getSigningRoot());
+      history.addBlock(block);
+      records.onBlock(block);
+      minSlotTracker.trackValue(jsonBlock.getSlot());
+    }
+
+    if (minSlotTracker.compareTrackedValueTo(history.getSlotWatermark()) > 0) {
+      final UInt64 slotWatermark = minSlotTracker.getTrackedMinValue().get();
+      LOG.warn("Updating Block slot low watermark to {}", slotWatermark);
+      history.setSlotWatermark(slotWatermark);
+      records.onSlotWatermark(history.getValidatorId(), slotWatermark);
+    }
+  }
+
+  private void importAttestations(
+      final ValidatorHistory history,
+      final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation>
+          attestations,
+      final LogRecords records) {
+    final OptionalMinValueTracker minSourceTracker = new OptionalMinValueTracker();
+    final OptionalMinValueTracker minTargetTracker = new OptionalMinValueTracker();
+    for (int i = 0; i < attestations.size(); i++) {
+      final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation
+          jsonAttestation = attestations.get(i);
+      final UInt64 sourceEpoch = jsonAttestation.getSourceEpoch();
+      final UInt64 targetEpoch = jsonAttestation.getTargetEpoch();
+      final String attestationIdentifierString =
+          String.format("Attestation with index %d for validator %s", i, history.getPublicKey());
+
+      // if the attestation is illegal formatted, it cannot be imported
+      if (sourceEpoch.compareTo(targetEpoch) > 0) {
+        LOG.warn("{} - source is greater than target epoch", attestationIdentifierString);
+        continue;
+      }
+
+      if (history.isSurroundedByExistingAttestation(sourceEpoch, targetEpoch)) {
+        LOG.warn("{} - is surrounded by existing entries", attestationIdentifierString);
+      }
+      if (history.surroundsExistingAttestation(sourceEpoch, targetEpoch)) {
+        LOG.warn("{} - surrounds an existing entry", attestationIdentifierString);
+      }
+
+      final Optional<SignedAttestation> existingAttestation = history.findAttestation(targetEpoch);
+      if (existingAttestation.isPresent()) {
+        if (hasSigningRoot(
+            existingAttestation.get().getSigningRoot(), jsonAttestation.getSigningRoot())) {
+          LOG.debug("{} - already exists in database, not imported", attestationIdentifierString);
+        } else {
+          LOG.warn(
+              "{} - conflicts with an existing entry, not imported", attestationIdentifierString);
+        }
+        continue;
+      }
+
+      final SignedAttestation attestation =
+          new SignedAttestation(
+              history.getValidatorId(),
+              sourceEpoch,
+              targetEpoch,
+              jsonAttestation.getSigningRoot());
+      history.addAttestation(attestation);
+      records.onAttestation(attestation);
+      minSourceTracker.trackValue(sourceEpoch);
+      minTargetTracker.trackValue(targetEpoch);
+    }
+
+    final Optional<UInt64> newSourceWatermark =
+        findBestEpochWatermark(minSourceTracker, history.getSourceEpochWatermark());
+    final Optional<UInt64> newTargetWatermark =
+        findBestEpochWatermark(minTargetTracker, history.getTargetEpochWatermark());
+    if (newSourceWatermark.isPresent() && newTargetWatermark.isPresent()) {
+      LOG.info(
+          "Updating validator {} source epoch to {}",
+          history.getPublicKey(),
+          newSourceWatermark.get());
+      LOG.info(
+          "Updating validator {} target epoch to {}",
+          history.getPublicKey(),
+          newTargetWatermark.get());
+      history.setEpochWatermarks(newSourceWatermark.get(), newTargetWatermark.get());
+      records.onEpochWatermarks(
+          history.getValidatorId(), newSourceWatermark.get(), newTargetWatermark.get());
+    } else if (newSourceWatermark.isPresent() != newTargetWatermark.isPresent()) {
+      throw new RuntimeException(
+          "Inconsistent data - no existing attestation watermark, "
+              + "and import only sets one epoch");
+    }
+  }
+
+  private Optional<UInt64> findBestEpochWatermark(
+      final OptionalMinValueTracker importedMin, final Optional<UInt64> currentWatermark) {
+    if (importedMin.compareTrackedValueTo(currentWatermark) > 0) {
+      return importedMin.getTrackedMinValue();
+    } else {
+      return currentWatermark;
+    }
+  }
+
+  private static class Interchange {
+    private final Bytes32 genesisValidatorsRoot;
+    private final List<InterchangeValidator> validators;
+
+    private Interchange(
+        final Bytes32 genesisValidatorsRoot, final List<InterchangeValidator> validators) {
+      this.genesisValidatorsRoot = genesisValidatorsRoot;
+      this.validators = validators;
+    }
+  }
+
+  private static class InterchangeValidator {
+    private final Bytes publicKey;
+    private final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock>
+        blocks;
+    private final List<
+            tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation>
+        attestations;
+
+    private InterchangeValidator(
+        final Bytes publicKey,
+        final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock>
+            blocks,
+        final List<tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation>
+            attestations) {
+      this.publicKey = publicKey;
+      this.blocks = blocks;
+      this.attestations = attestations;
+    }
+  }
+
+  /**
+   * Reverts the changes made by the block and attestation checks when their records could not be
+   * persisted. The checks only add entries which did not exist and only set watermarks which were
+   * empty, so removing them restores the previous state.
+   */
+  private class HistoryRollback implements LogRecordHandler {
+
+    @Override
+    public void onGenesisValidatorsRoot(final Bytes32 genesisValidatorsRoot) {
+      // persisted by itself before any validator history is changed
+    }
+
+    @Override
+    public void onValidator(final int validatorId, final Bytes publicKey) {
+      // validators are only added to the store once their records are persisted
+    }
+
+    @Override
+    public void onBlock(final SignedBlock block) {
+      histories.get(block.getValidatorId()).removeBlock(block.getSlot());
+    }
+
+    @Override
+    public void onAttestation(final SignedAttestation attestation) {
+      histories.get(attestation.getValidatorId()).removeAttestation(attestation.getTargetEpoch());
+    }
+
+    @Override
+    public void onSlotWatermark(final int validatorId, final UInt64 slot) {
+      histories.get(validatorId).clearSlotWatermark();
+    }
+
+    @Override
+    public void onEpochWatermarks(
+        final int validatorId, final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+      histories.get(validatorId).clearEpochWatermarks();
+    }
+  }
+
+  /** Rebuilds the in-memory state of the store as the log is replayed. */
+  private class StoreLoader implements LogRecordHandler {
+
+    @Override
+    public void onGenesisValidatorsRoot(final Bytes32 genesisValidatorsRoot) {
+      FileSlashingProtection.this.genesisValidatorsRoot = genesisValidatorsRoot;
+    }
+
+    @Override
+    public void onValidator(final int validatorId, final Bytes publicKey) {
+      addHistory(new ValidatorHistory(validatorId, publicKey));
+      nextValidatorId = Math.max(nextValidatorId, validatorId + 1);
+    }
+
+    @Override
+    public void onBlock(final SignedBlock block) {
+      loadedHistory(block.getValidatorId()).addBlock(block);
+    }
+
+    @Override
+    public void onAttestation(final SignedAttestation attestation) {
+      loadedHistory(attestation.getValidatorId()).addAttestation(attestation);
+    }
+
+    @Override
+    public void onSlotWatermark(final int validatorId, final UInt64 slot) {
+      loadedHistory(validatorId).setSlotWatermark(slot);
+    }
+
+    @Override
+    public void onEpochWatermarks(
+        final int validatorId, final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+      loadedHistory(validatorId).setEpochWatermarks(sourceEpoch, targetEpoch);
+    }
+
+    private ValidatorHistory loadedHistory(final int validatorId) {
+      final ValidatorHistory history = histories.get(validatorId);
+      if (history == null) {
+        throw new IllegalStateException(
+            "Slashing protection log contains data for unknown validator " + validatorId);
+      }
+      return history;
+    }
+  }
+}
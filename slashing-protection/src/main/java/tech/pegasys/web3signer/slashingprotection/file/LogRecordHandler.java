@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/** Receives the records of a slashing protection log, either as they are written or replayed. */
+interface LogRecordHandler {
+
+  void onGenesisValidatorsRoot(Bytes32 genesisValidatorsRoot);
+
+  void onValidator(int validatorId, Bytes publicKey);
+
+  void onBlock(SignedBlock block);
+
+  void onAttestation(SignedAttestation attestation);
+
+  void onSlotWatermark(int validatorId, UInt64 slot);
+
+  void onEpochWatermarks(int validatorId, UInt64 sourceEpoch, UInt64 targetEpoch);
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Encodes records for the slashing protection log. Each record is framed as a 4 byte payload
+ * length, a 1 byte record type, the payload and a CRC32 of the type and payload, so that a record
+ * torn by a crash is detected when the log is replayed.
+ */
+class LogRecords implements LogRecordHandler {
+
+  static final byte GENESIS_VALIDATORS_ROOT = 1;
+  static final byte VALIDATOR = 2;
+  static final byte BLOCK = 3;
+  static final byte ATTESTATION = 4;
+  static final byte SLOT_WATERMARK = 5;
+  static final byte EPOCH_WATERMARKS = 6;
+
+  static final int HEADER_SIZE = Integer.BYTES + 1;
+  static final int TRAILER_SIZE = Integer.BYTES;
+
+  private static final Bytes NO_SIGNING_ROOT = Bytes.of(0);
+  private static final Bytes HAS_SIGNING_ROOT = Bytes.of(1);
+
+  private final List<Bytes> records = new ArrayList<>();
+
+  @Override
+  public void onGenesisValidatorsRoot(final Bytes32 genesisValidatorsRoot) {
+    add(GENESIS_VALIDATORS_ROOT, genesisValidatorsRoot);
+  }
+
+  @Override
+  public void onValidator(final int validatorId, final Bytes publicKey) {
+    add(VALIDATOR, Bytes.concatenate(Bytes.ofUnsignedInt(validatorId), publicKey));
+  }
+
+  @Override
+  public void onBlock(final SignedBlock block) {
+    add(
+        BLOCK,
+        Bytes.concatenate(
+            Bytes.ofUnsignedInt(block.getValidatorId()),
+            block.getSlot().toBytes(),
+            encodeSigningRoot(block.getSigningRoot())));
+  }
+
+  @Override
+  public void onAttestation(final SignedAttestation attestation) {
+    add(
+        ATTESTATION,
+        Bytes.concatenate(
+            Bytes.ofUnsignedInt(attestation.getValidatorId()),
+            attestation.getSourceEpoch().toBytes(),
+            attestation.getTargetEpoch().toBytes(),
+            encodeSigningRoot(attestation.getSigningRoot())));
+  }
+
+  @Override
+  public void onSlotWatermark(final int validatorId, final UInt64 slot) {
+    add(SLOT_WATERMARK, Bytes.concatenate(Bytes.ofUnsignedInt(validatorId), slot.toBytes()));
+  }
+
+  @Override
+  public void onEpochWatermarks(
+      final int validatorId, final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    add(
+        EPOCH_WATERMARKS,
+        Bytes.concatenate(
+            Bytes.ofUnsignedInt(validatorId), sourceEpoch.toBytes(), targetEpoch.toBytes()));
+  }
+
+  boolean isEmpty() {
+    return records.isEmpty();
+  }
+
+  /** Passes the records added so far to the handler, in the order they were added. */
+  void replay(final LogRecordHandler handler) {
+    for (final Bytes record : records) {
+      decode(
+          record.get(Integer.BYTES),
+          record.slice(HEADER_SIZE, record.size() - HEADER_SIZE - TRAILER_SIZE),
+          handler);
+    }
+  }
+
+  ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(Bytes.concatenate(records.toArray(new Bytes[0])).toArrayUnsafe());
+  }
+
+  static int checksum(final byte type, final Bytes payload) {
+    final CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload.toArrayUnsafe());
+    return (int) crc.getValue();
+  }
+
+  /** Decodes the payload of a record which has passed its checksum. */
+  static void decode(final byte type, final Bytes payload, final LogRecordHandler handler) {
+    switch (type) {
+      case GENESIS_VALIDATORS_ROOT:
+        handler.onGenesisValidatorsRoot(Bytes32.wrap(payload));
+        break;
+      case VALIDATOR:
+        handler.onValidator(validatorId(payload), payload.slice(4));
+        break;
+      case BLOCK:
+        handler.onBlock(
+            new SignedBlock(
+                validatorId(payload), uint64(payload, 4), decodeSigningRoot(payload, 12)));
+        break;
+      case ATTESTATION:
+        handler.onAttestation(
+            new SignedAttestation(
+                validatorId(payload),
+                uint64(payload, 4),
+                uint64(payload, 12),
+                decodeSigningRoot(payload, 20)));
+        break;
+      case SLOT_WATERMARK:
+        handler.onSlotWatermark(validatorId(payload), uint64(payload, 4));
+        break;
+      case EPOCH_WATERMARKS:
+        handler.onEpochWatermarks(
+            validatorId(payload), uint64(payload, 4), uint64(payload, 12));
+        break;
+      default:
+        throw new IllegalStateException("Unknown slashing protection log record type " + type);
+    }
+  }
+
+  private void add(final byte type, final Bytes payload) {
+    records.add(
+        Bytes.concatenate(
+            Bytes.ofUnsignedInt(payload.size()),
+            Bytes.of(type),
+            payload,
+            Bytes.ofUnsignedInt(Integer.toUnsignedLong(checksum(type, payload)))));
+  }
+
+  private static Bytes encodeSigningRoot(final Optional<Bytes> signingRoot) {
+    return signingRoot
+        .map(root -> Bytes.concatenate(HAS_SIGNING_ROOT, root))
+        .orElse(NO_SIGNING_ROOT);
+  }
+
+  private static Bytes decodeSigningRoot(final Bytes payload, final int offset) {
+    return payload.get(offset) == 0 ? null : payload.slice(offset + 1);
+  }
+
+  private static int validatorId(final Bytes payload) {
+    return payload.getInt(0);
+  }
+
+  private static UInt64 uint64(final Bytes payload, final int offset) {
+    return UInt64.fromBytes(payload.slice(offset, 8));
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Append-only log holding the slashing protection data of the file backed store.
+ *
+ * <p>Writers append their records and then wait for them to be synced to disk. Writers waiting at
+ * the same time share a single fsync. A record which was only partially written when the process
+ * stopped is discarded when the log is next opened, while a corrupt record anywhere before the end
+ * of the log prevents it from being opened. Once a write or sync has failed the log
+ * refuses all further writes, as it is no longer known which records are durable.
+ */
+class SlashingProtectionLog implements Closeable {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  static final String LOG_FILE_NAME = "slashing-protection.log";
+  private static final String COMPACTION_FILE_NAME = "slashing-protection.log.compact";
+  private static final String LOCK_FILE_NAME = "slashing-protection.lock";
+  private static final int MAX_PAYLOAD_SIZE = 1024;
+
+  private final Path directory;
+  private final Path logFile;
+  private final FileChannel lockChannel;
+  private final FileLock processLock;
+  private final Object writeLock = new Object();
+  private final Object syncLock = new Object();
+
+  // guarded by writeLock
+  private FileChannel channel;
+  private long writtenPosition;
+  // guarded by syncLock
+  private long syncedPosition;
+
+  private volatile IOException failure;
+
+  private SlashingProtectionLog(
+      final Path directory,
+      final FileChannel lockChannel,
+      final FileLock processLock,
+      final FileChannel channel,
+      final long position) {
+    this.directory = directory;
+    this.logFile = directory.resolve(LOG_FILE_NAME);
+    this.lockChannel = lockChannel;
+    this.processLock = processLock;
+    this.channel = channel;
+    this.writtenPosition = position;
+    this.syncedPosition = position;
+  }
+
+  /**
+   * Opens the log in the given directory, creating it if required, and replays its records to the
+   * handler.
+   */
+  static SlashingProtectionLog open(final Path directory, final LogRecordHandler handler)
+      throws IOException {
+    Files.createDirectories(directory);
+
+    final FileChannel lockChannel =
+        FileChannel.open(directory.resolve(LOCK_FILE_NAME), CREATE, WRITE);
+    final FileLock processLock = lockChannel.tryLock();
+    if (processLock == null) {
+      lockChannel.close();
+      throw new IllegalStateException(
+          "Slashing protection store " + directory + " is in use by another process");
+    }
+
+    try {
+      final Path logFile = directory.resolve(LOG_FILE_NAME);
+      final long validLength = Files.exists(logFile) ? replay(logFile, handler) : 0;
+
+      final FileChannel channel = FileChannel.open(logFile, CREATE, READ, WRITE);
+      if (channel.size() > validLength) {
+        LOG.warn(
+            "Discarding {} bytes of incomplete records from the end of the slashing protection log",
+            channel.size() - validLength);
+        channel.truncate(validLength);
+        channel.force(true);
+      }
+      channel.position(validLength);
+      return new SlashingProtectionLog(directory, lockChannel, processLock, channel, validLength);
+    } catch (final IOException | RuntimeException e) {
+      processLock.release();
+      lockChannel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Appends the records to the log without waiting for them to be synced.
+   *
+   * @return the position which must be passed to {@link #sync(long)} for the records to be durable
+   */
+  long append(final LogRecords records) {
+    synchronized (writeLock) {
+      checkNotFailed();
+      final ByteBuffer buffer = records.toByteBuffer();
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      } catch (final IOException e) {
+        throw fail(e);
+      }
+      writtenPosition += buffer.limit();
+      return writtenPosition;
+    }
+  }
+
+  /** Waits until the log has been synced to disk up to at least the given position. */
+  void sync(final long position) {
+    synchronized (syncLock) {
+      checkNotFailed();
+      if (syncedPosition >= position) {
+        return;
+      }
+      final FileChannel syncChannel;
+      final long syncPosition;
+      synchronized (writeLock) {
+        syncChannel = channel;
+        syncPosition = writtenPosition;
+      }
+      try {
+        syncChannel.force(false);
+      } catch (final IOException e) {
+        throw fail(e);
+      }
+      syncedPosition = syncPosition;
+    }
+  }
+
+  /**
+   * Replaces the content of the log with the given records. The new log is written and synced
+   * beside the current one, then atomically moved over it. The caller must prevent any other
+   * writes until this returns.
+   */
+  void rewrite(final Stream<LogRecords> records) {
+    synchronized (syncLock) {
+      synchronized (writeLock) {
+        checkNotFailed();
+        final Path compactionFile = directory.resolve(COMPACTION_FILE_NAME);
+        try {
+          long size = 0;
+          try (final FileChannel compactionChannel =
+              FileChannel.open(compactionFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            for (final LogRecords batch : (Iterable<LogRecords>) records::iterator) {
+              final ByteBuffer buffer = batch.toByteBuffer();
+              while (buffer.hasRemaining()) {
+                compactionChannel.write(buffer);
+              }
+              size += buffer.limit();
+            }
+            compactionChannel.force(true);
+          }
+
+          channel.close();
+          Files.move(compactionFile, logFile, ATOMIC_MOVE, REPLACE_EXISTING);
+          syncDirectory();
+          channel = FileChannel.open(logFile, READ, WRITE);
+          channel.position(size);
+          writtenPosition = size;
+          syncedPosition = size;
+        } catch (final IOException e) {
+          throw fail(e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (writeLock) {
+        try {
+          channel.close();
+        } finally {
+          processLock.release();
+          lockChannel.close();
+        }
+      }
+    }
+  }
+
+  private static long replay(final Path logFile, final LogRecordHandler handler)
+      throws IOException {
+    final long fileLength = Files.size(logFile);
+    long validLength = 0;
+    try (final DataInputStream input =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+      while (true) {
+        final int payloadSize;
+        final byte type;
+        final byte[] payload;
+        final int checksum;
+        try {
+          payloadSize = input.readInt();
+          if (payloadSize < 0 || payloadSize > MAX_PAYLOAD_SIZE) {
+            checkTornTail(logFile, validLength, "Invalid record size " + payloadSize);
+            break;
+          }
+          type = input.readByte();
+          payload = new byte[payloadSize];
+          input.readFully(payload);
+          checksum = input.readInt();
+        } catch (final EOFException e) {
+          // the last record was only partially written
+          break;
+        }
+
+        final long recordLength = LogRecords.HEADER_SIZE + payloadSize + LogRecords.TRAILER_SIZE;
+        if (checksum != LogRecords.checksum(type, Bytes.wrap(payload))) {
+          if (validLength + recordLength < fileLength) {
+            checkTornTail(logFile, validLength, "Invalid record checksum");
+          }
+          break;
+        }
+        LogRecords.decode(type, Bytes.wrap(payload), handler);
+        validLength += recordLength;
+      }
+    }
+    return validLength;
+  }
+
+  /**
+   * An invalid record is only discarded when nothing was written after it, as in a record torn by
+   * the process stopping, or a tail the file system extended with zeros. Discarding a corrupt
+   * record followed by others would drop the history they hold, so opening the log fails instead.
+   */
+  private static void checkTornTail(final Path logFile, final long offset, final String problem)
+      throws IOException {
+    try (final FileChannel channel = FileChannel.open(logFile, READ)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(8192);
+      channel.position(offset);
+      while (channel.read(buffer) > 0) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          if (buffer.get() != 0) {
+            throw new IllegalStateException(
+                problem
+                    + " in slashing protection log "
+                    + logFile
+                    + " at offset "
+                    + offset
+                    + " is followed by further records. The log is corrupt and must be "
+                    + "restored or repaired before the signer is started");
+          }
+        }
+        buffer.clear();
+      }
+    }
+  }
+
+  private void syncDirectory() {
+    // makes the rename durable, not supported on all platforms
+    try (final FileChannel directoryChannel = FileChannel.open(directory, READ)) {
+      directoryChannel.force(true);
+    } catch (final IOException e) {
+      LOG.debug("Unable to sync slashing protection store directory {}", directory, e);
+    }
+  }
+
+  private RuntimeException fail(final IOException e) {
+    failure = e;
+    return new UncheckedIOException("Failed to write to slashing protection log", e);
+  }
+
+  /** Fails if a previous write or sync failed, as records the caller relies on may be lost. */
+  void checkNotFailed() {
+    if (failure != null) {
+      throw new IllegalStateException(
+          "Slashing protection log is unavailable after a previous write failure", failure);
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import tech.pegasys.web3signer.slashingprotection.SurroundSpans;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.apache.tuweni.units.bigints.UInt64s;
+
+/**
+ * In-memory index of the blocks, attestations and low watermarks of a single validator. All
+ * access must be made holding {@link #lock}.
+ */
+class ValidatorHistory {
+
+  final ReentrantLock lock = new ReentrantLock();
+
+  private final int validatorId;
+  private final Bytes publicKey;
+  private final NavigableMap<UInt64, SignedBlock> blocksBySlot = new TreeMap<>();
+  private final NavigableMap<UInt64, SignedAttestation> attestationsByTarget = new TreeMap<>();
+  private UInt64 slotWatermark;
+  private UInt64 sourceEpochWatermark;
+  private UInt64 targetEpochWatermark;
+  private SurroundSpans surroundSpans = new SurroundSpans(SurroundSpans.DEFAULT_HISTORY_LENGTH);
+
+  ValidatorHistory(final int validatorId, final Bytes publicKey) {
+    this.validatorId = validatorId;
+    this.publicKey = publicKey;
+  }
+
+  int getValidatorId() {
+    return validatorId;
+  }
+
+  Bytes getPublicKey() {
+    return publicKey;
+  }
+
+  Optional<UInt64> getSlotWatermark() {
+    return Optional.ofNullable(slotWatermark);
+  }
+
+  Optional<UInt64> getSourceEpochWatermark() {
+    return Optional.ofNullable(sourceEpochWatermark);
+  }
+
+  Optional<UInt64> getTargetEpochWatermark() {
+    return Optional.ofNullable(targetEpochWatermark);
+  }
+
+  void setSlotWatermark(final UInt64 slot) {
+    this.slotWatermark = slot;
+  }
+
+  void setEpochWatermarks(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    this.sourceEpochWatermark = sourceEpoch;
+    this.targetEpochWatermark = targetEpoch;
+  }
+
+  Optional<SignedBlock> findBlock(final UInt64 slot) {
+    return Optional.ofNullable(blocksBySlot.get(slot));
+  }
+
+  Optional<SignedAttestation> findAttestation(final UInt64 targetEpoch) {
+    return Optional.ofNullable(attestationsByTarget.get(targetEpoch));
+  }
+
+  Collection<SignedBlock> getBlocks() {
+    return blocksBySlot.values();
+  }
+
+  Collection<SignedAttestation> getAttestations() {
+    return attestationsByTarget.values();
+  }
+
+  void addBlock(final SignedBlock block) {
+    blocksBySlot.put(block.getSlot(), block);
+  }
+
+  void addAttestation(final SignedAttestation attestation) {
+    final SignedAttestation replaced =
+        attestationsByTarget.put(attestation.getTargetEpoch(), attestation);
+    if (replaced != null && !replaced.getSourceEpoch().equals(attestation.getSourceEpoch())) {
+      rebuildSurroundSpans();
+    } else {
+      surroundSpans.record(attestation.getSourceEpoch(), attestation.getTargetEpoch());
+    }
+  }
+
+  void removeBlock(final UInt64 slot) {
+    blocksBySlot.remove(slot);
+  }
+
+  void removeAttestation(final UInt64 targetEpoch) {
+    attestationsByTarget.remove(targetEpoch);
+    rebuildSurroundSpans();
+  }
+
+  void clearSlotWatermark() {
+    this.slotWatermark = null;
+  }
+
+  void clearEpochWatermarks() {
+    this.sourceEpochWatermark = null;
+    this.targetEpochWatermark = null;
+  }
+
+  /** Returns whether an existing attestation's source and target surround the given epochs. */
+  boolean isSurroundedByExistingAttestation(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    return surroundSpans
+        .isSurroundedByExistingAttestation(sourceEpoch, targetEpoch)
+        .orElseGet(
+            () ->
+                attestationsByTarget.tailMap(targetEpoch, false).values().stream()
+                    .anyMatch(a -> a.getSourceEpoch().compareTo(sourceEpoch) < 0));
+  }
+
+  /** Returns whether an existing attestation's source and target are surrounded by the epochs. */
+  boolean surroundsExistingAttestation(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    return surroundSpans
+        .surroundsExistingAttestation(sourceEpoch, targetEpoch)
+        .orElseGet(
+            () ->
+                attestationsByTarget.headMap(targetEpoch, false).values().stream()
+                    .anyMatch(a -> a.getSourceEpoch().compareTo(sourceEpoch) > 0));
+  }
+
+  /**
+   * Moves the watermarks up to the oldest entries to keep and removes everything below them,
+   * following the same rules as the database pruner.
+   */
+  void prune(final long epochsToKeep, final long slotsPerEpoch) {
+    if (slotWatermark != null && !blocksBySlot.isEmpty()) {
+      final UInt64 newWatermark =
+          calculateWatermark(epochsToKeep * slotsPerEpoch, blocksBySlot.lastKey(), slotWatermark);
+      Optional.ofNullable(blocksBySlot.ceilingKey(newWatermark))
+          .ifPresent(slot -> slotWatermark = slot);
+      blocksBySlot.headMap(slotWatermark, false).clear();
+    }
+
+    if (targetEpochWatermark != null && !attestationsByTarget.isEmpty()) {
+      final UInt64 newWatermark =
+          calculateWatermark(epochsToKeep, attestationsByTarget.lastKey(), targetEpochWatermark);
+      Optional.ofNullable(attestationsByTarget.ceilingEntry(newWatermark))
+          .ifPresent(
+              entry -> setEpochWatermarks(entry.getValue().getSourceEpoch(), entry.getKey()));
+      attestationsByTarget.headMap(targetEpochWatermark, false).clear();
+      rebuildSurroundSpans();
+    }
+  }
+
+  /** Writes the records required to recreate this history when the log is replayed. */
+  void writeTo(final LogRecordHandler records) {
+    records.onValidator(validatorId, publicKey);
+    if (slotWatermark != null) {
+      records.onSlotWatermark(validatorId, slotWatermark);
+    }
+    if (sourceEpochWatermark != null && targetEpochWatermark != null) {
+      records.onEpochWatermarks(validatorId, sourceEpochWatermark, targetEpochWatermark);
+    }
+    blocksBySlot.values().forEach(records::onBlock);
+    attestationsByTarget.values().forEach(records::onAttestation);
+  }
+
+  ValidatorHistory copy() {
+    final ValidatorHistory copy = new ValidatorHistory(validatorId, publicKey);
+    copy.replaceWith(this);
+    return copy;
+  }
+
+  void replaceWith(final ValidatorHistory other) {
+    blocksBySlot.clear();
+    blocksBySlot.putAll(other.blocksBySlot);
+    attestationsByTarget.clear();
+    attestationsByTarget.putAll(other.attestationsByTarget);
+    slotWatermark = other.slotWatermark;
+    sourceEpochWatermark = other.sourceEpochWatermark;
+    targetEpochWatermark = other.targetEpochWatermark;
+    rebuildSurroundSpans();
+  }
+
+  private void rebuildSurroundSpans() {
+    surroundSpans = new SurroundSpans(SurroundSpans.DEFAULT_HISTORY_LENGTH);
+    attestationsByTarget
+        .values()
+        .forEach(a -> surroundSpans.record(a.getSourceEpoch(), a.getTargetEpoch()));
+  }
+
+  private static UInt64 calculateWatermark(
+      final long amountToKeep, final UInt64 highpoint, final UInt64 watermark) {
+    final UInt64 pruningPoint =
+        highpoint.compareTo(UInt64.valueOf(amountToKeep)) < 0
+            ? UInt64.ZERO
+            // add one as we remove below the watermark
+            : highpoint.subtract(amountToKeep).add(1);
+    return UInt64s.max(pruningPoint, watermark);
+  }
+}
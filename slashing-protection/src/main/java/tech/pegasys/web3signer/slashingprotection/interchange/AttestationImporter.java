@@ -40,6 +40,8 @@ public class AttestationImporter {
   private final Validator validator;
   private final Handle handle;
   private final ObjectMapper mapper;
+  private final InsertBatch<tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation>
+      pendingAttestations;
 
   public AttestationImporter(
       final Validator validator,
@@ -52,6 +54,10 @@ public class AttestationImporter {
     this.mapper = mapper;
     this.lowWatermarkDao = lowWatermarkDao;
     this.signedAttestationsDao = signedAttestationsDao;
+    this.pendingAttestations =
+        new InsertBatch<>(
+            InsertBatch.DEFAULT_BATCH_SIZE,
+            attestations -> signedAttestationsDao.insertAttestations(handle, attestations));
   }
 
   public void importFrom(final ArrayNode signedAttestationNode) throws JsonProcessingException {
@@ -77,6 +83,11 @@ public class AttestationImporter {
       if (attestationValidator.sourceGreaterThanTargetEpoch()) {
         LOG.warn("{} - source is greater than target epoch", attestationIdentifierString);
       } else {
+        // the checks below only see attestations in the database, so pending attestations they
+        // could match are inserted first
+        if (pendingAttestations.anyMatch(pending -> mayConflict(pending, jsonAttestation))) {
+          pendingAttestations.flush();
+        }
 
         if (attestationValidator.isSurroundedByExistingAttestation()) {
           LOG.warn("{} - is surrounded by existing entries", attestationIdentifierString);
@@ -104,12 +115,12 @@ public class AttestationImporter {
         }
       }
     }
+    pendingAttestations.flush();
     persistAttestationWatermark(handle, validator, minSourceTracker, minTargetTracker);
   }
 
   private void persist(final SignedAttestation jsonAttestation) {
-    signedAttestationsDao.insertAttestation(
-        handle,
+    pendingAttestations.add(
         new tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation(
             validator.getId(),
             jsonAttestation.getSourceEpoch(),
@@ -119,6 +130,16 @@ public class AttestationImporter {
     minTargetTracker.trackValue(jsonAttestation.getTargetEpoch());
   }
 
+  private static boolean mayConflict(
+      final tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation pending,
+      final SignedAttestation jsonAttestation) {
+    final int sourceOrder = jsonAttestation.getSourceEpoch().compareTo(pending.getSourceEpoch());
+    final int targetOrder = jsonAttestation.getTargetEpoch().compareTo(pending.getTargetEpoch());
+    return targetOrder == 0
+        || (sourceOrder < 0 && targetOrder > 0)
+        || (sourceOrder > 0 && targetOrder < 0);
+  }
+
   private void persistAttestationWatermark(
       final Handle handle,
       final Validator validator,
@@ -39,6 +39,8 @@ public class BlockImporter {
   private final Validator validator;
   private final Handle handle;
   private final ObjectMapper mapper;
+  private final InsertBatch<tech.pegasys.web3signer.slashingprotection.dao.SignedBlock>
+      pendingBlocks;
 
   public BlockImporter(
       final Validator validator,
@@ -51,12 +53,21 @@ public class BlockImporter {
     this.mapper = mapper;
     this.lowWatermarkDao = lowWatermarkDao;
     this.signedBlocksDao = signedBlocksDao;
+    this.pendingBlocks =
+        new InsertBatch<>(
+            InsertBatch.DEFAULT_BATCH_SIZE,
+            blocks -> signedBlocksDao.insertBlockProposals(handle, blocks));
   }
 
   public void importFrom(final ArrayNode signedBlocksNode) throws JsonProcessingException {
 
     for (int i = 0; i < signedBlocksNode.size(); i++) {
       final SignedBlock jsonBlock = mapper.treeToValue(signedBlocksNode.get(i), SignedBlock.class);
+      // the checks below only see blocks in the database, so pending blocks in the same slot are
+      // inserted first
+      if (pendingBlocks.anyMatch(block -> block.getSlot().equals(jsonBlock.getSlot()))) {
+        pendingBlocks.flush();
+      }
       final BlockValidator blockValidator =
           new BlockValidator(
               handle,
@@ -85,6 +96,7 @@ public class BlockImporter {
         }
       }
     }
+    pendingBlocks.flush();
 
     final Optional<SigningWatermark> watermark =
         lowWatermarkDao.findLowWatermarkForValidator(handle, validator.getId());
@@ -98,8 +110,7 @@ public class BlockImporter {
   }
 
   private void persist(final SignedBlock jsonBlock) {
-    signedBlocksDao.insertBlockProposal(
-        handle,
+    pendingBlocks.add(
         new tech.pegasys.web3signer.slashingprotection.dao.SignedBlock(
             validator.getId(), jsonBlock.getSlot(), jsonBlock.getSigningRoot()));
     minSlotTracker.trackValue(jsonBlock.getSlot());
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** Rows waiting to be inserted together, which are inserted once the batch is full or flushed. */
+class InsertBatch<T> {
+  static final int DEFAULT_BATCH_SIZE = 500;
+
+  private final int batchSize;
+  private final Consumer<List<T>> insert;
+  private final List<T> rows = new ArrayList<>();
+
+  InsertBatch(final int batchSize, final Consumer<List<T>> insert) {
+    this.batchSize = batchSize;
+    this.insert = insert;
+  }
+
+  void add(final T row) {
+    rows.add(row);
+    if (rows.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  boolean anyMatch(final Predicate<T> predicate) {
+    return rows.stream().anyMatch(predicate);
+  }
+
+  void flush() {
+    if (!rows.isEmpty()) {
+      insert.accept(rows);
+      rows.clear();
+    }
+  }
+}
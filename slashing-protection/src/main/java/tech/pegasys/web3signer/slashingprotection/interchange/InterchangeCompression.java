@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of interchange files. Compression and decompression run on a pipeline thread, so
+ * they overlap with reading and writing the database rather than adding to it.
+ */
+public enum InterchangeCompression {
+  NONE,
+  GZIP;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public static InterchangeCompression fromFileName(final String fileName) {
+    return fileName.endsWith(".gz") ? GZIP : NONE;
+  }
+
+  public OutputStream compressingStream(final OutputStream out) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new PipelinedOutputStream(
+            new GZIPOutputStream(out, BUFFER_SIZE), "interchange-compressor");
+      case NONE:
+      default:
+        return out;
+    }
+  }
+
+  /**
+   * Returns a stream of the uncompressed interchange data, recognising gzip compressed input by
+   * its header.
+   */
+  public static InputStream decompressingStream(final InputStream in) throws IOException {
+    final BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+    buffered.mark(2);
+    final int first = buffered.read();
+    final int second = buffered.read();
+    buffered.reset();
+    if (isGzipHeader(first, second)) {
+      return new PipelinedInputStream(
+          new GZIPInputStream(buffered, BUFFER_SIZE), "interchange-decompressor");
+    }
+    return buffered;
+  }
+
+  private static boolean isGzipHeader(final int first, final int second) {
+    // the magic number is stored little endian
+    return first == (GZIPInputStream.GZIP_MAGIC & 0xff)
+        && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+  }
+}
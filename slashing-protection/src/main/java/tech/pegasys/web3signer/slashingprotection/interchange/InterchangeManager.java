@@ -21,4 +21,6 @@ public interface InterchangeManager {
   void importData(InputStream in) throws IOException;
 
   void export(OutputStream out) throws IOException;
+
+  void export(OutputStream out, InterchangeCompression compression) throws IOException;
 }
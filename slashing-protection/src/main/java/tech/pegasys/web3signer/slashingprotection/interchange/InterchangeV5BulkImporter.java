@@ -0,0 +1,194 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import tech.pegasys.web3signer.slashingprotection.dao.CopyInBuffer;
+import tech.pegasys.web3signer.slashingprotection.dao.ImportIssueReport;
+import tech.pegasys.web3signer.slashingprotection.dao.ImportStagingDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Imports an EIP-3076 interchange document by copying its entries into staging tables and then
+ * resolving duplicates, conflicts, surround votes and watermarks with set based statements, so the
+ * number of database round trips does not grow with the number of entries. The whole import runs in
+ * a single transaction. Entries that are not imported, and attestations that surround or are
+ * surrounded by another, are reported per validator.
+ */
+public class InterchangeV5BulkImporter implements InterchangeImporter {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final Jdbi jdbi;
+  private final ValidatorsDao validatorsDao;
+  private final ImportStagingDao importStagingDao;
+  private final ObjectMapper mapper;
+  private final InterchangeV5Reader reader;
+
+  public InterchangeV5BulkImporter(
+      final Jdbi jdbi,
+      final ValidatorsDao validatorsDao,
+      final ImportStagingDao importStagingDao,
+      final MetadataDao metadataDao,
+      final ObjectMapper mapper) {
+    this.jdbi = jdbi;
+    this.validatorsDao = validatorsDao;
+    this.importStagingDao = importStagingDao;
+    this.mapper = mapper;
+    this.reader = new InterchangeV5Reader(jdbi, metadataDao, mapper);
+  }
+
+  @Override
+  public void importData(final InputStream input) throws IOException {
+    jdbi.useTransaction(h -> importData(h, input));
+  }
+
+  private void importData(final Handle handle, final InputStream input) throws IOException {
+    importStagingDao.createStagingTables(handle);
+    final CopyInBuffer blocks = importStagingDao.createBlockBuffer(handle);
+    final CopyInBuffer attestations = importStagingDao.createAttestationBuffer(handle);
+    final Map<Integer, Bytes> publicKeys = new HashMap<>();
+    final AtomicLong position = new AtomicLong();
+    final int validatorCount =
+        reader.read(
+            input,
+            validatorNode ->
+                stageValidator(handle, validatorNode, blocks, attestations, publicKeys, position));
+    blocks.flush();
+    attestations.flush();
+
+    importStagingDao.resolveBlocks(handle);
+    importStagingDao.resolveAttestations(handle);
+    reportIssues("Block", importStagingDao.findBlockIssues(handle), publicKeys);
+    reportIssues("Attestation", importStagingDao.findAttestationIssues(handle), publicKeys);
+
+    final int blockCount = importStagingDao.insertResolvedBlocks(handle);
+    final int attestationCount = importStagingDao.insertResolvedAttestations(handle);
+    importStagingDao
+        .updateSlotWatermarks(handle)
+        .forEach(
+            watermark ->
+                LOG.warn(
+                    "Updating validator {} block slot low watermark to {}",
+                    publicKeys.get(watermark.getValidatorId()),
+                    watermark.getSlot()));
+    importStagingDao
+        .updateEpochWatermarks(handle)
+        .forEach(
+            watermark ->
+                LOG.info(
+                    "Updating validator {} source epoch to {} and target epoch to {}",
+                    publicKeys.get(watermark.getValidatorId()),
+                    watermark.getSourceEpoch(),
+                    watermark.getTargetEpoch()));
+    LOG.info(
+        "Imported {} blocks and {} attestations for {} validators",
+        blockCount,
+        attestationCount,
+        validatorCount);
+  }
+
+  private void stageValidator(
+      final Handle handle,
+      final JsonNode node,
+      final CopyInBuffer blocks,
+      final CopyInBuffer attestations,
+      final Map<Integer, Bytes> publicKeys,
+      final AtomicLong position)
+      throws IOException {
+    if (node.isArray()) {
+      throw new IllegalStateException("Element of 'data' was not an object");
+    }
+    final ObjectNode parentNode = (ObjectNode) node;
+    final String pubKey = parentNode.required("pubkey").textValue();
+    final Validator validator = validatorsDao.insertIfNotExist(handle, Bytes.fromHexString(pubKey));
+    publicKeys.put(validator.getId(), validator.getPublicKey());
+
+    final ArrayNode signedBlocksNode = parentNode.withArray("signed_blocks");
+    for (int i = 0; i < signedBlocksNode.size(); i++) {
+      final SignedBlock block = mapper.treeToValue(signedBlocksNode.get(i), SignedBlock.class);
+      blocks.addRow(
+          validator.getId(),
+          position.getAndIncrement(),
+          i,
+          block.getSlot(),
+          block.getSigningRoot());
+    }
+
+    final ArrayNode signedAttestationsNode = parentNode.withArray("signed_attestations");
+    for (int i = 0; i < signedAttestationsNode.size(); i++) {
+      final SignedAttestation attestation =
+          mapper.treeToValue(signedAttestationsNode.get(i), SignedAttestation.class);
+      attestations.addRow(
+          validator.getId(),
+          position.getAndIncrement(),
+          i,
+          attestation.getSourceEpoch(),
+          attestation.getTargetEpoch(),
+          attestation.getSigningRoot());
+    }
+  }
+
+  private void reportIssues(
+      final String entryType,
+      final List<ImportIssueReport> reports,
+      final Map<Integer, Bytes> publicKeys) {
+    for (final ImportIssueReport report : reports) {
+      final String entries =
+          String.format(
+              "%ss with indexes %s for validator %s",
+              entryType, report.getEntryIndexes(), publicKeys.get(report.getValidatorId()));
+      switch (report.getIssue()) {
+        case ALREADY_EXISTS:
+          if (report.hasNullSigningRoot()) {
+            LOG.warn("{} - already exist in database, not imported", entries);
+          } else {
+            LOG.debug("{} - already exist in database, not imported", entries);
+          }
+          break;
+        case CONFLICTS_WITH_EXISTING:
+          LOG.warn("{} - conflict with an existing entry, not imported", entries);
+          break;
+        case SOURCE_GREATER_THAN_TARGET:
+          LOG.warn("{} - source is greater than target epoch", entries);
+          break;
+        case SURROUNDED_BY_EXISTING:
+          LOG.warn("{} - are surrounded by existing entries", entries);
+          break;
+        case SURROUNDS_EXISTING:
+          LOG.warn("{} - surround an existing entry", entries);
+          break;
+      }
+    }
+  }
+}
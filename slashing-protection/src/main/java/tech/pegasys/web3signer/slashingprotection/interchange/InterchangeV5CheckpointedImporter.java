@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.slashingprotection.dao.ImportJournalDao;
+import tech.pegasys.web3signer.slashingprotection.dao.ImportJournalEntry;
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Imports an EIP-3076 interchange document in checkpoints of a fixed number of validators. Each
+ * checkpoint is committed in one transaction together with its progress in the import journal, so
+ * an interrupted import can be run again and resumes after the last committed checkpoint.
+ *
+ * <p>The journal holds a digest chained over the validator entries imported so far. A resumed
+ * import recomputes the digest over the validators it skips and only continues if it matches, so a
+ * different document is never partially skipped.
+ */
+public class InterchangeV5CheckpointedImporter implements InterchangeImporter {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private final Jdbi jdbi;
+  private final ImportJournalDao importJournalDao;
+  private final InterchangeV5Importer validatorImporter;
+  private final ObjectMapper mapper;
+  private final InterchangeV5Reader reader;
+  private final int checkpointSize;
+
+  public InterchangeV5CheckpointedImporter(
+      final Jdbi jdbi,
+      final ImportJournalDao importJournalDao,
+      final InterchangeV5Importer validatorImporter,
+      final MetadataDao metadataDao,
+      final ObjectMapper mapper,
+      final int checkpointSize) {
+    checkArgument(checkpointSize > 0, "Checkpoint size must be positive");
+    this.jdbi = jdbi;
+    this.importJournalDao = importJournalDao;
+    this.validatorImporter = validatorImporter;
+    this.mapper = mapper;
+    this.reader = new InterchangeV5Reader(jdbi, metadataDao, mapper);
+    this.checkpointSize = checkpointSize;
+  }
+
+  @Override
+  public void importData(final InputStream input) throws IOException {
+    final ImportJournalEntry journal =
+        jdbi.inTransaction(
+            h ->
+                importJournalDao
+                    .findInProgress(h)
+                    .orElseGet(() -> importJournalDao.startImport(h)));
+    if (journal.getValidatorsImported() > 0) {
+      LOG.info("Resuming interrupted import after {} validators", journal.getValidatorsImported());
+    }
+
+    try (final Handle handle = jdbi.open()) {
+      handle.begin();
+      try {
+        final ImportProgress progress = new ImportProgress();
+        reader.read(
+            input, validatorNode -> importValidator(handle, journal, progress, validatorNode));
+        if (progress.validatorsRead < journal.getValidatorsImported()) {
+          throw journalMismatch(handle, journal);
+        }
+        importJournalDao.updateProgress(
+            handle, journal.getId(), progress.validatorsRead, progress.digest);
+        importJournalDao.completeImport(handle, journal.getId());
+        handle.commit();
+        LOG.info(
+            "Imported slashing protection data for {} validators, {} were already imported",
+            progress.validatorsRead - journal.getValidatorsImported(),
+            journal.getValidatorsImported());
+      } catch (final IOException | RuntimeException e) {
+        if (handle.isInTransaction()) {
+          handle.rollback();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void importValidator(
+      final Handle handle,
+      final ImportJournalEntry journal,
+      final ImportProgress progress,
+      final JsonNode validatorNode)
+      throws IOException {
+    progress.digest =
+        Bytes.wrap(
+            Hashing.sha256()
+                .newHasher()
+                .putBytes(progress.digest.toArrayUnsafe())
+                .putBytes(mapper.writeValueAsBytes(validatorNode))
+                .hash()
+                .asBytes());
+    progress.validatorsRead++;
+
+    final int validatorsImported = journal.getValidatorsImported();
+    if (progress.validatorsRead <= validatorsImported) {
+      if (progress.validatorsRead == validatorsImported
+          && !progress.digest.equals(journal.getContentDigest())) {
+        throw journalMismatch(handle, journal);
+      }
+      return;
+    }
+
+    validatorImporter.importValidator(handle, validatorNode);
+    if ((progress.validatorsRead - validatorsImported) % checkpointSize == 0) {
+      importJournalDao.updateProgress(
+          handle, journal.getId(), progress.validatorsRead, progress.digest);
+      handle.commit();
+      handle.begin();
+    }
+  }
+
+  /**
+   * Nothing has been imported by this run when the mismatch is found, so the journal entry of the
+   * interrupted import is discarded and the next run imports the document from the start.
+   */
+  private IllegalArgumentException journalMismatch(
+      final Handle handle, final ImportJournalEntry journal) {
+    importJournalDao.discardImport(handle, journal.getId());
+    handle.commit();
+    return new IllegalArgumentException(
+        "Interchange data does not match the interrupted import in the import journal. The "
+            + "journal entry has been discarded, run the import again to import from the start");
+  }
+
+  private static class ImportProgress {
+    private int validatorsRead;
+    private Bytes digest = Bytes.EMPTY;
+  }
+}
@@ -12,6 +12,8 @@
  */
 package tech.pegasys.web3signer.slashingprotection.interchange;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
@@ -20,25 +22,48 @@ import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 
+/**
+ * Exports the slashing protection database as an EIP-3076 interchange document. The entries of
+ * several validators are fetched in parallel, each on its own connection and transaction, while
+ * the document is written in validator order. Only a bounded number of fetched validators waits to
+ * be written at any time. Entries below the low watermarks are filtered out by the queries, which
+ * read through a cursor rather than loading all rows at once.
+ */
 public class InterchangeV5Exporter {
 
   private static final Logger LOG = LogManager.getLogger();
 
   private static final String FORMAT_VERSION = "5";
+  private static final int FETCH_SIZE = 1_000;
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
 
   private final Jdbi jdbi;
   private final ValidatorsDao validatorsDao;
@@ -47,6 +72,7 @@ public class InterchangeV5Exporter {
   private final MetadataDao metadataDao;
   private final LowWatermarkDao lowWatermarkDao;
   private final ObjectMapper mapper;
+  private final int parallelism;
 
   public InterchangeV5Exporter(
       final Jdbi jdbi,
@@ -55,7 +81,9 @@ public class InterchangeV5Exporter {
       final SignedAttestationsDao signedAttestationsDao,
       final MetadataDao metadataDao,
       final LowWatermarkDao lowWatermarkDao,
-      final ObjectMapper mapper) {
+      final ObjectMapper mapper,
+      final int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive, but was %s", parallelism);
     this.jdbi = jdbi;
     this.validatorsDao = validatorsDao;
     this.signedBlocksDao = signedBlocksDao;
@@ -63,15 +91,28 @@ public class InterchangeV5Exporter {
     this.metadataDao = metadataDao;
     this.lowWatermarkDao = lowWatermarkDao;
     this.mapper = mapper;
+    this.parallelism = parallelism;
   }
 
   public void export(final OutputStream out) throws IOException {
-    try (final JsonGenerator jsonGenerator = mapper.getFactory().createGenerator(out)) {
-      final Optional<Bytes32> gvr = jdbi.inTransaction(metadataDao::findGenesisValidatorsRoot);
-      if (gvr.isEmpty()) {
-        throw new RuntimeException("No genesis validators root for slashing protection data");
+    final Optional<Bytes32> gvr = jdbi.inTransaction(metadataDao::findGenesisValidatorsRoot);
+    if (gvr.isEmpty()) {
+      throw new RuntimeException("No genesis validators root for slashing protection data");
+    }
+    final List<Validator> validators =
+        jdbi.withHandle(h -> validatorsDao.findAllValidators(h).collect(Collectors.toList()));
+
+    final ExecutorService executorService =
+        Executors.newFixedThreadPool(
+            parallelism,
+            new ThreadFactoryBuilder().setNameFormat("interchange-exporter-%d").build());
+    try (final JsonGenerator jsonGenerator =
+        mapper
+            .getFactory()
+            .createGenerator(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE))) {
+      if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+        jsonGenerator.useDefaultPrettyPrinter();
       }
-
       jsonGenerator.writeStartObject();
 
       final Metadata metadata = new Metadata(FORMAT_VERSION, gvr.get());
@@ -80,131 +121,125 @@ public class InterchangeV5Exporter {
       mapper.writeValue(jsonGenerator, metadata);
 
       jsonGenerator.writeArrayFieldStart("data");
-      populateInterchangeData(jsonGenerator);
+      final Deque<Future<Optional<ValidatorRecord>>> pending = new ArrayDeque<>();
+      for (final Validator validator : validators) {
+        if (pending.size() >= parallelism * 2) {
+          writeValidatorRecord(jsonGenerator, pending.removeFirst());
+        }
+        pending.addLast(executorService.submit(() -> fetchValidatorRecord(validator)));
+      }
+      while (!pending.isEmpty()) {
+        writeValidatorRecord(jsonGenerator, pending.removeFirst());
+      }
       jsonGenerator.writeEndArray();
 
       jsonGenerator.writeEndObject();
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
-  private void populateInterchangeData(final JsonGenerator jsonGenerator) {
-    jdbi.useTransaction(
-        h ->
-            validatorsDao
-                .findAllValidators(h)
-                .forEach(
-                    validator -> {
-                      try {
-                        populateValidatorRecord(h, validator, jsonGenerator);
-                      } catch (final IOException e) {
-                        throw new UncheckedIOException(
-                            "Failed to construct a validator entry in json", e);
-                      }
-                    }));
+  private Optional<ValidatorRecord> fetchValidatorRecord(final Validator validator) {
+    return jdbi.inTransaction(
+        h -> {
+          final Optional<SigningWatermark> watermark =
+              lowWatermarkDao.findLowWatermarkForValidator(h, validator.getId());
+          if (watermark.isEmpty()) {
+            LOG.warn(
+                "No low watermark available, producing empty export for validator {}",
+                validator.getPublicKey());
+            return Optional.empty();
+          }
+          LOG.info("Exporting entries for validator {}", validator.getPublicKey().toHexString());
+          return Optional.of(
+              new ValidatorRecord(
+                  validator.getPublicKey(),
+                  fetchBlocks(h, watermark.get(), validator),
+                  fetchAttestations(h, watermark.get(), validator)));
+        });
   }
 
-  private void populateValidatorRecord(
-      final Handle handle, final Validator validator, final JsonGenerator jsonGenerator)
-      throws IOException {
-    final Optional<SigningWatermark> watermark =
-        lowWatermarkDao.findLowWatermarkForValidator(handle, validator.getId());
-    if (watermark.isEmpty()) {
+  private List<SignedBlock> fetchBlocks(
+      final Handle handle, final SigningWatermark watermark, final Validator validator) {
+    if (watermark.getSlot() == null) {
       LOG.warn(
-          "No low watermark available, producing empty export for validator {}",
+          "No block slot low watermark exists for {}, producing empty block listing",
           validator.getPublicKey());
-      return;
+      return Collections.emptyList();
     }
-    LOG.info("Exporting entries for validator {}", validator.getPublicKey().toHexString());
-    jsonGenerator.writeStartObject();
-    jsonGenerator.writeStringField("pubkey", validator.getPublicKey().toHexString());
-    writeBlocks(handle, watermark.get(), validator, jsonGenerator);
-    writeAttestations(handle, watermark.get(), validator, jsonGenerator);
-    jsonGenerator.writeEndObject();
+    return signedBlocksDao
+        .findBlocksSignedFromSlot(handle, validator.getId(), watermark.getSlot(), FETCH_SIZE)
+        .map(block -> new SignedBlock(block.getSlot(), block.getSigningRoot().orElse(null)))
+        .collect(Collectors.toList());
   }
 
-  private void writeBlocks(
-      final Handle handle,
-      final SigningWatermark watermark,
-      final Validator validator,
-      final JsonGenerator jsonGenerator)
-      throws IOException {
-    jsonGenerator.writeArrayFieldStart("signed_blocks");
-
-    if (watermark.getSlot() == null) {
+  private List<SignedAttestation> fetchAttestations(
+      final Handle handle, final SigningWatermark watermark, final Validator validator) {
+    if (watermark.getSourceEpoch() == null || watermark.getTargetEpoch() == null) {
       LOG.warn(
-          "No block slot low watermark exists for {}, producing empty block listing",
+          "Missing attestation low watermark for {}, producing empty attestation listing",
           validator.getPublicKey());
-    } else {
-
-      signedBlocksDao
-          .findAllBlockSignedBy(handle, validator.getId())
-          .forEach(
-              block -> {
-                if (block.getSlot().compareTo(watermark.getSlot()) >= 0) {
-                  final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock
-                      jsonBlock =
-                          new tech.pegasys.web3signer.slashingprotection.interchange.model
-                              .SignedBlock(block.getSlot(), block.getSigningRoot().orElse(null));
-                  try {
-                    mapper.writeValue(jsonGenerator, jsonBlock);
-                  } catch (final IOException e) {
-                    throw new UncheckedIOException(
-                        "Failed to construct a signed_blocks entry in json", e);
-                  }
-                } else {
-                  LOG.debug(
-                      "Ignoring block in slot {} for validator {}, as is below watermark",
-                      block.getSlot(),
-                      validator.getPublicKey());
-                }
-              });
+      return Collections.emptyList();
     }
-
-    jsonGenerator.writeEndArray();
+    return signedAttestationsDao
+        .findAttestationsSignedFromEpochs(
+            handle,
+            validator.getId(),
+            watermark.getSourceEpoch(),
+            watermark.getTargetEpoch(),
+            FETCH_SIZE)
+        .map(
+            attestation ->
+                new SignedAttestation(
+                    attestation.getSourceEpoch(),
+                    attestation.getTargetEpoch(),
+                    attestation.getSigningRoot().orElse(null)))
+        .collect(Collectors.toList());
   }
 
-  private void writeAttestations(
-      final Handle handle,
-      final SigningWatermark watermark,
-      final Validator validator,
-      final JsonGenerator jsonGenerator)
+  private void writeValidatorRecord(
+      final JsonGenerator jsonGenerator, final Future<Optional<ValidatorRecord>> future)
       throws IOException {
-    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    final Optional<ValidatorRecord> record;
+    try {
+      record = future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while exporting slashing protection data", e);
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException("Failed to export slashing protection data", e.getCause());
+    }
+    if (record.isEmpty()) {
+      return;
+    }
 
-    if (watermark.getSourceEpoch() == null || watermark.getTargetEpoch() == null) {
-      LOG.warn(
-          "Missing attestation low watermark for {}, producing empty attestation listing",
-          validator.getPublicKey());
-    } else {
-      signedAttestationsDao
-          .findAllAttestationsSignedBy(handle, validator.getId())
-          .forEach(
-              attestation -> {
-                if ((attestation.getSourceEpoch().compareTo(watermark.getSourceEpoch()) >= 0)
-                    && (attestation.getTargetEpoch().compareTo(watermark.getTargetEpoch()) >= 0)) {
-                  final tech.pegasys.web3signer.slashingprotection.interchange.model
-                          .SignedAttestation
-                      jsonAttestation =
-                          new tech.pegasys.web3signer.slashingprotection.interchange.model
-                              .SignedAttestation(
-                              attestation.getSourceEpoch(),
-                              attestation.getTargetEpoch(),
-                              attestation.getSigningRoot().orElse(null));
-                  try {
-                    mapper.writeValue(jsonGenerator, jsonAttestation);
-                  } catch (final IOException e) {
-                    throw new UncheckedIOException(
-                        "Failed to construct a signed_attestations entry in json", e);
-                  }
-                } else {
-                  LOG.debug(
-                      "Ignoring attestation with source epoch {}, and target epoch {}, for validator {}, as is below watermark",
-                      attestation.getSourceEpoch(),
-                      attestation.getTargetEpoch(),
-                      validator.getPublicKey());
-                }
-              });
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeStringField("pubkey", record.get().publicKey.toHexString());
+    jsonGenerator.writeArrayFieldStart("signed_blocks");
+    for (final SignedBlock block : record.get().blocks) {
+      mapper.writeValue(jsonGenerator, block);
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    for (final SignedAttestation attestation : record.get().attestations) {
+      mapper.writeValue(jsonGenerator, attestation);
     }
     jsonGenerator.writeEndArray();
+    jsonGenerator.writeEndObject();
+  }
+
+  private static class ValidatorRecord {
+    private final Bytes publicKey;
+    private final List<SignedBlock> blocks;
+    private final List<SignedAttestation> attestations;
+
+    private ValidatorRecord(
+        final Bytes publicKey,
+        final List<SignedBlock> blocks,
+        final List<SignedAttestation> attestations) {
+      this.publicKey = publicKey;
+      this.blocks = blocks;
+      this.attestations = attestations;
+    }
   }
 }
@@ -18,13 +18,10 @@ import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
-import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
-import tech.pegasys.web3signer.slashingprotection.validator.GenesisValidatorRootValidator;
 
 import java.io.IOException;
 import java.io.InputStream;
 
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -33,23 +30,25 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.bytes.Bytes32;
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 
-public class InterchangeV5Importer {
+/**
+ * Imports an EIP-3076 interchange document one validator at a time, committing each validator in
+ * its own transaction so transaction length depends on the largest validator rather than the whole
+ * document. An import that fails part way keeps the validators committed before the failing one.
+ */
+public class InterchangeV5Importer implements InterchangeImporter {
 
   private static final Logger LOG = LogManager.getLogger();
 
-  private static final String FORMAT_VERSION = "5";
-
   private final Jdbi jdbi;
   private final ValidatorsDao validatorsDao;
   private final SignedBlocksDao signedBlocksDao;
   private final SignedAttestationsDao signedAttestationsDao;
-  private final MetadataDao metadataDao;
   private final LowWatermarkDao lowWatermarkDao;
   private final ObjectMapper mapper;
+  private final InterchangeV5Reader reader;
 
   public InterchangeV5Importer(
       final Jdbi jdbi,
@@ -63,51 +62,20 @@ public class InterchangeV5Importer {
     this.validatorsDao = validatorsDao;
     this.signedBlocksDao = signedBlocksDao;
     this.signedAttestationsDao = signedAttestationsDao;
-    this.metadataDao = metadataDao;
     this.lowWatermarkDao = lowWatermarkDao;
     this.mapper = mapper;
+    this.reader = new InterchangeV5Reader(jdbi, metadataDao, mapper);
   }
 
+  @Override
   public void importData(final InputStream input) throws IOException {
-
-    try (final JsonParser jsonParser = mapper.getFactory().createParser(input)) {
-      final ObjectNode rootNode = mapper.readTree(jsonParser);
-
-      final JsonNode metadataJsonNode = rootNode.get("metadata");
-      final Metadata metadata = mapper.treeToValue(metadataJsonNode, Metadata.class);
-
-      if (!metadata.getFormatVersion().equals(FORMAT_VERSION)) {
-        throw new IllegalStateException(
-            "Expecting an interchange_format_version of " + FORMAT_VERSION);
-      }
-
-      final Bytes32 gvr = Bytes32.wrap(metadata.getGenesisValidatorsRoot());
-      final GenesisValidatorRootValidator genesisValidatorRootValidator =
-          new GenesisValidatorRootValidator(jdbi, metadataDao);
-      if (!genesisValidatorRootValidator.checkGenesisValidatorsRootAndInsertIfEmpty(gvr)) {
-        throw new IllegalArgumentException(
-            String.format(
-                "Supplied genesis validators root %s does not match value in database", gvr));
-      }
-
-      final ArrayNode dataNode = rootNode.withArray("data");
-      jdbi.useTransaction(
-          h -> {
-            for (int i = 0; i < dataNode.size(); i++) {
-              try {
-                final JsonNode validatorNode = dataNode.get(i);
-                parseValidator(h, validatorNode);
-              } catch (final IllegalArgumentException e) {
-                LOG.error("Failed to parse validator {}, due to {}", i, e.getMessage());
-                throw e;
-              }
-            }
-          });
-    }
+    final int validatorCount =
+        reader.read(
+            input, validatorNode -> jdbi.useTransaction(h -> importValidator(h, validatorNode)));
+    LOG.info("Imported slashing protection data for {} validators", validatorCount);
   }
 
-  private void parseValidator(final Handle handle, final JsonNode node)
-      throws JsonProcessingException {
+  void importValidator(final Handle handle, final JsonNode node) throws JsonProcessingException {
     if (node.isArray()) {
       throw new IllegalStateException("Element of 'data' was not an object");
     }
@@ -12,6 +12,8 @@
  */
 package tech.pegasys.web3signer.slashingprotection.interchange;
 
+import tech.pegasys.web3signer.slashingprotection.dao.ImportJournalDao;
+import tech.pegasys.web3signer.slashingprotection.dao.ImportStagingDao;
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
@@ -28,7 +30,7 @@ import org.jdbi.v3.core.Jdbi;
 public class InterchangeV5Manager implements InterchangeManager {
 
   private final InterchangeV5Exporter exporter;
-  private final InterchangeV5Importer importer;
+  private final InterchangeImporter importer;
 
   public InterchangeV5Manager(
       final Jdbi jdbi,
@@ -37,7 +39,10 @@ public class InterchangeV5Manager implements InterchangeManager {
       final SignedAttestationsDao signedAttestationsDao,
       final MetadataDao metadataDao,
       final LowWatermarkDao lowWatermarkDao,
-      final ObjectMapper mapper) {
+      final ObjectMapper mapper,
+      final boolean importBulkEnabled,
+      final int importCheckpointSize,
+      final int exportParallelism) {
     exporter =
         new InterchangeV5Exporter(
             jdbi,
@@ -46,8 +51,9 @@ public class InterchangeV5Manager implements InterchangeManager {
             signedAttestationsDao,
             metadataDao,
             lowWatermarkDao,
-            mapper);
-    importer =
+            mapper,
+            exportParallelism);
+    final InterchangeV5Importer validatorImporter =
         new InterchangeV5Importer(
             jdbi,
             validatorsDao,
@@ -56,15 +62,39 @@ public class InterchangeV5Manager implements InterchangeManager {
             metadataDao,
             lowWatermarkDao,
             mapper);
+    if (importBulkEnabled) {
+      importer =
+          new InterchangeV5BulkImporter(
+              jdbi, validatorsDao, new ImportStagingDao(), metadataDao, mapper);
+    } else if (importCheckpointSize > 0) {
+      importer =
+          new InterchangeV5CheckpointedImporter(
+              jdbi,
+              new ImportJournalDao(),
+              validatorImporter,
+              metadataDao,
+              mapper,
+              importCheckpointSize);
+    } else {
+      importer = validatorImporter;
+    }
   }
 
   @Override
   public void importData(final InputStream in) throws IOException {
-    importer.importData(in);
+    importer.importData(InterchangeCompression.decompressingStream(in));
   }
 
   @Override
   public void export(final OutputStream out) throws IOException {
-    exporter.export(out);
+    export(out, InterchangeCompression.NONE);
+  }
+
+  @Override
+  public void export(final OutputStream out, final InterchangeCompression compression)
+      throws IOException {
+    try (final OutputStream compressed = compression.compressingStream(out)) {
+      exporter.export(compressed);
+    }
   }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+import tech.pegasys.web3signer.slashingprotection.validator.GenesisValidatorRootValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes32;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Reads an EIP-3076 interchange document as a stream, checking the metadata and then handing over
+ * one validator entry at a time, so memory use depends on the largest validator rather than the
+ * whole document. The metadata must come before the data so the genesis validators root is checked
+ * before any validator is handed over.
+ */
+class InterchangeV5Reader {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String FORMAT_VERSION = "5";
+
+  private final Jdbi jdbi;
+  private final MetadataDao metadataDao;
+  private final ObjectMapper mapper;
+
+  @FunctionalInterface
+  interface ValidatorConsumer {
+    void accept(JsonNode validatorNode) throws IOException;
+  }
+
+  InterchangeV5Reader(final Jdbi jdbi, final MetadataDao metadataDao, final ObjectMapper mapper) {
+    this.jdbi = jdbi;
+    this.metadataDao = metadataDao;
+    this.mapper = mapper;
+  }
+
+  /** @return the number of validators read */
+  int read(final InputStream input, final ValidatorConsumer validatorConsumer)
+      throws IOException {
+    try (final JsonParser jsonParser = mapper.getFactory().createParser(input)) {
+      if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Interchange data must be a json object");
+      }
+
+      boolean metadataRead = false;
+      int validatorCount = 0;
+      while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = jsonParser.getCurrentName();
+        jsonParser.nextToken();
+        if (fieldName.equals("metadata")) {
+          checkMetadata(mapper.readValue(jsonParser, Metadata.class));
+          metadataRead = true;
+        } else if (fieldName.equals("data")) {
+          if (!metadataRead) {
+            throw new IllegalArgumentException("Interchange metadata must precede the data");
+          }
+          validatorCount = readValidators(jsonParser, validatorConsumer);
+        } else {
+          jsonParser.skipChildren();
+        }
+      }
+
+      if (!metadataRead) {
+        throw new IllegalArgumentException("Interchange data is missing metadata");
+      }
+      return validatorCount;
+    }
+  }
+
+  private void checkMetadata(final Metadata metadata) {
+    if (!metadata.getFormatVersion().equals(FORMAT_VERSION)) {
+      throw new IllegalStateException(
+          "Expecting an interchange_format_version of " + FORMAT_VERSION);
+    }
+
+    final Bytes32 gvr = Bytes32.wrap(metadata.getGenesisValidatorsRoot());
+    final GenesisValidatorRootValidator genesisValidatorRootValidator =
+        new GenesisValidatorRootValidator(jdbi, metadataDao);
+    if (!genesisValidatorRootValidator.checkGenesisValidatorsRootAndInsertIfEmpty(gvr)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Supplied genesis validators root %s does not match value in database", gvr));
+    }
+  }
+
+  private int readValidators(
+      final JsonParser jsonParser, final ValidatorConsumer validatorConsumer) throws IOException {
+    if (jsonParser.currentToken() != JsonToken.START_ARRAY) {
+      throw new IllegalArgumentException("Interchange data field must be an array");
+    }
+
+    int validatorCount = 0;
+    while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+      final JsonNode validatorNode = mapper.readTree(jsonParser);
+      try {
+        validatorConsumer.accept(validatorNode);
+      } catch (final IllegalArgumentException e) {
+        LOG.error("Failed to parse validator {}, due to {}", validatorCount, e.getMessage());
+        throw e;
+      }
+      validatorCount++;
+    }
+    return validatorCount;
+  }
+}
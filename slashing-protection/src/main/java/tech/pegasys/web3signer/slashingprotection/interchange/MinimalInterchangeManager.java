@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MinimalSigningState;
+import tech.pegasys.web3signer.slashingprotection.dao.MinimalSigningStateDao;
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Imports and exports EIP-3076 interchange documents for the minimal slashing protection mode.
+ * Imported signing history is collapsed into the highest signed slot and epochs of each validator,
+ * and an export holds at most one block and one attestation per validator, which is the minimal
+ * form of the interchange format.
+ */
+public class MinimalInterchangeManager implements InterchangeManager {
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  private static final String FORMAT_VERSION = "5";
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final Jdbi jdbi;
+  private final ValidatorsDao validatorsDao;
+  private final MinimalSigningStateDao minimalSigningStateDao;
+  private final MetadataDao metadataDao;
+  private final ObjectMapper mapper;
+  private final InterchangeV5Reader reader;
+
+  public MinimalInterchangeManager(
+      final Jdbi jdbi,
+      final ValidatorsDao validatorsDao,
+      final MinimalSigningStateDao minimalSigningStateDao,
+      final MetadataDao metadataDao,
+      final ObjectMapper mapper) {
+    this.jdbi = jdbi;
+    this.validatorsDao = validatorsDao;
+    this.minimalSigningStateDao = minimalSigningStateDao;
+    this.metadataDao = metadataDao;
+    this.mapper = mapper;
+    this.reader = new InterchangeV5Reader(jdbi, metadataDao, mapper);
+  }
+
+  @Override
+  public void importData(final InputStream in) throws IOException {
+    final int validatorCount =
+        reader.read(
+            InterchangeCompression.decompressingStream(in),
+            validatorNode -> jdbi.useTransaction(h -> importValidator(h, validatorNode)));
+    LOG.info("Imported slashing protection data for {} validators", validatorCount);
+  }
+
+  private void importValidator(final Handle handle, final JsonNode node)
+      throws JsonProcessingException {
+    if (node.isArray()) {
+      throw new IllegalStateException("Element of 'data' was not an object");
+    }
+    final ObjectNode parentNode = (ObjectNode) node;
+    final String pubKey = parentNode.required("pubkey").textValue();
+    final Validator validator = validatorsDao.insertIfNotExist(handle, Bytes.fromHexString(pubKey));
+
+    UInt64 blockSlot = null;
+    Bytes blockSigningRoot = null;
+    final ArrayNode signedBlocksNode = parentNode.withArray("signed_blocks");
+    for (final JsonNode blockNode : signedBlocksNode) {
+      final SignedBlock block = mapper.treeToValue(blockNode, SignedBlock.class);
+      if (blockSlot == null || block.getSlot().compareTo(blockSlot) > 0) {
+        blockSlot = block.getSlot();
+        blockSigningRoot = block.getSigningRoot();
+      } else if (block.getSlot().equals(blockSlot)
+          && !Objects.equals(block.getSigningRoot(), blockSigningRoot)) {
+        // conflicting entries leave no signing root, so neither can be signed again
+        blockSigningRoot = null;
+      }
+    }
+
+    UInt64 sourceEpoch = null;
+    UInt64 targetEpoch = null;
+    Bytes attestationSigningRoot = null;
+    final ArrayNode signedAttestationsNode = parentNode.withArray("signed_attestations");
+    for (final JsonNode attestationNode : signedAttestationsNode) {
+      final SignedAttestation attestation =
+          mapper.treeToValue(attestationNode, SignedAttestation.class);
+      if (sourceEpoch == null || attestation.getSourceEpoch().compareTo(sourceEpoch) > 0) {
+        sourceEpoch = attestation.getSourceEpoch();
+      }
+      if (targetEpoch == null || attestation.getTargetEpoch().compareTo(targetEpoch) > 0) {
+        targetEpoch = attestation.getTargetEpoch();
+        attestationSigningRoot = attestation.getSigningRoot();
+      } else if (attestation.getTargetEpoch().equals(targetEpoch)
+          && !Objects.equals(attestation.getSigningRoot(), attestationSigningRoot)) {
+        attestationSigningRoot = null;
+      }
+    }
+
+    minimalSigningStateDao.mergeState(
+        handle,
+        new MinimalSigningState(
+            validator.getId(),
+            blockSlot,
+            blockSigningRoot,
+            sourceEpoch,
+            targetEpoch,
+            attestationSigningRoot));
+  }
+
+  @Override
+  public void export(final OutputStream out) throws IOException {
+    export(out, InterchangeCompression.NONE);
+  }
+
+  @Override
+  public void export(final OutputStream out, final InterchangeCompression compression)
+      throws IOException {
+    final Optional<Bytes32> gvr = jdbi.inTransaction(metadataDao::findGenesisValidatorsRoot);
+    if (gvr.isEmpty()) {
+      throw new RuntimeException("No genesis validators root for slashing protection data");
+    }
+
+    try (final OutputStream compressed = compression.compressingStream(out);
+        final JsonGenerator jsonGenerator =
+            mapper
+                .getFactory()
+                .createGenerator(new BufferedOutputStream(compressed, OUTPUT_BUFFER_SIZE))) {
+      if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+        jsonGenerator.useDefaultPrettyPrinter();
+      }
+      jsonGenerator.writeStartObject();
+      jsonGenerator.writeFieldName("metadata");
+      mapper.writeValue(jsonGenerator, new Metadata(FORMAT_VERSION, gvr.get()));
+
+      jsonGenerator.writeArrayFieldStart("data");
+      jdbi.useTransaction(
+          h -> {
+            final Map<Integer, Bytes> publicKeys =
+                validatorsDao
+                    .findAllValidators(h)
+                    .collect(Collectors.toMap(Validator::getId, Validator::getPublicKey));
+            minimalSigningStateDao
+                .findAllStates(h)
+                .forEach(
+                    state -> {
+                      try {
+                        writeValidator(
+                            jsonGenerator, publicKeys.get(state.getValidatorId()), state);
+                      } catch (final IOException e) {
+                        throw new UncheckedIOException(
+                            "Failed to construct a validator entry in json", e);
+                      }
+                    });
+          });
+      jsonGenerator.writeEndArray();
+
+      jsonGenerator.writeEndObject();
+    }
+  }
+
+  private void writeValidator(
+      final JsonGenerator jsonGenerator, final Bytes publicKey, final MinimalSigningState state)
+      throws IOException {
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeStringField("pubkey", publicKey.toHexString());
+    jsonGenerator.writeArrayFieldStart("signed_blocks");
+    if (state.getBlockSlot() != null) {
+      mapper.writeValue(
+          jsonGenerator, new SignedBlock(state.getBlockSlot(), state.getBlockSigningRoot()));
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    if (state.getTargetEpoch() != null) {
+      mapper.writeValue(
+          jsonGenerator,
+          new SignedAttestation(
+              state.getSourceEpoch(), state.getTargetEpoch(), state.getAttestationSigningRoot()));
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.writeEndObject();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the source stream ahead on a separate thread, so a slow source, such as a decompressing
+ * stream, runs alongside the reader rather than holding it up. Bytes are passed on in chunks
+ * through a bounded queue.
+ */
+class PipelinedInputStream extends InputStream {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int QUEUE_CAPACITY = 16;
+  private static final byte[] END = new byte[0];
+
+  private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final InputStream source;
+  private final Thread thread;
+  private byte[] chunk;
+  private int position;
+  private boolean ended;
+  private volatile IOException failure;
+
+  PipelinedInputStream(final InputStream source, final String threadName) {
+    this.source = source;
+    this.thread = new Thread(this::fill, threadName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return chunk[position++] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    final int length = Math.min(len, chunk.length - position);
+    System.arraycopy(chunk, position, b, off, length);
+    position += length;
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    thread.interrupt();
+    source.close();
+  }
+
+  private boolean nextChunk() throws IOException {
+    while (chunk == null || position == chunk.length) {
+      if (ended) {
+        return false;
+      }
+      try {
+        final byte[] next = chunks.take();
+        if (next == END) {
+          ended = true;
+          if (failure != null) {
+            throw new IOException("Pipeline failed to read input", failure);
+          }
+          return false;
+        }
+        chunk = next;
+        position = 0;
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading from the pipeline");
+      }
+    }
+    return true;
+  }
+
+  private void fill() {
+    final byte[] buffer = new byte[CHUNK_SIZE];
+    try {
+      try {
+        int read;
+        while ((read = source.read(buffer)) >= 0) {
+          if (read > 0) {
+            chunks.put(Arrays.copyOf(buffer, read));
+          }
+        }
+      } catch (final IOException e) {
+        failure = e;
+      }
+      chunks.put(END);
+    } catch (final InterruptedException e) {
+      // the reader has closed the stream
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands written bytes to a separate thread which writes them to the target stream, so a slow
+ * target, such as a compressing stream, does not hold up the writer. Bytes are passed on in chunks
+ * through a bounded queue. The target is closed by the pipeline thread once all bytes are written.
+ */
+class PipelinedOutputStream extends OutputStream {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int QUEUE_CAPACITY = 16;
+  private static final byte[] END = new byte[0];
+
+  private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final OutputStream target;
+  private final Thread thread;
+  private final byte[] buffer = new byte[CHUNK_SIZE];
+  private int count;
+  private boolean closed;
+  private volatile Throwable failure;
+
+  PipelinedOutputStream(final OutputStream target, final String threadName) {
+    this.target = target;
+    this.thread = new Thread(this::drain, threadName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    ensureOpen();
+    if (count == buffer.length) {
+      passChunk();
+    }
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    ensureOpen();
+    int written = 0;
+    while (written < len) {
+      if (count == buffer.length) {
+        passChunk();
+      }
+      final int length = Math.min(len - written, buffer.length - count);
+      System.arraycopy(b, off + written, buffer, count, length);
+      count += length;
+      written += length;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    passChunk();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    passChunk();
+    put(END);
+    try {
+      thread.join();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the pipeline to complete");
+    }
+    checkFailure();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void passChunk() throws IOException {
+    if (count > 0) {
+      put(Arrays.copyOf(buffer, count));
+      count = 0;
+    }
+  }
+
+  private void put(final byte[] chunk) throws IOException {
+    try {
+      while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+        checkFailure();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing to the pipeline");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Pipeline failed to write output", failure);
+    }
+  }
+
+  private void drain() {
+    try (target) {
+      byte[] chunk;
+      while ((chunk = chunks.take()) != END) {
+        target.write(chunk);
+      }
+    } catch (final InterruptedException e) {
+      failure = new InterruptedIOException("Pipeline thread was interrupted");
+    } catch (final Throwable t) {
+      // anything the target throws must reach the writer, which otherwise waits on a full queue
+      failure = t;
+    }
+  }
+}
@@ -12,12 +12,12 @@
  */
 package tech.pegasys.web3signer.slashingprotection.validator;
 
+import tech.pegasys.web3signer.slashingprotection.SurroundSpans;
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -130,11 +130,23 @@ public class AttestationValidator {
   }
 
   public boolean surroundsExistingAttestation() {
-    // check that no previous vote is surrounded by attestation
-    final List<SignedAttestation> surroundedAttestations =
-        signedAttestationsDao.findSurroundedAttestations(
-            handle, validatorId, sourceEpoch, targetEpoch);
-    if (!surroundedAttestations.isEmpty()) {
+    return surroundsExistingAttestation(Optional.empty());
+  }
+
+  /**
+   * Checks that no previous vote is surrounded by the attestation, using the surround spans when
+   * they can answer the check and otherwise searching the database.
+   */
+  public boolean surroundsExistingAttestation(final Optional<SurroundSpans> surroundSpans) {
+    final boolean surroundsExisting =
+        surroundSpans
+            .flatMap(spans -> spans.surroundsExistingAttestation(sourceEpoch, targetEpoch))
+            .orElseGet(
+                () ->
+                    !signedAttestationsDao
+                        .findSurroundedAttestations(handle, validatorId, sourceEpoch, targetEpoch)
+                        .isEmpty());
+    if (surroundsExisting) {
       LOG.warn(
           "Detected surrounded attestations for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
           signingRoot,
@@ -147,11 +159,23 @@ public class AttestationValidator {
   }
 
   public boolean isSurroundedByExistingAttestation() {
-    // check that no previous vote is surrounding the attestation
-    final List<SignedAttestation> surroundingAttestation =
-        signedAttestationsDao.findSurroundingAttestations(
-            handle, validatorId, sourceEpoch, targetEpoch);
-    if (!surroundingAttestation.isEmpty()) {
+    return isSurroundedByExistingAttestation(Optional.empty());
+  }
+
+  /**
+   * Checks that no previous vote is surrounding the attestation, using the surround spans when they
+   * can answer the check and otherwise searching the database.
+   */
+  public boolean isSurroundedByExistingAttestation(final Optional<SurroundSpans> surroundSpans) {
+    final boolean surroundedByExisting =
+        surroundSpans
+            .flatMap(spans -> spans.isSurroundedByExistingAttestation(sourceEpoch, targetEpoch))
+            .orElseGet(
+                () ->
+                    !signedAttestationsDao
+                        .findSurroundingAttestations(handle, validatorId, sourceEpoch, targetEpoch)
+                        .isEmpty());
+    if (surroundedByExisting) {
       LOG.warn(
           "Detected surrounding attestations for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
           signingRoot,
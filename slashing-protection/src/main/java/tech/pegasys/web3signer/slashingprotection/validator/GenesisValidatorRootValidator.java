@@ -34,6 +34,8 @@ public class GenesisValidatorRootValidator {
   private final Jdbi jdbi;
   private final MetadataDao metadataDao;
   private final FailsafeExecutor<Object> failsafeExecutor;
+  // the genesis validators root can't change once stored so is only read from the database once
+  private volatile Bytes32 verifiedGenesisValidatorsRoot;
 
   public GenesisValidatorRootValidator(final Jdbi jdbi, final MetadataDao metadataDao) {
     this.jdbi = jdbi;
@@ -43,22 +45,45 @@ public class GenesisValidatorRootValidator {
   }
 
   public boolean checkGenesisValidatorsRootAndInsertIfEmpty(Bytes32 genesisValidatorsRoot) {
-    return failsafeExecutor.get(
-        () ->
-            jdbi.inTransaction(
-                READ_COMMITTED, handle -> validateGvr(handle, genesisValidatorsRoot)));
+    final Bytes32 verifiedGvr = verifiedGenesisValidatorsRoot;
+    if (verifiedGvr != null) {
+      if (!verifiedGvr.equals(genesisValidatorsRoot)) {
+        logMismatch(genesisValidatorsRoot);
+        return false;
+      }
+      return true;
+    }
+
+    final boolean isValidGvr =
+        failsafeExecutor.get(
+            () ->
+                jdbi.inTransaction(
+                    READ_COMMITTED, handle -> validateGvr(handle, genesisValidatorsRoot)));
+    if (isValidGvr) {
+      verifiedGenesisValidatorsRoot = genesisValidatorsRoot;
+    }
+    return isValidGvr;
+  }
+
+  /** Discards the verified genesis validators root so it is next read from the database. */
+  public void reset() {
+    verifiedGenesisValidatorsRoot = null;
   }
 
   private boolean validateGvr(final Handle handle, final Bytes32 genesisValidatorsRoot) {
     final Optional<Bytes32> dbGvr = metadataDao.findGenesisValidatorsRoot(handle);
     final boolean isValidGvr = dbGvr.map(gvr -> gvr.equals(genesisValidatorsRoot)).orElse(true);
     if (!isValidGvr) {
-      LOG.warn(
-          "Supplied genesis validators root {} does not match value in database",
-          genesisValidatorsRoot);
+      logMismatch(genesisValidatorsRoot);
     } else if (dbGvr.isEmpty()) {
       metadataDao.insertGenesisValidatorsRoot(handle, genesisValidatorsRoot);
     }
     return isValidGvr;
   }
+
+  private void logMismatch(final Bytes32 genesisValidatorsRoot) {
+    LOG.warn(
+        "Supplied genesis validators root {} does not match value in database",
+        genesisValidatorsRoot);
+  }
 }
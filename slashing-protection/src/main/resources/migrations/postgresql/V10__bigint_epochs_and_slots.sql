@@ -0,0 +1,181 @@
+-- Store slots and epochs as BIGINT instead of NUMERIC(20). Unsigned values are shifted down by
+-- 2^63 (equivalent to flipping the sign bit), so 0 is stored as -9223372036854775808 and ordering
+-- and comparisons on the stored values match the unsigned values.
+-- The check functions from V9 are recreated with BIGINT parameters, so that they compare against
+-- the columns without a cast and keep using the indexes.
+
+DROP FUNCTION check_and_insert_block(INTEGER, INTEGER, NUMERIC, BYTEA);
+DROP FUNCTION check_and_insert_attestation(INTEGER, INTEGER, NUMERIC, NUMERIC, BYTEA);
+
+ALTER TABLE signed_blocks
+ALTER COLUMN slot TYPE BIGINT USING (slot - 9223372036854775808)::BIGINT;
+
+ALTER TABLE signed_attestations
+ALTER COLUMN source_epoch TYPE BIGINT USING (source_epoch - 9223372036854775808)::BIGINT,
+ALTER COLUMN target_epoch TYPE BIGINT USING (target_epoch - 9223372036854775808)::BIGINT;
+
+ALTER TABLE low_watermarks
+ALTER COLUMN slot TYPE BIGINT USING (slot - 9223372036854775808)::BIGINT,
+ALTER COLUMN source_epoch TYPE BIGINT USING (source_epoch - 9223372036854775808)::BIGINT,
+ALTER COLUMN target_epoch TYPE BIGINT USING (target_epoch - 9223372036854775808)::BIGINT;
+
+-- The id columns added in V2 are not referenced, and the V6 indexes duplicate the unique
+-- constraints added in V8.
+ALTER TABLE signed_blocks DROP COLUMN id;
+ALTER TABLE signed_attestations DROP COLUMN id;
+DROP INDEX IF EXISTS signed_blocks_validator_id_slot_idx;
+DROP INDEX IF EXISTS signed_attestations_validator_id_target_epoch_idx;
+
+CREATE FUNCTION check_and_insert_block(
+    _lock_type INTEGER,
+    _validator_id INTEGER,
+    _slot BIGINT,
+    _signing_root BYTEA,
+    OUT verdict INTEGER,
+    OUT conflict_slot BIGINT,
+    OUT conflict_signing_root BYTEA)
+LANGUAGE plpgsql
+AS $body$
+DECLARE
+  _watermark_slot BIGINT;
+BEGIN
+  PERFORM pg_advisory_xact_lock(_lock_type, _validator_id);
+
+  SELECT lw.slot INTO _watermark_slot
+  FROM low_watermarks lw
+  WHERE lw.validator_id = _validator_id;
+
+  IF _slot < _watermark_slot THEN
+    verdict := 5;
+    conflict_slot := _watermark_slot;
+    RETURN;
+  END IF;
+
+  SELECT sb.slot, sb.signing_root INTO conflict_slot, conflict_signing_root
+  FROM signed_blocks sb
+  WHERE sb.validator_id = _validator_id AND sb.slot = _slot
+  AND (sb.signing_root <> _signing_root OR sb.signing_root IS NULL)
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 6;
+    RETURN;
+  END IF;
+
+  IF EXISTS (
+    SELECT 1 FROM signed_blocks sb
+    WHERE sb.validator_id = _validator_id AND sb.slot = _slot AND sb.signing_root = _signing_root)
+  THEN
+    verdict := 1;
+    RETURN;
+  END IF;
+
+  INSERT INTO signed_blocks (validator_id, slot, signing_root)
+  VALUES (_validator_id, _slot, _signing_root);
+
+  IF _watermark_slot IS NULL THEN
+    INSERT INTO low_watermarks (validator_id, slot) VALUES (_validator_id, _slot)
+    ON CONFLICT (validator_id)
+    DO UPDATE SET slot = _slot
+    WHERE low_watermarks.slot <= _slot OR low_watermarks.slot IS NULL;
+  END IF;
+
+  verdict := 0;
+END
+$body$;
+
+CREATE FUNCTION check_and_insert_attestation(
+    _lock_type INTEGER,
+    _validator_id INTEGER,
+    _source_epoch BIGINT,
+    _target_epoch BIGINT,
+    _signing_root BYTEA,
+    OUT verdict INTEGER,
+    OUT conflict_source_epoch BIGINT,
+    OUT conflict_target_epoch BIGINT,
+    OUT conflict_signing_root BYTEA)
+LANGUAGE plpgsql
+AS $body$
+DECLARE
+  _watermark_source_epoch BIGINT;
+  _watermark_target_epoch BIGINT;
+BEGIN
+  IF _source_epoch > _target_epoch THEN
+    verdict := 2;
+    RETURN;
+  END IF;
+
+  PERFORM pg_advisory_xact_lock(_lock_type, _validator_id);
+
+  SELECT lw.source_epoch, lw.target_epoch INTO _watermark_source_epoch, _watermark_target_epoch
+  FROM low_watermarks lw
+  WHERE lw.validator_id = _validator_id;
+
+  IF _source_epoch < _watermark_source_epoch OR _target_epoch < _watermark_target_epoch THEN
+    verdict := CASE WHEN _source_epoch < _watermark_source_epoch THEN 3 ELSE 4 END;
+    conflict_source_epoch := _watermark_source_epoch;
+    conflict_target_epoch := _watermark_target_epoch;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id AND sa.target_epoch = _target_epoch
+  AND (sa.signing_root <> _signing_root OR sa.signing_root IS NULL)
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 6;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id
+  AND sa.source_epoch < _source_epoch AND sa.target_epoch > _target_epoch
+  ORDER BY sa.target_epoch DESC
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 7;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id
+  AND sa.source_epoch > _source_epoch AND sa.target_epoch < _target_epoch
+  ORDER BY sa.target_epoch DESC
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 8;
+    RETURN;
+  END IF;
+
+  IF EXISTS (
+    SELECT 1 FROM signed_attestations sa
+    WHERE sa.validator_id = _validator_id AND sa.target_epoch = _target_epoch
+    AND sa.signing_root = _signing_root)
+  THEN
+    verdict := 1;
+    RETURN;
+  END IF;
+
+  INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch, signing_root)
+  VALUES (_validator_id, _source_epoch, _target_epoch, _signing_root);
+
+  IF _watermark_source_epoch IS NULL AND _watermark_target_epoch IS NULL THEN
+    INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch)
+    VALUES (_validator_id, _source_epoch, _target_epoch)
+    ON CONFLICT (validator_id)
+    DO UPDATE SET source_epoch = _source_epoch, target_epoch = _target_epoch
+    WHERE (low_watermarks.source_epoch <= _source_epoch
+      AND low_watermarks.target_epoch <= _target_epoch)
+    OR (low_watermarks.source_epoch IS NULL AND low_watermarks.target_epoch IS NULL);
+  END IF;
+
+  verdict := 0;
+END
+$body$;
+
+UPDATE database_version SET version = 10 WHERE id = 1;
@@ -0,0 +1,13 @@
+-- Registry of the range partitions created when signed_blocks and signed_attestations use the
+-- optional partitioned layout. Bounds use the same encoding as the partition key columns. The
+-- history and future partitions, which cover everything below and above the registered ranges,
+-- are not listed.
+CREATE TABLE slashing_partitions (
+    partition_name TEXT PRIMARY KEY,
+    table_name TEXT NOT NULL,
+    lower_bound BIGINT NOT NULL,
+    upper_bound BIGINT NOT NULL,
+    UNIQUE (table_name, lower_bound)
+);
+
+UPDATE database_version SET version = 11 WHERE id = 1;
@@ -0,0 +1,16 @@
+-- Progress of checkpointed interchange imports. Each checkpoint commits a group of validators
+-- together with the number of validators now imported and a digest of their entries, so an
+-- interrupted import can skip the committed validators when it is run again. At most one import
+-- is in progress at a time.
+CREATE TABLE import_journal (
+    id SERIAL PRIMARY KEY,
+    validators_imported INTEGER NOT NULL,
+    content_digest BYTEA NOT NULL,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    started_at TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE UNIQUE INDEX import_journal_in_progress ON import_journal (completed) WHERE NOT completed;
+
+UPDATE database_version SET version = 12 WHERE id = 1;
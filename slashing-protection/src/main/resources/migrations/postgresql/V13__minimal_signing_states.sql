@@ -0,0 +1,14 @@
+-- Signing state of validators protected in minimal mode, which keeps the highest signed block slot
+-- and attestation epochs of each validator, and the signing roots signed at them, instead of the
+-- signing history.
+CREATE TABLE minimal_signing_states (
+    validator_id INTEGER PRIMARY KEY REFERENCES validators(id),
+    block_slot BIGINT,
+    block_signing_root BYTEA,
+    source_epoch BIGINT,
+    target_epoch BIGINT,
+    attestation_signing_root BYTEA,
+    CONSTRAINT minimal_epochs_set_or_null CHECK ((source_epoch IS NULL) = (target_epoch IS NULL))
+);
+
+UPDATE database_version SET version = 13 WHERE id = 1;
@@ -0,0 +1,11 @@
+-- Lease held by a Web3Signer instance which locks validators in memory rather than with advisory
+-- locks. The owner renews the lease before it expires, and other instances refuse to start while
+-- an unexpired lease is held by someone else. The expiry is compared against now() by every
+-- instance, so is stored with its time zone to be independent of each session's TimeZone.
+CREATE TABLE lock_lease (
+    id INTEGER PRIMARY KEY,
+    owner TEXT NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+UPDATE database_version SET version = 14 WHERE id = 1;
@@ -0,0 +1,161 @@
+-- Evaluate all slashing protection rules for a block or attestation and insert it if it is safe to
+-- sign, in a single call. The rules and their order match the BlockValidator and
+-- AttestationValidator. Verdicts are:
+--   0 inserted, 1 already exists, 2 source greater than target, 3 source below watermark,
+--   4 target below watermark, 5 slot below watermark, 6 conflicts with existing entry,
+--   7 surrounded by existing attestation, 8 surrounds existing attestation
+-- The conflicting entry (or the watermark for watermark verdicts) is returned with the verdict.
+
+CREATE FUNCTION check_and_insert_block(
+    _lock_type INTEGER,
+    _validator_id INTEGER,
+    _slot NUMERIC,
+    _signing_root BYTEA,
+    OUT verdict INTEGER,
+    OUT conflict_slot NUMERIC,
+    OUT conflict_signing_root BYTEA)
+LANGUAGE plpgsql
+AS $body$
+DECLARE
+  _watermark_slot NUMERIC;
+BEGIN
+  PERFORM pg_advisory_xact_lock(_lock_type, _validator_id);
+
+  SELECT lw.slot INTO _watermark_slot
+  FROM low_watermarks lw
+  WHERE lw.validator_id = _validator_id;
+
+  IF _slot < _watermark_slot THEN
+    verdict := 5;
+    conflict_slot := _watermark_slot;
+    RETURN;
+  END IF;
+
+  SELECT sb.slot, sb.signing_root INTO conflict_slot, conflict_signing_root
+  FROM signed_blocks sb
+  WHERE sb.validator_id = _validator_id AND sb.slot = _slot
+  AND (sb.signing_root <> _signing_root OR sb.signing_root IS NULL)
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 6;
+    RETURN;
+  END IF;
+
+  IF EXISTS (
+    SELECT 1 FROM signed_blocks sb
+    WHERE sb.validator_id = _validator_id AND sb.slot = _slot AND sb.signing_root = _signing_root)
+  THEN
+    verdict := 1;
+    RETURN;
+  END IF;
+
+  INSERT INTO signed_blocks (validator_id, slot, signing_root)
+  VALUES (_validator_id, _slot, _signing_root);
+
+  IF _watermark_slot IS NULL THEN
+    INSERT INTO low_watermarks (validator_id, slot) VALUES (_validator_id, _slot)
+    ON CONFLICT (validator_id)
+    DO UPDATE SET slot = _slot
+    WHERE low_watermarks.slot <= _slot OR low_watermarks.slot IS NULL;
+  END IF;
+
+  verdict := 0;
+END
+$body$;
+
+CREATE FUNCTION check_and_insert_attestation(
+    _lock_type INTEGER,
+    _validator_id INTEGER,
+    _source_epoch NUMERIC,
+    _target_epoch NUMERIC,
+    _signing_root BYTEA,
+    OUT verdict INTEGER,
+    OUT conflict_source_epoch NUMERIC,
+    OUT conflict_target_epoch NUMERIC,
+    OUT conflict_signing_root BYTEA)
+LANGUAGE plpgsql
+AS $body$
+DECLARE
+  _watermark_source_epoch NUMERIC;
+  _watermark_target_epoch NUMERIC;
+BEGIN
+  IF _source_epoch > _target_epoch THEN
+    verdict := 2;
+    RETURN;
+  END IF;
+
+  PERFORM pg_advisory_xact_lock(_lock_type, _validator_id);
+
+  SELECT lw.source_epoch, lw.target_epoch INTO _watermark_source_epoch, _watermark_target_epoch
+  FROM low_watermarks lw
+  WHERE lw.validator_id = _validator_id;
+
+  IF _source_epoch < _watermark_source_epoch OR _target_epoch < _watermark_target_epoch THEN
+    verdict := CASE WHEN _source_epoch < _watermark_source_epoch THEN 3 ELSE 4 END;
+    conflict_source_epoch := _watermark_source_epoch;
+    conflict_target_epoch := _watermark_target_epoch;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id AND sa.target_epoch = _target_epoch
+  AND (sa.signing_root <> _signing_root OR sa.signing_root IS NULL)
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 6;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id
+  AND sa.source_epoch < _source_epoch AND sa.target_epoch > _target_epoch
+  ORDER BY sa.target_epoch DESC
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 7;
+    RETURN;
+  END IF;
+
+  SELECT sa.source_epoch, sa.target_epoch, sa.signing_root
+  INTO conflict_source_epoch, conflict_target_epoch, conflict_signing_root
+  FROM signed_attestations sa
+  WHERE sa.validator_id = _validator_id
+  AND sa.source_epoch > _source_epoch AND sa.target_epoch < _target_epoch
+  ORDER BY sa.target_epoch DESC
+  LIMIT 1;
+  IF FOUND THEN
+    verdict := 8;
+    RETURN;
+  END IF;
+
+  IF EXISTS (
+    SELECT 1 FROM signed_attestations sa
+    WHERE sa.validator_id = _validator_id AND sa.target_epoch = _target_epoch
+    AND sa.signing_root = _signing_root)
+  THEN
+    verdict := 1;
+    RETURN;
+  END IF;
+
+  INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch, signing_root)
+  VALUES (_validator_id, _source_epoch, _target_epoch, _signing_root);
+
+  IF _watermark_source_epoch IS NULL AND _watermark_target_epoch IS NULL THEN
+    INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch)
+    VALUES (_validator_id, _source_epoch, _target_epoch)
+    ON CONFLICT (validator_id)
+    DO UPDATE SET source_epoch = _source_epoch, target_epoch = _target_epoch
+    WHERE (low_watermarks.source_epoch <= _source_epoch
+      AND low_watermarks.target_epoch <= _target_epoch)
+    OR (low_watermarks.source_epoch IS NULL AND low_watermarks.target_epoch IS NULL);
+  END IF;
+
+  verdict := 0;
+END
+$body$;
+
+UPDATE database_version SET version = 9 WHERE id = 1;
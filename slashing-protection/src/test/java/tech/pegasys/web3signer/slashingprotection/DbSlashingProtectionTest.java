@@ -22,8 +22,10 @@ import static org.mockito.ArgumentMatchers.refEq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
@@ -33,18 +35,21 @@ import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SigningWatermark;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckVerdict;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
 import org.jdbi.v3.testing.JdbiRule;
@@ -52,6 +57,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -95,7 +101,7 @@ public class DbSlashingProtectionTest {
             lowWatermarkDao,
             1,
             1,
-            HashBiMap.create(Map.of(PUBLIC_KEY1, VALIDATOR_ID)));
+            RegisteredValidators.of(Map.of(PUBLIC_KEY1, VALIDATOR_ID)));
     when(metadataDao.findGenesisValidatorsRoot(any())).thenReturn(Optional.of(GVR));
   }
 
@@ -363,8 +369,7 @@ public class DbSlashingProtectionTest {
 
   @Test
   public void registersValidatorsThatAreNotAlreadyInDb() {
-    final BiMap<Bytes, Integer> registeredValidators = HashBiMap.create();
-    registeredValidators.put(PUBLIC_KEY1, 1);
+    final RegisteredValidators registeredValidators = new RegisteredValidators();
     final Jdbi jdbi = db.getJdbi();
     final DbSlashingProtection dbSlashingProtection =
         new DbSlashingProtection(
@@ -385,14 +390,47 @@ public class DbSlashingProtectionTest {
         .thenReturn(List.of(new Validator(2, PUBLIC_KEY2), new Validator(3, PUBLIC_KEY3)));
     dbSlashingProtection.registerValidators(List.of(PUBLIC_KEY1, PUBLIC_KEY2, PUBLIC_KEY3));
 
-    assertThat(registeredValidators).hasSize(3);
-    assertThat(registeredValidators)
-        .isEqualTo(Map.of(PUBLIC_KEY1, 1, PUBLIC_KEY2, 2, PUBLIC_KEY3, 3));
+    assertThat(registeredValidators.size()).isEqualTo(3);
+    assertThat(registeredValidators.getId(PUBLIC_KEY1)).isEqualTo(1);
+    assertThat(registeredValidators.getId(PUBLIC_KEY2)).isEqualTo(2);
+    assertThat(registeredValidators.getId(PUBLIC_KEY3)).isEqualTo(3);
+    assertThat(registeredValidators.getPublicKey(2)).isEqualTo(PUBLIC_KEY2);
     verify(validatorsDao)
         .retrieveValidators(any(), eq(List.of(PUBLIC_KEY1, PUBLIC_KEY2, PUBLIC_KEY3)));
     verify(validatorsDao).registerValidators(any(), eq(List.of(PUBLIC_KEY2, PUBLIC_KEY3)));
   }
 
+  @Test
+  public void onlyRegistersValidatorsNotAlreadyRegistered() {
+    final RegisteredValidators registeredValidators =
+        RegisteredValidators.of(Map.of(PUBLIC_KEY1, 1));
+    final Jdbi jdbi = db.getJdbi();
+    final DbSlashingProtection dbSlashingProtection =
+        new DbSlashingProtection(
+            jdbi,
+            jdbi,
+            validatorsDao,
+            signedBlocksDao,
+            signedAttestationsDao,
+            metadataDao,
+            lowWatermarkDao,
+            0,
+            0,
+            registeredValidators);
+
+    when(validatorsDao.retrieveValidators(any(), any())).thenReturn(List.of());
+    when(validatorsDao.registerValidators(any(), any()))
+        .thenReturn(List.of(new Validator(2, PUBLIC_KEY2)));
+    dbSlashingProtection.registerValidators(List.of(PUBLIC_KEY1, PUBLIC_KEY2));
+    dbSlashingProtection.registerValidators(List.of(PUBLIC_KEY1, PUBLIC_KEY2));
+
+    assertThat(registeredValidators.size()).isEqualTo(2);
+    assertThat(registeredValidators.getId(PUBLIC_KEY2)).isEqualTo(2);
+    verify(validatorsDao).retrieveValidators(any(), eq(List.of(PUBLIC_KEY2)));
+    verify(validatorsDao).registerValidators(any(), eq(List.of(PUBLIC_KEY2)));
+    verifyNoMoreInteractions(validatorsDao);
+  }
+
   @Test
   public void slashingProtectionEnactedIfAttestationWithNullSigningRootExists() {
     when(signedAttestationsDao.findAttestationsForEpochWithDifferentSigningRoot(
@@ -574,6 +612,21 @@ public class DbSlashingProtectionTest {
     verify(metadataDao, never()).insertGenesisValidatorsRoot(any(), eq(GVR));
   }
 
+  @Test
+  public void verifiedGvrIsNotReadFromDatabaseAgain() {
+    assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT, GVR)).isTrue();
+    assertThat(
+            dbSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH, GVR))
+        .isTrue();
+    assertThat(
+            dbSlashingProtection.maySignBlock(
+                PUBLIC_KEY1, SIGNING_ROOT, SLOT, Bytes32.leftPad(Bytes.of(1))))
+        .isFalse();
+
+    verify(metadataDao).findGenesisValidatorsRoot(any());
+  }
+
   @Test
   public void registersGVRForBlockIfItDoesNotExist() {
     when(metadataDao.findGenesisValidatorsRoot(any())).thenReturn(Optional.empty());
@@ -595,6 +648,242 @@ public class DbSlashingProtectionTest {
     verify(metadataDao).insertGenesisValidatorsRoot(any(), eq(GVR));
   }
 
+  @Test
+  public void batchOfSlashingChecksReturnsResultsInRequestOrder() {
+    when(signedBlocksDao.findBlockForSlotWithDifferentSigningRoot(any(), anyInt(), any(), any()))
+        .thenReturn(List.of(new SignedBlock(VALIDATOR_ID, SLOT, Bytes.of(4))));
+
+    final List<SlashingCheckRequest> requests =
+        List.of(
+            SlashingCheckRequest.attestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH, GVR),
+            SlashingCheckRequest.block(PUBLIC_KEY1, SIGNING_ROOT, SLOT, GVR));
+
+    assertThat(dbSlashingProtection.maySignBatch(requests)).containsExactly(true, false);
+
+    verify(metadataDao).findGenesisValidatorsRoot(any());
+    verify(signedAttestationsDao)
+        .insertAttestation(
+            any(),
+            refEq(new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT)));
+    verify(signedBlocksDao, never()).insertBlockProposal(any(), any());
+  }
+
+  @Test
+  public void batchWithUnregisteredValidatorIsRejectedBeforeAnyCheck() {
+    final List<SlashingCheckRequest> requests =
+        List.of(
+            SlashingCheckRequest.block(PUBLIC_KEY1, SIGNING_ROOT, SLOT, GVR),
+            SlashingCheckRequest.block(PUBLIC_KEY2, SIGNING_ROOT, SLOT, GVR));
+
+    assertThatThrownBy(() -> dbSlashingProtection.maySignBatch(requests))
+        .hasMessage("Unregistered validator for " + PUBLIC_KEY2)
+        .isInstanceOf(IllegalStateException.class);
+
+    verifyNoInteractions(metadataDao, signedBlocksDao, signedAttestationsDao);
+  }
+
+  @Test
+  public void largeBatchIsCheckedInTransactionsHoldingBoundedNumberOfLocks() {
+    final List<SlashingCheckRequest> requests =
+        IntStream.range(0, 65)
+            .mapToObj(
+                i ->
+                    SlashingCheckRequest.attestation(
+                        PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH.add(i), GVR))
+            .collect(Collectors.toList());
+
+    assertThat(dbSlashingProtection.maySignBatch(requests)).hasSize(65).containsOnly(true);
+
+    final ArgumentCaptor<Handle> handles = ArgumentCaptor.forClass(Handle.class);
+    verify(signedAttestationsDao, times(65)).insertAttestation(handles.capture(), any());
+    assertThat(handles.getAllValues().subList(0, 64)).containsOnly(handles.getAllValues().get(0));
+    assertThat(handles.getValue()).isNotSameAs(handles.getAllValues().get(0));
+  }
+
+  @Test
+  public void attestationNewerThanCachedStateIsInsertedWithoutConflictChecks() {
+    final DbSlashingProtection cachingSlashingProtection = createWithStateCache();
+    when(lowWatermarkDao.findLowWatermarkForValidator(any(), eq(VALIDATOR_ID)))
+        .thenReturn(
+            Optional.of(
+                new SigningWatermark(VALIDATOR_ID, null, UInt64.valueOf(1), UInt64.valueOf(2))));
+    when(signedAttestationsDao.findMaxSourceEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(SOURCE_EPOCH));
+    when(signedAttestationsDao.findMaxTargetEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(TARGET_EPOCH));
+
+    final UInt64 targetEpoch = TARGET_EPOCH.add(1);
+    assertThat(
+            cachingSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, targetEpoch, GVR))
+        .isTrue();
+    // repeating the most recent request is answered without reaching the database
+    assertThat(
+            cachingSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, targetEpoch, GVR))
+        .isTrue();
+
+    verify(signedAttestationsDao)
+        .insertAttestation(
+            any(),
+            refEq(new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, targetEpoch, SIGNING_ROOT)));
+    verify(lowWatermarkDao).findLowWatermarkForValidator(any(), eq(VALIDATOR_ID));
+    verify(signedAttestationsDao, never())
+        .findAttestationsForEpochWithDifferentSigningRoot(any(), anyInt(), any(), any());
+    verify(signedAttestationsDao, never())
+        .findSurroundingAttestations(any(), anyInt(), any(), any());
+    verify(signedAttestationsDao, never())
+        .findSurroundedAttestations(any(), anyInt(), any(), any());
+  }
+
+  @Test
+  public void attestationNotNewerThanCachedStateIsCheckedAgainstSurroundSpans() {
+    final DbSlashingProtection cachingSlashingProtection = createWithStateCache();
+    when(lowWatermarkDao.findLowWatermarkForValidator(any(), eq(VALIDATOR_ID)))
+        .thenReturn(
+            Optional.of(
+                new SigningWatermark(VALIDATOR_ID, null, UInt64.valueOf(1), UInt64.valueOf(2))));
+    when(signedAttestationsDao.findMaxSourceEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(SOURCE_EPOCH));
+    when(signedAttestationsDao.findMaxTargetEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(TARGET_EPOCH));
+    final SignedAttestation surroundingAttestation =
+        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, Bytes.of(4));
+    when(signedAttestationsDao.findAttestationsWithTargetEpochFrom(
+            any(), eq(VALIDATOR_ID), eq(UInt64.ZERO)))
+        .thenReturn(List.of(surroundingAttestation));
+
+    assertThat(
+            cachingSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1,
+                SIGNING_ROOT,
+                SOURCE_EPOCH.add(1),
+                TARGET_EPOCH.subtract(1),
+                GVR))
+        .isFalse();
+    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+    verify(signedAttestationsDao, never())
+        .findSurroundingAttestations(any(), anyInt(), any(), any());
+  }
+
+  @Test
+  public void attestationOutsideSurroundSpansIsCheckedAgainstDatabase() {
+    final DbSlashingProtection cachingSlashingProtection = createWithStateCache();
+    final UInt64 maxSourceEpoch = UInt64.valueOf(5000);
+    final UInt64 maxTargetEpoch = maxSourceEpoch.add(1);
+    when(lowWatermarkDao.findLowWatermarkForValidator(any(), eq(VALIDATOR_ID)))
+        .thenReturn(
+            Optional.of(
+                new SigningWatermark(VALIDATOR_ID, null, UInt64.valueOf(1), UInt64.valueOf(2))));
+    when(signedAttestationsDao.findMaxSourceEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(maxSourceEpoch));
+    when(signedAttestationsDao.findMaxTargetEpoch(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(maxTargetEpoch));
+    when(signedAttestationsDao.findAttestationsWithTargetEpochFrom(any(), eq(VALIDATOR_ID), any()))
+        .thenReturn(
+            List.of(
+                new SignedAttestation(VALIDATOR_ID, maxSourceEpoch, maxTargetEpoch, Bytes.of(4))));
+    final SignedAttestation surroundingAttestation =
+        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, Bytes.of(4));
+    when(signedAttestationsDao.findSurroundingAttestations(any(), eq(VALIDATOR_ID), any(), any()))
+        .thenReturn(List.of(surroundingAttestation));
+
+    assertThat(
+            cachingSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1,
+                SIGNING_ROOT,
+                SOURCE_EPOCH.add(1),
+                TARGET_EPOCH.subtract(1),
+                GVR))
+        .isFalse();
+    verify(signedAttestationsDao)
+        .findSurroundingAttestations(
+            any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH.add(1)), eq(TARGET_EPOCH.subtract(1)));
+    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+  }
+
+  @Test
+  public void blockNewerThanCachedStateIsInsertedWithoutConflictChecks() {
+    final DbSlashingProtection cachingSlashingProtection = createWithStateCache();
+    when(lowWatermarkDao.findLowWatermarkForValidator(any(), eq(VALIDATOR_ID)))
+        .thenReturn(Optional.of(new SigningWatermark(VALIDATOR_ID, UInt64.ONE, null, null)));
+    when(signedBlocksDao.findMaxSlot(any(), eq(VALIDATOR_ID))).thenReturn(Optional.of(SLOT));
+
+    final UInt64 blockSlot = SLOT.add(1);
+    assertThat(cachingSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, blockSlot, GVR))
+        .isTrue();
+
+    verify(signedBlocksDao)
+        .insertBlockProposal(any(), refEq(new SignedBlock(VALIDATOR_ID, blockSlot, SIGNING_ROOT)));
+    verify(signedBlocksDao, never())
+        .findBlockForSlotWithDifferentSigningRoot(any(), anyInt(), any(), any());
+  }
+
+  @Test
+  public void consolidatedChecksDecideAttestationInSingleDatabaseCall() {
+    final DbSlashingProtection consolidatedSlashingProtection = createWithConsolidatedChecks();
+    when(signedAttestationsDao.checkAndInsertAttestation(
+            any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH), eq(SIGNING_ROOT)))
+        .thenReturn(
+            new SlashingCheckResult<>(
+                SlashingCheckVerdict.SURROUNDS_EXISTING_ATTESTATION, Optional.empty()));
+
+    assertThat(
+            consolidatedSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH, GVR))
+        .isFalse();
+    verify(lowWatermarkDao, never()).findLowWatermarkForValidator(any(), anyInt());
+    verify(signedAttestationsDao, never())
+        .findSurroundedAttestations(any(), anyInt(), any(), any());
+    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+  }
+
+  @Test
+  public void consolidatedChecksDecideBlockInSingleDatabaseCall() {
+    final DbSlashingProtection consolidatedSlashingProtection = createWithConsolidatedChecks();
+    when(signedBlocksDao.checkAndInsertBlock(any(), eq(VALIDATOR_ID), eq(SLOT), eq(SIGNING_ROOT)))
+        .thenReturn(new SlashingCheckResult<>(SlashingCheckVerdict.INSERTED, Optional.empty()));
+
+    assertThat(consolidatedSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT, GVR))
+        .isTrue();
+    verify(lowWatermarkDao, never()).findLowWatermarkForValidator(any(), anyInt());
+    verify(signedBlocksDao, never()).insertBlockProposal(any(), any());
+  }
+
+  private DbSlashingProtection createWithConsolidatedChecks() {
+    return DbSlashingProtection.builder(
+            jdbi,
+            pruningJdbi,
+            validatorsDao,
+            signedBlocksDao,
+            signedAttestationsDao,
+            metadataDao,
+            lowWatermarkDao,
+            1,
+            1)
+        .registeredValidators(RegisteredValidators.of(Map.of(PUBLIC_KEY1, VALIDATOR_ID)))
+        .consolidatedChecksEnabled(true)
+        .build();
+  }
+
+  private DbSlashingProtection createWithStateCache() {
+    return DbSlashingProtection.builder(
+            jdbi,
+            pruningJdbi,
+            validatorsDao,
+            signedBlocksDao,
+            signedAttestationsDao,
+            metadataDao,
+            lowWatermarkDao,
+            1,
+            1)
+        .registeredValidators(RegisteredValidators.of(Map.of(PUBLIC_KEY1, VALIDATOR_ID)))
+        .stateCache(
+            new SlashingStateCache(true, lowWatermarkDao, signedAttestationsDao, signedBlocksDao))
+        .build();
+  }
+
   @Test
   public void pruningUseSeparateDatasource() {
     dbSlashingProtection.prune();
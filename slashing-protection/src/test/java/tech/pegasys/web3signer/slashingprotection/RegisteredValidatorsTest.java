@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class RegisteredValidatorsTest {
+
+  @Test
+  void unknownValidatorsAreUnregistered() {
+    final RegisteredValidators registeredValidators = new RegisteredValidators();
+
+    assertThat(registeredValidators.size()).isZero();
+    assertThat(registeredValidators.getId(Bytes.of(1)))
+        .isEqualTo(RegisteredValidators.UNREGISTERED);
+    assertThat(registeredValidators.getPublicKey(1)).isNull();
+    assertThat(registeredValidators.validatorIds()).isEmpty();
+  }
+
+  @Test
+  void looksUpValidatorsByPublicKeyAndId() {
+    final List<Validator> validators = new ArrayList<>();
+    for (int i = 1; i <= 5_000; i++) {
+      validators.add(new Validator(i * 3, Bytes.ofUnsignedInt(i)));
+    }
+    final RegisteredValidators registeredValidators = new RegisteredValidators();
+    registeredValidators.registerAll(validators.subList(0, 1_000));
+    registeredValidators.registerAll(validators.subList(1_000, 5_000));
+
+    assertThat(registeredValidators.size()).isEqualTo(5_000);
+    assertThat(registeredValidators.validatorIds()).hasSize(5_000);
+    validators.forEach(
+        v -> {
+          assertThat(registeredValidators.getId(v.getPublicKey())).isEqualTo(v.getId());
+          assertThat(registeredValidators.getPublicKey(v.getId())).isEqualTo(v.getPublicKey());
+        });
+    assertThat(registeredValidators.getId(Bytes.ofUnsignedInt(5_001)))
+        .isEqualTo(RegisteredValidators.UNREGISTERED);
+  }
+
+  @Test
+  void registeringAgainKeepsSingleEntryPerPublicKey() {
+    final RegisteredValidators registeredValidators =
+        RegisteredValidators.of(Map.of(Bytes.of(1), 1, Bytes.of(2), 2));
+    registeredValidators.registerAll(
+        List.of(new Validator(2, Bytes.of(2)), new Validator(3, Bytes.of(3))));
+
+    assertThat(registeredValidators.size()).isEqualTo(3);
+    assertThat(registeredValidators.validatorIds()).containsExactlyInAnyOrder(1, 2, 3);
+  }
+
+  @Test
+  void unregisteredReturnsDistinctKeysInOrder() {
+    final RegisteredValidators registeredValidators =
+        RegisteredValidators.of(Map.of(Bytes.of(2), 2));
+
+    assertThat(
+            registeredValidators.unregistered(
+                List.of(Bytes.of(3), Bytes.of(2), Bytes.of(1), Bytes.of(3))))
+        .containsExactly(Bytes.of(3), Bytes.of(1));
+  }
+}
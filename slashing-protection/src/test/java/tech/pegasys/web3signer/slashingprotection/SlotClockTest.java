@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class SlotClockTest {
+  private static final long GENESIS_TIME = 1_000;
+  private static final long SECONDS_PER_SLOT = 12;
+
+  @ParameterizedTest
+  @CsvSource({"0, 6000", "5999, 1", "6000, 12000", "7999, 10001", "8000, 10000", "11999, 6001"})
+  void nextQuietWindowStartsHalfWayThroughSlot(final long offsetMillis, final long expectedMillis) {
+    final SlotClock slotClock = slotClockAt(offsetMillis + 36_000);
+
+    assertThat(slotClock.untilNextQuietWindow()).isEqualTo(Duration.ofMillis(expectedMillis));
+  }
+
+  @ParameterizedTest
+  @CsvSource({"6000, 2000", "7000, 1000", "7999, 1"})
+  void remainingQuietTimeRunsUntilAggregation(final long offsetMillis, final long expectedMillis) {
+    final SlotClock slotClock = slotClockAt(offsetMillis);
+
+    assertThat(slotClock.remainingQuietTime()).contains(Duration.ofMillis(expectedMillis));
+  }
+
+  @ParameterizedTest
+  @CsvSource({"0", "4000", "5999", "8000", "11999"})
+  void noQuietTimeOutsideOfQuietWindow(final long offsetMillis) {
+    final SlotClock slotClock = slotClockAt(offsetMillis);
+
+    assertThat(slotClock.remainingQuietTime()).isEmpty();
+  }
+
+  @Test
+  void slotsBeforeGenesisFollowTheSameSchedule() {
+    final SlotClock slotClock = slotClockAt(-1_000);
+
+    assertThat(slotClock.untilNextQuietWindow()).isEqualTo(Duration.ofMillis(7_000));
+    assertThat(slotClock.remainingQuietTime()).isEmpty();
+  }
+
+  private SlotClock slotClockAt(final long millisSinceGenesis) {
+    final Instant now =
+        Instant.ofEpochSecond(GENESIS_TIME).plus(Duration.ofMillis(millisSinceGenesis));
+    return new SlotClock(GENESIS_TIME, SECONDS_PER_SLOT, Clock.fixed(now, ZoneOffset.UTC));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+class SortableUInt64Test {
+
+  private static final UInt64 SIGN_BIT = UInt64.valueOf(Long.MAX_VALUE).add(1);
+
+  @Test
+  void encodesZeroAsMinimumLong() {
+    assertThat(SortableUInt64.encode(UInt64.ZERO)).isEqualTo(Long.MIN_VALUE);
+    assertThat(SortableUInt64.encode(SIGN_BIT)).isZero();
+    assertThat(SortableUInt64.encode(UInt64.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void roundTripsFullUnsignedRange() {
+    Stream.of(
+            UInt64.ZERO,
+            UInt64.ONE,
+            UInt64.valueOf(Long.MAX_VALUE),
+            SIGN_BIT,
+            SIGN_BIT.add(1),
+            UInt64.MAX_VALUE)
+        .forEach(
+            value ->
+                assertThat(SortableUInt64.decode(SortableUInt64.encode(value))).isEqualTo(value));
+  }
+
+  @Test
+  void encodedValuesKeepUnsignedOrdering() {
+    final List<UInt64> ascending =
+        List.of(
+            UInt64.ZERO,
+            UInt64.valueOf(31),
+            UInt64.valueOf(Long.MAX_VALUE),
+            SIGN_BIT,
+            UInt64.MAX_VALUE.subtract(1),
+            UInt64.MAX_VALUE);
+
+    final List<Long> encoded =
+        ascending.stream().map(SortableUInt64::encode).collect(Collectors.toList());
+    assertThat(encoded).isSorted();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SurroundSpansTest {
+
+  private final SurroundSpans surroundSpans = new SurroundSpans(16);
+
+  @Test
+  void noAttestationsAreSurroundedOrSurrounding() {
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(1), epoch(5))).contains(false);
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(1), epoch(5)))
+        .contains(false);
+  }
+
+  @Test
+  void detectsSurroundingAndSurroundedAttestations() {
+    surroundSpans.record(epoch(3), epoch(6));
+
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(2), epoch(7))).contains(true);
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(3), epoch(7))).contains(false);
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(2), epoch(6))).contains(false);
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(4), epoch(5)))
+        .contains(true);
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(3), epoch(5)))
+        .contains(false);
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(4), epoch(6)))
+        .contains(false);
+  }
+
+  @Test
+  void checksBeforeHistoryAreNotAnswered() {
+    surroundSpans.record(epoch(100), epoch(101));
+
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(84), epoch(102))).isEmpty();
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(84), epoch(85))).isEmpty();
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(85), epoch(102))).contains(true);
+  }
+
+  @Test
+  void distancesBeyondRangeOfSpansAreNotAnswered() {
+    surroundSpans.record(epoch(1), epoch(100_000));
+
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(0), epoch(100_001))).isEmpty();
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(0), epoch(100))).contains(false);
+
+    surroundSpans.record(epoch(10), epoch(11));
+
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(2), epoch(99_999)))
+        .isEmpty();
+    assertThat(surroundSpans.isSurroundedByExistingAttestation(epoch(2), epoch(100)))
+        .contains(true);
+  }
+
+  @Test
+  void epochsBeyondRangeOfSpansAreNotAnswered() {
+    surroundSpans.record(epoch(1), epoch(2));
+    surroundSpans.record(UInt64.MAX_VALUE.subtract(1), UInt64.MAX_VALUE);
+
+    assertThat(surroundSpans.surroundsExistingAttestation(epoch(0), epoch(3))).isEmpty();
+  }
+
+  @ParameterizedTest
+  @ValueSource(longs = {1, 2, 3, 4, 5})
+  void matchesSearchOfRecordedAttestations(final long seed) {
+    final Random random = new Random(seed);
+    final List<long[]> attestations = new ArrayList<>();
+    long highestSourceEpoch = 0;
+
+    for (int i = 0; i < 500; i++) {
+      final long source = random.nextInt(200);
+      final long target = source + random.nextInt(20);
+      highestSourceEpoch = Math.max(highestSourceEpoch, source);
+      attestations.add(new long[] {source, target});
+      surroundSpans.record(epoch(source), epoch(target));
+
+      final long checkSource = Math.max(0, highestSourceEpoch - 15) + random.nextInt(30);
+      final long checkTarget = checkSource + random.nextInt(20);
+      assertThat(surroundSpans.surroundsExistingAttestation(epoch(checkSource), epoch(checkTarget)))
+          .isEqualTo(Optional.of(surrounds(attestations, checkSource, checkTarget)));
+      assertThat(
+              surroundSpans.isSurroundedByExistingAttestation(
+                  epoch(checkSource), epoch(checkTarget)))
+          .isEqualTo(Optional.of(isSurrounded(attestations, checkSource, checkTarget)));
+    }
+  }
+
+  private static boolean surrounds(
+      final List<long[]> attestations, final long source, final long target) {
+    return attestations.stream().anyMatch(a -> source < a[0] && a[1] < target);
+  }
+
+  private static boolean isSurrounded(
+      final List<long[]> attestations, final long source, final long target) {
+    return attestations.stream().anyMatch(a -> a[0] < source && target < a[1]);
+  }
+
+  private static UInt64 epoch(final long epoch) {
+    return UInt64.valueOf(epoch);
+  }
+}
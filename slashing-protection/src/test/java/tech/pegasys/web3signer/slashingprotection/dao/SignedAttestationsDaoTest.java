@@ -96,6 +96,24 @@ public class SignedAttestationsDaoTest {
     assertThat(attestations.get(0)).isEqualToComparingFieldByField(signedAttestation);
   }
 
+  @Test
+  public void storesBatchOfAttestationsInDb() {
+    validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
+    final List<SignedAttestation> attestations =
+        List.of(
+            attestation(1, 2, 3, 2),
+            attestation(1, 3, 4, 3),
+            new SignedAttestation(1, UInt64.valueOf(4), UInt64.valueOf(5), null));
+    signedAttestationsDao.insertAttestations(handle, attestations);
+
+    final List<SignedAttestation> attestationsInDb =
+        handle
+            .createQuery("SELECT * FROM signed_attestations ORDER BY target_epoch")
+            .mapToBean(SignedAttestation.class)
+            .list();
+    assertThat(attestationsInDb).usingFieldByFieldElementComparator().isEqualTo(attestations);
+  }
+
   @Test
   public void findsSurroundingAttestationInDb() {
     validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
@@ -282,6 +300,22 @@ public class SignedAttestationsDaoTest {
     assertThat(signedAttestationsDao.findMaxTargetEpoch(handle, 3)).isEmpty();
   }
 
+  @Test
+  public void findsAttestationsWithTargetEpochFromEpoch() {
+    insertValidator(Bytes.of(1), 1);
+    insertValidator(Bytes.of(2), 2);
+    insertAttestation(1, Bytes.of(1), UInt64.valueOf(2), UInt64.valueOf(3));
+    insertAttestation(1, Bytes.of(1), UInt64.valueOf(3), UInt64.valueOf(4));
+    insertAttestation(1, Bytes.of(1), UInt64.valueOf(1), UInt64.valueOf(8));
+    insertAttestation(2, Bytes.of(1), UInt64.valueOf(3), UInt64.valueOf(4));
+
+    final List<SignedAttestation> attestations =
+        signedAttestationsDao.findAttestationsWithTargetEpochFrom(handle, 1, UInt64.valueOf(4));
+    assertThat(attestations)
+        .usingFieldByFieldElementComparator()
+        .containsExactlyInAnyOrder(attestation(1, 3, 4, 1), attestation(1, 1, 8, 1));
+  }
+
   @Test
   public void findsNearestAttestationForTargetEpoch() {
     insertValidator(Bytes.of(1), 1);
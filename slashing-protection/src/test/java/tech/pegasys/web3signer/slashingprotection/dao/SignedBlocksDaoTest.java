@@ -214,6 +214,48 @@ public class SignedBlocksDaoTest {
     assertThat(signedBlocksDao.findMaxSlot(handle, 3)).isEmpty();
   }
 
+  @Test
+  public void storesBatchOfBlocksInDb() {
+    insertValidator(Bytes.of(100), 1);
+    final List<SignedBlock> blocks =
+        List.of(block(2, 100), block(3, 101), new SignedBlock(1, UInt64.valueOf(4), null));
+    signedBlocksDao.insertBlockProposals(handle, blocks);
+
+    final List<SignedBlock> blocksInDb =
+        handle
+            .createQuery("SELECT * FROM signed_blocks ORDER BY slot")
+            .mapToBean(SignedBlock.class)
+            .list();
+    assertThat(blocksInDb).usingFieldByFieldElementComparator().isEqualTo(blocks);
+  }
+
+  @Test
+  public void storesAndOrdersSlotsAcrossFullUnsignedRange() {
+    insertValidator(Bytes.of(1), 1);
+    final List<UInt64> slots =
+        List.of(
+            UInt64.ZERO,
+            UInt64.valueOf(Long.MAX_VALUE),
+            UInt64.valueOf(Long.MAX_VALUE).add(1),
+            UInt64.MAX_VALUE);
+    slots.forEach(
+        slot ->
+            signedBlocksDao.insertBlockProposal(handle, new SignedBlock(1, slot, Bytes.of(1))));
+
+    assertThat(signedBlocksDao.findMaxSlot(handle, 1)).contains(UInt64.MAX_VALUE);
+    assertThat(
+            signedBlocksDao
+                .findAllBlockSignedBy(handle, 1)
+                .map(SignedBlock::getSlot)
+                .collect(Collectors.toList()))
+        .containsExactlyInAnyOrderElementsOf(slots);
+    assertThat(
+            signedBlocksDao
+                .findNearestBlockWithSlot(handle, 1, UInt64.valueOf(Long.MAX_VALUE).add(1))
+                .map(SignedBlock::getSlot))
+        .contains(UInt64.valueOf(Long.MAX_VALUE).add(1));
+  }
+
   @Test
   public void findsNearestBlockForSlot() {
     insertValidator(Bytes.of(1), 1);
@@ -231,7 +273,7 @@ public class SignedBlocksDaoTest {
     handle.execute(
         "INSERT INTO signed_blocks (validator_id, slot, signing_root) VALUES (?, ?, ?)",
         validatorId,
-        slot,
+        UInt64.valueOf(slot),
         signingRoot);
   }
 
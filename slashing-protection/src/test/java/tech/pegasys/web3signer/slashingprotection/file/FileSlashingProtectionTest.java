@@ -0,0 +1,306 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.web3signer.slashingprotection.SlashingCheckRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSlashingProtectionTest {
+
+  private static final Bytes PUBLIC_KEY = Bytes.fromHexString("0x01");
+  private static final Bytes32 GVR = Bytes32.leftPad(Bytes.of(100));
+  private static final Bytes SIGNING_ROOT = Bytes32.leftPad(Bytes.of(1));
+  private static final Bytes OTHER_SIGNING_ROOT = Bytes32.leftPad(Bytes.of(2));
+
+  @TempDir Path storeDirectory;
+  private FileSlashingProtection slashingProtection;
+
+  @BeforeEach
+  void setup() {
+    slashingProtection = open(storeDirectory);
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    slashingProtection.close();
+  }
+
+  @Test
+  void blockWithDifferentSigningRootInSameSlotIsRejected() {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isFalse();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 9)).isFalse();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 11)).isTrue();
+  }
+
+  @Test
+  void surroundingAndSurroundedAttestationsAreRejected() {
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 3, 4)).isFalse();
+    assertThat(maySignAttestation(SIGNING_ROOT, 5, 8)).isTrue();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 4, 9)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 6, 7)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 8, 7)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 2, 9)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 8, 9)).isTrue();
+  }
+
+  @Test
+  void mismatchedGenesisValidatorsRootIsRejected() {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(
+            slashingProtection.maySignBlock(
+                PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(11), Bytes32.leftPad(Bytes.of(1))))
+        .isFalse();
+  }
+
+  @Test
+  void unregisteredValidatorIsRejected() {
+    assertThatThrownBy(
+            () ->
+                slashingProtection.maySignBlock(
+                    Bytes.fromHexString("0x02"), SIGNING_ROOT, UInt64.ONE, GVR))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void batchResultsAreReturnedInRequestOrder() {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                SlashingCheckRequest.block(PUBLIC_KEY, OTHER_SIGNING_ROOT, UInt64.valueOf(10), GVR),
+                SlashingCheckRequest.attestation(
+                    PUBLIC_KEY, SIGNING_ROOT, UInt64.ONE, UInt64.valueOf(2), GVR)));
+
+    assertThat(results).containsExactly(false, true);
+  }
+
+  @Test
+  void batchWithUnregisteredValidatorIsRejectedBeforeAnyCheck() {
+    assertThatThrownBy(
+            () ->
+                slashingProtection.maySignBatch(
+                    List.of(
+                        SlashingCheckRequest.block(
+                            PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(10), GVR),
+                        SlashingCheckRequest.block(
+                            Bytes.fromHexString("0x02"), SIGNING_ROOT, UInt64.ONE, GVR))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Unregistered validator for 0x02");
+
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isTrue();
+  }
+
+  @Test
+  void signedDataIsRetainedWhenStoreIsReopened() throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+    reopen();
+
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 3, 4)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 2, 5)).isFalse();
+  }
+
+  @Test
+  void incompleteRecordAtEndOfLogIsDiscarded() throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    slashingProtection.close();
+    Files.write(
+        storeDirectory.resolve(SlashingProtectionLog.LOG_FILE_NAME),
+        new byte[] {0, 0, 0, 20, LogRecords.BLOCK, 1, 2},
+        StandardOpenOption.APPEND);
+    slashingProtection = open(storeDirectory);
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isFalse();
+    assertThat(maySignBlock(SIGNING_ROOT, 11)).isTrue();
+    reopen();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 11)).isFalse();
+  }
+
+  @Test
+  void finalRecordWithInvalidChecksumIsDiscarded() throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignBlock(SIGNING_ROOT, 11)).isTrue();
+    slashingProtection.close();
+    final Path logFile = storeDirectory.resolve(SlashingProtectionLog.LOG_FILE_NAME);
+    final byte[] log = Files.readAllBytes(logFile);
+    log[log.length - 1] ^= 0x01;
+    Files.write(logFile, log);
+    slashingProtection = open(storeDirectory);
+
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isFalse();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 11)).isTrue();
+  }
+
+  @Test
+  void corruptRecordBeforeEndOfLogPreventsStoreFromOpening() throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignBlock(SIGNING_ROOT, 11)).isTrue();
+    assertThat(maySignBlock(SIGNING_ROOT, 12)).isTrue();
+    slashingProtection.close();
+    final Path logFile = storeDirectory.resolve(SlashingProtectionLog.LOG_FILE_NAME);
+    final byte[] original = Files.readAllBytes(logFile);
+    final byte[] corrupted = original.clone();
+    final int firstRecordLength =
+        LogRecords.HEADER_SIZE
+            + Bytes.wrap(corrupted, 0, Integer.BYTES).toInt()
+            + LogRecords.TRAILER_SIZE;
+    corrupted[firstRecordLength - 1] ^= 0x01;
+    Files.write(logFile, corrupted);
+
+    assertThatThrownBy(() -> open(storeDirectory))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("at offset 0 is followed by further records");
+    assertThat(Files.readAllBytes(logFile)).isEqualTo(corrupted);
+
+    Files.write(logFile, original);
+    slashingProtection = open(storeDirectory);
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 12)).isFalse();
+  }
+
+  @Test
+  void requestsAreRefusedAndHistoryRevertedOnceWritingToTheLogFails(
+      @TempDir final Path otherStoreDirectory) throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+    // closing the store closes the log's file, so the next append fails
+    slashingProtection.close();
+
+    assertThatThrownBy(() -> maySignBlock(SIGNING_ROOT, 11))
+        .isInstanceOf(UncheckedIOException.class);
+    assertThatThrownBy(() -> maySignAttestation(SIGNING_ROOT, 4, 5))
+        .isInstanceOf(IllegalStateException.class);
+    // retries, and requests matching history which is already durable, are not approved either
+    assertThatThrownBy(() -> maySignBlock(SIGNING_ROOT, 11))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> maySignBlock(SIGNING_ROOT, 10))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> maySignAttestation(SIGNING_ROOT, 3, 4))
+        .isInstanceOf(IllegalStateException.class);
+
+    // the block which failed to be written is no longer part of the history
+    final ByteArrayOutputStream exported = new ByteArrayOutputStream();
+    slashingProtection.export(exported);
+    try (final FileSlashingProtection otherStore = open(otherStoreDirectory)) {
+      otherStore.importData(new ByteArrayInputStream(exported.toByteArray()));
+      assertThat(otherStore.maySignBlock(PUBLIC_KEY, OTHER_SIGNING_ROOT, UInt64.valueOf(10), GVR))
+          .isFalse();
+      assertThat(otherStore.maySignBlock(PUBLIC_KEY, OTHER_SIGNING_ROOT, UInt64.valueOf(11), GVR))
+          .isTrue();
+    }
+
+    slashingProtection = open(storeDirectory);
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 10)).isFalse();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 11)).isTrue();
+  }
+
+  @Test
+  void storeCannotBeOpenedTwice() {
+    assertThatThrownBy(() -> open(storeDirectory))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("in use by another process");
+  }
+
+  @Test
+  void pruningRemovesEntriesBelowNewWatermark() throws IOException {
+    slashingProtection.close();
+    slashingProtection = FileSlashingProtection.create(storeDirectory, 2, 1);
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    for (int i = 1; i <= 5; i++) {
+      assertThat(maySignBlock(SIGNING_ROOT, i)).isTrue();
+      assertThat(maySignAttestation(SIGNING_ROOT, i - 1, i)).isTrue();
+    }
+
+    slashingProtection.prune();
+    reopen();
+
+    // entries below the new watermarks are refused and those kept are still protected
+    assertThat(maySignBlock(SIGNING_ROOT, 3)).isFalse();
+    assertThat(maySignBlock(OTHER_SIGNING_ROOT, 4)).isFalse();
+    assertThat(maySignBlock(SIGNING_ROOT, 4)).isTrue();
+    assertThat(maySignAttestation(SIGNING_ROOT, 2, 3)).isFalse();
+    assertThat(maySignAttestation(OTHER_SIGNING_ROOT, 4, 5)).isFalse();
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+  }
+
+  @Test
+  void exportedDataCanBeImportedIntoNewStore(@TempDir final Path otherStoreDirectory)
+      throws IOException {
+    assertThat(maySignBlock(SIGNING_ROOT, 10)).isTrue();
+    assertThat(maySignAttestation(SIGNING_ROOT, 3, 4)).isTrue();
+    final ByteArrayOutputStream exported = new ByteArrayOutputStream();
+    slashingProtection.export(exported);
+
+    try (final FileSlashingProtection otherStore = open(otherStoreDirectory)) {
+      otherStore.importData(new ByteArrayInputStream(exported.toByteArray()));
+
+      assertThat(otherStore.maySignBlock(PUBLIC_KEY, OTHER_SIGNING_ROOT, UInt64.valueOf(10), GVR))
+          .isFalse();
+      assertThat(
+              otherStore.maySignAttestation(
+                  PUBLIC_KEY, OTHER_SIGNING_ROOT, UInt64.valueOf(2), UInt64.valueOf(5), GVR))
+          .isFalse();
+      assertThat(
+              otherStore.maySignAttestation(
+                  PUBLIC_KEY, SIGNING_ROOT, UInt64.valueOf(4), UInt64.valueOf(5), GVR))
+          .isTrue();
+    }
+  }
+
+  private boolean maySignBlock(final Bytes signingRoot, final long slot) {
+    return slashingProtection.maySignBlock(PUBLIC_KEY, signingRoot, UInt64.valueOf(slot), GVR);
+  }
+
+  private boolean maySignAttestation(
+      final Bytes signingRoot, final long sourceEpoch, final long targetEpoch) {
+    return slashingProtection.maySignAttestation(
+        PUBLIC_KEY, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), GVR);
+  }
+
+  private void reopen() throws IOException {
+    slashingProtection.close();
+    slashingProtection = open(storeDirectory);
+  }
+
+  private static FileSlashingProtection open(final Path directory) {
+    final FileSlashingProtection fileSlashingProtection =
+        FileSlashingProtection.create(directory, 10_000, 32);
+    fileSlashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    return fileSlashingProtection;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class InterchangeCompressionTest {
+
+  @ParameterizedTest
+  @CsvSource({"export.json, NONE", "export.json.gz, GZIP", "export.gz.json, NONE"})
+  void compressionIsSelectedByFileExtension(
+      final String fileName, final InterchangeCompression expected) {
+    assertThat(InterchangeCompression.fromFileName(fileName)).isEqualTo(expected);
+  }
+
+  @ParameterizedTest
+  @EnumSource(InterchangeCompression.class)
+  void decompressingStreamReturnsCompressedContent(final InterchangeCompression compression)
+      throws IOException {
+    // larger than the pipeline chunks so the content is passed on in several parts
+    final byte[] content = new byte[300 * 1024];
+    new Random(1).nextBytes(content);
+
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (final OutputStream out = compression.compressingStream(compressed)) {
+      out.write(content, 0, 1000);
+      out.write(content[1000]);
+      out.write(content, 1001, content.length - 1001);
+    }
+
+    try (final InputStream in =
+        InterchangeCompression.decompressingStream(
+            new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void gzipOutputCanBeReadByStandardGzipStream() throws IOException {
+    final byte[] content = "{\"metadata\":{}}".getBytes();
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (final OutputStream out = InterchangeCompression.GZIP.compressingStream(compressed)) {
+      out.write(content);
+    }
+
+    try (final InputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void corruptGzipInputFailsRead() throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (final OutputStream out = InterchangeCompression.GZIP.compressingStream(compressed)) {
+      out.write(new byte[10_000]);
+    }
+    final byte[] truncated = Arrays.copyOf(compressed.toByteArray(), compressed.size() / 2);
+
+    try (final InputStream in =
+        InterchangeCompression.decompressingStream(new ByteArrayInputStream(truncated))) {
+      assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.interchange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PipelinedOutputStreamTest {
+
+  @Test
+  void bytesAreWrittenToTargetInOrderAndTargetIsClosed() throws IOException {
+    final byte[] content = new byte[1024 * 1024 + 7];
+    new Random(1).nextBytes(content);
+    final ClosingOutputStream target = new ClosingOutputStream();
+
+    try (final PipelinedOutputStream output = new PipelinedOutputStream(target, "test-pipeline")) {
+      output.write(content[0]);
+      output.write(content, 1, content.length - 1);
+    }
+
+    assertThat(target.toByteArray()).isEqualTo(content);
+    assertThat(target.closed).isTrue();
+  }
+
+  @Test
+  void runtimeExceptionOfTargetFailsWriter() {
+    final IllegalStateException failure = new IllegalStateException("target failed");
+    final OutputStream target =
+        new OutputStream() {
+          @Override
+          public void write(final int b) {
+            throw failure;
+          }
+        };
+
+    final Throwable thrown = catchThrowable(() -> writeUntilClosed(target));
+
+    assertThat(thrown)
+        .isInstanceOf(IOException.class)
+        .hasMessage("Pipeline failed to write output");
+    assertThat(thrown.getCause()).isSameAs(failure);
+  }
+
+  @Test
+  void ioExceptionOfTargetFailsWriter() {
+    final IOException failure = new IOException("target failed");
+    final OutputStream target =
+        new OutputStream() {
+          @Override
+          public void write(final int b) throws IOException {
+            throw failure;
+          }
+        };
+
+    final Throwable thrown = catchThrowable(() -> writeUntilClosed(target));
+
+    assertThat(thrown).isInstanceOf(IOException.class);
+    assertThat(thrown.getCause()).isSameAs(failure);
+  }
+
+  // writes more than the pipeline can queue, so the failure is seen whether or not the pipeline
+  // thread fails before the writer reaches close
+  private void writeUntilClosed(final OutputStream target) throws IOException {
+    final byte[] chunk = new byte[64 * 1024];
+    try (final PipelinedOutputStream output = new PipelinedOutputStream(target, "test-pipeline")) {
+      for (int i = 0; i < 64; i++) {
+        output.write(chunk);
+      }
+    }
+  }
+
+  private static class ClosingOutputStream extends ByteArrayOutputStream {
+    private volatile boolean closed;
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
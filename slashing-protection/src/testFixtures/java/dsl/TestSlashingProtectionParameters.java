@@ -130,8 +130,133 @@ public class TestSlashingProtectionParameters implements SlashingProtectionParam
     return TimeUnit.SECONDS;
   }
 
+  @Override
+  public long getPruningPartitionEpochs() {
+    return 0;
+  }
+
+  @Override
+  public boolean isPruningBulkEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getPruningBatchSize() {
+    return 10_000;
+  }
+
+  @Override
+  public int getPruningParallelism() {
+    return 1;
+  }
+
+  @Override
+  public boolean isPruningIncrementalEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getPruningTimeBudgetMillis() {
+    return 1000;
+  }
+
+  @Override
+  public long getPruningRowBudget() {
+    return 10_000;
+  }
+
+  @Override
+  public long getPruningGenesisTime() {
+    return 0;
+  }
+
+  @Override
+  public long getPruningSecondsPerSlot() {
+    return 12;
+  }
+
   @Override
   public Path getDbPoolConfigurationFile() {
     return dbPoolConfigurationFile;
   }
+
+  @Override
+  public Path getFileStorePath() {
+    return null;
+  }
+
+  @Override
+  public boolean isStateCacheEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isConsolidatedChecksEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isImportBulkEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getImportCheckpointSize() {
+    return 0;
+  }
+
+  @Override
+  public int getExportParallelism() {
+    return 1;
+  }
+
+  @Override
+  public boolean isExportCompactEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isMinimalEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isDbLanesEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getDbBlockPoolSize() {
+    return 2;
+  }
+
+  @Override
+  public int getDbAttestationPoolSize() {
+    return 10;
+  }
+
+  @Override
+  public boolean isLocalLockingEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getLocalLockingLeaseMillis() {
+    return 10000;
+  }
+
+  @Override
+  public boolean isBackgroundRegistrationEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getGroupCommitWindowMillis() {
+    return 0;
+  }
+
+  @Override
+  public int getGroupCommitMaxBatchSize() {
+    return 256;
+  }
 }